@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.ugate.service.SettingsSyncResult;
 import org.ugate.service.entity.Command;
 import org.ugate.service.entity.IModelType;
 import org.ugate.service.entity.jpa.Host;
@@ -34,6 +35,7 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	private final V newValue;
 	private boolean fromRemote;
 	private List<String> messages;
+	private transient volatile LazyMessage lazyMessage;
 	private AtomicBoolean consumed = new AtomicBoolean();
 	
 	/**
@@ -143,6 +145,8 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	public UGateEvent<S, V> clone(final Type type, final int nodeIndex, final String... messages) {
 		UGateEvent<S, V> event = null;
 		try {
+			// the clone shares the messages so any lazy message is formatted first
+			getMessages();
 			event = (UGateEvent<S, V>) super.clone();
 			event.type = type;
 			if (messages != null) {
@@ -264,6 +268,16 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		this.messages = messages;
 	}
 	
+	/**
+	 * Sets a {@linkplain LazyMessage} that will be added to the
+	 * {@linkplain #getMessages()} when they are first requested
+	 * 
+	 * @param lazyMessage the {@linkplain LazyMessage}
+	 */
+	public void setLazyMessage(final LazyMessage lazyMessage) {
+		this.lazyMessage = lazyMessage;
+	}
+
 	/**
 	 * @return the messages
 	 */
@@ -271,6 +285,14 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		if (messages == null) {
 			messages = new ArrayList<String>();
 		}
+		if (lazyMessage != null) {
+			synchronized (this) {
+				if (lazyMessage != null) {
+					messages.add(lazyMessage.format());
+					lazyMessage = null;
+				}
+			}
+		}
 		return messages;
 	}
 	
@@ -317,6 +339,18 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		this.consumed.set(consumed);
 	}
 
+	/**
+	 * Message that is only formatted when the {@linkplain UGateEvent}
+	 * messages are first requested
+	 */
+	public interface LazyMessage {
+
+		/**
+		 * @return the formatted message
+		 */
+		String format();
+	}
+
 	/**
 	 * The {@linkplain UGateEvent} types
 	 */
@@ -355,6 +389,10 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		WIRELESS_HOST_DISCONNECT_FAILED,
 		/** Event when wireless data is being sent to ALL THE SPECIFIED {@linkplain RemoteNode}(s) */
 		WIRELESS_DATA_ALL_TX,
+		/** Event when wireless data has been sent to one of ALL THE SPECIFIED {@linkplain RemoteNode}(s) and the others are still pending. {@linkplain UGateEvent#getNewValue()} will contain the {@linkplain SettingsSyncResult} */
+		WIRELESS_DATA_ALL_TX_PROGRESS,
+		/** Event when wireless data has been sent to ALL THE SPECIFIED {@linkplain RemoteNode}(s). {@linkplain UGateEvent#getNewValue()} will contain the {@linkplain SettingsSyncResult} */
+		WIRELESS_DATA_ALL_TX_COMPLETE,
 		/** Event when wireless data is being sent to a SINGLE {@linkplain RemoteNode} */
 		WIRELESS_DATA_TX,
 		/** Event when wireless data has failed to be sent to a SINGLE {@linkplain RemoteNode} */
@@ -64,7 +64,6 @@ import org.ugate.service.entity.jpa.RemoteNodeReading;
 import org.ugate.wireless.data.ImageCapture;
 import org.ugate.wireless.data.RxData;
 import org.ugate.wireless.data.RxTxRemoteNodeDTO;
-import org.ugate.wireless.data.RxTxRemoteNodeReadingDTO;
 
 /**
  * Main menu control bar
@@ -253,10 +252,8 @@ public class ControlBar extends ToolBar {
 					}
 				} else if (event.getType() == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS) {
 					final RemoteNode rn = (RemoteNode) event.getSource();
-					if (event.getNewValue() instanceof RxTxRemoteNodeReadingDTO) {
-						final RxTxRemoteNodeReadingDTO sr = (RxTxRemoteNodeReadingDTO) event.getNewValue();
-						ServiceProvider.IMPL.getRemoteNodeService().saveReading(sr.getRemoteNodeReading());
-					} else if (event.getNewValue() instanceof RxTxRemoteNodeDTO) {
+					// readings are saved by the wireless service as they are received
+					if (event.getNewValue() instanceof RxTxRemoteNodeDTO) {
 						final RxTxRemoteNodeDTO ndto = (RxTxRemoteNodeDTO) event.getNewValue();
 						if (!RemoteNodeType.remoteEquivalent(rn, ndto.getRemoteNode())) {
 							// remote device values do not match the local device values
@@ -4,7 +4,6 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 import java.util.Set;
 
 import javafx.application.Platform;
@@ -33,6 +32,7 @@ import org.ugate.gui.GuiUtil;
 import org.ugate.gui.components.SimpleCalendar;
 import org.ugate.resources.RS;
 import org.ugate.resources.RS.KEY;
+import org.ugate.service.ReadingCache;
 import org.ugate.service.ServiceProvider;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
 
@@ -119,7 +119,8 @@ public class SensorReadingHistory extends StackPane {
 
 	/**
 	 * Updates the {@linkplain XYChart.Series} using
-	 * {@linkplain RemoteNodeReading}(s) for a given {@linkplain Calendar}
+	 * {@linkplain RemoteNodeReading}(s) for a given {@linkplain Calendar} (from
+	 * the {@linkplain ReadingCache})
 	 * 
 	 * @param cal
 	 *            the {@linkplain Calendar} to get the
@@ -128,9 +129,8 @@ public class SensorReadingHistory extends StackPane {
 	 */
 	protected int populateData(final XYChart<String, Number> chart,
 			final Calendar cal) {
-		final List<RemoteNodeReading> rnrs = ServiceProvider.IMPL
-				.getRemoteNodeService().findReadingsByDate(cb.getRemoteNode(),
-						cal, true);
+		final ReadingCache.DayReadings rnrs = ServiceProvider.IMPL
+				.getReadingCache().get(cb.getRemoteNode(), cal);
 		// add zero plot for 24hr period for each series
 		xAxis.getCategories().clear();
 		sonarSeries.getData().clear();
@@ -142,11 +142,11 @@ public class SensorReadingHistory extends StackPane {
 			String time;
 			final int d = 0;// Double.MIN_NORMAL;
 			Number l = d, m = d, p = d, s = d, r = d;
-			for (final RemoteNodeReading rnr : rnrs) {
+			for (int j = 0; j < rnrs.size(); j++) {
 				l = m = p = s = r = d;
-				time = UGateUtil.dateFormatTime(rnr.getReadDate());
+				time = UGateUtil.dateFormatTime(rnrs.getReadDate(j));
 				xAxis.getCategories().add(time);
-				switch (rnr.getFromMultiState()) {
+				switch (rnrs.getFromMultiState(j)) {
 				case 1:
 					l = 1;
 					break;
@@ -215,8 +215,8 @@ public class SensorReadingHistory extends StackPane {
 				default:
 					log.warn(String.format(
 							"%1$s for ID %2$s invalid for multi-state %3$s",
-							RemoteNodeReading.class.getName(), rnr.getId(),
-							rnr.getFromMultiState()));
+							RemoteNodeReading.class.getName(), rnrs.getId(j),
+							rnrs.getFromMultiState(j)));
 				}
 				int i = -1;
 				addData(chart, sonarSeries, new XYChart.Data<>(time, s), ++i);
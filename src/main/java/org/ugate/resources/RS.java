@@ -1009,7 +1009,7 @@ public class RS {
 		SERVICE_TX_RESPONSE_INVALID("service.tx.response.unrecognized", 2),
 		SERVICE_TX_RESPONSE_SUCCESS("service.tx.response.success", 2),
 		SERVICE_TX_RESPONSE_ERROR("service.tx.response.error", 2),
-		SERVICE_RX_READINGS("service.rx.readings", 1),
+		SERVICE_RX_READINGS("service.rx.readings", 8),
 		SERVICE_RX_SETTINGS("service.rx.settings", 1),
 		SERVICE_RX_KEYCODES("service.rx.keycodes", 1),
 		SERVICE_RX_IMAGE_MULTPART("service.rx.image.multipart", 1),
@@ -1018,6 +1018,10 @@ public class RS {
 		SERVICE_RX_IMAGE_LOST_PACKETS_RETRY(
 				"service.rx.image.lostpackets.retry", 3),
 		SERVICE_RX_IMAGE_TIMEOUT("service.rx.image.timeout", 2),
+		SERVICE_RX_IMAGE_EXPIRED("service.rx.image.expired", 3),
+		SERVICE_RX_IMAGE_RANGE_RETRY("service.rx.image.range.retry", 4),
+		SERVICE_RX_IMAGE_RANGE_SUCCESS("service.rx.image.range.success", 3),
+		SERVICE_RX_IMAGE_RANGE_UNSUPPORTED("service.rx.image.range.unsupported", 1),
 		SERVICE_CMD_SOUNDS(RemoteNodeType.DEVICE_SOUNDS_ON.getKey()),
 		SERVICE_CMD_SOUNDS_TOGGLE(RemoteNodeType.DEVICE_SOUNDS_ON.getKey()
 				+ ".desc"),
@@ -1033,6 +1037,9 @@ public class RS {
 		SERVICE_WIRELESS_TX_TIMEOUT("service.wireless.tx.timeout", 1),
 		SERVICE_WIRELESS_TX_FAILED("service.wireless.tx.failed", 1),
 		SERVICE_WIRELESS_SETTINGS_FAILED("service.wireless.settings.failed", 1),
+		SERVICE_WIRELESS_SETTINGS_SYNC("service.wireless.settings.sync", 1),
+		SERVICE_WIRELESS_SETTINGS_SYNC_PROGRESS("service.wireless.settings.sync.progress", 3),
+		SERVICE_WIRELESS_SETTINGS_SYNC_COMPLETE("service.wireless.settings.sync.complete", 4),
 		SERVICE_EMAIL_FAILED("service.email.failed"),
 		SERVICE_EMAIL_CMD_EXEC("service.email.commandexec", 3),
 		SERVICE_EMAIL_CMD_EXEC_FAILED("service.email.commandexec.failed", 4),
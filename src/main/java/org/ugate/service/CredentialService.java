@@ -244,6 +244,10 @@ public class CredentialService {
 		credentialDao.mergeEntity(host);
 		credentialDao.deleteEntitiesById(
 				RemoteNodeType.WIRELESS_ADDRESS.getKey(), remoteNodes);
+		if (remoteNodes != null) {
+			// cached readings of removed nodes are no longer accessible
+			ServiceProvider.IMPL.getReadingCache().invalidateAfterCommit(remoteNodes);
+		}
 	}
 
 	/**
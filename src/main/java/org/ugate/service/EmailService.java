@@ -89,7 +89,7 @@ public class EmailService extends ExtractorService<Actor> {
 													"Invalid remote address: "
 															+ toAddress);
 										}
-										ServiceProvider.IMPL.getWirelessService().sendData(rn, command, 0, false);
+										ServiceProvider.IMPL.getWirelessService().sendDataAsync(rn, command);
 										msg = RS.rbLabel(KEY.SERVICE_EMAIL_CMD_EXEC, command, event.from, toAddress);
 										log.info(msg);
 									} catch (final Throwable t) {
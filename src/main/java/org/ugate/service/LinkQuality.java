@@ -0,0 +1,294 @@
+package org.ugate.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RemoteNodeIndex;
+
+/**
+ * Rolling link quality of each {@linkplain RemoteNode} estimated from the
+ * image reassembly path. The signal strength of each received image chunk and
+ * the fraction of each image transfer attempt that was lost are smoothed
+ * using exponentially weighted moving averages. A link is degraded when either
+ * average crosses it's degraded threshold and is only recovered once both
+ * averages are back within the (stricter) recovered thresholds so that a link
+ * near a threshold does not flap. For {@linkplain RemoteNode}s that have
+ * {@linkplain RemoteNode#getCamResolutionAdaptive()} turned on the
+ * {@linkplain RemoteNode#getCamResolution()} that is sent to the remote device
+ * is lowered to {@linkplain #QVGA} while the link is degraded (see
+ * {@linkplain #adapt(RemoteNode)}) and the user's
+ * {@linkplain RemoteNode#getCamResolution()} is restored once the link has
+ * recovered. The settings are re-sent each time the link changes state.
+ */
+public class LinkQuality {
+
+	private static final Logger log = LoggerFactory.getLogger(LinkQuality.class);
+	/**
+	 * The {@linkplain RemoteNode#getCamResolution()} for QVGA
+	 */
+	public static final int QVGA = 0;
+	/**
+	 * The {@linkplain RemoteNode#getCamResolution()} for VGA
+	 */
+	public static final int VGA = 1;
+	/**
+	 * The average signal strength (-dBm) at or above which a link is degraded
+	 */
+	public static final int DEGRADED_SIGNAL_STRENGTH = 85;
+	/**
+	 * The average signal strength (-dBm) at or below which a degraded link can
+	 * recover
+	 */
+	public static final int RECOVERED_SIGNAL_STRENGTH = 78;
+	/**
+	 * The average fraction of image data lost at or above which a link is
+	 * degraded
+	 */
+	public static final double DEGRADED_LOSS = 0.25;
+	/**
+	 * The average fraction of image data lost at or below which a degraded
+	 * link can recover
+	 */
+	public static final double RECOVERED_LOSS = 0.05;
+	/**
+	 * The number of image chunks that need to be received before the average
+	 * signal strength is considered
+	 */
+	public static final int MIN_SIGNAL_SAMPLES = 8;
+	private static final double SIGNAL_STRENGTH_WEIGHT = 0.1;
+	private static final double LOSS_WEIGHT = 0.3;
+	private final WirelessService wirelessService;
+	private final RemoteNodeIndex remoteNodeIndex;
+	private final ConcurrentMap<String, Link> links = new ConcurrentHashMap<>();
+	private final AtomicLong changeCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param wirelessService
+	 *            the {@linkplain WirelessService} used to send the adapted
+	 *            settings
+	 * @param remoteNodeIndex
+	 *            the {@linkplain RemoteNodeIndex} of the {@linkplain RemoteNode}
+	 *            s to adapt
+	 */
+	LinkQuality(final WirelessService wirelessService, final RemoteNodeIndex remoteNodeIndex) {
+		this.wirelessService = wirelessService;
+		this.remoteNodeIndex = remoteNodeIndex;
+	}
+
+	/**
+	 * Records the signal strength of a chunk of image data
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} the chunk was received from
+	 * @param signalStrength
+	 *            the signal strength the chunk was received with (the XBee
+	 *            parser reports dBm as a negative value, only the magnitude is
+	 *            used)
+	 */
+	void signalStrength(final RemoteNode remoteNode, final int signalStrength) {
+		final int ss = Math.abs(signalStrength);
+		if (ss == 0) {
+			return;
+		}
+		final Link link = link(remoteNode.getAddress());
+		synchronized (link) {
+			link.signalStrength = Double.isNaN(link.signalStrength) ? ss
+					: link.signalStrength + SIGNAL_STRENGTH_WEIGHT * (ss - link.signalStrength);
+			link.signalSamples++;
+		}
+		evaluate(remoteNode, link);
+	}
+
+	/**
+	 * Records the outcome of an image transfer attempt
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} the image was received from
+	 * @param loss
+	 *            the fraction of the image that was lost (zero to one)
+	 */
+	void loss(final RemoteNode remoteNode, final double loss) {
+		final double l = Math.max(0, Math.min(1, loss));
+		final Link link = link(remoteNode.getAddress());
+		synchronized (link) {
+			link.loss = Double.isNaN(link.loss) ? l : link.loss + LOSS_WEIGHT * (l - link.loss);
+		}
+		evaluate(remoteNode, link);
+	}
+
+	/**
+	 * Changes the state of a {@linkplain Link} when it crosses a threshold and
+	 * re-sends the settings of an adaptive {@linkplain RemoteNode} when it does
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param link
+	 *            the {@linkplain Link} of the {@linkplain RemoteNode}
+	 */
+	private void evaluate(final RemoteNode remoteNode, final Link link) {
+		final boolean degraded;
+		synchronized (link) {
+			final double ss = link.signalSamples < MIN_SIGNAL_SAMPLES ? 0 : link.signalStrength;
+			final double loss = Double.isNaN(link.loss) ? 0 : link.loss;
+			if (link.degraded) {
+				degraded = ss > RECOVERED_SIGNAL_STRENGTH || loss > RECOVERED_LOSS;
+			} else {
+				degraded = ss >= DEGRADED_SIGNAL_STRENGTH || loss >= DEGRADED_LOSS;
+			}
+			if (degraded == link.degraded) {
+				return;
+			}
+			link.degraded = degraded;
+			changeCount.incrementAndGet();
+			log.info(String.format("Link to %1$s has %2$s (signal strength: -%3$.0f dBm, loss: %4$.0f%%)",
+					remoteNode.getAddress(), degraded ? "degraded" : "recovered", ss, loss * 100));
+		}
+		final RemoteNode rn = remoteNodeIndex.get(RemoteNodeIndex.toAddress(remoteNode.getAddress()));
+		if (rn != null && isAdaptive(rn) && wirelessService.isConnected()) {
+			log.info(String.format("Sending %1$s camera resolution to %2$s",
+					degraded ? "QVGA" : "VGA", rn.getAddress()));
+			wirelessService.sendSettingsAsync(0, 1, WirelessService.DEFAULT_SETTINGS_RETRIES, rn);
+		}
+	}
+
+	/**
+	 * Adapts the settings of a {@linkplain RemoteNode} to the quality of it's
+	 * link before they are sent to the remote device. When the
+	 * {@linkplain RemoteNode#getCamResolutionAdaptive()} is on and the link is
+	 * {@linkplain #isDegraded(String)} a detached copy of the
+	 * {@linkplain RemoteNode} with a {@linkplain #QVGA}
+	 * {@linkplain RemoteNode#getCamResolution()} is returned so that the
+	 * user's setting is left untouched.
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} whose settings will be sent
+	 * @return the {@linkplain RemoteNode} to send the settings from
+	 */
+	public RemoteNode adapt(final RemoteNode remoteNode) {
+		if (!isAdaptive(remoteNode) || !isDegraded(remoteNode.getAddress())) {
+			return remoteNode;
+		}
+		final RemoteNode rn = RemoteNodeType.newDefaultRemoteNode(remoteNode.getHost(), remoteNode);
+		rn.setId(remoteNode.getId());
+		rn.setCamResolution(QVGA);
+		return rn;
+	}
+
+	/**
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @return true when the {@linkplain RemoteNode#getCamResolution()} can be
+	 *         lowered while the link is degraded
+	 */
+	private static boolean isAdaptive(final RemoteNode remoteNode) {
+		return remoteNode.getCamResolutionAdaptive() == 1 && remoteNode.getCamResolution() == VGA;
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return true when the link to the {@linkplain RemoteNode} is degraded
+	 */
+	public boolean isDegraded(final String address) {
+		final Link link = address == null ? null : links.get(key(address));
+		return link != null && link.degraded;
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the average signal strength (-dBm) of the image chunks received
+	 *         from the {@linkplain RemoteNode} (NaN when unknown)
+	 */
+	public double getSignalStrength(final String address) {
+		final Link link = address == null ? null : links.get(key(address));
+		if (link == null) {
+			return Double.NaN;
+		}
+		synchronized (link) {
+			return link.signalStrength;
+		}
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the average fraction of image data lost by the
+	 *         {@linkplain RemoteNode} (NaN when unknown)
+	 */
+	public double getLoss(final String address) {
+		final Link link = address == null ? null : links.get(key(address));
+		if (link == null) {
+			return Double.NaN;
+		}
+		synchronized (link) {
+			return link.loss;
+		}
+	}
+
+	/**
+	 * @return the number of times a link has been degraded or recovered
+	 */
+	public long getChangeCount() {
+		return changeCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		int degraded = 0;
+		for (final Link link : links.values()) {
+			if (link.degraded) {
+				degraded++;
+			}
+		}
+		return String.format("NODES: %1$s, DEGRADED: %2$s, CHANGES: %3$s",
+				links.size(), degraded, getChangeCount());
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the {@linkplain Link} (created when needed)
+	 */
+	private Link link(final String address) {
+		final String key = key(address);
+		Link link = links.get(key);
+		if (link == null) {
+			final Link newLink = new Link();
+			link = links.putIfAbsent(key, newLink);
+			if (link == null) {
+				link = newLink;
+			}
+		}
+		return link;
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the cache key
+	 */
+	private static String key(final String address) {
+		return address == null ? "" : address.toUpperCase();
+	}
+
+	/**
+	 * Link state of a single {@linkplain RemoteNode} (guarded by itself)
+	 */
+	private static class Link {
+		private double signalStrength = Double.NaN;
+		private int signalSamples;
+		private double loss = Double.NaN;
+		private volatile boolean degraded;
+	}
+}
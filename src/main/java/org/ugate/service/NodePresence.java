@@ -0,0 +1,332 @@
+package org.ugate.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RemoteNodeIndex;
+
+/**
+ * Cached presence of each {@linkplain RemoteNode} so that callers can check
+ * {@linkplain #isConnected(String)} without waiting on the radio. A sweep runs
+ * every {@linkplain #getSweepSeconds()} and probes each
+ * {@linkplain RemoteNode} that has not been heard from since the last sweep
+ * using a remote AT "MY" request. Probes run on a bounded pool so that only
+ * {@linkplain #getParallelism()} requests are outstanding at a time. Any data
+ * received from a {@linkplain RemoteNode} also marks it as present (with the
+ * signal strength it was received with) so nodes that are actively reporting
+ * are not probed. The {@linkplain RemoteNode#isConnected()} flag of the
+ * indexed {@linkplain RemoteNode}s is kept in sync with the cache.
+ */
+public class NodePresence {
+
+	private static final Logger log = LoggerFactory.getLogger(NodePresence.class);
+	/**
+	 * The default number of seconds between sweeps
+	 */
+	public static final int DEFAULT_SWEEP_SEC = 60;
+	/**
+	 * The default number of probes that can be outstanding at a time
+	 */
+	public static final int DEFAULT_PARALLELISM = 4;
+	private final WirelessService wirelessService;
+	private final RemoteNodeIndex remoteNodeIndex;
+	private final ConcurrentMap<String, Presence> presences = new ConcurrentHashMap<>();
+	private final Set<String> probing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicLong sweepCount = new AtomicLong();
+	private final AtomicLong probeCount = new AtomicLong();
+	private final int sweepSeconds;
+	private final int parallelism;
+	private ScheduledExecutorService scheduler;
+	private ExecutorService probes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param wirelessService
+	 *            the {@linkplain WirelessService} used to probe
+	 * @param remoteNodeIndex
+	 *            the {@linkplain RemoteNodeIndex} of the
+	 *            {@linkplain RemoteNode}s to track
+	 * @param sweepSeconds
+	 *            the {@linkplain #getSweepSeconds()}
+	 * @param parallelism
+	 *            the {@linkplain #getParallelism()}
+	 */
+	NodePresence(final WirelessService wirelessService, final RemoteNodeIndex remoteNodeIndex,
+			final int sweepSeconds, final int parallelism) {
+		this.wirelessService = wirelessService;
+		this.remoteNodeIndex = remoteNodeIndex;
+		this.sweepSeconds = sweepSeconds <= 0 ? DEFAULT_SWEEP_SEC : sweepSeconds;
+		this.parallelism = parallelism <= 0 ? DEFAULT_PARALLELISM : parallelism;
+	}
+
+	/**
+	 * Starts sweeping (does nothing when already started)
+	 */
+	synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(newThreadFactory("-sweeper"));
+		probes = Executors.newFixedThreadPool(parallelism, newThreadFactory("-probe"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sweep();
+				} catch (final Throwable t) {
+					log.error("Unable to sweep remote node presence", t);
+				}
+			}
+		}, 0, sweepSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops sweeping and marks every {@linkplain RemoteNode} as disconnected
+	 */
+	synchronized void stop() {
+		if (scheduler == null) {
+			return;
+		}
+		scheduler.shutdownNow();
+		probes.shutdownNow();
+		scheduler = null;
+		probes = null;
+		probing.clear();
+		for (final String key : presences.keySet()) {
+			final Presence p = presences.get(key);
+			update(key, false, p == null ? 0 : p.lastSeenMillis, p == null ? 0 : p.signalStrength);
+		}
+	}
+
+	/**
+	 * Probes each {@linkplain RemoteNode} that has not been heard from since
+	 * the previous sweep
+	 */
+	private void sweep() {
+		sweepCount.incrementAndGet();
+		final long heardAfter = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(sweepSeconds);
+		for (final RemoteNode rn : remoteNodeIndex.getRemoteNodes()) {
+			final Presence p = presences.get(key(rn.getAddress()));
+			if (p != null && p.connected && p.lastSeenMillis >= heardAfter) {
+				// recently received data from the node
+				rn.setConnected(true);
+				continue;
+			}
+			refresh(rn);
+		}
+	}
+
+	/**
+	 * Probes a {@linkplain RemoteNode} in the background (does nothing when a
+	 * probe for the {@linkplain RemoteNode} is already outstanding or the
+	 * sweeps have not been started)
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to probe
+	 */
+	public synchronized void refresh(final RemoteNode remoteNode) {
+		final String key = key(remoteNode.getAddress());
+		if (probes == null || !probing.add(key)) {
+			return;
+		}
+		probes.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					probeCount.incrementAndGet();
+					final boolean connected = wirelessService.testRemoteConnection(remoteNode, 0);
+					final Presence p = presences.get(key);
+					if (connected) {
+						update(key, true, System.currentTimeMillis(), p == null ? 0 : p.signalStrength);
+					} else {
+						update(key, false, p == null ? 0 : p.lastSeenMillis, p == null ? 0 : p.signalStrength);
+					}
+				} catch (final Throwable t) {
+					log.warn(String.format("Unable to probe the presence of %1$s", key), t);
+				} finally {
+					probing.remove(key);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Records that data has been received from a {@linkplain RemoteNode}
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param signalStrength
+	 *            the signal strength the data was received with
+	 */
+	void seen(final RemoteNode remoteNode, final int signalStrength) {
+		update(key(remoteNode.getAddress()), true, System.currentTimeMillis(), signalStrength);
+	}
+
+	/**
+	 * Updates the cached {@linkplain Presence} and the indexed
+	 * {@linkplain RemoteNode#isConnected()}
+	 *
+	 * @param key
+	 *            the {@linkplain RemoteNode#getAddress()} key
+	 * @param connected
+	 *            true when the {@linkplain RemoteNode} is present
+	 * @param lastSeenMillis
+	 *            the time the {@linkplain RemoteNode} was last heard from
+	 * @param signalStrength
+	 *            the last known signal strength
+	 */
+	private void update(final String key, final boolean connected,
+			final long lastSeenMillis, final int signalStrength) {
+		final Presence old = presences.put(key, new Presence(connected, lastSeenMillis, signalStrength));
+		final RemoteNode rn = remoteNodeIndex.get(RemoteNodeIndex.toAddress(key));
+		if (rn != null) {
+			rn.setConnected(connected);
+		}
+		if ((old == null || old.connected != connected) && log.isInfoEnabled()) {
+			log.info(String.format("Remote node %1$s is %2$s", key, connected ? "present" : "not responding"));
+		}
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the cached {@linkplain Presence} (null when the
+	 *         {@linkplain RemoteNode} has not been checked)
+	 */
+	public Presence getPresence(final String address) {
+		return address == null ? null : presences.get(key(address));
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return true when the {@linkplain RemoteNode} was present the last time
+	 *         it was checked
+	 */
+	public boolean isConnected(final String address) {
+		final Presence p = getPresence(address);
+		return p != null && p.connected;
+	}
+
+	/**
+	 * @return the number of seconds between sweeps
+	 */
+	public int getSweepSeconds() {
+		return sweepSeconds;
+	}
+
+	/**
+	 * @return the maximum number of probes that can be outstanding at a time
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the number of sweeps performed
+	 */
+	public long getSweepCount() {
+		return sweepCount.get();
+	}
+
+	/**
+	 * @return the number of probes performed
+	 */
+	public long getProbeCount() {
+		return probeCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		int connected = 0;
+		for (final Presence p : presences.values()) {
+			if (p.connected) {
+				connected++;
+			}
+		}
+		return String.format("NODES: %1$s, CONNECTED: %2$s, SWEEPS: %3$s, PROBES: %4$s",
+				presences.size(), connected, getSweepCount(), getProbeCount());
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the cache key
+	 */
+	private static String key(final String address) {
+		return address == null ? "" : address.toUpperCase();
+	}
+
+	/**
+	 * @param suffix
+	 *            the thread name suffix
+	 * @return a {@linkplain ThreadFactory} for daemon threads
+	 */
+	private static ThreadFactory newThreadFactory(final String suffix) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, NodePresence.class.getSimpleName() + suffix
+						+ '-' + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Presence of a single {@linkplain RemoteNode}
+	 */
+	public static class Presence {
+		private final boolean connected;
+		private final long lastSeenMillis;
+		private final int signalStrength;
+
+		private Presence(final boolean connected, final long lastSeenMillis, final int signalStrength) {
+			this.connected = connected;
+			this.lastSeenMillis = lastSeenMillis;
+			this.signalStrength = signalStrength;
+		}
+
+		/**
+		 * @return true when the {@linkplain RemoteNode} was present the last
+		 *         time it was checked
+		 */
+		public boolean isConnected() {
+			return connected;
+		}
+
+		/**
+		 * @return the number of milliseconds since the epoch the
+		 *         {@linkplain RemoteNode} was last heard from (zero when never)
+		 */
+		public long getLastSeenMillis() {
+			return lastSeenMillis;
+		}
+
+		/**
+		 * @return the signal strength of the last data received from the
+		 *         {@linkplain RemoteNode} (zero when unknown)
+		 */
+		public int getSignalStrength() {
+			return signalStrength;
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package org.ugate.service;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ugate.service.entity.RollupGranularity;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Least recently used cache of the {@linkplain RemoteNodeReading}s of a
+ * {@linkplain RemoteNode} for a single day. Each day is loaded once (see
+ * {@linkplain RemoteNodeService#findReadingsByDate(RemoteNode, Calendar, boolean)}
+ * ) and held in primitive arrays rather than entities. Readings that are saved
+ * after a day has been cached are {@linkplain #append(Collection)}ed to it
+ * (the live tail of the current day) so the cache never needs to go back to
+ * the database for a day it already holds. The least recently used days are
+ * evicted once the estimated size of the cached days exceeds
+ * {@linkplain #getMaxBytes()}.
+ */
+public class ReadingCache {
+
+	/**
+	 * The default maximum number of bytes used by the cached days
+	 */
+	public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+	private static final int FIELD_COUNT = 11;
+	private static final int FROM_MULTI_STATE = 0;
+	private static final int GATE_STATE = 1;
+	private static final int LASER_CALIBRATED_ANGLE_PAN = 2;
+	private static final int LASER_CALIBRATED_ANGLE_TILT = 3;
+	private static final int LASER_FEET = 4;
+	private static final int LASER_INCHES = 5;
+	private static final int MICROWAVE_CYCLE_COUNT = 6;
+	private static final int PIR_INTENSITY = 7;
+	private static final int SONAR_FEET = 8;
+	private static final int SONAR_INCHES = 9;
+	private static final int SIGNAL_STRENGTH = 10;
+	private static final int BYTES_PER_READING = 4 + 8 + FIELD_COUNT * 4;
+	private static final int BYTES_PER_DAY = 128;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Day> days = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong appendCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxBytes
+	 *            the {@linkplain #getMaxBytes()}
+	 */
+	ReadingCache(final long maxBytes) {
+		this.maxBytes = maxBytes <= 0 ? DEFAULT_MAX_BYTES : maxBytes;
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode}
+	 * for a given day (loaded when the day is not cached)
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}s for
+	 * @param cal
+	 *            the {@linkplain Calendar} of the day (will not use time)
+	 * @return the {@linkplain DayReadings} in ascending
+	 *         {@linkplain RemoteNodeReading#getReadDate()} order
+	 */
+	public DayReadings get(final RemoteNode remoteNode, final Calendar cal) {
+		final Date start = RollupGranularity.DAY.start(cal.getTime());
+		final String key = key(remoteNode.getId(), start);
+		Day day;
+		synchronized (days) {
+			day = days.get(key);
+			if (day == null) {
+				day = new Day();
+				days.put(key, day);
+			}
+		}
+		boolean hit = day.loaded;
+		if (!hit) {
+			synchronized (day.loadLock) {
+				hit = day.loaded;
+				if (!hit) {
+					// readings appended while loading are kept (duplicates are ignored)
+					final List<RemoteNodeReading> rnrs = load(remoteNode, cal);
+					synchronized (day) {
+						for (final RemoteNodeReading rnr : rnrs) {
+							day.insert(rnr);
+						}
+						day.trim();
+						day.loaded = true;
+					}
+				}
+			}
+		}
+		(hit ? hitCount : missCount).incrementAndGet();
+		final DayReadings dr;
+		synchronized (day) {
+			dr = new DayReadings(remoteNode, day);
+		}
+		resize(key, day);
+		return dr;
+	}
+
+	/**
+	 * Loads the {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode}
+	 * for a day that is not cached
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to load the
+	 *            {@linkplain RemoteNodeReading}s for
+	 * @param cal
+	 *            the {@linkplain Calendar} of the day (will not use time)
+	 * @return the {@linkplain RemoteNodeReading}s
+	 */
+	List<RemoteNodeReading> load(final RemoteNode remoteNode, final Calendar cal) {
+		return ServiceProvider.IMPL.getRemoteNodeService().findReadingsByDate(remoteNode, cal, true);
+	}
+
+	/**
+	 * Adds saved {@linkplain RemoteNodeReading}s to the days that are cached
+	 * (readings for days that are not cached are ignored)
+	 *
+	 * @param remoteNodeReadings
+	 *            the saved {@linkplain RemoteNodeReading}s
+	 */
+	public void append(final Collection<RemoteNodeReading> remoteNodeReadings) {
+		for (final RemoteNodeReading rnr : remoteNodeReadings) {
+			if (rnr.getRemoteNode() == null || rnr.getReadDate() == null) {
+				continue;
+			}
+			final String key = key(rnr.getRemoteNode().getId(),
+					RollupGranularity.DAY.start(rnr.getReadDate()));
+			final Day day;
+			synchronized (days) {
+				day = days.get(key);
+			}
+			if (day == null) {
+				continue;
+			}
+			synchronized (day) {
+				if (!day.insert(rnr)) {
+					continue;
+				}
+			}
+			appendCount.incrementAndGet();
+			resize(key, day);
+		}
+	}
+
+	/**
+	 * Removes all of the cached days of a {@linkplain RemoteNode} (i.e. when
+	 * it's readings have been removed)
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 */
+	public void invalidate(final RemoteNode remoteNode) {
+		final String prefix = remoteNode.getId() + "-";
+		synchronized (days) {
+			for (final Iterator<Map.Entry<String, Day>> i = days.entrySet().iterator(); i.hasNext();) {
+				final Map.Entry<String, Day> e = i.next();
+				if (e.getKey().startsWith(prefix)) {
+					bytes -= e.getValue().accountedBytes;
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all of the cached days of a {@linkplain RemoteNode} once the
+	 * current transaction commits (see {@linkplain #invalidate(RemoteNode)}).
+	 * A day that is loaded before the commit still holds the readings that
+	 * are being removed, so invalidating within the transaction would leave
+	 * it cached. When there is no transaction the days are removed
+	 * immediately.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 */
+	public void invalidateAfterCommit(final RemoteNode remoteNode) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			invalidate(remoteNode);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				invalidate(remoteNode);
+			}
+		});
+	}
+
+	/**
+	 * Removes all of the cached days
+	 */
+	public void clear() {
+		synchronized (days) {
+			days.clear();
+			bytes = 0;
+		}
+	}
+
+	/**
+	 * Updates the size of a cached day and evicts the least recently used days
+	 * while the cache is too large (the given day is never evicted)
+	 *
+	 * @param key
+	 *            the key of the day
+	 * @param day
+	 *            the {@linkplain Day}
+	 */
+	private void resize(final String key, final Day day) {
+		final long dayBytes;
+		synchronized (day) {
+			dayBytes = day.bytes();
+		}
+		synchronized (days) {
+			if (days.get(key) != day) {
+				// evicted in the meantime
+				return;
+			}
+			bytes += dayBytes - day.accountedBytes;
+			day.accountedBytes = dayBytes;
+			for (final Iterator<Map.Entry<String, Day>> i = days.entrySet().iterator(); bytes > maxBytes
+					&& i.hasNext();) {
+				final Map.Entry<String, Day> e = i.next();
+				if (e.getValue() != day) {
+					bytes -= e.getValue().accountedBytes;
+					i.remove();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param start
+	 *            the start of the day
+	 * @return the cache key
+	 */
+	private static String key(final int remoteNodeId, final Date start) {
+		return remoteNodeId + "-" + start.getTime();
+	}
+
+	/**
+	 * @return the maximum number of bytes used by the cached days
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return the estimated number of bytes used by the cached days
+	 */
+	public long getBytes() {
+		synchronized (days) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * @return the number of cached days
+	 */
+	public int getDayCount() {
+		synchronized (days) {
+			return days.size();
+		}
+	}
+
+	/**
+	 * @return the number of days that were served from the cache
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of days that were loaded from the database
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the fraction of days that were served from the cache (zero to
+	 *         one)
+	 */
+	public double getHitRate() {
+		final long hits = getHitCount();
+		final long total = hits + getMissCount();
+		return total > 0 ? (double) hits / total : 0;
+	}
+
+	/**
+	 * @return the number of days that were evicted
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the number of readings that were appended to cached days
+	 */
+	public long getAppendCount() {
+		return appendCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("DAYS: %1$s, BYTES: %2$s/%3$s, HIT RATE: %4$.2f, EVICTIONS: %5$s, APPENDS: %6$s",
+				getDayCount(), getBytes(), getMaxBytes(), getHitRate(), getEvictionCount(), getAppendCount());
+	}
+
+	/**
+	 * Readings of a single day ordered by read date then ID (guarded by
+	 * itself)
+	 */
+	private static class Day {
+		private final Object loadLock = new Object();
+		private volatile boolean loaded;
+		private int size;
+		private int[] ids = new int[0];
+		private long[] readMillis = new long[0];
+		private int[] values = new int[0];
+		// guarded by the cache
+		private long accountedBytes;
+
+		/**
+		 * Inserts a {@linkplain RemoteNodeReading} in order
+		 *
+		 * @param rnr
+		 *            the {@linkplain RemoteNodeReading}
+		 * @return false when the {@linkplain RemoteNodeReading} is already
+		 *         present
+		 */
+		private boolean insert(final RemoteNodeReading rnr) {
+			final long millis = rnr.getReadDate().getTime();
+			final int id = rnr.getId();
+			// readings almost always arrive in order so the search starts at the end
+			int i = size;
+			while (i > 0 && (readMillis[i - 1] > millis || (readMillis[i - 1] == millis && ids[i - 1] >= id))) {
+				if (ids[i - 1] == id) {
+					return false;
+				}
+				i--;
+			}
+			if (size == ids.length) {
+				final int capacity = Math.max(16, size * 2);
+				ids = Arrays.copyOf(ids, capacity);
+				readMillis = Arrays.copyOf(readMillis, capacity);
+				values = Arrays.copyOf(values, capacity * FIELD_COUNT);
+			}
+			if (i < size) {
+				System.arraycopy(ids, i, ids, i + 1, size - i);
+				System.arraycopy(readMillis, i, readMillis, i + 1, size - i);
+				System.arraycopy(values, i * FIELD_COUNT, values, (i + 1) * FIELD_COUNT, (size - i) * FIELD_COUNT);
+			}
+			ids[i] = id;
+			readMillis[i] = millis;
+			final int v = i * FIELD_COUNT;
+			values[v + FROM_MULTI_STATE] = rnr.getFromMultiState();
+			values[v + GATE_STATE] = rnr.getGateState();
+			values[v + LASER_CALIBRATED_ANGLE_PAN] = rnr.getLaserCalibratedAnglePan();
+			values[v + LASER_CALIBRATED_ANGLE_TILT] = rnr.getLaserCalibratedAngleTilt();
+			values[v + LASER_FEET] = rnr.getLaserFeet();
+			values[v + LASER_INCHES] = rnr.getLaserInches();
+			values[v + MICROWAVE_CYCLE_COUNT] = rnr.getMicrowaveCycleCount();
+			values[v + PIR_INTENSITY] = rnr.getPirIntensity();
+			values[v + SONAR_FEET] = rnr.getSonarFeet();
+			values[v + SONAR_INCHES] = rnr.getSonarInches();
+			values[v + SIGNAL_STRENGTH] = rnr.getSignalStrength();
+			size++;
+			return true;
+		}
+
+		/**
+		 * Releases any unused capacity
+		 */
+		private void trim() {
+			if (size < ids.length) {
+				ids = Arrays.copyOf(ids, size);
+				readMillis = Arrays.copyOf(readMillis, size);
+				values = Arrays.copyOf(values, size * FIELD_COUNT);
+			}
+		}
+
+		/**
+		 * @return the estimated number of bytes used
+		 */
+		private long bytes() {
+			return BYTES_PER_DAY + (long) ids.length * BYTES_PER_READING;
+		}
+	}
+
+	/**
+	 * Snapshot of the {@linkplain RemoteNodeReading}s of a
+	 * {@linkplain RemoteNode} for a single day in ascending
+	 * {@linkplain RemoteNodeReading#getReadDate()} order
+	 */
+	public static class DayReadings {
+		private final RemoteNode remoteNode;
+		private final int size;
+		private final int[] ids;
+		private final long[] readMillis;
+		private final int[] values;
+
+		private DayReadings(final RemoteNode remoteNode, final Day day) {
+			this.remoteNode = remoteNode;
+			this.size = day.size;
+			this.ids = Arrays.copyOf(day.ids, day.size);
+			this.readMillis = Arrays.copyOf(day.readMillis, day.size);
+			this.values = Arrays.copyOf(day.values, day.size * FIELD_COUNT);
+		}
+
+		/**
+		 * @return the number of readings
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param index
+		 *            the index of the reading
+		 * @return the {@linkplain RemoteNodeReading#getId()}
+		 */
+		public int getId(final int index) {
+			return ids[index];
+		}
+
+		/**
+		 * @param index
+		 *            the index of the reading
+		 * @return the {@linkplain RemoteNodeReading#getReadDate()}
+		 */
+		public Date getReadDate(final int index) {
+			return new Date(readMillis[index]);
+		}
+
+		/**
+		 * @param index
+		 *            the index of the reading
+		 * @return the {@linkplain RemoteNodeReading#getFromMultiState()}
+		 */
+		public int getFromMultiState(final int index) {
+			return values[index * FIELD_COUNT + FROM_MULTI_STATE];
+		}
+
+		/**
+		 * @param index
+		 *            the index of the reading
+		 * @return a new {@linkplain RemoteNodeReading} with the values of the
+		 *         reading
+		 */
+		public RemoteNodeReading getReading(final int index) {
+			final int v = index * FIELD_COUNT;
+			final RemoteNodeReading rnr = new RemoteNodeReading();
+			rnr.setId(ids[index]);
+			rnr.setRemoteNode(remoteNode);
+			rnr.setReadDate(getReadDate(index));
+			rnr.setFromMultiState(values[v + FROM_MULTI_STATE]);
+			rnr.setGateState(values[v + GATE_STATE]);
+			rnr.setLaserCalibratedAnglePan(values[v + LASER_CALIBRATED_ANGLE_PAN]);
+			rnr.setLaserCalibratedAngleTilt(values[v + LASER_CALIBRATED_ANGLE_TILT]);
+			rnr.setLaserFeet(values[v + LASER_FEET]);
+			rnr.setLaserInches(values[v + LASER_INCHES]);
+			rnr.setMicrowaveCycleCount(values[v + MICROWAVE_CYCLE_COUNT]);
+			rnr.setPirIntensity(values[v + PIR_INTENSITY]);
+			rnr.setSonarFeet(values[v + SONAR_FEET]);
+			rnr.setSonarInches(values[v + SONAR_INCHES]);
+			rnr.setSignalStrength(values[v + SIGNAL_STRENGTH]);
+			return rnr;
+		}
+	}
+}
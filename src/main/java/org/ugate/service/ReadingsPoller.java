@@ -0,0 +1,417 @@
+package org.ugate.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RemoteNodeIndex;
+
+/**
+ * Periodically requests {@linkplain Command#SENSOR_GET_READINGS} from each
+ * {@linkplain RemoteNode} that has {@linkplain RemoteNode#getReportReadings()}
+ * turned on at it's {@linkplain RemoteNode#getReportReadingsIntervalSec()}.
+ * Each node is given a fixed phase offset within it's interval (derived from
+ * it's address) and every poll is jittered so that nodes do not transmit at
+ * the same time. Polls are limited to a global number of frames per second
+ * (token bucket). Every other frame the {@linkplain WirelessTxEngine} writes
+ * is also {@linkplain #charge()}d to the bucket so that polls only use the
+ * airtime left over by other traffic. The interval of a node that stops
+ * answering is doubled
+ * for each missed reading (up to {@linkplain #MAX_BACKOFF_SHIFT}) until it
+ * answers again. All polling runs on a single scheduler thread and is
+ * transmitted with {@linkplain Command.Priority#BACKGROUND} priority.
+ */
+public class ReadingsPoller {
+
+	private static final Logger log = LoggerFactory.getLogger(ReadingsPoller.class);
+	/**
+	 * The number of seconds between polls when a {@linkplain RemoteNode} has
+	 * no {@linkplain RemoteNode#getReportReadingsIntervalSec()}
+	 */
+	public static final int DEFAULT_INTERVAL_SEC = 60;
+	/**
+	 * The default number of frames per second that can be transmitted across
+	 * all {@linkplain RemoteNode}s before polls are deferred
+	 */
+	public static final double DEFAULT_FRAMES_PER_SECOND = 2;
+	/**
+	 * The maximum number of times the interval of a {@linkplain RemoteNode}
+	 * that stops answering is doubled
+	 */
+	public static final int MAX_BACKOFF_SHIFT = 4;
+	/**
+	 * The fraction of the interval each poll is randomly moved by
+	 */
+	private static final double JITTER = 0.1;
+	private static final long SYNC_MILISECONDS = 5000;
+	private final WirelessService wirelessService;
+	private final RemoteNodeIndex remoteNodeIndex;
+	private final ConcurrentMap<String, NodeState> states = new ConcurrentHashMap<>();
+	private final AtomicLong chargedCount = new AtomicLong();
+	private final Random random = new Random();
+	private final AtomicLong pollCount = new AtomicLong();
+	private final AtomicLong deferredCount = new AtomicLong();
+	private final AtomicLong missedCount = new AtomicLong();
+	private ScheduledExecutorService scheduler;
+	private volatile double framesPerSecond = DEFAULT_FRAMES_PER_SECOND;
+	private double tokens;
+	private long refilledNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param wirelessService
+	 *            the {@linkplain WirelessService} used to send the polls
+	 * @param remoteNodeIndex
+	 *            the {@linkplain RemoteNodeIndex} of the
+	 *            {@linkplain RemoteNode}s to poll
+	 */
+	ReadingsPoller(final WirelessService wirelessService, final RemoteNodeIndex remoteNodeIndex) {
+		this.wirelessService = wirelessService;
+		this.remoteNodeIndex = remoteNodeIndex;
+	}
+
+	/**
+	 * Starts polling (does nothing when already started)
+	 */
+	synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, ReadingsPoller.class.getSimpleName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		synchronized (this) {
+			tokens = Math.max(1, framesPerSecond);
+			refilledNanos = System.nanoTime();
+		}
+		// nodes are added/removed as the index changes
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sync();
+				} catch (final Throwable t) {
+					log.error("Unable to synchronize polled remote nodes", t);
+				}
+			}
+		}, 0, SYNC_MILISECONDS, TimeUnit.MILLISECONDS);
+		log.info(String.format("Polling remote node readings (limited to %1$s frame(s)/sec)", framesPerSecond));
+	}
+
+	/**
+	 * Stops polling
+	 */
+	synchronized void stop() {
+		if (scheduler == null) {
+			return;
+		}
+		scheduler.shutdownNow();
+		scheduler = null;
+		states.clear();
+		log.info(String.format("Stopped polling remote node readings (%1$s)", this));
+	}
+
+	/**
+	 * Schedules polls for {@linkplain RemoteNode}s that have started
+	 * reporting readings and removes those that have stopped
+	 */
+	private void sync() {
+		for (final RemoteNode rn : remoteNodeIndex.getRemoteNodes()) {
+			if (rn.getReportReadings() != 1 || states.containsKey(key(rn))) {
+				continue;
+			}
+			final NodeState state = new NodeState(rn.getAddress());
+			states.put(state.key, state);
+			// spread the first poll of each node evenly over it's interval
+			final double phase = ((RemoteNodeIndex.toAddress(rn.getAddress()) * 0x9E3779B9L) & 0xFFFFFFFFL)
+					/ (double) (1L << 32);
+			schedule(state, (long) (phase * getIntervalNanos(rn)));
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Polling readings from %1$s every %2$s second(s)",
+						rn.getAddress(), TimeUnit.NANOSECONDS.toSeconds(getIntervalNanos(rn))));
+			}
+		}
+		for (final Iterator<NodeState> itr = states.values().iterator(); itr.hasNext();) {
+			final NodeState state = itr.next();
+			final RemoteNode rn = find(state);
+			if (rn == null || rn.getReportReadings() != 1) {
+				itr.remove();
+				if (state.future != null) {
+					state.future.cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Polls a {@linkplain RemoteNode} and schedules the next poll
+	 *
+	 * @param state
+	 *            the {@linkplain NodeState}
+	 */
+	private void poll(final NodeState state) {
+		final RemoteNode rn = find(state);
+		if (rn == null || rn.getReportReadings() != 1 || states.get(state.key) != state) {
+			return;
+		}
+		if (!wirelessService.isConnected()) {
+			schedule(state, nextDelay(rn, state));
+			return;
+		}
+		final long wait = acquire();
+		if (wait > 0) {
+			// airtime budget exhausted, try again when a frame is available
+			deferredCount.incrementAndGet();
+			schedule(state, wait);
+			return;
+		}
+		if (state.awaiting) {
+			missedCount.incrementAndGet();
+			state.misses++;
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("No readings received from %1$s for the last %2$s poll(s)",
+						rn.getAddress(), state.misses));
+			}
+		}
+		state.awaiting = true;
+		pollCount.incrementAndGet();
+		wirelessService.sendDataAsync(rn, Command.SENSOR_GET_READINGS, Command.Priority.BACKGROUND, 0);
+		schedule(state, nextDelay(rn, state));
+	}
+
+	/**
+	 * Records that readings have been received from a
+	 * {@linkplain RemoteNode} (restores the interval of a node that was backed
+	 * off)
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 */
+	void received(final RemoteNode remoteNode) {
+		final NodeState state = states.get(key(remoteNode));
+		if (state != null) {
+			state.awaiting = false;
+			state.misses = 0;
+		}
+	}
+
+	/**
+	 * Takes a frame from the token bucket
+	 *
+	 * @return zero when a frame was taken, otherwise the number of
+	 *         nanoseconds until the next frame is available
+	 */
+	synchronized long acquire() {
+		final double fps = refill();
+		if (tokens >= 1) {
+			tokens--;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) * 1e9 / fps);
+	}
+
+	/**
+	 * Charges a frame that was transmitted by something other than the poller
+	 * to the token bucket. The bucket can go into debt (by up to
+	 * {@linkplain #DEFAULT_INTERVAL_SEC} worth of frames) so that busy
+	 * airtime defers polls without starving them indefinitely.
+	 */
+	synchronized void charge() {
+		final double fps = refill();
+		tokens = Math.max(-fps * DEFAULT_INTERVAL_SEC, tokens - 1);
+		chargedCount.incrementAndGet();
+	}
+
+	/**
+	 * Refills the token bucket for the time that has passed since it was last
+	 * refilled (must hold the lock)
+	 *
+	 * @return the current number of frames per second
+	 */
+	private double refill() {
+		final double fps = framesPerSecond;
+		final long now = System.nanoTime();
+		// a burst of at least one frame is always allowed
+		tokens = Math.min(Math.max(1, fps), tokens + (now - refilledNanos) * fps / 1e9);
+		refilledNanos = now;
+		return fps;
+	}
+
+	/**
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param state
+	 *            the {@linkplain NodeState}
+	 * @return the number of nanoseconds until the next poll (jittered and
+	 *         backed off)
+	 */
+	private long nextDelay(final RemoteNode rn, final NodeState state) {
+		final long interval = getIntervalNanos(rn) << Math.min(state.misses, MAX_BACKOFF_SHIFT);
+		return (long) (interval * (1 + JITTER * (2 * random.nextDouble() - 1)));
+	}
+
+	/**
+	 * Schedules the next poll
+	 *
+	 * @param state
+	 *            the {@linkplain NodeState}
+	 * @param delayNanos
+	 *            the number of nanoseconds to wait
+	 */
+	private synchronized void schedule(final NodeState state, final long delayNanos) {
+		if (scheduler == null) {
+			return;
+		}
+		state.future = scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					poll(state);
+				} catch (final Throwable t) {
+					log.error(String.format("Unable to poll readings from %1$s", state.key), t);
+					schedule(state, TimeUnit.SECONDS.toNanos(DEFAULT_INTERVAL_SEC));
+				}
+			}
+		}, delayNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param state
+	 *            the {@linkplain NodeState}
+	 * @return the currently indexed {@linkplain RemoteNode} (null when no
+	 *         longer indexed)
+	 */
+	private RemoteNode find(final NodeState state) {
+		final RemoteNode rn = remoteNodeIndex.get(RemoteNodeIndex.toAddress(state.key));
+		return rn != null && key(rn).equals(state.key) ? rn : null;
+	}
+
+	/**
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @return the polling interval in nanoseconds
+	 */
+	private static long getIntervalNanos(final RemoteNode rn) {
+		return TimeUnit.SECONDS.toNanos(rn.getReportReadingsIntervalSec() > 0
+				? rn.getReportReadingsIntervalSec() : DEFAULT_INTERVAL_SEC);
+	}
+
+	/**
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @return the {@linkplain NodeState} key
+	 */
+	private static String key(final RemoteNode rn) {
+		return rn.getAddress() == null ? "" : rn.getAddress().toUpperCase();
+	}
+
+	/**
+	 * @return the number of frames per second that can be transmitted across
+	 *         all {@linkplain RemoteNode}s before polls are deferred
+	 */
+	public double getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * @param framesPerSecond
+	 *            the number of frames per second that can be transmitted
+	 *            across all {@linkplain RemoteNode}s before polls are deferred
+	 */
+	public void setFramesPerSecond(final double framesPerSecond) {
+		if (framesPerSecond <= 0) {
+			throw new IllegalArgumentException("Frames per second must be greater than zero");
+		}
+		this.framesPerSecond = framesPerSecond;
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNode}s being polled
+	 */
+	public int getNodeCount() {
+		return states.size();
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNode#getAddress()}es being polled and the
+	 *         number of consecutive polls each has not answered
+	 */
+	public Map<String, Integer> getMisses() {
+		final Map<String, Integer> misses = new TreeMap<>();
+		for (final NodeState state : states.values()) {
+			misses.put(state.key, state.misses);
+		}
+		return misses;
+	}
+
+	/**
+	 * @return the number of polls transmitted
+	 */
+	public long getPollCount() {
+		return pollCount.get();
+	}
+
+	/**
+	 * @return the number of polls that were delayed by the airtime budget
+	 */
+	public long getDeferredCount() {
+		return deferredCount.get();
+	}
+
+	/**
+	 * @return the number of other frames that were {@linkplain #charge()}d to
+	 *         the airtime budget
+	 */
+	public long getChargedCount() {
+		return chargedCount.get();
+	}
+
+	/**
+	 * @return the number of polls that were not answered before the next poll
+	 */
+	public long getMissedCount() {
+		return missedCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("NODES: %1$s, POLLS: %2$s, DEFERRED: %3$s, MISSED: %4$s, CHARGED: %5$s",
+				getNodeCount(), getPollCount(), getDeferredCount(), getMissedCount(), getChargedCount());
+	}
+
+	/**
+	 * Polling state of a single {@linkplain RemoteNode}
+	 */
+	private static class NodeState {
+		private final String key;
+		private volatile boolean awaiting;
+		private volatile int misses;
+		private volatile ScheduledFuture<?> future;
+
+		private NodeState(final String address) {
+			this.key = address.toUpperCase();
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package org.ugate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Write-behind buffer for {@linkplain RemoteNodeReading}s. Readings are
+ * {@linkplain #write(RemoteNodeReading)} from the receiving thread into a
+ * bounded queue and a single writer thread saves them in batches of up to
+ * {@linkplain #getBatchSize()} readings (or whatever has accumulated after
+ * {@linkplain #getFlushMiliseconds()}) using one transaction per batch (see
+ * {@linkplain RemoteNodeService#saveReadings(List)}). When the queue is full
+ * the receiving thread waits for room (up to {@linkplain #OFFER_MILISECONDS})
+ * so that readings are slowed down rather than lost. Any readings that remain
+ * when the writer is {@linkplain #stop()}ped (or the JVM shuts down) are
+ * flushed before returning. Batches are never saved concurrently. Saved
+ * readings are appended to the {@linkplain ReadingCache} once their
+ * transaction has committed.
+ */
+public class ReadingsWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(ReadingsWriter.class);
+	/**
+	 * The default maximum number of readings saved in a single transaction
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	/**
+	 * The default maximum number of milliseconds a reading waits to be saved
+	 */
+	public static final long DEFAULT_FLUSH_MILISECONDS = 1000;
+	/**
+	 * The default maximum number of readings waiting to be saved
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+	/**
+	 * The number of milliseconds a reading waits for room in a full queue
+	 * before it is dropped
+	 */
+	public static final long OFFER_MILISECONDS = 5000;
+	/**
+	 * The maximum number of milliseconds the writer waits for readings before
+	 * checking whether it has been {@linkplain #stop()}ped
+	 */
+	private static final long STOP_CHECK_MILISECONDS = 100;
+	private final BlockingQueue<RemoteNodeReading> queue;
+	private final int batchSize;
+	private final long flushMiliseconds;
+	private final long offerMiliseconds;
+	private final Object saveLock = new Object();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private volatile Thread writer;
+	private volatile boolean running;
+	private Thread shutdownHook;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            the maximum number of readings waiting to be saved
+	 * @param batchSize
+	 *            the {@linkplain #getBatchSize()}
+	 * @param flushMiliseconds
+	 *            the {@linkplain #getFlushMiliseconds()}
+	 */
+	ReadingsWriter(final int capacity, final int batchSize, final long flushMiliseconds) {
+		this(capacity, batchSize, flushMiliseconds, OFFER_MILISECONDS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            the maximum number of readings waiting to be saved
+	 * @param batchSize
+	 *            the {@linkplain #getBatchSize()}
+	 * @param flushMiliseconds
+	 *            the {@linkplain #getFlushMiliseconds()}
+	 * @param offerMiliseconds
+	 *            the number of milliseconds a reading waits for room in a full
+	 *            queue before it is dropped
+	 */
+	ReadingsWriter(final int capacity, final int batchSize, final long flushMiliseconds,
+			final long offerMiliseconds) {
+		this.queue = new ArrayBlockingQueue<>(capacity <= 0 ? DEFAULT_CAPACITY : capacity);
+		this.batchSize = batchSize <= 0 ? DEFAULT_BATCH_SIZE : batchSize;
+		this.flushMiliseconds = flushMiliseconds <= 0 ? DEFAULT_FLUSH_MILISECONDS : flushMiliseconds;
+		this.offerMiliseconds = Math.max(0, offerMiliseconds);
+	}
+
+	/**
+	 * Starts the writer thread (does nothing when already started)
+	 */
+	synchronized void start() {
+		if (writer != null) {
+			return;
+		}
+		running = true;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, ReadingsWriter.class.getSimpleName());
+		writer.setDaemon(true);
+		writer.start();
+		shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				// the writer is stopped first so the remaining readings are not
+				// saved by both threads at the same time
+				stop();
+			}
+		}, ReadingsWriter.class.getSimpleName() + "-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Stops the writer thread and saves any readings that are still waiting
+	 */
+	synchronized void stop() {
+		if (writer == null) {
+			return;
+		}
+		// the writer is not interrupted so that a batch being saved is not aborted
+		running = false;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(30));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writer = null;
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (final IllegalStateException e) {
+			// already shutting down
+		}
+		shutdownHook = null;
+		flush();
+		log.info(String.format("Stopped writing readings (%1$s)", this));
+	}
+
+	/**
+	 * Queues a {@linkplain RemoteNodeReading} to be saved. When the writer has
+	 * not been started the reading is saved immediately.
+	 *
+	 * @param remoteNodeReading
+	 *            the {@linkplain RemoteNodeReading} to save
+	 * @return true when the reading has been queued or saved, false when it
+	 *         was dropped because the queue remained full
+	 */
+	public boolean write(final RemoteNodeReading remoteNodeReading) {
+		if (writer == null) {
+			final List<RemoteNodeReading> batch = new ArrayList<>(1);
+			batch.add(remoteNodeReading);
+			save(batch);
+			return true;
+		}
+		try {
+			if (queue.offer(remoteNodeReading)
+					|| queue.offer(remoteNodeReading, offerMiliseconds, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		droppedCount.incrementAndGet();
+		log.warn(String.format("Dropped reading from %1$s (%2$s readings are waiting to be saved)",
+				remoteNodeReading.getRemoteNode() != null ? remoteNodeReading.getRemoteNode().getAddress() : null,
+				queue.size()));
+		return false;
+	}
+
+	/**
+	 * Saves batches of readings as they are queued until stopped
+	 */
+	private void drain() {
+		final List<RemoteNodeReading> batch = new ArrayList<>(batchSize);
+		while (running) {
+			try {
+				final RemoteNodeReading first = queue.poll(Math.min(flushMiliseconds, 
+						STOP_CHECK_MILISECONDS), TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				// wait for a full batch until the first reading is due (or the
+				// writer is stopped so the batch is saved before stop returns)
+				final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMiliseconds);
+				long wait;
+				while (running && batch.size() < batchSize && (wait = due - System.nanoTime()) > 0) {
+					queue.drainTo(batch, batchSize - batch.size());
+					if (batch.size() < batchSize) {
+						final RemoteNodeReading next = queue.poll(Math.min(wait, 
+								TimeUnit.MILLISECONDS.toNanos(STOP_CHECK_MILISECONDS)), TimeUnit.NANOSECONDS);
+						if (next != null) {
+							batch.add(next);
+						}
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+			if (!batch.isEmpty()) {
+				synchronized (saveLock) {
+					save(batch);
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Saves all of the readings that are waiting in batches of
+	 * {@linkplain #getBatchSize()}
+	 */
+	public void flush() {
+		final List<RemoteNodeReading> batch = new ArrayList<>(batchSize);
+		synchronized (saveLock) {
+			while (queue.drainTo(batch, batchSize) > 0) {
+				save(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Saves a batch of readings in a single transaction. When the batch fails
+	 * each reading is saved on it's own so that one bad reading does not
+	 * prevent the others from being saved (the IDs assigned by the rolled
+	 * back transaction are cleared first so each reading is inserted as new).
+	 *
+	 * @param batch
+	 *            the {@linkplain RemoteNodeReading}s to save
+	 */
+	private void save(final List<RemoteNodeReading> batch) {
+		try {
+			saveReadings(batch);
+			writtenCount.addAndGet(batch.size());
+			batchCount.incrementAndGet();
+			cache(batch);
+			return;
+		} catch (final Throwable t) {
+			if (batch.size() == 1) {
+				failedCount.incrementAndGet();
+				log.error("Unable to save reading", t);
+				return;
+			}
+			log.warn(String.format("Unable to save a batch of %1$s readings... Saving individually",
+					batch.size()), t);
+		}
+		final List<RemoteNodeReading> saved = new ArrayList<>(batch.size());
+		for (final RemoteNodeReading rnr : batch) {
+			rnr.setId(0);
+		}
+		for (final RemoteNodeReading rnr : batch) {
+			try {
+				saveReading(rnr);
+				writtenCount.incrementAndGet();
+				saved.add(rnr);
+			} catch (final Throwable t) {
+				failedCount.incrementAndGet();
+				log.error("Unable to save reading", t);
+			}
+		}
+		cache(saved);
+	}
+
+	/**
+	 * Saves readings in a single transaction using
+	 * {@linkplain RemoteNodeService#saveReadings(List)}
+	 *
+	 * @param batch
+	 *            the {@linkplain RemoteNodeReading}s to save
+	 */
+	void saveReadings(final List<RemoteNodeReading> batch) {
+		ServiceProvider.IMPL.getRemoteNodeService().saveReadings(batch);
+	}
+
+	/**
+	 * Saves a single reading using
+	 * {@linkplain RemoteNodeService#saveReading(RemoteNodeReading)}
+	 *
+	 * @param remoteNodeReading
+	 *            the {@linkplain RemoteNodeReading} to save
+	 */
+	void saveReading(final RemoteNodeReading remoteNodeReading) {
+		ServiceProvider.IMPL.getRemoteNodeService().saveReading(remoteNodeReading);
+	}
+
+	/**
+	 * Appends saved readings to the {@linkplain ReadingCache}
+	 *
+	 * @param saved
+	 *            the saved {@linkplain RemoteNodeReading}s
+	 */
+	private void cache(final List<RemoteNodeReading> saved) {
+		try {
+			ServiceProvider.IMPL.getReadingCache().append(saved);
+		} catch (final Throwable t) {
+			log.warn(String.format("Unable to cache %1$s reading(s)", saved.size()), t);
+		}
+	}
+
+	/**
+	 * @return the maximum number of readings saved in a single transaction
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return the maximum number of milliseconds a reading waits to be saved
+	 */
+	public long getFlushMiliseconds() {
+		return flushMiliseconds;
+	}
+
+	/**
+	 * @return the number of readings waiting to be saved
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of readings that have been saved
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the number of batches that have been saved
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	/**
+	 * @return the number of readings that were dropped because the queue was
+	 *         full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return the number of readings that could not be saved
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("WRITTEN: %1$s, BATCHES: %2$s, PENDING: %3$s, DROPPED: %4$s, FAILED: %5$s",
+				getWrittenCount(), getBatchCount(), getPendingCount(), getDroppedCount(), getFailedCount());
+	}
+}
@@ -1,9 +1,13 @@
 package org.ugate.service;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -11,9 +15,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.ugate.service.dao.RemoteNodeDao;
+import org.ugate.service.entity.RollupGranularity;
 import org.ugate.service.entity.jpa.Host;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@linkplain RemoteNode} service
@@ -25,6 +31,15 @@ public class RemoteNodeService {
 	@Resource
 	private RemoteNodeDao remoteNodeDao;
 
+	/**
+	 * Creates the indexes for {@linkplain RemoteNode} related tables that do
+	 * not already exist (the tables must already exist)
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void createIndexes() {
+		remoteNodeDao.createIndexes();
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void save(final RemoteNode remoteNode) {
 		remoteNodeDao.persistEntity(remoteNode);
@@ -35,6 +50,18 @@ public class RemoteNodeService {
 		remoteNodeDao.mergeEntity(remoteNode);
 	}
 
+	/**
+	 * Saves only the {@linkplain RemoteNode#getCamImgRangeUnsupported()} of a
+	 * {@linkplain RemoteNode} (any other unsaved changes are left untouched)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void saveCamImgRangeUnsupported(final RemoteNode remoteNode) {
+		remoteNodeDao.updateCamImgRangeUnsupported(remoteNode);
+	}
+
 	/**
 	 * Gets a {@link RemoteNode} by {@link RemoteNode#getId()}
 	 * 
@@ -75,6 +102,13 @@ public class RemoteNodeService {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * @return all of the {@linkplain RemoteNode}(s)
+	 */
+	public List<RemoteNode> findAll() {
+		return remoteNodeDao.findAll();
+	}
+
 	/**
 	 * Gets the {@linkplain RemoteNodeReading}(s) for a given
 	 * {@linkplain RemoteNode#getId()}
@@ -88,12 +122,73 @@ public class RemoteNodeService {
 	 *            the maximum number of {@linkplain RemoteNodeReading}(s) to
 	 *            return
 	 * @return the {@linkplain RemoteNodeReading}(s)
+	 * @see #findReadingsAfter(RemoteNode, RemoteNodeReading, boolean, int)
 	 */
 	public List<RemoteNodeReading> findReadingsById(final RemoteNode remoteNode, 
 			final int startPosition, final int maxResults) {
 		return remoteNodeDao.findReadingsById(remoteNode, startPosition, maxResults);
 	}
 
+	/**
+	 * Gets the next page of {@linkplain RemoteNodeReading}(s) for a given
+	 * {@linkplain RemoteNode#getId()} that follow the last
+	 * {@linkplain RemoteNodeReading} of the previous page. Pages are ordered by
+	 * {@linkplain RemoteNodeReading#getReadDate()} and then
+	 * {@linkplain RemoteNodeReading#getId()}. Unlike
+	 * {@linkplain #findReadingsById(RemoteNode, int, int)} the database seeks
+	 * directly to the page using the index on the {@linkplain RemoteNode} and
+	 * {@linkplain RemoteNodeReading#getReadDate()} so the cost of a page does
+	 * not depend on how far back it is.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param lastReadDate
+	 *            the {@linkplain RemoteNodeReading#getReadDate()} of the last
+	 *            {@linkplain RemoteNodeReading} of the previous page (null for
+	 *            the first page)
+	 * @param lastId
+	 *            the {@linkplain RemoteNodeReading#getId()} of the last
+	 *            {@linkplain RemoteNodeReading} of the previous page
+	 * @param asc
+	 *            true for results in ascending order (oldest first), false
+	 *            for descending (latest first)
+	 * @param maxResults
+	 *            the maximum number of {@linkplain RemoteNodeReading}(s) to
+	 *            return
+	 * @return the {@linkplain RemoteNodeReading}(s)
+	 */
+	public List<RemoteNodeReading> findReadingsAfter(final RemoteNode remoteNode,
+			final Date lastReadDate, final int lastId, final boolean asc,
+			final int maxResults) {
+		return remoteNodeDao.findReadingsByIdAfter(remoteNode, lastReadDate, lastId, asc, maxResults);
+	}
+
+	/**
+	 * Gets the next page of {@linkplain RemoteNodeReading}(s) for a given
+	 * {@linkplain RemoteNode#getId()} (see
+	 * {@linkplain #findReadingsAfter(RemoteNode, Date, int, boolean, int)})
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param last
+	 *            the last {@linkplain RemoteNodeReading} of the previous page
+	 *            (null for the first page)
+	 * @param asc
+	 *            true for results in ascending order (oldest first), false
+	 *            for descending (latest first)
+	 * @param maxResults
+	 *            the maximum number of {@linkplain RemoteNodeReading}(s) to
+	 *            return
+	 * @return the {@linkplain RemoteNodeReading}(s)
+	 */
+	public List<RemoteNodeReading> findReadingsAfter(final RemoteNode remoteNode,
+			final RemoteNodeReading last, final boolean asc, final int maxResults) {
+		return findReadingsAfter(remoteNode, last == null ? null : last.getReadDate(),
+				last == null ? 0 : last.getId(), asc, maxResults);
+	}
+
 	/**
 	 * Gets the latest {@link RemoteNodeReading} using the last entry by
 	 * {@link RemoteNodeReading#getReadDate()}
@@ -104,7 +199,7 @@ public class RemoteNodeService {
 	 * @return the {@linkplain RemoteNodeReading}
 	 */
 	public RemoteNodeReading findReadingLatest(final RemoteNode remoteNode) {
-		final List<RemoteNodeReading> rnrs = findReadingsById(remoteNode, 0, 1);
+		final List<RemoteNodeReading> rnrs = findReadingsAfter(remoteNode, null, false, 1);
 		if (rnrs != null && !rnrs.isEmpty()) {
 			return rnrs.get(0);
 		}
@@ -150,11 +245,227 @@ public class RemoteNodeService {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void saveReading(final RemoteNodeReading remoteNodeReading) {
 		remoteNodeDao.persistEntity(remoteNodeReading);
+		rollup(Collections.singletonList(remoteNodeReading));
+	}
+
+	/**
+	 * Saves new {@linkplain RemoteNodeReading}s in a single transaction
+	 * 
+	 * @param remoteNodeReadings
+	 *            the {@linkplain RemoteNodeReading}s to save
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void saveReadings(final List<RemoteNodeReading> remoteNodeReadings) {
+		if (!remoteNodeReadings.isEmpty()) {
+			remoteNodeDao.persistEntities(remoteNodeReadings);
+			rollup(remoteNodeReadings);
+		}
+	}
+
+	/**
+	 * Adds {@linkplain RemoteNodeReading}s to the
+	 * {@linkplain RemoteNodeReadingRollup}s of every
+	 * {@linkplain RollupGranularity} they fall into. Readings that fall into
+	 * the same bucket are combined first so each bucket is only updated once.
+	 * 
+	 * @param remoteNodeReadings
+	 *            the {@linkplain RemoteNodeReading}s to add
+	 */
+	private void rollup(final Collection<RemoteNodeReading> remoteNodeReadings) {
+		final Map<String, RemoteNodeReadingRollup> deltas = new LinkedHashMap<>();
+		for (final RemoteNodeReading rnr : remoteNodeReadings) {
+			if (rnr.getRemoteNode() == null || rnr.getReadDate() == null) {
+				continue;
+			}
+			for (final RollupGranularity g : RollupGranularity.values()) {
+				final Date bucketDate = g.start(rnr.getReadDate());
+				final String key = rnr.getRemoteNode().getId() + "-" + g.ordinal() + '-' + bucketDate.getTime();
+				RemoteNodeReadingRollup delta = deltas.get(key);
+				if (delta == null) {
+					delta = new RemoteNodeReadingRollup(rnr.getRemoteNode(), g, bucketDate);
+					deltas.put(key, delta);
+				}
+				delta.add(rnr);
+			}
+		}
+		for (final RemoteNodeReadingRollup delta : deltas.values()) {
+			remoteNodeDao.addToRollup(delta);
+		}
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReadingRollup}s for a given
+	 * {@linkplain RemoteNode} and {@linkplain RollupGranularity} that start
+	 * within a {@linkplain Calendar} range
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for
+	 * @param granularity
+	 *            the {@linkplain RollupGranularity} of the buckets
+	 * @param startInclusive
+	 *            the {@linkplain Calendar} range to <i>start</i> at
+	 *            (inclusive)
+	 * @param endExclusive
+	 *            the {@linkplain Calendar} range to <i>end</i> at (exclusive)
+	 * @return the {@linkplain RemoteNodeReadingRollup}(s) in ascending
+	 *         {@linkplain RemoteNodeReadingRollup#getBucketDate()} order
+	 */
+	public List<RemoteNodeReadingRollup> findRollups(
+			final RemoteNode remoteNode, final RollupGranularity granularity,
+			final Calendar startInclusive, final Calendar endExclusive) {
+		return remoteNodeDao.findRollups(remoteNode, granularity,
+				granularity.start(startInclusive.getTime()),
+				endExclusive.getTime());
+	}
+
+	/**
+	 * Sets the {@linkplain RemoteNode#getRollupStartDate()} of every
+	 * {@linkplain RemoteNode} that does not have one yet (i.e. nodes whose
+	 * readings were saved before rollups were kept up to date as readings are
+	 * saved)
+	 * 
+	 * @param rollupStartDate
+	 *            the {@linkplain Date} rollups started being kept up to date
+	 * @return the number of {@linkplain RemoteNode}s updated
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int updateRollupStartDates(final Date rollupStartDate) {
+		return remoteNodeDao.updateRollupStartDates(rollupStartDate);
+	}
+
+	/**
+	 * Backfills the {@linkplain RemoteNodeReadingRollup}s of the
+	 * {@linkplain RemoteNodeReading}s of a single day that were read before a
+	 * given {@linkplain Date} and advances the
+	 * {@linkplain RemoteNode#getRollupBackfillDate()} to that {@linkplain Date}
+	 * in the same transaction. When the {@linkplain Date} is the end of the day
+	 * the day is rebuilt (see {@linkplain #backfillRollups(RemoteNode, Date)}).
+	 * Otherwise the day is the one rollups started being kept up to date
+	 * (see {@linkplain RemoteNode#getRollupStartDate()}): the readings before
+	 * the {@linkplain Date} are added to the rollups that already hold the
+	 * readings that followed, unless the day's rollup already accounts for
+	 * every reading of the day.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to backfill
+	 * @param day
+	 *            a {@linkplain Date} within the day to backfill
+	 * @param endExclusive
+	 *            the {@linkplain Date} to backfill up to (exclusive, no later
+	 *            than the start of the next day)
+	 * @return true when any rollups were changed
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public boolean backfillRollups(final RemoteNode remoteNode, final Date day,
+			final Date endExclusive) {
+		final Date start = RollupGranularity.DAY.start(day);
+		final Date end = RollupGranularity.DAY.next(day);
+		boolean changed = false;
+		if (endExclusive.before(end)) {
+			final RemoteNodeReadingRollup rollupDay = remoteNodeDao.findRollup(remoteNode,
+					RollupGranularity.DAY, start);
+			if ((rollupDay == null ? 0 : rollupDay.getReadingCount()) != remoteNodeDao
+					.countReadingsByIdAndDate(remoteNode, start, end)) {
+				final Calendar sc = Calendar.getInstance();
+				sc.setTime(start);
+				final Calendar ec = Calendar.getInstance();
+				ec.setTime(endExclusive);
+				final List<RemoteNodeReading> rnrs = remoteNodeDao.findReadingsByIdAndDate(remoteNode,
+						sc, ec, true);
+				rollup(rnrs);
+				changed = !rnrs.isEmpty();
+			}
+		} else {
+			changed = backfillRollups(remoteNode, day);
+		}
+		remoteNodeDao.updateRollupBackfillDate(remoteNode, endExclusive);
+		return changed;
+	}
+
+	/**
+	 * Rebuilds the {@linkplain RollupGranularity#HOUR} and
+	 * {@linkplain RollupGranularity#DAY} {@linkplain RemoteNodeReadingRollup}
+	 * s of a single day from the {@linkplain RemoteNodeReading}s when the
+	 * number of readings does not match the day's rollup (i.e. readings that
+	 * were saved before rollups existed or that have since been removed). The
+	 * {@linkplain RollupGranularity#MONTH} rollup is then rebuilt from the
+	 * {@linkplain RollupGranularity#DAY} rollups of the month. Days that are
+	 * already up to date are left untouched so the backfill can safely be
+	 * repeated.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to backfill
+	 * @param day
+	 *            a {@linkplain Date} within the day to backfill
+	 * @return true when the day's rollups were rebuilt
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public boolean backfillRollups(final RemoteNode remoteNode, final Date day) {
+		final Date start = RollupGranularity.DAY.start(day);
+		final Date end = RollupGranularity.DAY.next(day);
+		final long count = remoteNodeDao.countReadingsByIdAndDate(remoteNode, start, end);
+		final RemoteNodeReadingRollup oldDay = remoteNodeDao.findRollup(remoteNode,
+				RollupGranularity.DAY, start);
+		if ((oldDay == null ? 0 : oldDay.getReadingCount()) == count) {
+			return false;
+		}
+		final Calendar sc = Calendar.getInstance();
+		sc.setTime(start);
+		final Calendar ec = Calendar.getInstance();
+		ec.setTime(end);
+		final RemoteNodeReadingRollup newDay = new RemoteNodeReadingRollup(remoteNode,
+				RollupGranularity.DAY, start);
+		final List<RemoteNodeReadingRollup> hours = new ArrayList<>();
+		RemoteNodeReadingRollup hour = null;
+		for (final RemoteNodeReading rnr : remoteNodeDao.findReadingsByIdAndDate(remoteNode, sc, ec, true)) {
+			final Date hourStart = RollupGranularity.HOUR.start(rnr.getReadDate());
+			if (hour == null || !hour.getBucketDate().equals(hourStart)) {
+				hour = new RemoteNodeReadingRollup(remoteNode, RollupGranularity.HOUR, hourStart);
+				hours.add(hour);
+			}
+			hour.add(rnr);
+			newDay.add(rnr);
+		}
+		remoteNodeDao.deleteRollups(remoteNode, RollupGranularity.HOUR, start, end);
+		remoteNodeDao.deleteRollups(remoteNode, RollupGranularity.DAY, start, end);
+		remoteNodeDao.persistEntities(hours);
+		if (newDay.getReadingCount() > 0) {
+			remoteNodeDao.persistEntity(newDay);
+		}
+		// minimums/maximums cannot be subtracted so the month is summed again
+		final Date monthStart = RollupGranularity.MONTH.start(start);
+		final RemoteNodeReadingRollup month = new RemoteNodeReadingRollup(remoteNode,
+				RollupGranularity.MONTH, monthStart);
+		for (final RemoteNodeReadingRollup rollupDay : remoteNodeDao.findRollups(remoteNode,
+				RollupGranularity.DAY, monthStart, RollupGranularity.MONTH.next(monthStart))) {
+			month.add(rollupDay, 1);
+		}
+		remoteNodeDao.replaceRollup(month);
+		return true;
+	}
+
+	/**
+	 * Gets the {@linkplain Date} of the first {@linkplain RemoteNodeReading}
+	 * of a {@linkplain RemoteNode}
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @return the {@linkplain RemoteNodeReading#getReadDate()} (null when
+	 *         there are no readings)
+	 */
+	public Date findReadingFirstDate(final RemoteNode remoteNode) {
+		return remoteNodeDao.findFirstReadingDate(remoteNode);
 	}
 
 	/**
 	 * Removes any {@linkplain RemoteNodeReading}(s) for a given
-	 * {@linkplain Date} range and {@linkplain RemoteNode}
+	 * {@linkplain Date} range and {@linkplain RemoteNode}. The
+	 * {@linkplain RemoteNodeReadingRollup}s of each day the range touches are
+	 * recomputed from the remaining readings (see
+	 * {@linkplain #backfillRollups(RemoteNode, Date)}) and the cached days of
+	 * the {@linkplain RemoteNode} are invalidated once the removal commits
+	 * (see {@linkplain ReadingCache#invalidateAfterCommit(RemoteNode)}).
 	 * 
 	 * @param remoteNode
 	 *            the {@linkplain RemoteNode} to remove
@@ -162,14 +473,28 @@ public class RemoteNodeService {
 	 * @param startInclusive
 	 *            the {@linkplain Date} range to <i>start</i>
 	 *            {@linkplain RemoteNodeReading} removal at (inclusive)
-	 * @param startInclusive
+	 * @param endExclusive
 	 *            the {@linkplain Date} range to <i>end</i>
 	 *            {@linkplain RemoteNodeReading} removal at (exclusive)
 	 */
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void removeReadingsByDateRange(final RemoteNode remoteNode,
 			final Calendar startInclusive, final Calendar endExclusive) {
+		final Date first = remoteNodeDao.findFirstReadingDate(remoteNode);
+		final RemoteNodeReading latest = findReadingLatest(remoteNode);
 		remoteNodeDao.deleteReadingsByIdAndDate(remoteNode, startInclusive,
 				endExclusive);
+		ServiceProvider.IMPL.getReadingCache().invalidateAfterCommit(remoteNode);
+		if (first == null || latest == null) {
+			return;
+		}
+		// only the days that can have readings are recomputed
+		final Date start = first.after(startInclusive.getTime()) ? first : startInclusive.getTime();
+		final Date end = latest.getReadDate().before(endExclusive.getTime()) ? latest.getReadDate()
+				: endExclusive.getTime();
+		for (Date day = RollupGranularity.DAY.start(start); !day.after(end); day = RollupGranularity.DAY
+				.next(day)) {
+			backfillRollups(remoteNode, day);
+		}
 	}
 }
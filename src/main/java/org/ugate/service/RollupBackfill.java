@@ -0,0 +1,192 @@
+package org.ugate.service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RollupGranularity;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * Background job that brings the {@linkplain RemoteNodeReadingRollup}s in line
+ * with the {@linkplain RemoteNodeReading}s that were saved before rollups were
+ * kept up to date as readings are saved. When the backfill is started every
+ * {@linkplain RemoteNode} without a
+ * {@linkplain RemoteNode#getRollupStartDate()} gets the current time, since
+ * every reading saved from then on updates the rollups. Each day from the
+ * {@linkplain RemoteNode#getRollupBackfillDate()} watermark (or the first
+ * reading) up to the {@linkplain RemoteNode#getRollupStartDate()}, including
+ * the part of the day before it, is backfilled in it's own transaction that
+ * also advances the watermark (see
+ * {@linkplain RemoteNodeService#backfillRollups(RemoteNode, Date, Date)}).
+ * Nodes that reached their start date are skipped, so days are not checked
+ * again each time the backfill runs. There is a short pause between days so
+ * the job does not compete with readings that are being received. A day that
+ * fails is logged and the node's remaining days are left for the next time the
+ * backfill runs.
+ */
+public class RollupBackfill {
+
+	private static final Logger log = LoggerFactory.getLogger(RollupBackfill.class);
+	/**
+	 * The number of milliseconds paused between each day
+	 */
+	public static final long PAUSE_MILISECONDS = 50;
+	private volatile Thread worker;
+	private volatile boolean stopped;
+	private volatile int checkedDays;
+	private volatile int rebuiltDays;
+	private volatile int failedDays;
+
+	/**
+	 * Records the start of rollups being kept up to date and starts the
+	 * backfill in the background (does nothing when it is already running)
+	 */
+	synchronized void start() {
+		if (worker != null && worker.isAlive()) {
+			return;
+		}
+		stopped = false;
+		final RemoteNodeService rns = ServiceProvider.IMPL.getRemoteNodeService();
+		try {
+			// before any reading is received so none of them are backfilled again
+			rns.updateRollupStartDates(new Date());
+		} catch (final Throwable t) {
+			log.warn("Unable to record the start of reading rollups", t);
+		}
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					backfill(rns);
+				} catch (final Throwable t) {
+					log.error("Unable to backfill reading rollups", t);
+				}
+			}
+		}, RollupBackfill.class.getSimpleName());
+		worker.setDaemon(true);
+		worker.setPriority(Thread.MIN_PRIORITY);
+		worker.start();
+	}
+
+	/**
+	 * Stops the backfill after the day that is being checked
+	 */
+	synchronized void stop() {
+		if (worker == null) {
+			return;
+		}
+		stopped = true;
+		try {
+			worker.join(TimeUnit.SECONDS.toMillis(30));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		worker = null;
+	}
+
+	/**
+	 * Backfills each day of each {@linkplain RemoteNode} that is before the
+	 * node's {@linkplain RemoteNode#getRollupStartDate()} and not yet
+	 * backfilled
+	 * 
+	 * @param rns
+	 *            the {@linkplain RemoteNodeService}
+	 */
+	void backfill(final RemoteNodeService rns) {
+		final long started = System.currentTimeMillis();
+		final List<RemoteNode> remoteNodes = rns.findAll();
+		for (final RemoteNode rn : remoteNodes) {
+			if (!backfill(rns, rn)) {
+				log.info(String.format("Stopped backfilling reading rollups (%1$s)", this));
+				return;
+			}
+		}
+		log.info(String.format("Backfilled reading rollups of %1$s remote node(s) in %2$s ms (%3$s)",
+				remoteNodes.size(), System.currentTimeMillis() - started, this));
+	}
+
+	/**
+	 * Backfills the days of a {@linkplain RemoteNode} from it's
+	 * {@linkplain RemoteNode#getRollupBackfillDate()} up to it's
+	 * {@linkplain RemoteNode#getRollupStartDate()}. A day that fails leaves
+	 * the remaining days for the next time the backfill runs since the
+	 * watermark cannot pass it.
+	 * 
+	 * @param rns
+	 *            the {@linkplain RemoteNodeService}
+	 * @param rn
+	 *            the {@linkplain RemoteNode} to backfill
+	 * @return false when the backfill has been stopped
+	 */
+	private boolean backfill(final RemoteNodeService rns, final RemoteNode rn) {
+		final Date until = rn.getRollupStartDate();
+		Date from = rn.getRollupBackfillDate();
+		if (until == null || (from != null && !from.before(until))) {
+			return true;
+		}
+		if (from == null) {
+			final Date first = rns.findReadingFirstDate(rn);
+			from = first != null && first.before(until) ? first : until;
+		}
+		for (Date day = RollupGranularity.DAY.start(from); day.before(until); day = RollupGranularity.DAY
+				.next(day)) {
+			if (stopped) {
+				return false;
+			}
+			final Date end = RollupGranularity.DAY.next(day);
+			checkedDays++;
+			try {
+				if (rns.backfillRollups(rn, day, end.after(until) ? until : end)) {
+					rebuiltDays++;
+				}
+			} catch (final Throwable t) {
+				failedDays++;
+				log.warn(String.format("Unable to backfill reading rollups of %1$s for %2$s",
+						rn.getAddress(), day), t);
+				return true;
+			}
+			try {
+				Thread.sleep(PAUSE_MILISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of days that have been checked
+	 */
+	public int getCheckedDays() {
+		return checkedDays;
+	}
+
+	/**
+	 * @return the number of days whose rollups have been rebuilt
+	 */
+	public int getRebuiltDays() {
+		return rebuiltDays;
+	}
+
+	/**
+	 * @return the number of days that failed to be checked or rebuilt
+	 */
+	public int getFailedDays() {
+		return failedDays;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("CHECKED: %1$s, REBUILT: %2$s, FAILED: %3$s", getCheckedDays(),
+				getRebuiltDays(), getFailedDays());
+	}
+}
@@ -0,0 +1,240 @@
+package org.ugate.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Round-trip time estimates of each {@linkplain RemoteNode} keyed by
+ * {@linkplain RemoteNode#getAddress()}. Each estimate keeps a smoothed
+ * round-trip time and it's variance (Jacobson/Karels) that are used to derive
+ * a bounded retransmission timeout. Timeouts are doubled for every consecutive
+ * transmission that times out and are restored by the next measured
+ * round-trip. Estimates can be {@linkplain #save(Path)}d and
+ * {@linkplain #load(Path)}ed so that they survive restarts.
+ */
+public class RttEstimator {
+
+	private static final Logger log = LoggerFactory.getLogger(RttEstimator.class);
+	/**
+	 * The minimum number of milliseconds a derived timeout can be
+	 */
+	public static final int MIN_TIMEOUT_MILISECONDS = 200;
+	/**
+	 * Clock granularity added to the smoothed round-trip time when the
+	 * variance is negligible
+	 */
+	private static final long GRANULARITY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private final ConcurrentMap<String, Estimate> estimates = new ConcurrentHashMap<>();
+	private final int maxTimeout;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxTimeout
+	 *            the number of milliseconds used when no round-trip has been
+	 *            measured and the maximum number of milliseconds a derived
+	 *            timeout can be
+	 */
+	RttEstimator(final int maxTimeout) {
+		this.maxTimeout = maxTimeout;
+	}
+
+	/**
+	 * Records a measured round-trip time. Callers should only record samples
+	 * that can be unambiguously matched to a single transmission.
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param rttNanos
+	 *            the number of nanoseconds between sending the transmission
+	 *            and receiving it's response
+	 */
+	void sample(final String address, final long rttNanos) {
+		if (rttNanos <= 0) {
+			return;
+		}
+		estimate(address).sample(rttNanos);
+	}
+
+	/**
+	 * Records that a transmission timed out so that subsequent timeouts are
+	 * backed off until the next round-trip is measured
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 */
+	void timedOut(final String address) {
+		final Estimate e = estimates.get(key(address));
+		if (e != null) {
+			e.timedOut();
+		}
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the number of milliseconds to wait for a response from the
+	 *         {@linkplain RemoteNode}
+	 */
+	public int getTimeout(final String address) {
+		return getTimeout(address, 0);
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param attempt
+	 *            the zero based attempt number (each retry doubles the timeout)
+	 * @return the number of milliseconds to wait for a response from the
+	 *         {@linkplain RemoteNode}
+	 */
+	public int getTimeout(final String address, final int attempt) {
+		final Estimate e = address == null ? null : estimates.get(key(address));
+		if (e == null) {
+			return maxTimeout;
+		}
+		final long rto = e.getTimeoutNanos() << Math.min(attempt + e.backoff, 16);
+		return (int) Math.max(MIN_TIMEOUT_MILISECONDS,
+				Math.min(maxTimeout, TimeUnit.NANOSECONDS.toMillis(rto)));
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the smoothed round-trip time in milliseconds (-1 when no
+	 *         round-trip has been measured)
+	 */
+	public long getSmoothedRtt(final String address) {
+		final Estimate e = estimates.get(key(address));
+		return e == null ? -1 : TimeUnit.NANOSECONDS.toMillis(e.srtt);
+	}
+
+	/**
+	 * Loads previously {@linkplain #save(Path)}d estimates (missing or invalid
+	 * files are ignored)
+	 *
+	 * @param path
+	 *            the {@linkplain Path} to load from
+	 */
+	void load(final Path path) {
+		if (path == null || !Files.isReadable(path)) {
+			return;
+		}
+		final Properties props = new Properties();
+		try (final InputStream in = Files.newInputStream(path)) {
+			props.load(in);
+		} catch (final IOException e) {
+			log.warn(String.format("Unable to load round-trip estimates from %1$s", path), e);
+			return;
+		}
+		for (final String address : props.stringPropertyNames()) {
+			try {
+				final String[] v = props.getProperty(address).split(",");
+				final Estimate e = estimate(address);
+				synchronized (e) {
+					e.srtt = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(v[0].trim()));
+					e.rttvar = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(v[1].trim()));
+				}
+			} catch (final RuntimeException e) {
+				log.warn(String.format("Invalid round-trip estimate for %1$s in %2$s", address, path));
+				estimates.remove(key(address));
+			}
+		}
+		if (log.isInfoEnabled()) {
+			log.info(String.format("Loaded %1$s round-trip estimate(s) from %2$s", estimates.size(), path));
+		}
+	}
+
+	/**
+	 * Saves the current estimates
+	 *
+	 * @param path
+	 *            the {@linkplain Path} to save to
+	 */
+	void save(final Path path) {
+		if (path == null || estimates.isEmpty()) {
+			return;
+		}
+		final Properties props = new Properties();
+		for (final Map.Entry<String, Estimate> me : estimates.entrySet()) {
+			synchronized (me.getValue()) {
+				props.setProperty(me.getKey(), TimeUnit.NANOSECONDS.toMillis(me.getValue().srtt) + ","
+						+ TimeUnit.NANOSECONDS.toMillis(me.getValue().rttvar));
+			}
+		}
+		try (final OutputStream out = Files.newOutputStream(path)) {
+			props.store(out, "Smoothed round-trip time and variance (ms) by remote node address");
+		} catch (final IOException e) {
+			log.warn(String.format("Unable to save round-trip estimates to %1$s", path), e);
+		}
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the existing or new {@linkplain Estimate}
+	 */
+	private Estimate estimate(final String address) {
+		final String key = key(address);
+		Estimate e = estimates.get(key);
+		if (e == null) {
+			final Estimate ne = new Estimate();
+			e = estimates.putIfAbsent(key, ne);
+			if (e == null) {
+				e = ne;
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the estimate key
+	 */
+	private static String key(final String address) {
+		return address.toUpperCase();
+	}
+
+	/**
+	 * Round-trip estimate of a single {@linkplain RemoteNode}
+	 */
+	private static class Estimate {
+		private long srtt = -1;
+		private long rttvar;
+		private volatile int backoff;
+
+		private synchronized void sample(final long rtt) {
+			if (srtt < 0) {
+				srtt = rtt;
+				rttvar = rtt / 2;
+			} else {
+				rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+				srtt = (7 * srtt + rtt) / 8;
+			}
+			backoff = 0;
+		}
+
+		private void timedOut() {
+			if (backoff < 16) {
+				backoff++;
+			}
+		}
+
+		private synchronized long getTimeoutNanos() {
+			return srtt + Math.max(GRANULARITY_NANOS, 4 * rttvar);
+		}
+	}
+}
@@ -23,6 +23,8 @@ public enum ServiceProvider {
 	private WirelessService wirelessService;
 	private EmailService emailService;
 	private WebService webService;
+	private final RollupBackfill rollupBackfill = new RollupBackfill();
+	private final ReadingCache readingCache = new ReadingCache(ReadingCache.DEFAULT_MAX_BYTES);
 
 	/**
 	 * Creates/Initializes a new {@linkplain ServiceProvider}
@@ -50,6 +52,12 @@ public enum ServiceProvider {
 			appContext = new ClassPathXmlApplicationContext(
 					new String[] { "spring-all.xml" });
 			appContext.start();
+			try {
+				getRemoteNodeService().createIndexes();
+			} catch (final Throwable t) {
+				log.warn("Unable to create indexes", t);
+			}
+			rollupBackfill.start();
 		}
 		return getWirelessService().init();
 	}
@@ -77,12 +85,14 @@ public enum ServiceProvider {
 		}
 		try {
 			if (getWirelessService() != null) {
-				getWirelessService().disconnect();
+				getWirelessService().shutdown();
 				hasDisconnected = true;
 			}
 		} catch (final Exception e) {
 			log.error("Unable to disconnect wireless connection", e);
 		}
+		rollupBackfill.stop();
+		readingCache.clear();
 		try {
 			if (appContext != null) {
 				appContext.close();
@@ -159,6 +169,20 @@ public enum ServiceProvider {
 		return emailService;
 	}
 
+	/**
+	 * @return the {@linkplain RollupBackfill}
+	 */
+	public RollupBackfill getRollupBackfill() {
+		return rollupBackfill;
+	}
+
+	/**
+	 * @return the {@linkplain ReadingCache}
+	 */
+	public ReadingCache getReadingCache() {
+		return readingCache;
+	}
+
 	/**
 	 * @return the {@linkplain RemoteNodeService}
 	 */
@@ -0,0 +1,107 @@
+package org.ugate.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ugate.UGateEvent;
+import org.ugate.UGateListener;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RxTxRemoteNodeDTO;
+
+/**
+ * Last known settings of each remote device as packed
+ * {@linkplain RemoteNodeType#pack(RemoteNode)} values keyed by
+ * {@linkplain RemoteNode#getAddress()}. A snapshot is recorded when a
+ * device acknowledges a settings transmission or reports it's settings, so
+ * that subsequent synchronizations can skip devices whose settings have not
+ * changed. Snapshots of removed {@linkplain RemoteNode}s are discarded by
+ * listening for {@linkplain UGateEvent.Type#WIRELESS_REMOTE_NODE_COMMITTED}.
+ */
+class SettingsSnapshots implements UGateListener {
+
+	private final ConcurrentMap<String, int[]> snapshots = new ConcurrentHashMap<>();
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	/**
+	 * Determines if the settings of a device are identical to the last
+	 * settings it acknowledged
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param data
+	 *            the packed settings that would be sent
+	 * @return true when the device already has the settings
+	 */
+	boolean isUnchanged(final String address, final int[] data) {
+		if (RemoteNodeType.remoteChangeCount(snapshots.get(key(address)), data) == 0) {
+			skippedCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the settings a device has acknowledged
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param data
+	 *            the packed settings that were acknowledged
+	 */
+	void acknowledged(final String address, final int[] data) {
+		snapshots.put(key(address), data.clone());
+	}
+
+	/**
+	 * Removes the settings snapshot of a device so that it's next
+	 * synchronization will always be sent
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 */
+	void invalidate(final String address) {
+		snapshots.remove(key(address));
+	}
+
+	/**
+	 * Removes all of the settings snapshots
+	 */
+	void clear() {
+		snapshots.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handle(final UGateEvent<?, ?> event) {
+		if (event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED
+				&& event.getNewValue() == null) {
+			invalidate(((RemoteNode) event.getSource()).getAddress());
+		} else if (event.getType() == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS
+				&& event.getNewValue() instanceof RxTxRemoteNodeDTO) {
+			// the device reported the settings it is actually using
+			final RxTxRemoteNodeDTO dto = (RxTxRemoteNodeDTO) event.getNewValue();
+			acknowledged(((RemoteNode) event.getSource()).getAddress(), dto.getData());
+		}
+	}
+
+	/**
+	 * @return the number of synchronizations that were skipped because the
+	 *         device already had the settings
+	 */
+	long getSkippedCount() {
+		return skippedCount.get();
+	}
+
+	/**
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the snapshot key
+	 */
+	private static String key(final String address) {
+		return address.toUpperCase();
+	}
+}
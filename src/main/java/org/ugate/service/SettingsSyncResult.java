@@ -0,0 +1,302 @@
+package org.ugate.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Aggregated result of synchronizing settings with multiple
+ * {@linkplain RemoteNode}s. Outcomes are updated as each
+ * {@linkplain RemoteNode} completes so the result can be inspected while the
+ * synchronization is still in progress.
+ */
+public class SettingsSyncResult {
+
+	private final Map<String, NodeOutcome> outcomes = new LinkedHashMap<>();
+	private final CountDownLatch latch;
+	private final long startNanos = System.nanoTime();
+	private volatile long endNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param remoteNodes
+	 *            the {@linkplain RemoteNode}s being synchronized
+	 */
+	SettingsSyncResult(final RemoteNode... remoteNodes) {
+		for (final RemoteNode rn : remoteNodes) {
+			outcomes.put(rn.getAddress(), new NodeOutcome(rn.getAddress()));
+		}
+		this.latch = new CountDownLatch(outcomes.size());
+		if (outcomes.isEmpty()) {
+			endNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Records an attempt for a {@linkplain RemoteNode}
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 */
+	synchronized void attempted(final String address) {
+		outcomes.get(address).attempts++;
+	}
+
+	/**
+	 * Completes the outcome for a {@linkplain RemoteNode}
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param status
+	 *            the final {@linkplain Status}
+	 * @param latencyNanos
+	 *            the number of nanoseconds the last attempt took
+	 * @param message
+	 *            the completion message
+	 * @return true when this completion completed all of the
+	 *         {@linkplain RemoteNode}s (false when the
+	 *         {@linkplain RemoteNode} had already completed)
+	 */
+	boolean completed(final String address, final Status status,
+			final long latencyNanos, final String message) {
+		synchronized (this) {
+			final NodeOutcome o = outcomes.get(address);
+			if (o.status != Status.PENDING) {
+				return false;
+			}
+			o.status = status;
+			o.latencyNanos = latencyNanos;
+			o.message = message;
+		}
+		latch.countDown();
+		if (latch.getCount() == 0) {
+			endNanos = System.nanoTime();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fails all of the {@linkplain RemoteNode}s that have not yet completed
+	 * (used when the synchronization has not completed within its deadline).
+	 * Any later completion of an expired {@linkplain RemoteNode} is ignored.
+	 *
+	 * @param message
+	 *            the failure message
+	 * @return true when expiring completed all of the {@linkplain RemoteNode}s
+	 */
+	boolean expire(final String message) {
+		boolean done = false;
+		for (final String address : getPending()) {
+			done |= completed(address, Status.FAILED, System.nanoTime() - startNanos, message);
+		}
+		return done;
+	}
+
+	/**
+	 * Waits for all the {@linkplain RemoteNode}s to complete
+	 *
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the {@linkplain TimeUnit} of the timeout
+	 * @return true when all the {@linkplain RemoteNode}s have completed
+	 * @throws InterruptedException
+	 *             thrown when interrupted while waiting
+	 */
+	public boolean await(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		return latch.await(timeout, unit);
+	}
+
+	/**
+	 * Waits for all the {@linkplain RemoteNode}s to complete
+	 *
+	 * @throws InterruptedException
+	 *             thrown when interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		latch.await();
+	}
+
+	/**
+	 * @return true when all the {@linkplain RemoteNode}s have completed
+	 */
+	public boolean isDone() {
+		return latch.getCount() == 0;
+	}
+
+	/**
+	 * @return true when every {@linkplain RemoteNode} was synchronized (or
+	 *         already had the settings)
+	 */
+	public synchronized boolean isAllSuccess() {
+		for (final NodeOutcome o : outcomes.values()) {
+			if (o.status != Status.SUCCESS && o.status != Status.SKIPPED) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNode#getAddress()}es that have not yet
+	 *         completed
+	 */
+	public synchronized List<String> getPending() {
+		return getAddresses(Status.PENDING);
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNode#getAddress()}es that failed
+	 */
+	public synchronized List<String> getFailed() {
+		return getAddresses(Status.FAILED);
+	}
+
+	/**
+	 * @param status
+	 *            the {@linkplain Status}
+	 * @return the number of {@linkplain RemoteNode}s with the
+	 *         {@linkplain Status}
+	 */
+	public synchronized int getCount(final Status status) {
+		return getAddresses(status).size();
+	}
+
+	/**
+	 * @param status
+	 *            the {@linkplain Status}
+	 * @return the {@linkplain RemoteNode#getAddress()}es with the
+	 *         {@linkplain Status}
+	 */
+	private List<String> getAddresses(final Status status) {
+		final List<String> addresses = new ArrayList<>();
+		for (final NodeOutcome o : outcomes.values()) {
+			if (o.status == status) {
+				addresses.add(o.address);
+			}
+		}
+		return addresses;
+	}
+
+	/**
+	 * @return a copy of the {@linkplain NodeOutcome}s (in the order the
+	 *         {@linkplain RemoteNode}s were supplied)
+	 */
+	public synchronized List<NodeOutcome> getOutcomes() {
+		final List<NodeOutcome> copy = new ArrayList<>(outcomes.size());
+		for (final NodeOutcome o : outcomes.values()) {
+			copy.add(o.copy());
+		}
+		return Collections.unmodifiableList(copy);
+	}
+
+	/**
+	 * @return the total number of {@linkplain RemoteNode}s
+	 */
+	public int size() {
+		return outcomes.size();
+	}
+
+	/**
+	 * @return the number of milliseconds the synchronization took (or has
+	 *         taken so far)
+	 */
+	public long getElapsedMiliseconds() {
+		return TimeUnit.NANOSECONDS.toMillis((endNanos > 0 ? endNanos
+				: System.nanoTime()) - startNanos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("NODES: %1$s, SUCCESS: %2$s, SKIPPED: %3$s, FAILED: %4$s, PENDING: %5$s, ELAPSED: %6$s ms",
+				size(), getCount(Status.SUCCESS), getCount(Status.SKIPPED),
+				getCount(Status.FAILED), getCount(Status.PENDING),
+				getElapsedMiliseconds());
+	}
+
+	/**
+	 * Synchronization status of a {@linkplain RemoteNode} ({@linkplain #SKIPPED}
+	 * when the device already had the settings)
+	 */
+	public enum Status {
+		PENDING, SUCCESS, SKIPPED, FAILED;
+	}
+
+	/**
+	 * Synchronization outcome of a single {@linkplain RemoteNode}
+	 */
+	public static class NodeOutcome {
+		private final String address;
+		private Status status = Status.PENDING;
+		private int attempts;
+		private long latencyNanos;
+		private String message;
+
+		private NodeOutcome(final String address) {
+			this.address = address;
+		}
+
+		private NodeOutcome copy() {
+			final NodeOutcome o = new NodeOutcome(address);
+			o.status = status;
+			o.attempts = attempts;
+			o.latencyNanos = latencyNanos;
+			o.message = message;
+			return o;
+		}
+
+		/**
+		 * @return the {@linkplain RemoteNode#getAddress()}
+		 */
+		public String getAddress() {
+			return address;
+		}
+
+		/**
+		 * @return the {@linkplain Status}
+		 */
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return the number of transmission attempts
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * @return the number of retries (attempts after the first)
+		 */
+		public int getRetries() {
+			return Math.max(0, attempts - 1);
+		}
+
+		/**
+		 * @return the number of milliseconds the last attempt took
+		 */
+		public long getLatencyMiliseconds() {
+			return TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+		}
+
+		/**
+		 * @return the completion message (if any)
+		 */
+		public String getMessage() {
+			return message;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package org.ugate.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Merges identical {@linkplain Command#isIdempotent()} transmissions to the
+ * same {@linkplain RemoteNode}. A transmission is shared with subsequent
+ * identical requests while it is in flight and for a short window after it
+ * has been acknowledged, so every caller receives the single result.
+ */
+class TxCoalescer {
+
+	/**
+	 * The default number of milliseconds an acknowledged transmission will be
+	 * shared with identical requests
+	 */
+	public static final int DEFAULT_WINDOW_MILISECONDS = 1500;
+	private final ConcurrentMap<Key, TxFuture> active = new ConcurrentHashMap<>();
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private volatile long windowNanos = TimeUnit.MILLISECONDS
+			.toNanos(DEFAULT_WINDOW_MILISECONDS);
+
+	/**
+	 * Gets the {@linkplain TxFuture} that should be used for a transmission.
+	 * When an identical transmission is in flight (or was acknowledged within
+	 * the window) it's {@linkplain TxFuture} is returned, otherwise the
+	 * candidate is registered and returned.
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @param command
+	 *            the {@linkplain Command}
+	 * @param payload
+	 *            the full transmission payload
+	 * @param candidate
+	 *            the {@linkplain TxFuture} to use when there is no identical
+	 *            transmission to share
+	 * @return the {@linkplain TxFuture} to use (when not the candidate the
+	 *         candidate should be discarded)
+	 */
+	TxFuture share(final String address, final Command command,
+			final int[] payload, final TxFuture candidate) {
+		if (command == null || !command.isIdempotent()) {
+			return candidate;
+		}
+		purge();
+		final Key key = new Key(address, payload);
+		while (true) {
+			final TxFuture existing = active.putIfAbsent(key, candidate);
+			if (existing == null) {
+				return candidate;
+			} else if (isShareable(existing)) {
+				coalescedCount.incrementAndGet();
+				return existing;
+			} else if (active.replace(key, existing, candidate)) {
+				return candidate;
+			}
+		}
+	}
+
+	/**
+	 * Determines if a {@linkplain TxFuture} can be shared with an identical
+	 * transmission
+	 *
+	 * @param f
+	 *            the {@linkplain TxFuture}
+	 * @return true when in flight or acknowledged within the window
+	 */
+	private boolean isShareable(final TxFuture f) {
+		if (!f.isDone()) {
+			return true;
+		}
+		return f.isSuccess()
+				&& System.nanoTime() - f.getCompletedNanos() < windowNanos;
+	}
+
+	/**
+	 * Removes transmissions that can no longer be shared
+	 */
+	private void purge() {
+		for (final Iterator<TxFuture> itr = active.values().iterator(); itr.hasNext();) {
+			if (!isShareable(itr.next())) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of transmissions that have been merged into an
+	 *         identical transmission
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return the number of milliseconds an acknowledged transmission will be
+	 *         shared with identical requests
+	 */
+	public long getWindow() {
+		return TimeUnit.NANOSECONDS.toMillis(windowNanos);
+	}
+
+	/**
+	 * @param window
+	 *            the number of milliseconds an acknowledged transmission will
+	 *            be shared with identical requests
+	 */
+	public void setWindow(final long window) {
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+	}
+
+	/**
+	 * Transmission identity
+	 */
+	private static class Key {
+		private final String address;
+		private final int[] payload;
+		private final int hash;
+
+		private Key(final String address, final int[] payload) {
+			this.address = address.toUpperCase();
+			this.payload = payload;
+			this.hash = 31 * this.address.hashCode() + Arrays.hashCode(payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) obj;
+			return hash == k.hash && address.equals(k.address)
+					&& Arrays.equals(payload, k.payload);
+		}
+	}
+}
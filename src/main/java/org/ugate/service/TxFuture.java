@@ -0,0 +1,361 @@
+package org.ugate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.wpan.TxStatusResponse;
+
+/**
+ * {@linkplain Future} of a wireless transmission. The result is
+ * <code>true</code> when the transmission was acknowledged by the
+ * {@linkplain RemoteNode}, <code>false</code> when it was not acknowledged
+ * (see {@linkplain #getStatus()}) or could not be sent (see
+ * {@linkplain #getError()}).
+ */
+public class TxFuture implements Future<Boolean> {
+
+	private static final Logger log = LoggerFactory.getLogger(TxFuture.class);
+	private final UGateEvent<RemoteNode, int[]> event;
+	private final int[] payload;
+	private final int timeout;
+	private final Command.Priority priority;
+	private final CountDownLatch latch = new CountDownLatch(1);
+	private final List<Callback> callbacks = new ArrayList<>(1);
+	private volatile boolean done;
+	private volatile boolean cancelled;
+	private boolean success;
+	private TxStatusResponse.Status status;
+	private Throwable error;
+	private String message;
+	private int frameId;
+	private final long queuedNanos;
+	private long sentNanos;
+	private long completedNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param event
+	 *            the event that contains the {@linkplain RemoteNode} to send
+	 *            to, the {@linkplain Command} and the data
+	 * @param payload
+	 *            the full payload to transmit (including the command header)
+	 * @param timeout
+	 *            the number of milliseconds to wait for a transmit status
+	 *            response before timing out
+	 * @param priority
+	 *            the {@linkplain Command.Priority} of the transmission (null
+	 *            to use the {@linkplain Command#getPriority()})
+	 */
+	TxFuture(final UGateEvent<RemoteNode, int[]> event, final int[] payload,
+			final int timeout, final Command.Priority priority) {
+		this.event = event;
+		this.payload = payload;
+		this.timeout = timeout;
+		this.priority = priority != null ? priority
+				: event.getCommand() != null ? event.getCommand().getPriority()
+						: Command.Priority.BULK;
+		this.queuedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Creates a {@linkplain TxFuture} that has failed before it could be
+	 * queued for transmission
+	 *
+	 * @param event
+	 *            the event being transmitted
+	 * @param message
+	 *            the failure message
+	 * @param error
+	 *            the failure
+	 * @return the failed {@linkplain TxFuture}
+	 */
+	static TxFuture failed(final UGateEvent<RemoteNode, int[]> event,
+			final String message, final Throwable error) {
+		final TxFuture f = new TxFuture(event, null, 0, null);
+		f.complete(false, null, message, error);
+		return f;
+	}
+
+	/**
+	 * Completes the transmission (subsequent calls are ignored)
+	 *
+	 * @param success
+	 *            true when the transmission was acknowledged
+	 * @param status
+	 *            the {@linkplain TxStatusResponse.Status} (when received)
+	 * @param message
+	 *            the completion message
+	 * @param error
+	 *            any error that occurred
+	 * @return true when the transmission was completed by this call
+	 */
+	boolean complete(final boolean success,
+			final TxStatusResponse.Status status, final String message,
+			final Throwable error) {
+		final Callback[] cbs;
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.success = success;
+			this.status = status;
+			this.message = message;
+			this.error = error;
+			this.completedNanos = System.nanoTime();
+			this.done = true;
+			cbs = callbacks.toArray(new Callback[callbacks.size()]);
+			callbacks.clear();
+		}
+		latch.countDown();
+		for (final Callback cb : cbs) {
+			notifyCallback(cb);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a {@linkplain Callback} that will be notified when the
+	 * transmission completes (notified immediately when already
+	 * {@linkplain #isDone()})
+	 *
+	 * @param callback
+	 *            the {@linkplain Callback}
+	 * @return this {@linkplain TxFuture}
+	 */
+	public TxFuture addCallback(final Callback callback) {
+		synchronized (this) {
+			if (!done) {
+				callbacks.add(callback);
+				return this;
+			}
+		}
+		notifyCallback(callback);
+		return this;
+	}
+
+	/**
+	 * Notifies a {@linkplain Callback} of completion
+	 *
+	 * @param callback
+	 *            the {@linkplain Callback}
+	 */
+	private void notifyCallback(final Callback callback) {
+		try {
+			callback.completed(this);
+		} catch (final Throwable t) {
+			log.error(String.format("Error in transmission callback for %1$s", this), t);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only transmissions that have not been sent can be cancelled
+	 * </p>
+	 */
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (done || sentNanos > 0) {
+				return false;
+			}
+			cancelled = true;
+		}
+		return complete(false, null, "Cancelled", null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Boolean get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return success;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Boolean get(final long timeout, final TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		if (!latch.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return success;
+	}
+
+	/**
+	 * Marks the transmission as sent
+	 *
+	 * @param frameId
+	 *            the frame ID used to correlate the transmit status response
+	 * @return false when the transmission has been cancelled
+	 */
+	synchronized boolean sent(final int frameId) {
+		if (done) {
+			return false;
+		}
+		this.frameId = frameId;
+		this.sentNanos = System.nanoTime();
+		return true;
+	}
+
+	/**
+	 * @return the event that contains the {@linkplain RemoteNode} to send to,
+	 *         the {@linkplain Command} and the data
+	 */
+	public UGateEvent<RemoteNode, int[]> getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNode} the transmission is for
+	 */
+	public RemoteNode getRemoteNode() {
+		return event.getSource();
+	}
+
+	/**
+	 * @return the {@linkplain Command} being transmitted
+	 */
+	public Command getCommand() {
+		return event.getCommand();
+	}
+
+	/**
+	 * @return the full payload being transmitted
+	 */
+	int[] getPayload() {
+		return payload;
+	}
+
+	/**
+	 * @return the number of milliseconds to wait for a transmit status
+	 *         response before timing out
+	 */
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return the {@linkplain Command.Priority} of the transmission
+	 */
+	public Command.Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @return true when the transmission was acknowledged (only valid once
+	 *         {@linkplain #isDone()})
+	 */
+	public synchronized boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return the {@linkplain TxStatusResponse.Status} of the transmission
+	 *         (null when no response was received)
+	 */
+	public synchronized TxStatusResponse.Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the error that prevented the transmission (if any)
+	 */
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return the completion message
+	 */
+	public synchronized String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the frame ID used to correlate the transmit status response (0
+	 *         when not yet sent)
+	 */
+	public synchronized int getFrameId() {
+		return frameId;
+	}
+
+	/**
+	 * @return the {@linkplain System#nanoTime()} when the transmission was
+	 *         queued
+	 */
+	public long getQueuedNanos() {
+		return queuedNanos;
+	}
+
+	/**
+	 * @return the {@linkplain System#nanoTime()} when the transmission was
+	 *         sent (0 when not yet sent)
+	 */
+	public synchronized long getSentNanos() {
+		return sentNanos;
+	}
+
+	/**
+	 * @return the {@linkplain System#nanoTime()} when the transmission was
+	 *         completed (0 when not yet completed)
+	 */
+	public synchronized long getCompletedNanos() {
+		return completedNanos;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("%1$s to %2$s (FRAME ID: %3$s, DONE: %4$s, SUCCESS: %5$s, STATUS: %6$s)",
+				getCommand(), getRemoteNode() == null ? "N/A" : getRemoteNode().getAddress(),
+				frameId, done, success, status);
+	}
+
+	/**
+	 * Callback notified when a {@linkplain TxFuture} completes
+	 */
+	public interface Callback {
+
+		/**
+		 * Called when the transmission has completed
+		 *
+		 * @param future
+		 *            the completed {@linkplain TxFuture}
+		 */
+		void completed(TxFuture future);
+	}
+}
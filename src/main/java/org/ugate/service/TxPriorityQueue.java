@@ -0,0 +1,192 @@
+package org.ugate.service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.Command.Priority;
+
+/**
+ * Transmission queue that keeps a FIFO per {@linkplain Command.Priority}.
+ * The head of the highest priority class is taken first, but a waiting
+ * transmission is promoted by one class for every aging interval it has been
+ * queued so that lower priority classes are never starved. The time each
+ * transmission spends in the queue is recorded per class.
+ */
+class TxPriorityQueue {
+
+	/**
+	 * The default number of milliseconds a queued transmission waits before it
+	 * is promoted by one {@linkplain Priority} class
+	 */
+	public static final int DEFAULT_AGING_MILISECONDS = 2000;
+	private final ArrayDeque<TxFuture>[] queues;
+	private final long[] latencyCount;
+	private final long[] latencyTotalNanos;
+	private final long[] latencyMaxNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final long agingNanos;
+	private int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param agingMiliseconds
+	 *            the number of milliseconds a queued transmission waits before
+	 *            it is promoted by one {@linkplain Priority} class
+	 */
+	@SuppressWarnings("unchecked")
+	TxPriorityQueue(final int agingMiliseconds) {
+		final int n = Priority.values().length;
+		this.queues = new ArrayDeque[n];
+		for (int i = 0; i < n; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+		this.latencyCount = new long[n];
+		this.latencyTotalNanos = new long[n];
+		this.latencyMaxNanos = new long[n];
+		this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMiliseconds <= 0 ?
+				DEFAULT_AGING_MILISECONDS : agingMiliseconds);
+	}
+
+	/**
+	 * Adds a transmission to the tail of it's {@linkplain Priority} class
+	 *
+	 * @param future
+	 *            the {@linkplain TxFuture}
+	 */
+	void offer(final TxFuture future) {
+		lock.lock();
+		try {
+			queues[future.getPriority().ordinal()].offer(future);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the next transmission (waits until one is available)
+	 *
+	 * @return the {@linkplain TxFuture}
+	 * @throws InterruptedException
+	 *             thrown when interrupted while waiting
+	 */
+	TxFuture take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (size == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the next transmission (when available)
+	 *
+	 * @return the {@linkplain TxFuture} or null when empty
+	 */
+	TxFuture poll() {
+		lock.lock();
+		try {
+			return size == 0 ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the head of the class with the best aged rank (lock must be
+	 * held and the queue cannot be empty)
+	 *
+	 * @return the {@linkplain TxFuture}
+	 */
+	private TxFuture dequeue() {
+		final long now = System.nanoTime();
+		int best = -1;
+		long bestRank = Long.MAX_VALUE;
+		for (int i = 0; i < queues.length; i++) {
+			final TxFuture head = queues[i].peek();
+			if (head != null) {
+				final long rank = i - (now - head.getQueuedNanos()) / agingNanos;
+				if (rank < bestRank) {
+					bestRank = rank;
+					best = i;
+				}
+			}
+		}
+		final TxFuture f = queues[best].poll();
+		size--;
+		final long latency = now - f.getQueuedNanos();
+		latencyCount[best]++;
+		latencyTotalNanos[best] += latency;
+		if (latency > latencyMaxNanos[best]) {
+			latencyMaxNanos[best] = latency;
+		}
+		return f;
+	}
+
+	/**
+	 * @return the number of queued transmissions
+	 */
+	int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Priority}
+	 * @return the number of queued transmissions for the {@linkplain Priority}
+	 */
+	int size(final Priority priority) {
+		lock.lock();
+		try {
+			return queues[priority.ordinal()].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Priority}
+	 * @return the average number of nanoseconds transmissions of the
+	 *         {@linkplain Priority} have waited in the queue
+	 */
+	long getAverageLatencyNanos(final Priority priority) {
+		lock.lock();
+		try {
+			final long count = latencyCount[priority.ordinal()];
+			return count == 0 ? 0 : latencyTotalNanos[priority.ordinal()] / count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Priority}
+	 * @return the maximum number of nanoseconds a transmission of the
+	 *         {@linkplain Priority} has waited in the queue
+	 */
+	long getMaxLatencyNanos(final Priority priority) {
+		lock.lock();
+		try {
+			return latencyMaxNanos[priority.ordinal()];
+		} finally {
+			lock.unlock();
+		}
+	}
+}
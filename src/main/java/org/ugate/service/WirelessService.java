@@ -1,6 +1,12 @@
 package org.ugate.service;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.ugate.ByteUtils;
@@ -14,20 +20,26 @@ import org.ugate.service.entity.EntityExtractor;
 import org.ugate.service.entity.RemoteNodeType;
 import org.ugate.service.entity.jpa.Actor;
 import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RemoteNodeIndex;
 import org.ugate.wireless.data.RxData;
+import org.ugate.wireless.data.RxDispatcher;
+import org.ugate.wireless.data.RxRecorder;
+import org.ugate.wireless.data.RxTxImage;
 import org.ugate.wireless.data.RxTxRemoteNodeDTO;
+import org.ugate.wireless.data.RxTxRemoteNodeReadingDTO;
 import org.ugate.wireless.data.UGateXBeePacketListener;
+import org.ugate.wireless.data.XBeeSimulator;
 
 import com.rapplogic.xbee.api.AtCommand;
 import com.rapplogic.xbee.api.AtCommandResponse;
+import com.rapplogic.xbee.api.IXBee;
 import com.rapplogic.xbee.api.RemoteAtRequest;
 import com.rapplogic.xbee.api.RemoteAtResponse;
 import com.rapplogic.xbee.api.XBee;
 import com.rapplogic.xbee.api.XBeeAddress16;
 import com.rapplogic.xbee.api.XBeeException;
+import com.rapplogic.xbee.api.XBeeResponse;
 import com.rapplogic.xbee.api.XBeeTimeoutException;
-import com.rapplogic.xbee.api.wpan.TxRequest16;
-import com.rapplogic.xbee.api.wpan.TxStatusResponse;
 
 /**
  * Wireless service
@@ -45,11 +57,61 @@ public class WirelessService extends ExtractorService<Actor> {
 	}
 
 	private final Logger log = UGateUtil.getLogger(WirelessService.class);
+	/**
+	 * The number of milliseconds to wait for a response from a
+	 * {@linkplain RemoteNode} that has no measured round-trip (also the
+	 * maximum timeout the {@linkplain RttEstimator} will derive)
+	 */
 	public static final int DEFAULT_WAIT_MILISECONDS = 12000;
-	private XBee xbee;
+	/**
+	 * The number of milliseconds to wait for a response from the local XBee
+	 * (the same as the default XBee configuration)
+	 */
+	public static final int LOCAL_WAIT_MILISECONDS = 5000;
+	/**
+	 * The number of milliseconds a queued transmission waits before it is
+	 * promoted to the next {@linkplain Command.Priority}
+	 */
+	public static final int TX_AGING_MILISECONDS = 2000;
+	/**
+	 * The number of milliseconds pending received data is processed for when
+	 * disconnecting
+	 */
+	public static final int RX_SHUTDOWN_MILISECONDS = 5000;
+	/**
+	 * The number of times a {@linkplain RemoteNode} that fails to receive it's
+	 * settings will be retried during a synchronization
+	 */
+	public static final int DEFAULT_SETTINGS_RETRIES = 1;
+	/**
+	 * The number of milliseconds added to the deadline of a synchronous
+	 * settings synchronization for the time transmissions spend queued
+	 */
+	public static final int SETTINGS_DEADLINE_GRACE_MILISECONDS = 5000;
+	/**
+	 * The name of the file in the working directory that
+	 * {@linkplain RttEstimator} estimates are saved to
+	 */
+	public static final String RTT_FILE_NAME = "wireless-rtt.properties";
+	private IXBee xbee;
+	private final RemoteNodeIndex remoteNodeIndex = new RemoteNodeIndex();
 	private UGateXBeePacketListener packetListener;
+	private WirelessTxEngine txEngine;
+	private final TxCoalescer txCoalescer = new TxCoalescer();
+	private final SettingsSnapshots settingsSnapshots = new SettingsSnapshots();
+	private final RttEstimator rttEstimator = new RttEstimator(DEFAULT_WAIT_MILISECONDS);
+	private final ReadingsPoller readingsPoller = new ReadingsPoller(this, remoteNodeIndex);
+	private final NodePresence nodePresence = new NodePresence(this, remoteNodeIndex,
+			NodePresence.DEFAULT_SWEEP_SEC, NodePresence.DEFAULT_PARALLELISM);
+	private final LinkQuality linkQuality = new LinkQuality(this, remoteNodeIndex);
+	private final ReadingsWriter readingsWriter = new ReadingsWriter(ReadingsWriter.DEFAULT_CAPACITY,
+			ReadingsWriter.DEFAULT_BATCH_SIZE, ReadingsWriter.DEFAULT_FLUSH_MILISECONDS);
+	private int txWindow = WirelessTxEngine.DEFAULT_WINDOW;
+	private RxDispatcher.Overflow rxOverflow = RxDispatcher.overflowFromSystemProperties();
 	private boolean requiresRestart;
 	private boolean isListening;
+	private boolean imageStreaming;
+	private volatile SettingsSyncResult settingsSync;
 
 	/**
 	 * Connects to the local wireless device
@@ -61,20 +123,64 @@ public class WirelessService extends ExtractorService<Actor> {
 			return true;
 		}
 		log.debug("Initializing local XBee");
-		// ensure that the needed RXTX is installed/loaded (if not install/load it)
-		requiresRestart = RS.initComm();
-		if (requiresRestart) {
-			return false;
+		final XBeeSimulator simulator = XBeeSimulator.fromSystemProperties();
+		if (simulator != null) {
+			// no serial connection is needed
+			log.info(String.format("Using simulated XBee with %1$s remote node(s) instead of a serial connection", 
+					simulator.getNodeCount()));
+			xbee = simulator;
+		} else {
+			// ensure that the needed RXTX is installed/loaded (if not install/load it)
+			requiresRestart = RS.initComm();
+			if (requiresRestart) {
+				return false;
+			}
+			xbee = new XBee();
 		}
-		xbee = new XBee();
-		packetListener = new UGateXBeePacketListener() {
+		UGateKeeper.DEFAULT.addListener(remoteNodeIndex);
+		UGateKeeper.DEFAULT.addListener(settingsSnapshots);
+		packetListener = new UGateXBeePacketListener(remoteNodeIndex, newRxDispatcher()) {
 			@Override
 			protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+				if (event.getNewValue() instanceof RxTxRemoteNodeReadingDTO) {
+					readingsPoller.received(event.getSource());
+					// saved in batches off of the receiving and UI threads
+					readingsWriter.write(((RxTxRemoteNodeReadingDTO) event.getNewValue()).getRemoteNodeReading());
+				}
+				if (event.getNewValue() != null) {
+					nodePresence.seen(event.getSource(), event.getNewValue().getSignalStrength());
+				}
 				UGateKeeper.DEFAULT.notifyListeners(event);
 			}
+
+			@Override
+			protected void imageChunkReceived(final RemoteNode rn, final RxTxImage rxTxImage,
+					final int signalStrength) {
+				linkQuality.signalStrength(rn, signalStrength);
+			}
+
+			@Override
+			protected void imageAttempted(final RemoteNode rn, final RxTxImage rxTxImage,
+					final double loss) {
+				linkQuality.loss(rn, loss);
+			}
+		};
+		packetListener.setImageStreaming(imageStreaming);
+		txEngine = new WirelessTxEngine(xbee, txWindow, TX_AGING_MILISECONDS) {
+			@Override
+			protected void sent(final TxFuture f) {
+				// polls are taken from the airtime budget before they are sent
+				if (f.getCommand() != Command.SENSOR_GET_READINGS
+						|| f.getPriority() != Command.Priority.BACKGROUND) {
+					readingsPoller.charge();
+				}
+			}
 		};
-		// test the serial ports
-		getSerialPorts();
+		rttEstimator.load(getRttPath());
+		if (simulator == null) {
+			// test the serial ports
+			getSerialPorts();
+		}
 		return true;
 	}
 	
@@ -99,13 +205,27 @@ public class WirelessService extends ExtractorService<Actor> {
 		}
 		UGateKeeper.DEFAULT.notifyListeners(new UGateEvent<WirelessService, Void>(
 				this, UGateEvent.Type.WIRELESS_HOST_CONNECTING, false));
+		// incoming data is resolved to it's remote node from the index rather than the database
+		remoteNodeIndex.warm(extract().getHost().getId(), ServiceProvider.IMPL
+				.getRemoteNodeService().findForHost(extract().getHost().getId()));
+		// devices may have been reset while disconnected
+		settingsSnapshots.clear();
+		final RxDispatcher previousDispatcher = packetListener.setDispatcher(newRxDispatcher());
+		if (previousDispatcher != null) {
+			previousDispatcher.shutdown(0);
+		}
+		startRecording();
 		try {
 			xbee.open(extract().getHost().getComPort(), extract().getHost()
 					.getComBaud());
 			if (!isListening()) {
+				xbee.addPacketListener(txEngine);
 				xbee.addPacketListener(packetListener);
 				isListening = true;
 			}
+			readingsWriter.start();
+			readingsPoller.start();
+			nodePresence.start();
 			log.info(String
 					.format("Connected to local XBee using address %1$s and baud rate %2$s",
 							extract().getHost().getComAddress(),
@@ -143,6 +263,21 @@ public class WirelessService extends ExtractorService<Actor> {
 	public void disconnect() {
 		wirelessDisconnectInternal(true);
 	}
+
+	/**
+	 * Disconnects from the wireless network and stops the
+	 * {@linkplain WirelessTxEngine} and {@linkplain UGateXBeePacketListener}
+	 * threads (the service cannot be used afterwards)
+	 */
+	public void shutdown() {
+		disconnect();
+		if (txEngine != null) {
+			txEngine.shutdown();
+		}
+		if (packetListener != null) {
+			packetListener.shutdown(RX_SHUTDOWN_MILISECONDS);
+		}
+	}
 	
 	/**
 	 * Disconnects from the wireless network
@@ -158,8 +293,16 @@ public class WirelessService extends ExtractorService<Actor> {
 						WirelessService.this, UGateEvent.Type.WIRELESS_HOST_DISCONNECTING, false, msg));	
 			}
 			try {
+				readingsPoller.stop();
+				nodePresence.stop();
 				xbee.close();
 				msg = "Disconnected from XBee";
+				txEngine.failAll(msg);
+				// nothing more will be received so the dispatcher threads can finish up
+				packetListener.getDispatcher().shutdown(RX_SHUTDOWN_MILISECONDS);
+				readingsWriter.stop();
+				rttEstimator.save(getRttPath());
+				stopRecording();
 				log.info(msg);
 				if (notify) {
 					// XBee close is blocking so notification can be sent here
@@ -178,6 +321,43 @@ public class WirelessService extends ExtractorService<Actor> {
 		}
 	}
 
+	/**
+	 * Starts recording received frames to the {@linkplain RxRecorder#PROPERTY_FILE}
+	 * (when set) for the current connection. Each connection is recorded to
+	 * its own {@linkplain RxRecorder#newSessionPath(java.nio.file.Path, Date)}
+	 * so that the recordings of previous connections are kept.
+	 */
+	private void startRecording() {
+		stopRecording();
+		final String recordFile = System.getProperty(RxRecorder.PROPERTY_FILE);
+		if (recordFile != null && !recordFile.isEmpty()) {
+			try {
+				packetListener.setRecorder(new RxRecorder(RxRecorder.newSessionPath(
+						Paths.get(recordFile), new Date())));
+			} catch (final Throwable t) {
+				log.warn(String.format("Unable to record received frames to %1$s", recordFile), t);
+			}
+		}
+	}
+
+	/**
+	 * Stops recording received frames and closes the {@linkplain RxRecorder}
+	 * (after any buffered frames have been written)
+	 */
+	private void stopRecording() {
+		final RxRecorder recorder = packetListener.getRecorder();
+		if (recorder == null) {
+			return;
+		}
+		packetListener.setRecorder(null);
+		try {
+			recorder.close();
+		} catch (final Throwable t) {
+			log.warn(String.format("Unable to close the recording of received frames %1$s", 
+					recorder.getPath()), t);
+		}
+	}
+
 	/**
 	 * @return true when connected to the wireless network
 	 */
@@ -265,7 +445,75 @@ public class WirelessService extends ExtractorService<Actor> {
 	}
 	
 	/**
-	 * Sends the data array to the {@linkplain RemoteNode#getAddress()}
+	 * Asynchronously sends the data array to the
+	 * {@linkplain RemoteNode#getAddress()} using the
+	 * {@linkplain RttEstimator#getTimeout(String)} to wait for a transmit
+	 * status response
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to send the data to
+	 * @param command
+	 *            the executing {@linkplain Command}
+	 * @param data
+	 *            the data to send
+	 * @return the {@linkplain TxFuture} of the transmission
+	 */
+	public TxFuture sendDataAsync(final RemoteNode remoteNode,
+			final Command command, final int... data) {
+		return sendDataAsync(remoteNode, command, null, 0, data);
+	}
+
+	/**
+	 * Asynchronously sends the data array to the
+	 * {@linkplain RemoteNode#getAddress()}
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to send the data to
+	 * @param command
+	 *            the executing {@linkplain Command}
+	 * @param priority
+	 *            the {@linkplain Command.Priority} of the transmission (null
+	 *            to use the {@linkplain Command#getPriority()})
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            transmit status response before timing out (zero or less
+	 *            to use the {@linkplain RttEstimator#getTimeout(String)})
+	 * @param data
+	 *            the data to send
+	 * @return the {@linkplain TxFuture} of the transmission
+	 */
+	public TxFuture sendDataAsync(final RemoteNode remoteNode,
+			final Command command, final Command.Priority priority,
+			final int timeout, final int... data) {
+		return sendDataAsync(new UGateEvent<RemoteNode, int[]>(remoteNode,
+				UGateEvent.Type.INITIALIZE, false, null, command, null, data),
+				priority, timeout, true);
+	}
+
+	/**
+	 * Asynchronously sends the data array to the
+	 * {@linkplain RemoteNode#getAddress()} without merging it into an identical
+	 * in flight or recently acknowledged transmission (used when the response
+	 * to a previous transmission was not received intact)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to send the data to
+	 * @param command
+	 *            the executing {@linkplain Command}
+	 * @param data
+	 *            the data to send
+	 * @return the {@linkplain TxFuture} of the transmission
+	 */
+	public TxFuture resendDataAsync(final RemoteNode remoteNode,
+			final Command command, final int... data) {
+		return sendDataAsync(new UGateEvent<RemoteNode, int[]>(remoteNode,
+				UGateEvent.Type.INITIALIZE, false, null, command, null, data),
+				Command.Priority.BULK, 0, false);
+	}
+
+	/**
+	 * Sends the data array to the {@linkplain RemoteNode#getAddress()} and
+	 * waits for the transmission to complete
 	 * 
 	 * @param event
 	 *            the event that contains the <code>int</code> array of data to
@@ -282,88 +530,132 @@ public class WirelessService extends ExtractorService<Actor> {
 	 */
 	private boolean sendData(final UGateEvent<RemoteNode, int[]> event,
 			final int timeout, final boolean throwRuntimeException) {
+		final TxFuture future = sendDataAsync(event, null, timeout, true);
+		try {
+			if (future.get()) {
+				return true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(false);
+		} catch (final ExecutionException e) {
+			// never thrown by a TxFuture
+		}
+		if (throwRuntimeException) {
+			if (future.getError() instanceof RuntimeException
+					&& future.getFrameId() == 0) {
+				// validation failure
+				throw (RuntimeException) future.getError();
+			}
+			throw new RuntimeException(future.getMessage(), future.getError());
+		}
+		return false;
+	}
+
+	/**
+	 * Asynchronously sends the data array to the
+	 * {@linkplain RemoteNode#getAddress()}. Listeners are notified when the
+	 * transmission is queued and when it completes.
+	 * 
+	 * @param event
+	 *            the event that contains the <code>int</code> array of data to
+	 *            send {@linkplain UGateEvent#getNewValue()}, the
+	 *            {@linkplain UGateEvent#getCommand()}, and
+	 *            {@linkplain UGateEvent#getSource()} to send the data to
+	 * @param priority
+	 *            the {@linkplain Command.Priority} of the transmission (null
+	 *            to use the {@linkplain Command#getPriority()})
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            transmit status response before timing out (zero or less
+	 *            to use the {@linkplain RttEstimator#getTimeout(String)})
+	 * @param firstAttempt
+	 *            true when this is the first attempt of the transmission (it
+	 *            will be merged into an identical in flight or recently
+	 *            acknowledged transmission when the
+	 *            {@linkplain Command#isIdempotent()}), false when it is a
+	 *            retransmission (never merged and never sampled by the
+	 *            {@linkplain RttEstimator})
+	 * @return the {@linkplain TxFuture} of the transmission
+	 */
+	private TxFuture sendDataAsync(final UGateEvent<RemoteNode, int[]> event,
+			final Command.Priority priority, final int timeout, final boolean firstAttempt) {
 		String message;
 		if (!isConnected()) {
 			message = RS.rbLabel(KEY.SERVICE_WIRELESS_CONNECTION_REQUIRED);
-			if (throwRuntimeException) {
-				throw new IllegalStateException(message);
-			} else {
-				log.error(message);
-				return false;
-			}
+			log.error(message);
+			return TxFuture.failed(event, message, new IllegalStateException(message));
 		}
 		if (event.getSource() == null) {
 			message = RS.rbLabel(KEY.SERVICE_WIRELESS_SEND_ADDY_UNDEFINED);
-			if (throwRuntimeException) {
-				throw new NullPointerException(message);
-			} else {
-				log.error(message);
-				return false;
+			log.error(message);
+			return TxFuture.failed(event, message, new NullPointerException(message));
+		}
+		// bytes header command and status/failure code
+		final int[] bytesHeader = new int[] { event.getCommand().getKey(), RxData.Status.NORMAL.ordinal() };
+		final int[] bytes = event.getNewValue() != null && event.getNewValue().length > 0 ? 
+				UGateUtil.arrayConcatInt(bytesHeader, event.getNewValue()) : bytesHeader;
+		final String address = event.getSource().getAddress();
+		final TxFuture future = new TxFuture(event, bytes, 
+				timeout <= 0 ? rttEstimator.getTimeout(address) : timeout, priority);
+		final TxFuture shared = firstAttempt ? txCoalescer.share(event.getSource().getAddress(), 
+				event.getCommand(), bytes, future) : future;
+		if (shared != future) {
+			// an identical transmission is already in flight/recently acknowledged
+			if (log.isInfoEnabled()) {
+				log.info(String.format("Merged %1$s with identical transmission %2$s", 
+						event.getCommand(), shared));
 			}
+			return shared;
 		}
-		int i = 0;
-		int failureCount = 0;
-		try {
-			// bytes header command and status/failure code
-			final int[] bytesHeader = new int[] { event.getCommand().getKey(), RxData.Status.NORMAL.ordinal() };
-			final int[] bytes = event.getNewValue() != null && event.getNewValue().length > 0 ? 
-					UGateUtil.arrayConcatInt(bytesHeader, event.getNewValue()) : bytesHeader;
-			final XBeeAddress16 xbeeAddress = getXbeeAddress(event.getSource().getAddress());
-			// create a unicast packet to be delivered to the supplied address, with the pay load
-			final TxRequest16 request = new TxRequest16(xbeeAddress, bytes);
-			message = RS.rbLabel(KEY.SERVICE_WIRELESS_SENDING, bytes, event.getSource().getAddress());
-			log.info(message);
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX, i, message));
-			// send the packet and wait up to 12 seconds for the transmit status reply
-			final TxStatusResponse response = (TxStatusResponse) xbee.sendSynchronous(request, 
-					timeout <= 0 ? DEFAULT_WAIT_MILISECONDS : timeout);
-			if (response.isSuccess()) {
-				// packet was delivered successfully
-				message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_SUCCESS, bytes, event.getSource().getAddress(), response.getStatus());
-				log.info(message);
-				UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK, i, message));
-			} else {
-				// packet was not delivered
-				failureCount++;
-				message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_FAILED, bytes, event.getSource().getAddress(), response.getStatus());
-				if (throwRuntimeException) {
-					throw new RuntimeException(message);
-				} else {
+		message = RS.rbLabel(KEY.SERVICE_WIRELESS_SENDING, bytes, event.getSource().getAddress());
+		log.info(message);
+		UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX, 0, message));
+		future.addCallback(new TxFuture.Callback() {
+			@Override
+			public void completed(final TxFuture f) {
+				String message;
+				if (f.isSuccess() && firstAttempt && f.getSentNanos() > 0) {
+					// only acknowledged first attempts are sampled (Karn's rule)
+					rttEstimator.sample(address, f.getCompletedNanos() - f.getSentNanos());
+				} else if (f.getError() instanceof XBeeTimeoutException) {
+					rttEstimator.timedOut(address);
+				}
+				if (f.isSuccess()) {
+					// packet was delivered successfully
+					message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_SUCCESS, bytes, event.getSource().getAddress(), f.getStatus());
+					log.info(message);
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK, 0, message));
+				} else if (f.getStatus() != null) {
+					// packet was not delivered
+					message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_FAILED, bytes, event.getSource().getAddress(), f.getStatus());
 					log.error(message);
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK_FAILED, 0, message));
+				} else if (f.getError() instanceof XBeeTimeoutException) {
+					message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_TIMEOUT, event.getSource().getAddress());
+					log.error(message, f.getError());
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, 0, message));
+				} else {
+					message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_FAILED, event.getSource().getAddress());
+					log.error(message, f.getError());
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, 0, message));
 				}
-				UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK_FAILED, i, message));
-			}
-		} catch (XBeeTimeoutException e) {
-			failureCount++;
-			message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_TIMEOUT, event.getSource().getAddress());
-			if (throwRuntimeException) {
-				throw new RuntimeException(message, e);
-			} else {
-				log.error(message, e);
 			}
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, i, message));
-		} catch (final Throwable t) {
-			failureCount++;
-			message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_FAILED, event.getSource().getAddress());
-			if (throwRuntimeException) {
-				throw new RuntimeException(message, t);
-			} else {
-				log.error(message, t);
-			}
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, i, message));
-		}
-		return failureCount == 0;
+		});
+		return txEngine.submit(future);
 	}
 
 	/**
 	 * Tests the {@link RemoteNode#getAddress()} of a remote device within the
-	 * wireless network
+	 * wireless network (blocks until the remote device responds or times out,
+	 * use the {@linkplain #getNodePresence()} for the cached presence)
 	 * 
 	 * @param remoteNode
 	 *            the {@linkplain RemoteNode} to test a connection for
 	 * @param timeout
 	 *            the number of milliseconds that will be used to wait for a
-	 *            response before timing out
+	 *            response before timing out (zero or less to use the
+	 *            {@linkplain RttEstimator#getTimeout(String)})
 	 * @return true when the connection was successful
 	 */
 	public boolean testRemoteConnection(final RemoteNode remoteNode,
@@ -379,14 +671,46 @@ public class WirelessService extends ExtractorService<Actor> {
 			if (remoteAddress != null) {
 				final RemoteAtRequest request = new RemoteAtRequest(
 						remoteAddress, "MY");
-				final RemoteAtResponse remoteResponse = (RemoteAtResponse) xbee
-						.sendSynchronous(request,
-								timeout <= 0 ? DEFAULT_WAIT_MILISECONDS
-										: timeout);
-				response = remoteResponse;
+				// concurrent requests are matched to their response by frame
+				// ID (allocated by the engine so pending transmissions are not
+				// reused)
+				final int frameId = txEngine.reserveFrameId();
+				request.setFrameId(frameId);
+				final long sentNanos = System.nanoTime();
+				final XBeeResponse remoteResponse;
+				try {
+					remoteResponse = xbee.sendSynchronous(
+							request, timeout <= 0 ? rttEstimator.getTimeout(remoteNode
+									.getAddress()) : timeout);
+				} catch (final XBeeTimeoutException e) {
+					rttEstimator.timedOut(remoteNode.getAddress());
+					throw e;
+				} finally {
+					txEngine.releaseFrameId(frameId);
+				}
+				if (!(remoteResponse instanceof RemoteAtResponse)) {
+					throw new XBeeException(String.format(
+							"Expected a remote AT response for frame ID %1$s, but received %2$s",
+							frameId, remoteResponse));
+				}
+				rttEstimator.sample(remoteNode.getAddress(), System.nanoTime() - sentNanos);
+				response = (RemoteAtResponse) remoteResponse;
 			} else {
-				response = (AtCommandResponse) xbee
-						.sendSynchronous(new AtCommand("MY"));
+				final AtCommand request = new AtCommand("MY");
+				final int frameId = txEngine.reserveFrameId();
+				request.setFrameId(frameId);
+				final XBeeResponse localResponse;
+				try {
+					localResponse = xbee.sendSynchronous(request, LOCAL_WAIT_MILISECONDS);
+				} finally {
+					txEngine.releaseFrameId(frameId);
+				}
+				if (!(localResponse instanceof AtCommandResponse)) {
+					throw new XBeeException(String.format(
+							"Expected an AT response for frame ID %1$s, but received %2$s",
+							frameId, localResponse));
+				}
+				response = (AtCommandResponse) localResponse;
 			}
 			if (response.isOk()) {
 				responseValue = response.getValue();
@@ -417,7 +741,7 @@ public class WirelessService extends ExtractorService<Actor> {
 	 *            the {@linkplain RemoteNode#getAddress()} of the wireless node
 	 * @return the {@linkplain XBeeAddress16}
 	 */
-	private XBeeAddress16 getXbeeAddress(final String rawAddress) {
+	static XBeeAddress16 getXbeeAddress(final String rawAddress) {
 		// final int xbeeRawAddress =
 		// Integer.parseInt(preferences.get(wirelessAddressHexKey), 16);
 		if (rawAddress.length() > RemoteNodeType.WIRELESS_ADDRESS_MAX_DIGITS) {
@@ -433,7 +757,10 @@ public class WirelessService extends ExtractorService<Actor> {
 	}
 	
 	/**
-	 * Synchronizes the locally hosted settings with the remote wireless node(s)
+	 * Synchronizes the locally hosted settings with the remote wireless
+	 * node(s). Any node(s) that have not completed within the
+	 * {@linkplain #getSettingsDeadline(int, int, int, int)} are reported as
+	 * failed.
 	 * 
 	 * @param timeout
 	 *            the number of milliseconds that will be used to wait for a
@@ -447,34 +774,254 @@ public class WirelessService extends ExtractorService<Actor> {
 	 */
 	public boolean sendSettings(final int timeout,
 			final boolean throwRuntimeException, final RemoteNode... remoteNode) {
-		boolean allSuccess = false;
 		if (!isConnected()) {
-			return allSuccess;
+			return false;
 		}
+		final SettingsSyncResult result = sendSettingsAsync(timeout, 0,
+				DEFAULT_SETTINGS_RETRIES, remoteNode);
+		final long deadline = getSettingsDeadline(timeout, remoteNode.length,
+				txWindow, DEFAULT_SETTINGS_RETRIES);
 		try {
-			for (final RemoteNode rn : remoteNode) {
-				final RxTxRemoteNodeDTO sd = new RxTxRemoteNodeDTO(rn);
-				final int[] sendData = sd.getData();
-				log.info(String.format("Attempting to send: %s", sd));
-				final UGateEvent<RemoteNode, int[]> event = new UGateEvent<>(
-						rn, UGateEvent.Type.INITIALIZE, false, null,
-						Command.SENSOR_SEND_SETTINGS, null, sendData);
-				if (sendData(event, timeout, throwRuntimeException)) {
-					log.info(String.format("Settings sent to %1$s",
-							rn.getAddress()));
-					allSuccess = true;
+			if (!result.await(deadline, TimeUnit.MILLISECONDS)) {
+				log.warn(String.format("Settings synchronization did not complete within %1$s ms: %2$s", 
+						deadline, result));
+				if (result.expire(String.format("No response within %1$s ms", deadline))) {
+					settingsSyncCompleted(result);
 				}
 			}
-		} catch (final Throwable t) {
-			if (throwRuntimeException && t instanceof RuntimeException) {
-				throw (RuntimeException) t;
-			} else if (throwRuntimeException) {
-				throw new RuntimeException("Error while sending settings", t);
-			} else {
-				log.error("Error while sending settings", t);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (result.isAllSuccess()) {
+			return true;
+		}
+		if (throwRuntimeException) {
+			final List<String> failed = result.getFailed();
+			failed.addAll(result.getPending());
+			throw new RuntimeException(RS.rbLabel(
+					KEY.SERVICE_WIRELESS_SETTINGS_FAILED, failed));
+		}
+		return false;
+	}
+
+	/**
+	 * Calculates the maximum number of milliseconds a settings synchronization
+	 * can take: every attempt of every wave of node(s) waits for the longest
+	 * timeout plus the {@linkplain #SETTINGS_DEADLINE_GRACE_MILISECONDS}
+	 * 
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            response before timing out (zero or less when the
+	 *            {@linkplain RttEstimator} timeout is used)
+	 * @param nodes
+	 *            the number of {@linkplain RemoteNode}s being synchronized
+	 * @param concurrency
+	 *            the maximum number of {@linkplain RemoteNode}s synchronized
+	 *            at the same time
+	 * @param retries
+	 *            the number of times a failed {@linkplain RemoteNode} will be
+	 *            retried
+	 * @return the deadline in milliseconds
+	 */
+	static long getSettingsDeadline(final int timeout, final int nodes,
+			final int concurrency, final int retries) {
+		final int parallel = Math.max(1, Math.min(nodes, concurrency));
+		final long waves = (nodes + parallel - 1) / parallel;
+		final long attemptTimeout = timeout > 0 ? timeout : DEFAULT_WAIT_MILISECONDS;
+		return waves * (retries + 1) * attemptTimeout + SETTINGS_DEADLINE_GRACE_MILISECONDS;
+	}
+
+	/**
+	 * Synchronizes the locally hosted settings with the remote wireless
+	 * node(s) in parallel. Up to the specified number of
+	 * {@linkplain RemoteNode}s are synchronized at any given time; as each
+	 * {@linkplain RemoteNode} completes the next one is started. Listeners are
+	 * notified with a {@linkplain UGateEvent.Type#WIRELESS_DATA_ALL_TX} event
+	 * when the synchronization starts, a
+	 * {@linkplain UGateEvent.Type#WIRELESS_DATA_ALL_TX_PROGRESS} event as each
+	 * {@linkplain RemoteNode} completes and a
+	 * {@linkplain UGateEvent.Type#WIRELESS_DATA_ALL_TX_COMPLETE} event when all
+	 * of the {@linkplain RemoteNode}s have completed. {@linkplain RemoteNode}s
+	 * whose settings are identical to the last settings their device
+	 * acknowledged are skipped.
+	 * 
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            response before timing out
+	 * @param concurrency
+	 *            the maximum number of {@linkplain RemoteNode}s to synchronize
+	 *            at the same time (zero or less to use the
+	 *            {@linkplain #getTxWindow()})
+	 * @param retries
+	 *            the number of times a failed {@linkplain RemoteNode} will be
+	 *            retried
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}(s) to send the settings to
+	 * @return the {@linkplain SettingsSyncResult} that will be updated as each
+	 *         {@linkplain RemoteNode} completes
+	 */
+	public SettingsSyncResult sendSettingsAsync(final int timeout,
+			final int concurrency, final int retries,
+			final RemoteNode... remoteNode) {
+		final SettingsSyncResult result = new SettingsSyncResult(remoteNode);
+		settingsSync = result;
+		final String message = RS.rbLabel(KEY.SERVICE_WIRELESS_SETTINGS_SYNC, remoteNode.length);
+		log.info(message);
+		UGateKeeper.DEFAULT.notifyListeners(new UGateEvent<WirelessService, SettingsSyncResult>(
+				this, UGateEvent.Type.WIRELESS_DATA_ALL_TX, false, null,
+				Command.SENSOR_SEND_SETTINGS, null, result, message));
+		if (remoteNode.length == 0) {
+			settingsSyncCompleted(result);
+			return result;
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final int max = Math.min(remoteNode.length, concurrency <= 0 ? txWindow : concurrency);
+		for (int i = 0; i < max; i++) {
+			sendSettingsNext(result, next, timeout, retries, remoteNode);
+		}
+		return result;
+	}
+
+	/**
+	 * Sends the settings to the next {@linkplain RemoteNode} in line (if any)
+	 * 
+	 * @param result
+	 *            the {@linkplain SettingsSyncResult}
+	 * @param next
+	 *            the index of the next {@linkplain RemoteNode} to send to
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            response before timing out
+	 * @param retries
+	 *            the number of times a failed {@linkplain RemoteNode} will be
+	 *            retried
+	 * @param remoteNodes
+	 *            all of the {@linkplain RemoteNode}s being synchronized
+	 */
+	private void sendSettingsNext(final SettingsSyncResult result,
+			final AtomicInteger next, final int timeout, final int retries,
+			final RemoteNode[] remoteNodes) {
+		int i;
+		while (!result.isDone() && (i = next.getAndIncrement()) < remoteNodes.length) {
+			// the camera resolution may be lowered while the link is degraded
+			final RemoteNode rn = linkQuality.adapt(remoteNodes[i]);
+			final int[] sendData = RemoteNodeType.pack(rn);
+			if (!settingsSnapshots.isUnchanged(rn.getAddress(), sendData)) {
+				sendSettings(result, next, timeout, retries, remoteNodes, rn, 0);
+				return;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Settings for %1$s are unchanged", rn.getAddress()));
+			}
+			if (result.completed(rn.getAddress(), SettingsSyncResult.Status.SKIPPED, 0, null)) {
+				settingsSyncCompleted(result);
+				return;
 			}
+			settingsSyncProgress(result);
+		}
+	}
+
+	/**
+	 * Sends the settings to a {@linkplain RemoteNode} as part of a
+	 * {@linkplain SettingsSyncResult}. When the {@linkplain RemoteNode} fails
+	 * it will be retried until the retries have been exhausted. Once the
+	 * {@linkplain RemoteNode} completes the next {@linkplain RemoteNode} in
+	 * line is started.
+	 * 
+	 * @param result
+	 *            the {@linkplain SettingsSyncResult}
+	 * @param next
+	 *            the index of the next {@linkplain RemoteNode} to send to
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            response before timing out
+	 * @param retries
+	 *            the number of times a failed {@linkplain RemoteNode} will be
+	 *            retried
+	 * @param remoteNodes
+	 *            all of the {@linkplain RemoteNode}s being synchronized
+	 * @param rn
+	 *            the {@linkplain RemoteNode} to send the settings to
+	 * @param attempt
+	 *            the zero based attempt number
+	 */
+	private void sendSettings(final SettingsSyncResult result,
+			final AtomicInteger next, final int timeout, final int retries,
+			final RemoteNode[] remoteNodes, final RemoteNode rn, final int attempt) {
+		final RxTxRemoteNodeDTO sd = new RxTxRemoteNodeDTO(rn);
+		final int[] sendData = sd.getData();
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Attempting to send: %s", sd));
 		}
-		return allSuccess;
+		final UGateEvent<RemoteNode, int[]> event = new UGateEvent<>(
+				rn, UGateEvent.Type.INITIALIZE, false, null,
+				Command.SENSOR_SEND_SETTINGS, null, sendData);
+		result.attempted(rn.getAddress());
+		// retries are never merged with the failed transmission and back off
+		final TxFuture future = sendDataAsync(event, null, timeout > 0 ? timeout
+				: rttEstimator.getTimeout(rn.getAddress(), attempt), attempt == 0);
+		future.addCallback(new TxFuture.Callback() {
+			@Override
+			public void completed(final TxFuture f) {
+				if (!f.isSuccess() && attempt < retries && isConnected() && !result.isDone()) {
+					log.info(String.format("Retrying settings for %1$s (attempt %2$s of %3$s)",
+							rn.getAddress(), attempt + 2, retries + 1));
+					sendSettings(result, next, timeout, retries, remoteNodes, rn, attempt + 1);
+					return;
+				}
+				final long latency = f.getCompletedNanos() - (f.getSentNanos() > 0 ? 
+						f.getSentNanos() : f.getQueuedNanos());
+				final boolean done;
+				if (f.isSuccess()) {
+					log.info(String.format("Settings sent to %1$s", rn.getAddress()));
+					settingsSnapshots.acknowledged(rn.getAddress(), sendData);
+					done = result.completed(rn.getAddress(), 
+							SettingsSyncResult.Status.SUCCESS, latency, f.getMessage());
+				} else {
+					log.warn(RS.rbLabel(KEY.SERVICE_WIRELESS_SETTINGS_FAILED, rn.getAddress()));
+					done = result.completed(rn.getAddress(), 
+							SettingsSyncResult.Status.FAILED, latency, f.getMessage());
+				}
+				if (done) {
+					settingsSyncCompleted(result);
+				} else if (!result.isDone()) {
+					settingsSyncProgress(result);
+					sendSettingsNext(result, next, timeout, retries, remoteNodes);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Notifies listeners that a {@linkplain RemoteNode} within a
+	 * {@linkplain SettingsSyncResult} has completed
+	 * 
+	 * @param result
+	 *            the {@linkplain SettingsSyncResult}
+	 */
+	private void settingsSyncProgress(final SettingsSyncResult result) {
+		final String message = RS.rbLabel(KEY.SERVICE_WIRELESS_SETTINGS_SYNC_PROGRESS, 
+				result.size() - result.getCount(SettingsSyncResult.Status.PENDING), 
+				result.size(), result.getPending());
+		UGateKeeper.DEFAULT.notifyListeners(new UGateEvent<WirelessService, SettingsSyncResult>(
+				this, UGateEvent.Type.WIRELESS_DATA_ALL_TX_PROGRESS, false, null,
+				Command.SENSOR_SEND_SETTINGS, null, result, message));
+	}
+
+	/**
+	 * Notifies listeners that a {@linkplain SettingsSyncResult} has completed
+	 * 
+	 * @param result
+	 *            the {@linkplain SettingsSyncResult}
+	 */
+	private void settingsSyncCompleted(final SettingsSyncResult result) {
+		final String message = RS.rbLabel(KEY.SERVICE_WIRELESS_SETTINGS_SYNC_COMPLETE, 
+				result.getCount(SettingsSyncResult.Status.SUCCESS), result.size(), 
+				result.getElapsedMiliseconds(), result.getFailed());
+		log.info(message);
+		UGateKeeper.DEFAULT.notifyListeners(new UGateEvent<WirelessService, SettingsSyncResult>(
+				this, UGateEvent.Type.WIRELESS_DATA_ALL_TX_COMPLETE, false, null,
+				Command.SENSOR_SEND_SETTINGS, null, result, message));
 	}
 
 	/**
@@ -499,6 +1046,180 @@ public class WirelessService extends ExtractorService<Actor> {
 		return requiresRestart;
 	}
 
+	/**
+	 * @return the {@linkplain RxDispatcher} that processes incoming wireless
+	 *         data (null when the service has not been initialized)
+	 */
+	public RxDispatcher getRxDispatcher() {
+		return packetListener != null ? packetListener.getDispatcher() : null;
+	}
+
+	/**
+	 * @return a new {@linkplain RxDispatcher} using the
+	 *         {@linkplain #getRxOverflow()}
+	 */
+	private RxDispatcher newRxDispatcher() {
+		return new RxDispatcher(RxDispatcher.DEFAULT_LANES, RxDispatcher.DEFAULT_LANE_CAPACITY, rxOverflow);
+	}
+
+	/**
+	 * @return the {@linkplain RxDispatcher.Overflow} used when incoming
+	 *         wireless data arrives faster than it can be processed
+	 */
+	public RxDispatcher.Overflow getRxOverflow() {
+		return rxOverflow;
+	}
+
+	/**
+	 * @param rxOverflow
+	 *            the {@linkplain RxDispatcher.Overflow} used when incoming
+	 *            wireless data arrives faster than it can be processed
+	 *            (applies the next time the service connects)
+	 */
+	public void setRxOverflow(final RxDispatcher.Overflow rxOverflow) {
+		this.rxOverflow = rxOverflow == null ? RxDispatcher.DEFAULT_OVERFLOW : rxOverflow;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeIndex} used to resolve the
+	 *         {@linkplain RemoteNode} that sends incoming wireless data
+	 */
+	public RemoteNodeIndex getRemoteNodeIndex() {
+		return remoteNodeIndex;
+	}
+
+	/**
+	 * @return true when received images are streamed to file as their chunks
+	 *         arrive
+	 */
+	public boolean isImageStreaming() {
+		return imageStreaming;
+	}
+
+	/**
+	 * @param imageStreaming
+	 *            true to stream received images to file as their chunks arrive
+	 *            rather than holding each image in memory until it is complete
+	 */
+	public void setImageStreaming(final boolean imageStreaming) {
+		this.imageStreaming = imageStreaming;
+		if (packetListener != null) {
+			packetListener.setImageStreaming(imageStreaming);
+		}
+	}
+
+	/**
+	 * @return the {@linkplain WirelessTxEngine} used to transmit data (null
+	 *         when the service has not been initialized)
+	 */
+	public WirelessTxEngine getTxEngine() {
+		return txEngine;
+	}
+
+	/**
+	 * @return the number of idempotent transmissions that have been merged
+	 *         into an identical in flight or recently acknowledged
+	 *         transmission
+	 */
+	public long getTxCoalescedCount() {
+		return txCoalescer.getCoalescedCount();
+	}
+
+	/**
+	 * @param window
+	 *            the number of milliseconds an acknowledged idempotent
+	 *            transmission will be shared with identical requests
+	 */
+	public void setTxCoalesceWindow(final long window) {
+		txCoalescer.setWindow(window);
+	}
+
+	/**
+	 * @return the maximum number of transmissions that can be awaiting a
+	 *         transmit status response at any given time
+	 */
+	public int getTxWindow() {
+		return txWindow;
+	}
+
+	/**
+	 * @param txWindow
+	 *            the maximum number of transmissions that can be awaiting a
+	 *            transmit status response at any given time (applies the next
+	 *            time the service is initialized)
+	 */
+	public void setTxWindow(final int txWindow) {
+		this.txWindow = txWindow;
+	}
+
+	/**
+	 * @return the {@linkplain SettingsSyncResult} of the most recent settings
+	 *         synchronization (null when no synchronization has been started)
+	 */
+	public SettingsSyncResult getSettingsSync() {
+		return settingsSync;
+	}
+
+	/**
+	 * @return the number of settings synchronizations that were skipped
+	 *         because the device already had the settings
+	 */
+	public long getSettingsSkippedCount() {
+		return settingsSnapshots.getSkippedCount();
+	}
+
+	/**
+	 * @return the {@linkplain Path} to the file that {@linkplain RttEstimator}
+	 *         estimates are saved to (null when unavailable)
+	 */
+	private Path getRttPath() {
+		try {
+			return RS.workingDirectoryPath(null, RTT_FILE_NAME);
+		} catch (final Throwable t) {
+			log.warn("Unable to resolve the round-trip estimate file", t);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the {@linkplain RttEstimator} used to derive transmission
+	 *         timeouts from measured round-trip times
+	 */
+	public RttEstimator getRttEstimator() {
+		return rttEstimator;
+	}
+
+	/**
+	 * @return the {@linkplain ReadingsPoller} that periodically requests
+	 *         readings from the {@linkplain RemoteNode}s
+	 */
+	public ReadingsPoller getReadingsPoller() {
+		return readingsPoller;
+	}
+
+	/**
+	 * @return the {@linkplain NodePresence} cache of the
+	 *         {@linkplain RemoteNode}s that are responding
+	 */
+	public NodePresence getNodePresence() {
+		return nodePresence;
+	}
+
+	/**
+	 * @return the {@linkplain ReadingsWriter} that saves received
+	 *         {@linkplain RxTxRemoteNodeReadingDTO} readings
+	 */
+	public ReadingsWriter getReadingsWriter() {
+		return readingsWriter;
+	}
+
+	/**
+	 * @return the {@linkplain LinkQuality} of the {@linkplain RemoteNode}s
+	 */
+	public LinkQuality getLinkQuality() {
+		return linkQuality;
+	}
+
 	/**
 	 * @return true when the service is listening to incoming wireless data
 	 */
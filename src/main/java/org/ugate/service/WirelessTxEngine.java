@@ -0,0 +1,429 @@
+package org.ugate.service;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.Command;
+
+import com.rapplogic.xbee.api.IXBee;
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.XBeeAddress16;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.XBeeTimeoutException;
+import com.rapplogic.xbee.api.wpan.TxRequest16;
+import com.rapplogic.xbee.api.wpan.TxStatusResponse;
+
+/**
+ * Asynchronous wireless transmit engine. Queued {@linkplain TxFuture}s are
+ * taken in {@linkplain Command.Priority} order (with aging) and written to the
+ * local XBee by a single writer thread using a unique frame ID
+ * so that each {@linkplain TxStatusResponse} can be correlated back to the
+ * transmission it belongs to. Up to a configurable number of transmissions can
+ * be awaiting a {@linkplain TxStatusResponse} at any given time.
+ */
+public class WirelessTxEngine implements PacketListener {
+
+	private static final Logger log = LoggerFactory.getLogger(WirelessTxEngine.class);
+	/**
+	 * The default number of transmissions that can be awaiting a
+	 * {@linkplain TxStatusResponse}
+	 */
+	public static final int DEFAULT_WINDOW = 4;
+	private static final long SWEEP_MILISECONDS = 100;
+	private final IXBee xbee;
+	private final int window;
+	private final Semaphore inFlight;
+	private final TxPriorityQueue queue;
+	private final ConcurrentMap<Integer, Pending> pending = new ConcurrentHashMap<>();
+	private final Set<Integer> reserved = new HashSet<>();
+	private final ScheduledExecutorService sweeper;
+	private final Thread writer;
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong ackCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param xbee
+	 *            the local {@linkplain IXBee} to transmit with
+	 * @param window
+	 *            the maximum number of transmissions that can be awaiting a
+	 *            {@linkplain TxStatusResponse}
+	 * @param agingMiliseconds
+	 *            the number of milliseconds a queued transmission waits before
+	 *            it is promoted by one {@linkplain Command.Priority} class
+	 */
+	WirelessTxEngine(final IXBee xbee, final int window, final int agingMiliseconds) {
+		this.xbee = xbee;
+		this.queue = new TxPriorityQueue(agingMiliseconds);
+		this.window = window <= 0 ? DEFAULT_WINDOW : window;
+		this.inFlight = new Semaphore(this.window);
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, WirelessTxEngine.class.getSimpleName() + "-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, WirelessTxEngine.class.getSimpleName() + "-sweeper");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.sweeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, SWEEP_MILISECONDS, SWEEP_MILISECONDS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues a {@linkplain TxFuture} for transmission
+	 *
+	 * @param future
+	 *            the {@linkplain TxFuture}
+	 * @return the {@linkplain TxFuture}
+	 */
+	TxFuture submit(final TxFuture future) {
+		if (!running) {
+			future.complete(false, null, "Transmit engine has been shutdown", null);
+		} else {
+			queue.offer(future);
+		}
+		return future;
+	}
+
+	/**
+	 * Writes queued transmissions as in-flight capacity becomes available. The
+	 * in-flight permit is acquired <b>before</b> the next transmission is
+	 * taken so that a higher {@linkplain Command.Priority} transmission queued
+	 * while the window is full is not passed over by one that was taken
+	 * earlier (the queue latency also includes the time spent waiting on the
+	 * window). The permit is released here unless it has been handed off to a
+	 * transmission that is awaiting a {@linkplain TxStatusResponse} (no matter
+	 * what is thrown after it has been acquired).
+	 */
+	private void write() {
+		while (running) {
+			try {
+				inFlight.acquire();
+			} catch (final InterruptedException e) {
+				break;
+			}
+			TxFuture f = null;
+			boolean handedOff = false;
+			try {
+				f = queue.take();
+				if (!f.isDone()) {
+					handedOff = send(f);
+				}
+			} catch (final InterruptedException e) {
+				break;
+			} catch (final Throwable t) {
+				log.error(String.format("Unable to transmit %1$s", f), t);
+				if (f != null) {
+					failedCount.incrementAndGet();
+					f.complete(false, null, t.getMessage(), t);
+				}
+			} finally {
+				if (!handedOff) {
+					inFlight.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends a {@linkplain TxFuture} using the next available frame ID
+	 *
+	 * @param f
+	 *            the {@linkplain TxFuture}
+	 * @return true when the in-flight permit has been handed off to the
+	 *         pending transmission (released once it completes), false when
+	 *         the caller still holds the permit
+	 */
+	private boolean send(final TxFuture f) {
+		final Pending p = new Pending(f);
+		final int frameId = allocateFrameId(p);
+		try {
+			if (!f.sent(frameId)) {
+				return !pending.remove(frameId, p);
+			}
+			final XBeeAddress16 address = WirelessService.getXbeeAddress(f.getRemoteNode().getAddress());
+			final TxRequest16 request = new TxRequest16(address, frameId, f.getPayload());
+			xbee.sendAsynchronous(request);
+			sentCount.incrementAndGet();
+		} catch (final Throwable t) {
+			if (pending.remove(frameId, p)) {
+				failedCount.incrementAndGet();
+				f.complete(false, null, t.getMessage(), t);
+				return false;
+			}
+			// already completed (and the permit released) by a response, the
+			// sweeper or a failure of all transmissions
+			return true;
+		}
+		try {
+			sent(f);
+		} catch (final Throwable t) {
+			log.warn(String.format("Unable to process sent transmission %1$s", f), t);
+		}
+		return true;
+	}
+
+	/**
+	 * Called from the writer thread each time a transmission has been written
+	 * to the local XBee (does nothing by default)
+	 *
+	 * @param f
+	 *            the {@linkplain TxFuture} that was written
+	 */
+	protected void sent(final TxFuture f) {
+	}
+
+	/**
+	 * Reserves a frame ID for a synchronous request that is sent directly to
+	 * the local XBee (outside of the engine) so that it cannot collide with a
+	 * transmission that is awaiting a {@linkplain TxStatusResponse}. The frame
+	 * ID must be released using {@linkplain #releaseFrameId(int)} once the
+	 * request completes.
+	 *
+	 * @return the reserved frame ID
+	 */
+	public int reserveFrameId() {
+		return allocateFrameId(null);
+	}
+
+	/**
+	 * Releases a frame ID reserved by {@linkplain #reserveFrameId()}
+	 *
+	 * @param frameId
+	 *            the reserved frame ID
+	 */
+	public synchronized void releaseFrameId(final int frameId) {
+		reserved.remove(frameId);
+	}
+
+	/**
+	 * Allocates the next frame ID that is neither awaiting a response nor
+	 * reserved. Both transmissions and synchronous requests are allocated here
+	 * so that an ID is never handed out twice.
+	 *
+	 * @param p
+	 *            the {@linkplain Pending} transmission the frame ID belongs to
+	 *            (null to reserve the frame ID)
+	 * @return the frame ID
+	 */
+	private synchronized int allocateFrameId(final Pending p) {
+		int frameId;
+		do {
+			frameId = xbee.getNextFrameId();
+		} while (frameId == TxRequest16.NO_RESPONSE_FRAME_ID || pending.containsKey(frameId)
+				|| reserved.contains(frameId));
+		if (p != null) {
+			pending.put(frameId, p);
+		} else {
+			reserved.add(frameId);
+		}
+		return frameId;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Completes the pending transmission that a {@linkplain TxStatusResponse}
+	 * belongs to
+	 * </p>
+	 */
+	@Override
+	public void processResponse(final XBeeResponse response) {
+		if (!(response instanceof TxStatusResponse)) {
+			return;
+		}
+		final TxStatusResponse txResponse = (TxStatusResponse) response;
+		final Pending p = pending.remove(txResponse.getFrameId());
+		if (p == null) {
+			return;
+		}
+		inFlight.release();
+		if (txResponse.isSuccess()) {
+			ackCount.incrementAndGet();
+		} else {
+			failedCount.incrementAndGet();
+		}
+		p.future.complete(txResponse.isSuccess(), txResponse.getStatus(), null, null);
+	}
+
+	/**
+	 * Times out any pending transmissions that have not received a
+	 * {@linkplain TxStatusResponse} within their timeout
+	 */
+	private void sweep() {
+		final long now = System.nanoTime();
+		for (final Iterator<Map.Entry<Integer, Pending>> itr = pending.entrySet().iterator(); itr.hasNext();) {
+			final Map.Entry<Integer, Pending> e = itr.next();
+			if (now - e.getValue().deadlineNanos >= 0 && pending.remove(e.getKey(), e.getValue())) {
+				inFlight.release();
+				timeoutCount.incrementAndGet();
+				e.getValue().future.complete(false, null, "Timed out waiting for transmit status", 
+						new XBeeTimeoutException());
+			}
+		}
+	}
+
+	/**
+	 * Fails all queued and pending transmissions (used when the connection to
+	 * the local XBee has been closed)
+	 *
+	 * @param message
+	 *            the failure message
+	 */
+	void failAll(final String message) {
+		TxFuture f;
+		while ((f = queue.poll()) != null) {
+			f.complete(false, null, message, null);
+		}
+		for (final Integer frameId : pending.keySet()) {
+			final Pending p = pending.remove(frameId);
+			if (p != null) {
+				inFlight.release();
+				p.future.complete(false, null, message, null);
+			}
+		}
+	}
+
+	/**
+	 * Stops the writer and fails any remaining transmissions
+	 */
+	void shutdown() {
+		running = false;
+		writer.interrupt();
+		sweeper.shutdownNow();
+		failAll("Transmit engine has been shutdown");
+	}
+
+	/**
+	 * @return the maximum number of transmissions that can be awaiting a
+	 *         {@linkplain TxStatusResponse}
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * @return the number of transmissions waiting to be sent
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Command.Priority}
+	 * @return the number of transmissions of the {@linkplain Command.Priority}
+	 *         waiting to be sent
+	 */
+	public int getQueueDepth(final Command.Priority priority) {
+		return queue.size(priority);
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Command.Priority}
+	 * @return the average number of nanoseconds transmissions of the
+	 *         {@linkplain Command.Priority} have waited to be sent
+	 */
+	public long getAverageQueueLatencyNanos(final Command.Priority priority) {
+		return queue.getAverageLatencyNanos(priority);
+	}
+
+	/**
+	 * @param priority
+	 *            the {@linkplain Command.Priority}
+	 * @return the maximum number of nanoseconds a transmission of the
+	 *         {@linkplain Command.Priority} has waited to be sent
+	 */
+	public long getMaxQueueLatencyNanos(final Command.Priority priority) {
+		return queue.getMaxLatencyNanos(priority);
+	}
+
+	/**
+	 * @return the number of transmissions awaiting a
+	 *         {@linkplain TxStatusResponse}
+	 */
+	public int getInFlightCount() {
+		return pending.size();
+	}
+
+	/**
+	 * @return the total number of transmissions sent
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * @return the total number of transmissions acknowledged
+	 */
+	public long getAckCount() {
+		return ackCount.get();
+	}
+
+	/**
+	 * @return the total number of transmissions that failed
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * @return the total number of transmissions that timed out
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("WINDOW: %1$s, QUEUED: %2$s, IN FLIGHT: %3$s, SENT: %4$s, ACK: %5$s, FAILED: %6$s, TIMEOUT: %7$s",
+				window, getQueueDepth(), getInFlightCount(), getSentCount(),
+				getAckCount(), getFailedCount(), getTimeoutCount());
+	}
+
+	/**
+	 * Transmission awaiting a {@linkplain TxStatusResponse}
+	 */
+	private static class Pending {
+		private final TxFuture future;
+		private final long deadlineNanos;
+
+		private Pending(final TxFuture future) {
+			this.future = future;
+			this.deadlineNanos = System.nanoTime()
+					+ TimeUnit.MILLISECONDS.toNanos(future.getTimeout());
+		}
+	}
+}
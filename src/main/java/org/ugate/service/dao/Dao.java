@@ -4,6 +4,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.Entity;
@@ -41,6 +42,21 @@ public abstract class Dao {
 	public void persistEntity(final Model entity) {
 		getEntityManager().persist(entity);
 	}
+
+	/**
+	 * Persists {@linkplain Entity}s within the current transaction and flushes
+	 * them together so that the inserts can be batched
+	 * 
+	 * @param entities
+	 *            the entities to persist
+	 */
+	public void persistEntities(final Collection<? extends Model> entities) {
+		final EntityManager em = getEntityManager();
+		for (final Model entity : entities) {
+			em.persist(entity);
+		}
+		em.flush();
+	}
 	
 	/**
 	 * Merges an {@linkplain Entity}
@@ -1,16 +1,21 @@
 package org.ugate.service.dao;
 
+import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
 import org.springframework.stereotype.Repository;
+import org.ugate.service.entity.RollupGranularity;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@linkplain RemoteNode} DAO
@@ -18,6 +23,18 @@ import org.ugate.service.entity.jpa.RemoteNodeReading;
 @Repository
 public class RemoteNodeDao extends Dao {
 
+	/**
+	 * The name of the index that supports seeking/sorting readings of a node
+	 * by date
+	 */
+	public static final String READING_NODE_DATE_INDEX = "IX_REMOTE_NODE_RD_NODE_DATE";
+	static final String CREATE_READING_NODE_DATE_INDEX = "CREATE INDEX IF NOT EXISTS "
+			+ READING_NODE_DATE_INDEX + " ON REMOTE_NODE_READING (REMOTE_NODE_ID, READ_DATE)";
+	private static final String UPDATE_ROLLUP_START_DATES = "UPDATE REMOTE_NODE SET ROLLUP_START_DATE = ?1"
+			+ " WHERE ROLLUP_START_DATE IS NULL";
+	private static final String UPDATE_ROLLUP_BACKFILL_DATE = "UPDATE REMOTE_NODE SET ROLLUP_BACKFILL_DATE = ?1"
+			+ " WHERE ID = ?2";
+
 	@PersistenceContext
 	private EntityManager em;
 
@@ -29,6 +46,11 @@ public class RemoteNodeDao extends Dao {
 		return q.getSingleResult();
 	}
 
+	public List<RemoteNode> findAll() {
+		return em.createQuery("select rn from RemoteNode rn", RemoteNode.class)
+				.getResultList();
+	}
+
 	public List<RemoteNode> findByHostId(final int hostId) {
 		final TypedQuery<RemoteNode> q = em.createQuery(
 				"select rn from RemoteNode rn where rn.host.id = :hostId",
@@ -37,6 +59,13 @@ public class RemoteNodeDao extends Dao {
 		return q.getResultList();
 	}
 
+	public void updateCamImgRangeUnsupported(final RemoteNode remoteNode) {
+		em.createQuery(
+				"update RemoteNode rn set rn.camImgRangeUnsupported = :u where rn.id = :id")
+				.setParameter("u", remoteNode.getCamImgRangeUnsupported())
+				.setParameter("id", remoteNode.getId()).executeUpdate();
+	}
+
 	public List<RemoteNodeReading> findReadingsById(
 			final RemoteNode remoteNode, final int startPosition,
 			final int maxResults) {
@@ -49,6 +78,27 @@ public class RemoteNodeDao extends Dao {
 				.getResultList();
 	}
 
+	public List<RemoteNodeReading> findReadingsByIdAfter(
+			final RemoteNode remoteNode, final Date lastReadDate,
+			final int lastId, final boolean asc, final int maxResults) {
+		final String orderBy = (asc ? "asc" : "desc");
+		final String seek = (asc ? ">" : "<");
+		final TypedQuery<RemoteNodeReading> q = em
+				.createQuery(
+						"select rnr from RemoteNodeReading rnr where rnr.remoteNode.id = :id"
+								// the redundant inclusive bound gives the index a range to seek to
+								+ (lastReadDate == null ? "" : " and rnr.readDate " + seek + "= :rd and (rnr.readDate "
+										+ seek + " :rd or (rnr.readDate = :rd and rnr.id " + seek + " :rid))")
+								+ " order by rnr.readDate " + orderBy + ", rnr.id " + orderBy,
+						RemoteNodeReading.class);
+		q.setParameter("id", remoteNode.getId());
+		if (lastReadDate != null) {
+			q.setParameter("rd", lastReadDate, TemporalType.TIMESTAMP);
+			q.setParameter("rid", lastId);
+		}
+		return q.setMaxResults(maxResults).getResultList();
+	}
+
 	public List<RemoteNodeReading> findReadingsByIdAndDate(
 			final RemoteNode remoteNode, final Calendar startInclusive,
 			final Calendar endExclusive, final boolean asc) {
@@ -76,6 +126,199 @@ public class RemoteNodeDao extends Dao {
 		q.executeUpdate();
 	}
 
+	public long countReadingsByIdAndDate(final RemoteNode remoteNode,
+			final Date startInclusive, final Date endExclusive) {
+		final TypedQuery<Long> q = em
+				.createQuery(
+						"select count(rnr.id) from RemoteNodeReading rnr where rnr.remoteNode.id = :id and rnr.readDate >= :sd and rnr.readDate < :ed",
+						Long.class);
+		q.setParameter("id", remoteNode.getId());
+		q.setParameter("sd", startInclusive, TemporalType.TIMESTAMP);
+		q.setParameter("ed", endExclusive, TemporalType.TIMESTAMP);
+		return q.getSingleResult();
+	}
+
+	public Date findFirstReadingDate(final RemoteNode remoteNode) {
+		final TypedQuery<Date> q = em
+				.createQuery(
+						"select min(rnr.readDate) from RemoteNodeReading rnr where rnr.remoteNode.id = :id",
+						Date.class);
+		q.setParameter("id", remoteNode.getId());
+		return q.getSingleResult();
+	}
+
+	public RemoteNodeReadingRollup findRollup(final RemoteNode remoteNode,
+			final RollupGranularity granularity, final Date bucketDate) {
+		final TypedQuery<RemoteNodeReadingRollup> q = em
+				.createQuery(
+						"select r from RemoteNodeReadingRollup r where r.remoteNode.id = :id and r.granularity = :g and r.bucketDate = :bd",
+						RemoteNodeReadingRollup.class);
+		q.setParameter("id", remoteNode.getId());
+		q.setParameter("g", granularity.ordinal());
+		q.setParameter("bd", granularity.start(bucketDate), TemporalType.TIMESTAMP);
+		final List<RemoteNodeReadingRollup> rollups = q.getResultList();
+		return rollups.isEmpty() ? null : rollups.get(0);
+	}
+
+	public List<RemoteNodeReadingRollup> findRollups(
+			final RemoteNode remoteNode, final RollupGranularity granularity,
+			final Date startInclusive, final Date endExclusive) {
+		final TypedQuery<RemoteNodeReadingRollup> q = em
+				.createQuery(
+						"select r from RemoteNodeReadingRollup r where r.remoteNode.id = :id and r.granularity = :g and r.bucketDate >= :sd and r.bucketDate < :ed order by r.bucketDate asc",
+						RemoteNodeReadingRollup.class);
+		q.setParameter("id", remoteNode.getId());
+		q.setParameter("g", granularity.ordinal());
+		q.setParameter("sd", startInclusive, TemporalType.TIMESTAMP);
+		q.setParameter("ed", endExclusive, TemporalType.TIMESTAMP);
+		return q.getResultList();
+	}
+
+	public void deleteRollups(final RemoteNode remoteNode,
+			final RollupGranularity granularity, final Date startInclusive,
+			final Date endExclusive) {
+		final TypedQuery<RemoteNodeReadingRollup> q = em
+				.createQuery(
+						"delete RemoteNodeReadingRollup where remoteNode.id = :id and granularity = :g and bucketDate >= :sd and bucketDate < :ed",
+						RemoteNodeReadingRollup.class);
+		q.setParameter("id", remoteNode.getId());
+		q.setParameter("g", granularity.ordinal());
+		q.setParameter("sd", startInclusive, TemporalType.TIMESTAMP);
+		q.setParameter("ed", endExclusive, TemporalType.TIMESTAMP);
+		q.executeUpdate();
+	}
+
+	/**
+	 * Replaces the bucket of a {@linkplain RemoteNodeReadingRollup} (removes
+	 * the bucket when the rollup has no readings). Replacing is serialized
+	 * with bucket creation by a pessimistic lock on the
+	 * {@linkplain RemoteNode} (see
+	 * {@linkplain #addToRollup(RemoteNodeReadingRollup)}).
+	 * 
+	 * @param rollup
+	 *            the {@linkplain RemoteNodeReadingRollup} to replace the
+	 *            bucket with
+	 */
+	public void replaceRollup(final RemoteNodeReadingRollup rollup) {
+		em.find(RemoteNode.class, rollup.getRemoteNode().getId(), LockModeType.PESSIMISTIC_WRITE);
+		final RollupGranularity g = RollupGranularity.valueOf(rollup.getGranularity());
+		deleteRollups(rollup.getRemoteNode(), g, rollup.getBucketDate(), g.next(rollup.getBucketDate()));
+		if (rollup.getReadingCount() > 0) {
+			em.persist(rollup);
+		}
+	}
+
+	/**
+	 * Sets the {@linkplain RemoteNode#getRollupStartDate()} of every
+	 * {@linkplain RemoteNode} that does not have one yet. The column is not
+	 * updatable through the entity so a stale {@linkplain RemoteNode} that is
+	 * merged cannot reset it.
+	 * 
+	 * @param rollupStartDate
+	 *            the {@linkplain RemoteNode#getRollupStartDate()}
+	 * @return the number of {@linkplain RemoteNode}s updated
+	 */
+	public int updateRollupStartDates(final Date rollupStartDate) {
+		return em.createNativeQuery(UPDATE_ROLLUP_START_DATES)
+				.setParameter(1, new Timestamp(rollupStartDate.getTime()))
+				.executeUpdate();
+	}
+
+	/**
+	 * Sets the {@linkplain RemoteNode#getRollupBackfillDate()} (see
+	 * {@linkplain #updateRollupStartDates(Date)})
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to update
+	 * @param rollupBackfillDate
+	 *            the {@linkplain RemoteNode#getRollupBackfillDate()}
+	 */
+	public void updateRollupBackfillDate(final RemoteNode remoteNode,
+			final Date rollupBackfillDate) {
+		em.createNativeQuery(UPDATE_ROLLUP_BACKFILL_DATE)
+				.setParameter(1, new Timestamp(rollupBackfillDate.getTime()))
+				.setParameter(2, remoteNode.getId()).executeUpdate();
+		remoteNode.setRollupBackfillDate(rollupBackfillDate);
+	}
+
+	/**
+	 * Adds the counts and sums of a {@linkplain RemoteNodeReadingRollup} to
+	 * the existing bucket using a single update statement (so concurrent
+	 * additions are not lost) or persists it when the bucket does not exist.
+	 * Creating a bucket is serialized by a pessimistic lock on the
+	 * {@linkplain RemoteNode}: when no bucket is updated the lock is taken and
+	 * the update is retried once before persisting, so a bucket created by a
+	 * concurrent transaction in the meantime is added to rather than
+	 * violating the bucket's unique constraint.
+	 * 
+	 * @param delta
+	 *            the {@linkplain RemoteNodeReadingRollup} to add
+	 */
+	public void addToRollup(final RemoteNodeReadingRollup delta) {
+		if (updateRollup(delta) > 0) {
+			return;
+		}
+		// blocks until a concurrent transaction that is creating a bucket for the node completes
+		em.find(RemoteNode.class, delta.getRemoteNode().getId(), LockModeType.PESSIMISTIC_WRITE);
+		if (updateRollup(delta) == 0) {
+			em.persist(delta);
+		}
+	}
+
+	/**
+	 * Adds the counts and sums of a {@linkplain RemoteNodeReadingRollup} to
+	 * the existing bucket
+	 * 
+	 * @param delta
+	 *            the {@linkplain RemoteNodeReadingRollup} to add
+	 * @return the number of buckets updated (zero when the bucket does not
+	 *         exist)
+	 */
+	private int updateRollup(final RemoteNodeReadingRollup delta) {
+		return em
+				.createQuery(
+						"update RemoteNodeReadingRollup r set r.readingCount = r.readingCount + :rc, "
+								+ "r.laserTrips = r.laserTrips + :lt, r.microwaveTrips = r.microwaveTrips + :mt, "
+								+ "r.pirTrips = r.pirTrips + :pt, r.sonarTrips = r.sonarTrips + :st, "
+								+ "r.readTrips = r.readTrips + :rt, r.sonarInchesSum = r.sonarInchesSum + :sis, "
+								+ "r.laserInchesSum = r.laserInchesSum + :lis, "
+								+ "r.microwaveCycleCountSum = r.microwaveCycleCountSum + :mcs, "
+								+ "r.pirIntensitySum = r.pirIntensitySum + :pis, "
+								+ "r.signalStrengthSum = r.signalStrengthSum + :sss, "
+								+ "r.sonarInchesMin = case when r.sonarInchesMin > :sim then :sim else r.sonarInchesMin end, "
+								+ "r.laserInchesMin = case when r.laserInchesMin > :lim then :lim else r.laserInchesMin end, "
+								+ "r.microwaveCycleCountMax = case when r.microwaveCycleCountMax < :mcm then :mcm else r.microwaveCycleCountMax end, "
+								+ "r.pirIntensityMax = case when r.pirIntensityMax < :pim then :pim else r.pirIntensityMax end "
+								+ "where r.remoteNode.id = :id and r.granularity = :g and r.bucketDate = :bd")
+				.setParameter("rc", delta.getReadingCount())
+				.setParameter("lt", delta.getLaserTrips())
+				.setParameter("mt", delta.getMicrowaveTrips())
+				.setParameter("pt", delta.getPirTrips())
+				.setParameter("st", delta.getSonarTrips())
+				.setParameter("rt", delta.getReadTrips())
+				.setParameter("sis", delta.getSonarInchesSum())
+				.setParameter("lis", delta.getLaserInchesSum())
+				.setParameter("mcs", delta.getMicrowaveCycleCountSum())
+				.setParameter("pis", delta.getPirIntensitySum())
+				.setParameter("sss", delta.getSignalStrengthSum())
+				.setParameter("sim", delta.getSonarInchesMin())
+				.setParameter("lim", delta.getLaserInchesMin())
+				.setParameter("mcm", delta.getMicrowaveCycleCountMax())
+				.setParameter("pim", delta.getPirIntensityMax())
+				.setParameter("id", delta.getRemoteNode().getId())
+				.setParameter("g", delta.getGranularity())
+				.setParameter("bd", delta.getBucketDate(), TemporalType.TIMESTAMP)
+				.executeUpdate();
+	}
+
+	/**
+	 * Creates the indexes that cannot be declared using the entity mappings
+	 * (when they do not already exist)
+	 */
+	public void createIndexes() {
+		em.createNativeQuery(CREATE_READING_NODE_DATE_INDEX).executeUpdate();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -4,29 +4,44 @@ package org.ugate.service.entity;
  * Commands sent/received to/from remote devices
  */
 public enum Command {
-	SERVO_LASER_CALIBRATE(11, 1, 0),
-	SERVO_TILT_UP(16, 1, 0),
-	SERVO_TILT_DOWN(17, 1, 0),
-	SERVO_PAN_RIGHT(18, 1, 0),
-	SERVO_PAN_LEFT(19, 1, 0),
-	IR_REMOTE_SESSION_RESET(20, 1, 0),
-	SENSOR_ALARM_TOGGLE(21, 1, 0),
-	CAM_TAKE_PIC(29, 1, 0),
-	ACCESS_PIN_CHANGE(37, 1, 0),
-	SERVO_TOGGLE_CAM_SONARIR_MICROWAVE(58, 1, 0),
-	GATE_TOGGLE_OPEN_CLOSE(59, 1, 8),
-	SERVO_CAM_TILT(100, 2, 0),
-	SERVO_CAM_PAN(101, 2, 0),
-	SERVO_SONAR_PIR_TILT(102, 2, 0),
-	SERVO_SONAR_PIR_PAN(103, 2, 0),
-	SERVO_MICROWAVE_PAN(104, 3, 0),
-	SENSOR_GET_READINGS(105, 1, 8),
-	SENSOR_GET_SETTINGS(106, 1, 37),
-	SENSOR_SEND_SETTINGS(107, 37, 0);
+	SERVO_LASER_CALIBRATE(11, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_TILT_UP(16, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_TILT_DOWN(17, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_PAN_RIGHT(18, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_PAN_LEFT(19, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	IR_REMOTE_SESSION_RESET(20, 1, 0, false, Priority.ALARM, FrameLayout.HEADER),
+	SENSOR_ALARM_TOGGLE(21, 1, 0, false, Priority.ALARM, FrameLayout.HEADER),
+	CAM_TAKE_PIC(29, 1, 0, true, Priority.ALARM, FrameLayout.IMAGE),
+	CAM_SEND_PIC_RANGE(30, 6, 0, false, Priority.ALARM, FrameLayout.IMAGE_RANGE),
+	ACCESS_PIN_CHANGE(37, 1, 0, false, Priority.INTERACTIVE, FrameLayout.KEY_CODES),
+	SERVO_TOGGLE_CAM_SONARIR_MICROWAVE(58, 1, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	GATE_TOGGLE_OPEN_CLOSE(59, 1, 8, false, Priority.INTERACTIVE, FrameLayout.READINGS),
+	SERVO_CAM_TILT(100, 2, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_CAM_PAN(101, 2, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_SONAR_PIR_TILT(102, 2, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_SONAR_PIR_PAN(103, 2, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SERVO_MICROWAVE_PAN(104, 3, 0, false, Priority.INTERACTIVE, FrameLayout.HEADER),
+	SENSOR_GET_READINGS(105, 1, 8, true, Priority.INTERACTIVE, FrameLayout.READINGS),
+	SENSOR_GET_SETTINGS(106, 1, 37, true, Priority.BULK, FrameLayout.SETTINGS),
+	SENSOR_SEND_SETTINGS(107, 37, 0, true, Priority.BULK, FrameLayout.HEADER);
 
 	private final int key;
 	private final int txBytes;
 	private final int rxBytes;
+	private final boolean idempotent;
+	private final Priority priority;
+	private final FrameLayout rxLayout;
+	private static final Command[] LOOKUP;
+	static {
+		int max = 0;
+		for (final Command command : values()) {
+			max = Math.max(max, command.key);
+		}
+		LOOKUP = new Command[max + 1];
+		for (final Command command : values()) {
+			LOOKUP[command.key] = command;
+		}
+	}
 
 	/**
 	 * Constructor
@@ -37,12 +52,22 @@ public enum Command {
 	 *            the {@link #getRxBytes()}
 	 * @param rxDataBytes
 	 *            the {@link #getTxBytes()}
+	 * @param idempotent
+	 *            the {@link #isIdempotent()}
+	 * @param priority
+	 *            the {@link #getPriority()}
+	 * @param rxLayout
+	 *            the {@link #getRxLayout()}
 	 */
 	private Command(final int key, 
-			final int txDataBytes, final int rxDataBytes) {
+			final int txDataBytes, final int rxDataBytes, final boolean idempotent,
+			final Priority priority, final FrameLayout rxLayout) {
 		this.key = key;
 		this.txBytes = txDataBytes;
 		this.rxBytes = rxDataBytes;
+		this.idempotent = idempotent;
+		this.priority = priority;
+		this.rxLayout = rxLayout;
 	}
 
 	/**
@@ -62,12 +87,7 @@ public enum Command {
 	 * @return the command (null if no command ID matches the supplied ID
 	 */
 	public static Command lookup(final int id) {
-		for (final Command command : Command.values()) {
-			if (id == command.key) {
-				return command;
-			}
-		}
-		return null;
+		return id >= 0 && id < LOOKUP.length ? LOOKUP[id] : null;
 	}
 
 	/**
@@ -98,6 +118,23 @@ public enum Command {
 		return txBytes > 0;
 	}
 
+	/**
+	 * @return True when sending the {@link Command} more than once with the
+	 *         same data has the same effect as sending it once (identical
+	 *         requests to the same remote device can be merged)
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
+	/**
+	 * @return the default {@link Priority} used when transmitting the
+	 *         {@link Command}
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+
 	/**
 	 * @return the number of bytes that is expected for the {@link Command}
 	 *         (excluding the {@link #getKey()} byte)
@@ -113,6 +150,14 @@ public enum Command {
 		return rxBytes;
 	}
 
+	/**
+	 * @return the {@link FrameLayout} of the data received from remote devices
+	 *         for the {@link Command}
+	 */
+	public FrameLayout getRxLayout() {
+		return rxLayout;
+	}
+
 	/**
 	 * @return the {@link #getTxBytes()} excluding the {@link #getKey()} byte
 	 */
@@ -126,4 +171,18 @@ public enum Command {
 	public int getRxDataBytes() {
 		return rxBytes - 1;
 	}
+
+	/**
+	 * Transmission priority classes (in order of precedence)
+	 */
+	public enum Priority {
+		/** Commands a user is actively waiting on (gate, servos, readings) */
+		INTERACTIVE,
+		/** Alarm and surveillance related commands */
+		ALARM,
+		/** Large or multi-node transfers (settings synchronization, retries) */
+		BULK,
+		/** Unattended periodic work (polling, presence checks) */
+		BACKGROUND;
+	}
 }
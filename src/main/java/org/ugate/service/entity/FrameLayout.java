@@ -0,0 +1,187 @@
+package org.ugate.service.entity;
+
+import java.util.Arrays;
+
+/**
+ * Layout of the data received from remote devices for a {@linkplain Command}.
+ * Each layout is an ordered list of {@linkplain Field}s where the offset of a
+ * {@linkplain Field} is the sum of the widths of the {@linkplain Field}s that
+ * precede it. Data is {@linkplain #isValid(int[])} when it contains at least
+ * every {@linkplain Field} in the layout so that frames can be rejected before
+ * they are parsed.
+ */
+public final class FrameLayout {
+
+	/**
+	 * Command and failure count only
+	 */
+	public static final FrameLayout HEADER = new FrameLayout(Field.COMMAND, Field.FAILURES);
+	/**
+	 * Key codes entered on a remote device
+	 */
+	public static final FrameLayout KEY_CODES = new FrameLayout(Field.COMMAND,
+			Field.KEY_CODE_1, Field.KEY_CODE_2, Field.KEY_CODE_3);
+	/**
+	 * Chunk of image data
+	 */
+	public static final FrameLayout IMAGE = new FrameLayout(Field.COMMAND,
+			Field.FAILURES, Field.RESERVED_5, Field.IMAGE_DATA);
+	/**
+	 * Chunk of image data at an offset within the image
+	 */
+	public static final FrameLayout IMAGE_RANGE = new FrameLayout(Field.COMMAND,
+			Field.FAILURES, Field.IMAGE_OFFSET, Field.RESERVED_2, Field.IMAGE_DATA);
+	/**
+	 * Sensor readings
+	 */
+	public static final FrameLayout READINGS = new FrameLayout(Field.COMMAND,
+			Field.FAILURES, Field.SONAR_FEET, Field.SONAR_INCHES,
+			Field.MICROWAVE_CYCLE_COUNT, Field.PIR_INTENSITY, Field.LASER_FEET,
+			Field.LASER_INCHES, Field.GATE_STATE);
+	/**
+	 * Settings in {@linkplain RemoteNodeType#ordinal()} order of the
+	 * {@linkplain RemoteNodeType#canRemote()} types
+	 */
+	public static final FrameLayout SETTINGS = new FrameLayout(Field.COMMAND,
+			Field.FAILURES, Field.SETTINGS);
+	private final int[] offsets = new int[Field.values().length];
+	private final int length;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fields
+	 *            the {@linkplain Field}s in the order they are received
+	 */
+	private FrameLayout(final Field... fields) {
+		Arrays.fill(offsets, -1);
+		int offset = 0;
+		for (final Field field : fields) {
+			offsets[field.ordinal()] = offset;
+			offset += field.getWidth();
+		}
+		this.length = offset;
+	}
+
+	/**
+	 * @param data
+	 *            the received data
+	 * @return true when the data contains every {@linkplain Field} of the
+	 *         layout
+	 */
+	public boolean isValid(final int[] data) {
+		return data != null && data.length >= length;
+	}
+
+	/**
+	 * @return the minimum number of bytes of data that is expected
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @param field
+	 *            the {@linkplain Field}
+	 * @return true when the layout contains the {@linkplain Field}
+	 */
+	public boolean has(final Field field) {
+		return offsets[field.ordinal()] >= 0;
+	}
+
+	/**
+	 * @param field
+	 *            the {@linkplain Field}
+	 * @return the index of the {@linkplain Field} within the data
+	 */
+	public int getOffset(final Field field) {
+		final int offset = offsets[field.ordinal()];
+		if (offset < 0) {
+			throw new IllegalArgumentException(String.format("%1$s is not a field of %2$s", field, this));
+		}
+		return offset;
+	}
+
+	/**
+	 * Decodes an unsigned big-endian value from {@linkplain #isValid(int[])}
+	 * data
+	 *
+	 * @param data
+	 *            the received data
+	 * @param field
+	 *            the {@linkplain Field} to decode
+	 * @return the value
+	 */
+	public int get(final int[] data, final Field field) {
+		final int offset = getOffset(field);
+		int value = 0;
+		for (int i = offset; i < offset + field.getWidth(); i++) {
+			value = (value << 8) | (data[i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (final Field field : Field.values()) {
+			if (has(field)) {
+				sb.append(sb.length() == 0 ? '[' : ',').append(field)
+						.append('@').append(getOffset(field));
+			}
+		}
+		return sb.append("] (length = ").append(length).append(')').toString();
+	}
+
+	/**
+	 * Fields of received data
+	 */
+	public enum Field {
+		COMMAND(1),
+		FAILURES(1),
+		KEY_CODE_1(1),
+		KEY_CODE_2(1),
+		KEY_CODE_3(1),
+		SONAR_FEET(1),
+		SONAR_INCHES(1),
+		MICROWAVE_CYCLE_COUNT(1),
+		PIR_INTENSITY(1),
+		LASER_FEET(1),
+		LASER_INCHES(1),
+		GATE_STATE(1),
+		IMAGE_OFFSET(3),
+		RESERVED_2(2),
+		RESERVED_5(5),
+		/** Variable length trailing data (zero or more bytes) */
+		IMAGE_DATA(0),
+		/** One byte for each {@linkplain RemoteNodeType#canRemote()} type */
+		SETTINGS(-1) {
+			@Override
+			public int getWidth() {
+				return RemoteNodeType.canRemoteCount();
+			}
+		};
+
+		private final int width;
+
+		/**
+		 * Constructor
+		 *
+		 * @param width
+		 *            the {@linkplain #getWidth()}
+		 */
+		private Field(final int width) {
+			this.width = width;
+		}
+
+		/**
+		 * @return the number of bytes the field occupies
+		 */
+		public int getWidth() {
+			return width;
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package org.ugate.service.entity;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.validation.constraints.Max;
@@ -23,7 +26,11 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 			false),
 	DEVICE_SYNCHRONIZED("deviceSynchronized", null, false),
 	CAM_IMG_CAPTURE_RETRY_CNT("camImgCaptureRetryCnt", null, false),
+	CAM_IMG_CAPTURE_TIMEOUT_SEC("camImgCaptureTimeoutSec", null, false),
+	CAM_IMG_RANGE_UNSUPPORTED("camImgRangeUnsupported", null, false),
+	CAM_RESOLUTION_ADAPTIVE("camResolutionAdaptive", null, false),
 	REPORT_READINGS("reportReadings", null, false),
+	REPORT_READINGS_INTERVAL_SEC("reportReadingsIntervalSec", null, false),
 	WIRELESS_ADDRESS("address", null, false),
 	WIRELESS_WORKING_DIR_PATH("workingDir", null, false),
 	MAIL_ALERT_ON("mailAlertOn", Type.ALARM_NOTIFY_TOGGLE, false),
@@ -89,6 +96,7 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 
 	public static final int WIRELESS_ADDRESS_MAX_DIGITS = 4;
 	private static AtomicInteger canRemoteCount = new AtomicInteger(-1);
+	private static final RemoteNodeType[] REMOTES = remotes();
 
 	private final String key;
 	private final boolean canRemote;
@@ -141,6 +149,8 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 			rn.setCamAnglePan(90);
 			rn.setCamAngleTilt(90);
 			rn.setCamImgCaptureRetryCnt(3);
+			rn.setCamImgCaptureTimeoutSec(120);
+			rn.setReportReadingsIntervalSec(60);
 			rn.setCamLaserTripAnglePan(181);
 			rn.setCamLaserTripAnglePriority(1);
 			rn.setCamLaserTripAngleTilt(181);
@@ -167,6 +177,9 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 		rn.setId(0);
 		rn.setAddress(copyFrom != null ? copyFrom.getAddress() : "3333");
 		rn.setCreatedDate(new Date());
+		// new nodes have no readings that were saved without rollups
+		rn.setRollupStartDate(rn.getCreatedDate());
+		rn.setRollupBackfillDate(rn.getCreatedDate());
 		return rn;
 	}
 
@@ -179,6 +192,20 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 		return newDefaultRemoteNode(host, null);
 	}
 
+	/**
+	 * @return the {@linkplain RemoteNodeType}s that {@linkplain #canRemote()}
+	 *         in the order they exist in the {@linkplain RemoteNodeType}
+	 */
+	private static RemoteNodeType[] remotes() {
+		final List<RemoteNodeType> remotes = new ArrayList<>();
+		for (final RemoteNodeType rnt : values()) {
+			if (rnt.canRemote()) {
+				remotes.add(rnt);
+			}
+		}
+		return remotes.toArray(new RemoteNodeType[remotes.size()]);
+	}
+
 	/**
 	 * @return the number of elements that can remote
 	 */
@@ -241,24 +268,291 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 	public static boolean remoteEquivalent(final RemoteNode remoteNode1,
 			final RemoteNode remoteNode2) {
 		if (remoteNode1 != null && remoteNode2 != null) {
-			for (final RemoteNodeType rnt : RemoteNodeType.values()) {
-				try {
-					if (rnt.canRemote()
-							&& rnt.getValue(remoteNode1) != rnt
-									.getValue(remoteNode2)) {
-						return false;
-					}
-				} catch (final Throwable t) {
-					throw new IllegalArgumentException(String.format(
-							"Unable to extract %1$s from both %2$s and %3$s",
-							rnt, remoteNode1.getAddress(),
-							remoteNode2.getAddress()), t);
-				}
-			}
+			return Arrays.equals(pack(remoteNode1), pack(remoteNode2));
 		}
 		return true;
 	}
 
+	/**
+	 * Packs all of the {@linkplain #canRemote()} values of a
+	 * {@linkplain RemoteNode} in the order they exist in the
+	 * {@linkplain RemoteNodeType} (without reflection)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to pack
+	 * @return the packed values
+	 */
+	public static int[] pack(final RemoteNode remoteNode) {
+		final int[] data = new int[REMOTES.length];
+		for (int i = 0; i < REMOTES.length; i++) {
+			data[i] = REMOTES[i].getRemoteValue(remoteNode);
+		}
+		return data;
+	}
+
+	/**
+	 * Unpacks all of the {@linkplain #canRemote()} values into a
+	 * {@linkplain RemoteNode} (without reflection)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to unpack to
+	 * @param data
+	 *            the values in the order they exist in the
+	 *            {@linkplain RemoteNodeType} (see {@linkplain #pack(RemoteNode)})
+	 */
+	public static void unpack(final RemoteNode remoteNode, final int[] data) {
+		if (data.length != REMOTES.length) {
+			throw new IllegalArgumentException(String.format(
+					"%1$s should have %2$s values, found %3$s",
+					RemoteNodeType.class.getSimpleName(), REMOTES.length,
+					data.length));
+		}
+		for (int i = 0; i < REMOTES.length; i++) {
+			REMOTES[i].setRemoteValue(remoteNode, data[i]);
+		}
+	}
+
+	/**
+	 * Counts the number of {@linkplain #canRemote()} values that differ
+	 * between two packed value arrays (see {@linkplain #pack(RemoteNode)})
+	 * 
+	 * @param data1
+	 *            the packed values to evaluate
+	 * @param data2
+	 *            the packed values to evaluate
+	 * @return the number of values that differ (all values differ when either
+	 *         is null)
+	 */
+	public static int remoteChangeCount(final int[] data1, final int[] data2) {
+		if (data1 == null || data2 == null || data1.length != data2.length) {
+			return REMOTES.length;
+		}
+		int cnt = 0;
+		for (int i = 0; i < data1.length; i++) {
+			if (data1[i] != data2[i]) {
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	/**
+	 * Gets the {@linkplain #canRemote()} value directly from a
+	 * {@linkplain RemoteNode} (without reflection)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the value from
+	 * @return the value
+	 * @throws UnsupportedOperationException
+	 *             thrown when the {@linkplain RemoteNodeType} cannot
+	 *             {@linkplain #canRemote()}
+	 */
+	public int getRemoteValue(final RemoteNode remoteNode) {
+		switch (this) {
+		case ALARMS_ON:
+			return remoteNode.getAlarmsOn();
+		case UNIVERSAL_REMOTE_ACCESS_ON:
+			return remoteNode.getUniversalRemoteAccessOn();
+		case UNIVERSAL_REMOTE_ACCESS_CODE_1:
+			return remoteNode.getUniversalRemoteAccessCode1();
+		case UNIVERSAL_REMOTE_ACCESS_CODE_2:
+			return remoteNode.getUniversalRemoteAccessCode2();
+		case UNIVERSAL_REMOTE_ACCESS_CODE_3:
+			return remoteNode.getUniversalRemoteAccessCode3();
+		case GATE_ACCESS_ON:
+			return remoteNode.getGateAccessOn();
+		case SONAR_DISTANCE_THRES_FEET:
+			return remoteNode.getSonarDistanceThresFeet();
+		case SONAR_DISTANCE_THRES_INCHES:
+			return remoteNode.getSonarDistanceThresInches();
+		case SONAR_DELAY_BTWN_TRIPS:
+			return remoteNode.getSonarDelayBtwnTrips();
+		case PIR_DELAY_BTWN_TRIPS:
+			return remoteNode.getPirDelayBtwnTrips();
+		case SONAR_PIR_ANGLE_PAN:
+			return remoteNode.getSonarPirAnglePan();
+		case SONAR_PIR_ANGLE_TILT:
+			return remoteNode.getSonarPirAngleTilt();
+		case MW_SPEED_THRES_CYCLES_PER_SEC:
+			return remoteNode.getMwSpeedThresCyclesPerSec();
+		case MW_DELAY_BTWN_TRIPS:
+			return remoteNode.getMwDelayBtwnTrips();
+		case MW_ANGLE_PAN:
+			return remoteNode.getMwAnglePan();
+		case LASER_DISTANCE_THRES_FEET:
+			return remoteNode.getLaserDistanceThresFeet();
+		case LASER_DISTANCE_THRES_INCHES:
+			return remoteNode.getLaserDistanceThresInches();
+		case LASER_DELAY_BTWN_TRIPS:
+			return remoteNode.getLaserDelayBtwnTrips();
+		case LASER_ANGLE_PAN:
+			return remoteNode.getLaserAnglePan();
+		case LASER_ANGLE_TILT:
+			return remoteNode.getLaserAngleTilt();
+		case MULTI_ALARM_TRIP_STATE:
+			return remoteNode.getMultiAlarmTripState();
+		case CAM_RESOLUTION:
+			return remoteNode.getCamResolution();
+		case CAM_ANGLE_PAN:
+			return remoteNode.getCamAnglePan();
+		case CAM_ANGLE_TILT:
+			return remoteNode.getCamAngleTilt();
+		case CAM_SONAR_TRIP_ANGLE_PRIORITY:
+			return remoteNode.getCamSonarTripAnglePriority();
+		case CAM_SONAR_TRIP_ANGLE_PAN:
+			return remoteNode.getCamSonarTripAnglePan();
+		case CAM_SONAR_TRIP_ANGLE_TILT:
+			return remoteNode.getCamSonarTripAngleTilt();
+		case CAM_PIR_TRIP_ANGLE_PRIORITY:
+			return remoteNode.getCamPirTripAnglePriority();
+		case CAM_PIR_TRIP_ANGLE_PAN:
+			return remoteNode.getCamPirTripAnglePan();
+		case CAM_PIR_TRIP_ANGLE_TILT:
+			return remoteNode.getCamPirTripAngleTilt();
+		case CAM_MW_TRIP_ANGLE_PRIORITY:
+			return remoteNode.getCamMwTripAnglePriority();
+		case CAM_MW_TRIP_ANGLE_PAN:
+			return remoteNode.getCamMwTripAnglePan();
+		case CAM_MW_TRIP_ANGLE_TILT:
+			return remoteNode.getCamMwTripAngleTilt();
+		case CAM_LASER_TRIP_ANGLE_PRIORITY:
+			return remoteNode.getCamLaserTripAnglePriority();
+		case CAM_LASER_TRIP_ANGLE_PAN:
+			return remoteNode.getCamLaserTripAnglePan();
+		case CAM_LASER_TRIP_ANGLE_TILT:
+			return remoteNode.getCamLaserTripAngleTilt();
+		default:
+			throw new UnsupportedOperationException(this + " cannot remote");
+		}
+	}
+
+	/**
+	 * Sets the {@linkplain #canRemote()} value directly on a
+	 * {@linkplain RemoteNode} (without reflection)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to set the value on
+	 * @param value
+	 *            the value to set
+	 * @throws UnsupportedOperationException
+	 *             thrown when the {@linkplain RemoteNodeType} cannot
+	 *             {@linkplain #canRemote()}
+	 */
+	public void setRemoteValue(final RemoteNode remoteNode, final int value) {
+		switch (this) {
+		case ALARMS_ON:
+			remoteNode.setAlarmsOn(value);
+			break;
+		case UNIVERSAL_REMOTE_ACCESS_ON:
+			remoteNode.setUniversalRemoteAccessOn(value);
+			break;
+		case UNIVERSAL_REMOTE_ACCESS_CODE_1:
+			remoteNode.setUniversalRemoteAccessCode1(value);
+			break;
+		case UNIVERSAL_REMOTE_ACCESS_CODE_2:
+			remoteNode.setUniversalRemoteAccessCode2(value);
+			break;
+		case UNIVERSAL_REMOTE_ACCESS_CODE_3:
+			remoteNode.setUniversalRemoteAccessCode3(value);
+			break;
+		case GATE_ACCESS_ON:
+			remoteNode.setGateAccessOn(value);
+			break;
+		case SONAR_DISTANCE_THRES_FEET:
+			remoteNode.setSonarDistanceThresFeet(value);
+			break;
+		case SONAR_DISTANCE_THRES_INCHES:
+			remoteNode.setSonarDistanceThresInches(value);
+			break;
+		case SONAR_DELAY_BTWN_TRIPS:
+			remoteNode.setSonarDelayBtwnTrips(value);
+			break;
+		case PIR_DELAY_BTWN_TRIPS:
+			remoteNode.setPirDelayBtwnTrips(value);
+			break;
+		case SONAR_PIR_ANGLE_PAN:
+			remoteNode.setSonarPirAnglePan(value);
+			break;
+		case SONAR_PIR_ANGLE_TILT:
+			remoteNode.setSonarPirAngleTilt(value);
+			break;
+		case MW_SPEED_THRES_CYCLES_PER_SEC:
+			remoteNode.setMwSpeedThresCyclesPerSec(value);
+			break;
+		case MW_DELAY_BTWN_TRIPS:
+			remoteNode.setMwDelayBtwnTrips(value);
+			break;
+		case MW_ANGLE_PAN:
+			remoteNode.setMwAnglePan(value);
+			break;
+		case LASER_DISTANCE_THRES_FEET:
+			remoteNode.setLaserDistanceThresFeet(value);
+			break;
+		case LASER_DISTANCE_THRES_INCHES:
+			remoteNode.setLaserDistanceThresInches(value);
+			break;
+		case LASER_DELAY_BTWN_TRIPS:
+			remoteNode.setLaserDelayBtwnTrips(value);
+			break;
+		case LASER_ANGLE_PAN:
+			remoteNode.setLaserAnglePan(value);
+			break;
+		case LASER_ANGLE_TILT:
+			remoteNode.setLaserAngleTilt(value);
+			break;
+		case MULTI_ALARM_TRIP_STATE:
+			remoteNode.setMultiAlarmTripState(value);
+			break;
+		case CAM_RESOLUTION:
+			remoteNode.setCamResolution(value);
+			break;
+		case CAM_ANGLE_PAN:
+			remoteNode.setCamAnglePan(value);
+			break;
+		case CAM_ANGLE_TILT:
+			remoteNode.setCamAngleTilt(value);
+			break;
+		case CAM_SONAR_TRIP_ANGLE_PRIORITY:
+			remoteNode.setCamSonarTripAnglePriority(value);
+			break;
+		case CAM_SONAR_TRIP_ANGLE_PAN:
+			remoteNode.setCamSonarTripAnglePan(value);
+			break;
+		case CAM_SONAR_TRIP_ANGLE_TILT:
+			remoteNode.setCamSonarTripAngleTilt(value);
+			break;
+		case CAM_PIR_TRIP_ANGLE_PRIORITY:
+			remoteNode.setCamPirTripAnglePriority(value);
+			break;
+		case CAM_PIR_TRIP_ANGLE_PAN:
+			remoteNode.setCamPirTripAnglePan(value);
+			break;
+		case CAM_PIR_TRIP_ANGLE_TILT:
+			remoteNode.setCamPirTripAngleTilt(value);
+			break;
+		case CAM_MW_TRIP_ANGLE_PRIORITY:
+			remoteNode.setCamMwTripAnglePriority(value);
+			break;
+		case CAM_MW_TRIP_ANGLE_PAN:
+			remoteNode.setCamMwTripAnglePan(value);
+			break;
+		case CAM_MW_TRIP_ANGLE_TILT:
+			remoteNode.setCamMwTripAngleTilt(value);
+			break;
+		case CAM_LASER_TRIP_ANGLE_PRIORITY:
+			remoteNode.setCamLaserTripAnglePriority(value);
+			break;
+		case CAM_LASER_TRIP_ANGLE_PAN:
+			remoteNode.setCamLaserTripAnglePan(value);
+			break;
+		case CAM_LASER_TRIP_ANGLE_TILT:
+			remoteNode.setCamLaserTripAngleTilt(value);
+			break;
+		default:
+			throw new UnsupportedOperationException(this + " cannot remote");
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,73 @@
+package org.ugate.service.entity;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * Size of the time buckets of a {@linkplain RemoteNodeReadingRollup}. Buckets
+ * start on the local time zone boundary of the granularity. <b>Each
+ * {@linkplain #ordinal()} is stored as the
+ * {@linkplain RemoteNodeReadingRollup#getGranularity()}</b>.
+ */
+public enum RollupGranularity {
+	HOUR(Calendar.HOUR_OF_DAY),
+	DAY(Calendar.DAY_OF_MONTH),
+	MONTH(Calendar.MONTH);
+
+	private final int calendarField;
+
+	/**
+	 * Constructor
+	 *
+	 * @param calendarField
+	 *            the {@linkplain Calendar} field that is incremented between
+	 *            buckets
+	 */
+	private RollupGranularity(final int calendarField) {
+		this.calendarField = calendarField;
+	}
+
+	/**
+	 * @param date
+	 *            the {@linkplain Date} within the bucket
+	 * @return the start of the bucket the {@linkplain Date} falls into
+	 */
+	public Date start(final Date date) {
+		final Calendar cal = Calendar.getInstance();
+		cal.setTime(date);
+		if (this == MONTH) {
+			cal.set(Calendar.DAY_OF_MONTH, 1);
+		}
+		if (this != HOUR) {
+			cal.set(Calendar.HOUR_OF_DAY, 0);
+		}
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		return cal.getTime();
+	}
+
+	/**
+	 * @param date
+	 *            the {@linkplain Date} within the bucket
+	 * @return the start of the bucket that follows the bucket the
+	 *         {@linkplain Date} falls into
+	 */
+	public Date next(final Date date) {
+		final Calendar cal = Calendar.getInstance();
+		cal.setTime(start(date));
+		cal.add(calendarField, 1);
+		return cal.getTime();
+	}
+
+	/**
+	 * @param ordinal
+	 *            the {@linkplain #ordinal()}
+	 * @return the {@linkplain RollupGranularity}
+	 */
+	public static RollupGranularity valueOf(final int ordinal) {
+		return values()[ordinal];
+	}
+}
@@ -51,6 +51,18 @@ public class RemoteNode implements Model {
 	@NotNull
 	private Date createdDate;
 
+	// readings read before this date were saved before rollups were kept up
+	// to date as readings are saved (only updated by the rollup backfill)
+	@Basic
+	@Column(name = "ROLLUP_START_DATE", updatable = false)
+	private Date rollupStartDate;
+
+	// the rollups of readings read before this date have been backfilled
+	// (only updated by the rollup backfill)
+	@Basic
+	@Column(name = "ROLLUP_BACKFILL_DATE", updatable = false)
+	private Date rollupBackfillDate;
+
 	@Column(unique = true, nullable = false, length = 100)
 	@Size(min = 0, max = 4)
 	@NotNull
@@ -116,6 +128,11 @@ public class RemoteNode implements Model {
 	@Column(name = "CAM_RESOLUTION", nullable = false)
 	private int camResolution;
 
+	@Min(0)
+	@Max(1)
+	@Column(name = "CAM_RESOLUTION_ADAPTIVE", nullable = false)
+	private int camResolutionAdaptive;
+
 	@Min(0)
 	@Max(181)
 	@Column(name = "CAM_SONAR_TRIP_ANGLE_PAN", nullable = false)
@@ -136,6 +153,16 @@ public class RemoteNode implements Model {
 	@Column(name = "CAM_IMG_CAPTURE_RETRY_CNT", nullable = false)
 	private int camImgCaptureRetryCnt;
 
+	@Min(0)
+	@Max(600)
+	@Column(name = "CAM_IMG_CAPTURE_TIMEOUT_SEC", nullable = false)
+	private int camImgCaptureTimeoutSec;
+
+	@Min(0)
+	@Max(1)
+	@Column(name = "CAM_IMG_RANGE_UNSUPPORTED", nullable = false)
+	private int camImgRangeUnsupported;
+
 	@Min(0)
 	@Max(1)
 	@Column(name = "DEVICE_SOUNDS_ON", nullable = false)
@@ -259,6 +286,11 @@ public class RemoteNode implements Model {
 	@Column(name = "REPORT_READINGS", nullable = false)
 	private int reportReadings;
 
+	@Min(0)
+	@Max(86400)
+	@Column(name = "REPORT_READINGS_INTERVAL_SEC", nullable = false)
+	private int reportReadingsIntervalSec;
+
 	@Min(0)
 	@Max(1)
 	@Column(name = "DEVICE_AUTO_SYNCHRONIZE")
@@ -374,6 +406,22 @@ public class RemoteNode implements Model {
 		this.createdDate = createdDate;
 	}
 
+	public Date getRollupStartDate() {
+		return rollupStartDate;
+	}
+
+	public void setRollupStartDate(Date rollupStartDate) {
+		this.rollupStartDate = rollupStartDate;
+	}
+
+	public Date getRollupBackfillDate() {
+		return rollupBackfillDate;
+	}
+
+	public void setRollupBackfillDate(Date rollupBackfillDate) {
+		this.rollupBackfillDate = rollupBackfillDate;
+	}
+
 	public String getAddress() {
 		return this.address;
 	}
@@ -478,6 +526,14 @@ public class RemoteNode implements Model {
 		this.camResolution = camResolution;
 	}
 
+	public int getCamResolutionAdaptive() {
+		return camResolutionAdaptive;
+	}
+
+	public void setCamResolutionAdaptive(int camResolutionAdaptive) {
+		this.camResolutionAdaptive = camResolutionAdaptive;
+	}
+
 	public int getCamSonarTripAnglePan() {
 		return this.camSonarTripAnglePan;
 	}
@@ -510,6 +566,22 @@ public class RemoteNode implements Model {
 		this.camImgCaptureRetryCnt = camImgCaptureRetryCnt;
 	}
 
+	public int getCamImgCaptureTimeoutSec() {
+		return camImgCaptureTimeoutSec;
+	}
+
+	public void setCamImgCaptureTimeoutSec(int camImgCaptureTimeoutSec) {
+		this.camImgCaptureTimeoutSec = camImgCaptureTimeoutSec;
+	}
+
+	public int getCamImgRangeUnsupported() {
+		return camImgRangeUnsupported;
+	}
+
+	public void setCamImgRangeUnsupported(int camImgRangeUnsupported) {
+		this.camImgRangeUnsupported = camImgRangeUnsupported;
+	}
+
 	public int getDeviceSoundsOn() {
 		return this.deviceSoundsOn;
 	}
@@ -710,6 +782,14 @@ public class RemoteNode implements Model {
 		this.reportReadings = reportReadings;
 	}
 
+	public int getReportReadingsIntervalSec() {
+		return reportReadingsIntervalSec;
+	}
+
+	public void setReportReadingsIntervalSec(int reportReadingsIntervalSec) {
+		this.reportReadingsIntervalSec = reportReadingsIntervalSec;
+	}
+
 	public int getDeviceAutoSynchronize() {
 		return deviceAutoSynchronize;
 	}
@@ -26,6 +26,7 @@ import org.ugate.service.entity.Model;
 public class RemoteNodeReading implements Model {
 	private static final long serialVersionUID = 1L;
 
+	// IDs are reserved in blocks (the allocation size is overridden in META-INF/orm.xml)
 	@Id
 	@SequenceGenerator(name="REMOTE_NODE_RD_ID_GENERATOR", sequenceName="SQ_REMOTE_NODE_RD_ID", allocationSize=1)
 	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="REMOTE_NODE_RD_ID_GENERATOR")
@@ -0,0 +1,385 @@
+package org.ugate.service.entity.jpa;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.ugate.service.entity.Model;
+import org.ugate.service.entity.RollupGranularity;
+
+
+/**
+ * The persistent class for the REMOTE_NODE_READING_ROLLUP database table.
+ * Each row holds the trip counts and reading aggregates of the
+ * {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode} that were read
+ * within a {@linkplain RollupGranularity} time bucket.
+ */
+@Entity
+@Table(name = "REMOTE_NODE_READING_ROLLUP", uniqueConstraints = { @UniqueConstraint(columnNames = {
+		"REMOTE_NODE_ID", "GRANULARITY", "BUCKET_DATE" }) })
+public class RemoteNodeReadingRollup implements Model {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * {@linkplain RemoteNodeReading#getFromMultiState()} bit for laser trips
+	 */
+	public static final int LASER_TRIP = 1;
+	/**
+	 * {@linkplain RemoteNodeReading#getFromMultiState()} bit for microwave
+	 * trips
+	 */
+	public static final int MICROWAVE_TRIP = 2;
+	/**
+	 * {@linkplain RemoteNodeReading#getFromMultiState()} bit for PIR trips
+	 */
+	public static final int PIR_TRIP = 4;
+	/**
+	 * {@linkplain RemoteNodeReading#getFromMultiState()} bit for sonar trips
+	 */
+	public static final int SONAR_TRIP = 8;
+	/**
+	 * {@linkplain RemoteNodeReading#getFromMultiState()} bit for requested
+	 * readings
+	 */
+	public static final int READ_TRIP = 16;
+
+	@Id
+	@SequenceGenerator(name="REMOTE_NODE_RU_ID_GENERATOR", sequenceName="SQ_REMOTE_NODE_RU_ID", allocationSize=1)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="REMOTE_NODE_RU_ID_GENERATOR")
+	@Column(unique=true, nullable=false)
+	private int id;
+
+	@ManyToOne
+	@JoinColumn(name="REMOTE_NODE_ID", nullable=false)
+	private RemoteNode remoteNode;
+
+	@Column(name="GRANULARITY", nullable=false)
+	private int granularity;
+
+	@Column(name="BUCKET_DATE", nullable=false)
+	private Date bucketDate;
+
+	@Column(name="READING_COUNT", nullable=false)
+	private long readingCount;
+
+	@Column(name="LASER_TRIPS", nullable=false)
+	private long laserTrips;
+
+	@Column(name="MICROWAVE_TRIPS", nullable=false)
+	private long microwaveTrips;
+
+	@Column(name="PIR_TRIPS", nullable=false)
+	private long pirTrips;
+
+	@Column(name="SONAR_TRIPS", nullable=false)
+	private long sonarTrips;
+
+	@Column(name="READ_TRIPS", nullable=false)
+	private long readTrips;
+
+	@Column(name="SONAR_INCHES_SUM", nullable=false)
+	private long sonarInchesSum;
+
+	@Column(name="SONAR_INCHES_MIN", nullable=false)
+	private int sonarInchesMin = Integer.MAX_VALUE;
+
+	@Column(name="LASER_INCHES_SUM", nullable=false)
+	private long laserInchesSum;
+
+	@Column(name="LASER_INCHES_MIN", nullable=false)
+	private int laserInchesMin = Integer.MAX_VALUE;
+
+	@Column(name="MICROWAVE_CYCLE_COUNT_SUM", nullable=false)
+	private long microwaveCycleCountSum;
+
+	@Column(name="MICROWAVE_CYCLE_COUNT_MAX", nullable=false)
+	private int microwaveCycleCountMax;
+
+	@Column(name="PIR_INTENSITY_SUM", nullable=false)
+	private long pirIntensitySum;
+
+	@Column(name="PIR_INTENSITY_MAX", nullable=false)
+	private int pirIntensityMax;
+
+	@Column(name="SIGNAL_STRENGTH_SUM", nullable=false)
+	private long signalStrengthSum;
+
+	public RemoteNodeReadingRollup() {
+	}
+
+	/**
+	 * Constructor for an empty bucket
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param granularity
+	 *            the {@linkplain RollupGranularity}
+	 * @param date
+	 *            a {@linkplain Date} within the bucket
+	 */
+	public RemoteNodeReadingRollup(final RemoteNode remoteNode,
+			final RollupGranularity granularity, final Date date) {
+		this.remoteNode = remoteNode;
+		this.granularity = granularity.ordinal();
+		this.bucketDate = granularity.start(date);
+	}
+
+	/**
+	 * Adds a {@linkplain RemoteNodeReading} to the bucket
+	 *
+	 * @param rnr
+	 *            the {@linkplain RemoteNodeReading} to add
+	 */
+	public void add(final RemoteNodeReading rnr) {
+		readingCount++;
+		final int state = rnr.getFromMultiState();
+		laserTrips += (state & LASER_TRIP) != 0 ? 1 : 0;
+		microwaveTrips += (state & MICROWAVE_TRIP) != 0 ? 1 : 0;
+		pirTrips += (state & PIR_TRIP) != 0 ? 1 : 0;
+		sonarTrips += (state & SONAR_TRIP) != 0 ? 1 : 0;
+		readTrips += (state & READ_TRIP) != 0 ? 1 : 0;
+		final int sonarInches = rnr.getSonarFeet() * 12 + rnr.getSonarInches();
+		sonarInchesSum += sonarInches;
+		sonarInchesMin = Math.min(sonarInchesMin, sonarInches);
+		final int laserInches = rnr.getLaserFeet() * 12 + rnr.getLaserInches();
+		laserInchesSum += laserInches;
+		laserInchesMin = Math.min(laserInchesMin, laserInches);
+		microwaveCycleCountSum += rnr.getMicrowaveCycleCount();
+		microwaveCycleCountMax = Math.max(microwaveCycleCountMax, rnr.getMicrowaveCycleCount());
+		pirIntensitySum += rnr.getPirIntensity();
+		pirIntensityMax = Math.max(pirIntensityMax, rnr.getPirIntensity());
+		signalStrengthSum += rnr.getSignalStrength();
+	}
+
+	/**
+	 * Adds the counts and sums of another bucket (minimums and maximums are
+	 * merged)
+	 *
+	 * @param rollup
+	 *            the {@linkplain RemoteNodeReadingRollup} to add
+	 * @param sign
+	 *            1 to add the counts and sums, -1 to subtract them
+	 */
+	public void add(final RemoteNodeReadingRollup rollup, final int sign) {
+		readingCount += sign * rollup.readingCount;
+		laserTrips += sign * rollup.laserTrips;
+		microwaveTrips += sign * rollup.microwaveTrips;
+		pirTrips += sign * rollup.pirTrips;
+		sonarTrips += sign * rollup.sonarTrips;
+		readTrips += sign * rollup.readTrips;
+		sonarInchesSum += sign * rollup.sonarInchesSum;
+		laserInchesSum += sign * rollup.laserInchesSum;
+		microwaveCycleCountSum += sign * rollup.microwaveCycleCountSum;
+		pirIntensitySum += sign * rollup.pirIntensitySum;
+		signalStrengthSum += sign * rollup.signalStrengthSum;
+		if (sign > 0) {
+			sonarInchesMin = Math.min(sonarInchesMin, rollup.sonarInchesMin);
+			laserInchesMin = Math.min(laserInchesMin, rollup.laserInchesMin);
+			microwaveCycleCountMax = Math.max(microwaveCycleCountMax, rollup.microwaveCycleCountMax);
+			pirIntensityMax = Math.max(pirIntensityMax, rollup.pirIntensityMax);
+		}
+	}
+
+	@Override
+	public int getId() {
+		return this.id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public RemoteNode getRemoteNode() {
+		return remoteNode;
+	}
+
+	public void setRemoteNode(RemoteNode remoteNode) {
+		this.remoteNode = remoteNode;
+	}
+
+	public int getGranularity() {
+		return granularity;
+	}
+
+	public void setGranularity(int granularity) {
+		this.granularity = granularity;
+	}
+
+	public Date getBucketDate() {
+		return bucketDate;
+	}
+
+	public void setBucketDate(Date bucketDate) {
+		this.bucketDate = bucketDate;
+	}
+
+	public long getReadingCount() {
+		return readingCount;
+	}
+
+	public void setReadingCount(long readingCount) {
+		this.readingCount = readingCount;
+	}
+
+	public long getLaserTrips() {
+		return laserTrips;
+	}
+
+	public void setLaserTrips(long laserTrips) {
+		this.laserTrips = laserTrips;
+	}
+
+	public long getMicrowaveTrips() {
+		return microwaveTrips;
+	}
+
+	public void setMicrowaveTrips(long microwaveTrips) {
+		this.microwaveTrips = microwaveTrips;
+	}
+
+	public long getPirTrips() {
+		return pirTrips;
+	}
+
+	public void setPirTrips(long pirTrips) {
+		this.pirTrips = pirTrips;
+	}
+
+	public long getSonarTrips() {
+		return sonarTrips;
+	}
+
+	public void setSonarTrips(long sonarTrips) {
+		this.sonarTrips = sonarTrips;
+	}
+
+	public long getReadTrips() {
+		return readTrips;
+	}
+
+	public void setReadTrips(long readTrips) {
+		this.readTrips = readTrips;
+	}
+
+	public long getSonarInchesSum() {
+		return sonarInchesSum;
+	}
+
+	public void setSonarInchesSum(long sonarInchesSum) {
+		this.sonarInchesSum = sonarInchesSum;
+	}
+
+	public int getSonarInchesMin() {
+		return sonarInchesMin;
+	}
+
+	public void setSonarInchesMin(int sonarInchesMin) {
+		this.sonarInchesMin = sonarInchesMin;
+	}
+
+	public long getLaserInchesSum() {
+		return laserInchesSum;
+	}
+
+	public void setLaserInchesSum(long laserInchesSum) {
+		this.laserInchesSum = laserInchesSum;
+	}
+
+	public int getLaserInchesMin() {
+		return laserInchesMin;
+	}
+
+	public void setLaserInchesMin(int laserInchesMin) {
+		this.laserInchesMin = laserInchesMin;
+	}
+
+	public long getMicrowaveCycleCountSum() {
+		return microwaveCycleCountSum;
+	}
+
+	public void setMicrowaveCycleCountSum(long microwaveCycleCountSum) {
+		this.microwaveCycleCountSum = microwaveCycleCountSum;
+	}
+
+	public int getMicrowaveCycleCountMax() {
+		return microwaveCycleCountMax;
+	}
+
+	public void setMicrowaveCycleCountMax(int microwaveCycleCountMax) {
+		this.microwaveCycleCountMax = microwaveCycleCountMax;
+	}
+
+	public long getPirIntensitySum() {
+		return pirIntensitySum;
+	}
+
+	public void setPirIntensitySum(long pirIntensitySum) {
+		this.pirIntensitySum = pirIntensitySum;
+	}
+
+	public int getPirIntensityMax() {
+		return pirIntensityMax;
+	}
+
+	public void setPirIntensityMax(int pirIntensityMax) {
+		this.pirIntensityMax = pirIntensityMax;
+	}
+
+	public long getSignalStrengthSum() {
+		return signalStrengthSum;
+	}
+
+	public void setSignalStrengthSum(long signalStrengthSum) {
+		this.signalStrengthSum = signalStrengthSum;
+	}
+
+	/**
+	 * @return the total number of alarm trips of all sensors
+	 */
+	public long getAlarmTrips() {
+		return laserTrips + microwaveTrips + pirTrips + sonarTrips;
+	}
+
+	/**
+	 * @return the average sonar distance (in <code>inches</code>)
+	 */
+	public double getSonarInchesAvg() {
+		return readingCount > 0 ? (double) sonarInchesSum / readingCount : 0;
+	}
+
+	/**
+	 * @return the average laser distance (in <code>inches</code>)
+	 */
+	public double getLaserInchesAvg() {
+		return readingCount > 0 ? (double) laserInchesSum / readingCount : 0;
+	}
+
+	/**
+	 * @return the average microwave cycle count
+	 */
+	public double getMicrowaveCycleCountAvg() {
+		return readingCount > 0 ? (double) microwaveCycleCountSum / readingCount : 0;
+	}
+
+	/**
+	 * @return the average PIR intensity
+	 */
+	public double getPirIntensityAvg() {
+		return readingCount > 0 ? (double) pirIntensitySum / readingCount : 0;
+	}
+
+	/**
+	 * @return the average signal strength
+	 */
+	public double getSignalStrengthAvg() {
+		return readingCount > 0 ? (double) signalStrengthSum / readingCount : 0;
+	}
+}
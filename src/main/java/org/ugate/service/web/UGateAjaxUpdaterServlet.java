@@ -3,22 +3,35 @@ package org.ugate.service.web;
 import static org.ugate.service.web.WebServer.VAR_ACTION_CONNECT_NAME;
 import static org.ugate.service.web.WebServer.VAR_ACTION_NAME;
 import static org.ugate.service.web.WebServer.VAR_COMMAND_NAME;
+import static org.ugate.service.web.WebServer.VAR_END_NAME;
+import static org.ugate.service.web.WebServer.VAR_ROLLUP_NAME;
+import static org.ugate.service.web.WebServer.VAR_START_NAME;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.util.ajax.JSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ugate.resources.RS;
 import org.ugate.resources.RS.KEY;
+import org.ugate.service.NodePresence;
 import org.ugate.service.ServiceProvider;
+import org.ugate.service.WirelessService;
 import org.ugate.service.entity.Command;
 import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.RollupGranularity;
 import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@link javax.servlet.http.HttpServlet} for handling AJAX requests for
@@ -81,7 +94,13 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 						"Executing %1$s for %2$s at address %3$s)", cmd,
 						RemoteNode.class.getSimpleName(), rn.getAddress()));
 			}
-			ServiceProvider.IMPL.getWirelessService().sendData(rn, cmd, 0, true);
+			if (cmd == Command.SENSOR_SEND_SETTINGS) {
+				// progress is pushed to web socket members as it completes
+				ServiceProvider.IMPL.getWirelessService().sendSettingsAsync(0,
+						0, WirelessService.DEFAULT_SETTINGS_RETRIES, rn);
+			} else {
+				ServiceProvider.IMPL.getWirelessService().sendData(rn, cmd, 0, true);
+			}
 		}
 	}
 
@@ -122,6 +141,73 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 		return null;
 	}
 
+	/**
+	 * Writes the {@link RemoteNodeReadingRollup}s of a {@link RemoteNode} as a
+	 * JSON array. The {@link RollupGranularity} is taken from the
+	 * {@link WebServer#VAR_ROLLUP_NAME} parameter and the range from the
+	 * {@link WebServer#VAR_START_NAME} (inclusive) and
+	 * {@link WebServer#VAR_END_NAME} (exclusive) parameters in milliseconds
+	 * (defaults to the granularity's bucket that contains the current time
+	 * and the ones that preceded it in the past day/month/year).
+	 * 
+	 * @param request
+	 *            the {@link HttpServletRequest}
+	 * @param response
+	 *            the {@link HttpServletResponse}
+	 * @param rn
+	 *            the {@link RemoteNode} to get the rollups for
+	 * @throws IOException
+	 *             the {@link IOException}
+	 */
+	protected void writeRollups(final HttpServletRequest request,
+			final HttpServletResponse response, final RemoteNode rn)
+			throws IOException {
+		final RollupGranularity g = RollupGranularity.valueOf(request
+				.getParameter(VAR_ROLLUP_NAME).toUpperCase());
+		final String s = request.getParameter(VAR_START_NAME);
+		final String e = request.getParameter(VAR_END_NAME);
+		final Calendar end = Calendar.getInstance();
+		if (e != null && !e.isEmpty()) {
+			end.setTimeInMillis(Long.parseLong(e));
+		} else {
+			end.setTime(g.next(end.getTime()));
+		}
+		final Calendar start = Calendar.getInstance();
+		if (s != null && !s.isEmpty()) {
+			start.setTimeInMillis(Long.parseLong(s));
+		} else {
+			start.setTime(end.getTime());
+			start.add(g == RollupGranularity.HOUR ? Calendar.DAY_OF_MONTH
+					: g == RollupGranularity.DAY ? Calendar.MONTH
+							: Calendar.YEAR, -1);
+		}
+		final List<Map<String, Object>> rollups = new ArrayList<>();
+		for (final RemoteNodeReadingRollup r : ServiceProvider.IMPL
+				.getRemoteNodeService().findRollups(rn, g, start, end)) {
+			final Map<String, Object> m = new LinkedHashMap<>();
+			m.put("bucketDate", r.getBucketDate().getTime());
+			m.put("readingCount", r.getReadingCount());
+			m.put("laserTrips", r.getLaserTrips());
+			m.put("microwaveTrips", r.getMicrowaveTrips());
+			m.put("pirTrips", r.getPirTrips());
+			m.put("sonarTrips", r.getSonarTrips());
+			m.put("readTrips", r.getReadTrips());
+			m.put("sonarInchesAvg", r.getSonarInchesAvg());
+			m.put("sonarInchesMin", r.getSonarInchesMin());
+			m.put("laserInchesAvg", r.getLaserInchesAvg());
+			m.put("laserInchesMin", r.getLaserInchesMin());
+			m.put("microwaveCycleCountAvg", r.getMicrowaveCycleCountAvg());
+			m.put("microwaveCycleCountMax", r.getMicrowaveCycleCountMax());
+			m.put("pirIntensityAvg", r.getPirIntensityAvg());
+			m.put("pirIntensityMax", r.getPirIntensityMax());
+			m.put("signalStrengthAvg", r.getSignalStrengthAvg());
+			rollups.add(m);
+		}
+		response.setContentType("application/json");
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.getWriter().write(JSON.toString(rollups.toArray()));
+	}
+
 	/**
 	 * Does all the HTTP operations
 	 * 
@@ -163,9 +249,12 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 				executeCommands(request, response, rn);
 				final String p = request.getParameter(VAR_ACTION_NAME);
 				if (p != null && p.equals(VAR_ACTION_CONNECT_NAME)) {
-					final boolean connected = ServiceProvider.IMPL
-							.getWirelessService().testRemoteConnection(rn, 0);
+					// use the cached presence rather than waiting on the radio
+					final NodePresence presence = ServiceProvider.IMPL
+							.getWirelessService().getNodePresence();
+					final boolean connected = presence.isConnected(rn.getAddress());
 					if (!connected) {
+						presence.refresh(rn);
 						response.sendError(
 								HttpServletResponse.SC_CONFLICT,
 								RS.rbLabel(KEY.WIRELESS_NODE_CONNECT_FAILED,
@@ -231,7 +320,25 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 	protected void doGet(final HttpServletRequest request,
 			final HttpServletResponse response) throws ServletException,
 			IOException {
-		doAll(request, response);
+		final String rollup = request.getParameter(VAR_ROLLUP_NAME);
+		if (rollup == null || rollup.isEmpty()) {
+			doAll(request, response);
+			return;
+		}
+		try {
+			RemoteNode rn;
+			if (validate(request, response)
+					&& (rn = getRemoteNode(request, response)) != null) {
+				writeRollups(request, response, rn);
+			}
+		} catch (final IllegalArgumentException e) {
+			log.warn(String.format("Invalid %1$s request %2$s",
+					RemoteNodeReadingRollup.class.getSimpleName(), request), e);
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+		} catch (final Throwable t) {
+			log.error("GET Error: ", t);
+			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
 	}
 
 	/**
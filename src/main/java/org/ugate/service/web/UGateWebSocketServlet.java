@@ -1,6 +1,10 @@
 package org.ugate.service.web;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -19,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.ugate.UGateEvent;
 import org.ugate.UGateKeeper;
 import org.ugate.UGateListener;
+import org.ugate.service.SettingsSyncResult;
 import org.ugate.service.entity.RemoteNodeType;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
@@ -39,6 +44,10 @@ public class UGateWebSocketServlet extends WebSocketServlet {
 	private static final long serialVersionUID = 6841946295927734658L;
 	private static final Logger log = LoggerFactory
 			.getLogger(UGateWebSocketServlet.class);
+	/**
+	 * JSON key of the {@link SettingsSyncResult} progress pushed to clients
+	 */
+	public static final String JSON_SETTINGS_SYNC_KEY = "settingsSync";
 	final static Set<UGateWebSocket> members = new CopyOnWriteArraySet<>();
 	private JSON jsonRemoteNode;
 	private JSON jsonRemoteNodeReading;
@@ -95,12 +104,47 @@ public class UGateWebSocketServlet extends WebSocketServlet {
 										members.size(), jsonData));
 					}
 					notifyMembers(jsonData);
+				} else if (event.getNewValue() instanceof SettingsSyncResult
+						&& (event.getType() == UGateEvent.Type.WIRELESS_DATA_ALL_TX
+								|| event.getType() == UGateEvent.Type.WIRELESS_DATA_ALL_TX_PROGRESS
+								|| event.getType() == UGateEvent.Type.WIRELESS_DATA_ALL_TX_COMPLETE)) {
+					final String jsonData = toJSON((SettingsSyncResult) event
+							.getNewValue());
+					if (log.isInfoEnabled()) {
+						log.info(String
+								.format("Sending %1$s notification to %2$s web member(s): %3$s",
+										SettingsSyncResult.class.getSimpleName(),
+										members.size(), jsonData));
+					}
+					notifyMembers(jsonData);
 				}
 			}
 		};
 		UGateKeeper.DEFAULT.addListener(uiListener);
 	}
 
+	/**
+	 * Converts a {@link SettingsSyncResult} into a JSON object so that clients
+	 * can display the {@link RemoteNode}s that are still pending
+	 * 
+	 * @param result
+	 *            the {@link SettingsSyncResult}
+	 * @return the JSON data
+	 */
+	protected String toJSON(final SettingsSyncResult result) {
+		final List<String> pending = result.getPending();
+		final List<String> failed = result.getFailed();
+		final Map<String, Object> sync = new LinkedHashMap<>();
+		sync.put("size", result.size());
+		sync.put("done", result.isDone());
+		sync.put("allSuccess", result.isAllSuccess());
+		sync.put("elapsed", result.getElapsedMiliseconds());
+		sync.put("pending", pending.toArray(new String[pending.size()]));
+		sync.put("failed", failed.toArray(new String[failed.size()]));
+		return JSON.toString(Collections.singletonMap(JSON_SETTINGS_SYNC_KEY,
+				sync));
+	}
+
 	/**
 	 * Notifies all the {@link DefaultWebSocket} members that are currently
 	 * connected of the JSON change
@@ -64,6 +64,9 @@ public class WebServer {
 	public static final String VAR_COMMAND_NAME = "command";
 	public static final String VAR_ACTION_NAME = "action";
 	public static final String VAR_ACTION_CONNECT_NAME = "connect";
+	public static final String VAR_ROLLUP_NAME = "rollup";
+	public static final String VAR_START_NAME = "start";
+	public static final String VAR_END_NAME = "end";
 	public static final String[] PROTOCOL_INCLUDE = new String[] { "TLSv1",
 			"TLSv1.1", "TLSv1.2" };
 	private Server server;
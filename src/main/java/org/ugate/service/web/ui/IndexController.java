@@ -116,8 +116,8 @@ public class IndexController extends BaseController {
 		for (final RemoteNodeType.Type type : RemoteNodeType.Type.values()) {
 			vm.put(type, new ArrayList<ValueType<RemoteNode, Object>>());
 		}
-//		rn.setConnected(ServiceProvider.IMPL.getWirelessService()
-//				.testRemoteConnection(rn, 0));
+		rn.setConnected(ServiceProvider.IMPL.getWirelessService()
+				.getNodePresence().isConnected(rn.getAddress()));
 		for (final RemoteNodeType rnt : RemoteNodeType.values()) {
 			if (rnt.getType() != null) {
 				try {
@@ -0,0 +1,262 @@
+package org.ugate.wireless.data;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Growable byte buffer used to assemble image data as it is received. Each
+ * appended segment is narrowed to bytes and copied exactly once. Backing arrays
+ * are returned to a shared pool when {@linkplain #release()}d so that
+ * consecutive captures can reuse them.
+ */
+public class ImageBuffer {
+
+	/**
+	 * The default initial capacity (in bytes)
+	 */
+	public static final int DEFAULT_CAPACITY = 16 * 1024;
+	/**
+	 * The maximum number of backing arrays retained in the pool
+	 */
+	public static final int MAX_POOLED = 8;
+	private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+	private byte[] bytes;
+	private int length;
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_CAPACITY}
+	 */
+	public ImageBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            the initial capacity (in bytes)
+	 */
+	public ImageBuffer(final int capacity) {
+		this.bytes = acquire(capacity);
+	}
+
+	/**
+	 * Appends a segment of unsigned byte values
+	 *
+	 * @param data
+	 *            the data (each value is narrowed to a byte)
+	 * @param offset
+	 *            the offset within the data to start at
+	 * @param len
+	 *            the number of values to append
+	 * @return the position in the buffer where the segment was appended
+	 */
+	public int append(final int[] data, final int offset, final int len) {
+		if (bytes == null) {
+			throw new IllegalStateException("Buffer has been released");
+		}
+		ensureCapacity(length + len);
+		final int position = length;
+		for (int i = 0; i < len; i++) {
+			bytes[position + i] = (byte) data[offset + i];
+		}
+		length += len;
+		return position;
+	}
+
+	/**
+	 * Inserts a zero filled gap (shifting any subsequent bytes)
+	 *
+	 * @param position
+	 *            the position where the gap will be inserted
+	 * @param len
+	 *            the number of bytes in the gap
+	 */
+	public void insert(final int position, final int len) {
+		if (bytes == null) {
+			throw new IllegalStateException("Buffer has been released");
+		}
+		if (position < 0 || position > length) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Position %1$s is out of bounds for length %2$s", position,
+					length));
+		}
+		ensureCapacity(length + len);
+		System.arraycopy(bytes, position, bytes, position + len, length - position);
+		for (int i = position; i < position + len; i++) {
+			bytes[i] = 0;
+		}
+		length += len;
+	}
+
+	/**
+	 * Removes a range of bytes (shifting any subsequent bytes)
+	 *
+	 * @param position
+	 *            the position of the first byte to remove
+	 * @param len
+	 *            the number of bytes to remove
+	 */
+	public void remove(final int position, final int len) {
+		if (bytes == null) {
+			throw new IllegalStateException("Buffer has been released");
+		}
+		if (position < 0 || len < 0 || position + len > length) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Range %1$s-%2$s is out of bounds for length %3$s",
+					position, position + len, length));
+		}
+		System.arraycopy(bytes, position + len, bytes, position, length - position - len);
+		length -= len;
+	}
+
+	/**
+	 * Determines if previously appended bytes are the same as a segment of
+	 * unsigned byte values
+	 *
+	 * @param position
+	 *            the position in the buffer to start comparing at
+	 * @param data
+	 *            the data (each value is narrowed to a byte)
+	 * @param offset
+	 *            the offset within the data to start at
+	 * @param len
+	 *            the number of values to compare
+	 * @return true when the range is within the buffer and each byte matches
+	 */
+	public boolean matches(final int position, final int[] data,
+			final int offset, final int len) {
+		if (bytes == null) {
+			throw new IllegalStateException("Buffer has been released");
+		}
+		if (position < 0 || position + len > length) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (bytes[position + i] != (byte) data[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Overwrites previously appended (or inserted) bytes with a segment of
+	 * unsigned byte values
+	 *
+	 * @param position
+	 *            the position in the buffer to start writing at
+	 * @param data
+	 *            the data (each value is narrowed to a byte)
+	 * @param offset
+	 *            the offset within the data to start at
+	 * @param len
+	 *            the number of values to write
+	 */
+	public void set(final int position, final int[] data, final int offset,
+			final int len) {
+		if (bytes == null) {
+			throw new IllegalStateException("Buffer has been released");
+		}
+		if (position < 0 || position + len > length) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Range %1$s-%2$s is out of bounds for length %3$s",
+					position, position + len, length));
+		}
+		for (int i = 0; i < len; i++) {
+			bytes[position + i] = (byte) data[offset + i];
+		}
+	}
+
+	/**
+	 * Gets a byte at a given position
+	 *
+	 * @param position
+	 *            the position
+	 * @return the unsigned byte value
+	 */
+	public int get(final int position) {
+		if (position < 0 || position >= length) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Position %1$s is out of bounds for length %2$s", position,
+					length));
+		}
+		return bytes[position] & 0xFF;
+	}
+
+	/**
+	 * @return a read-only view of the current contents (no copy is made, so
+	 *         the view is only valid until the next append, clear or release)
+	 */
+	public ByteBuffer asReadOnlyBuffer() {
+		return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the number of bytes that have been appended
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Discards the current contents while retaining the backing array
+	 */
+	public void clear() {
+		length = 0;
+	}
+
+	/**
+	 * Discards the current contents and returns the backing array to the pool
+	 * (the buffer can no longer be used)
+	 */
+	public void release() {
+		final byte[] released = bytes;
+		bytes = null;
+		length = 0;
+		if (released != null && POOL_SIZE.incrementAndGet() <= MAX_POOLED) {
+			POOL.offer(released);
+		} else if (released != null) {
+			POOL_SIZE.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Grows the backing array (when needed) by doubling it's capacity
+	 *
+	 * @param capacity
+	 *            the minimum capacity needed
+	 */
+	private void ensureCapacity(final int capacity) {
+		if (capacity > bytes.length) {
+			int newCapacity = bytes.length << 1;
+			while (newCapacity < capacity) {
+				newCapacity <<= 1;
+			}
+			final byte[] grown = new byte[newCapacity];
+			System.arraycopy(bytes, 0, grown, 0, length);
+			bytes = grown;
+		}
+	}
+
+	/**
+	 * Gets a pooled backing array or creates a new one when none are available
+	 *
+	 * @param capacity
+	 *            the minimum capacity
+	 * @return the backing array
+	 */
+	private static byte[] acquire(final int capacity) {
+		final byte[] pooled = POOL.poll();
+		if (pooled != null) {
+			POOL_SIZE.decrementAndGet();
+			if (pooled.length >= capacity) {
+				return pooled;
+			}
+		}
+		return new byte[Math.max(1, capacity)];
+	}
+}
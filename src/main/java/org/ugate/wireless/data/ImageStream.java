@@ -0,0 +1,164 @@
+package org.ugate.wireless.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams image data to a temporary file as it is received so that the heap
+ * used by an in-flight image remains constant regardless of the image size.
+ * Once all the data has been received the temporary file is
+ * {@linkplain #commit()}ed by renaming it to it's target.
+ */
+public class ImageStream {
+
+	private static final Logger log = LoggerFactory.getLogger(ImageStream.class);
+	/**
+	 * The extension appended to the target path for the temporary file
+	 */
+	public static final String PART_EXT = ".part";
+	/**
+	 * The number of bytes staged in memory before they are written to the file
+	 */
+	public static final int STAGING_CAPACITY = 4 * 1024;
+	private final Path target;
+	private final Path partPath;
+	private final ByteBuffer staging = ByteBuffer.allocate(STAGING_CAPACITY);
+	private FileChannel channel;
+	private int length;
+
+	/**
+	 * Constructor
+	 *
+	 * @param target
+	 *            the {@linkplain Path} the image will be written to when
+	 *            {@linkplain #commit()}ed
+	 */
+	public ImageStream(final Path target) {
+		this.target = target;
+		this.partPath = Paths.get(target.toAbsolutePath().toString() + PART_EXT);
+	}
+
+	/**
+	 * Appends a segment of unsigned byte values
+	 *
+	 * @param data
+	 *            the data (each value is narrowed to a byte)
+	 * @param offset
+	 *            the offset within the data to start at
+	 * @param len
+	 *            the number of values to append
+	 * @return the position in the image where the segment was appended
+	 * @throws IOException
+	 *             thrown when the data cannot be written
+	 */
+	public int append(final int[] data, final int offset, final int len)
+			throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(partPath, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		final int position = length;
+		for (int i = offset; i < offset + len; i++) {
+			if (!staging.hasRemaining()) {
+				flush();
+			}
+			staging.put((byte) data[i]);
+		}
+		length += len;
+		return position;
+	}
+
+	/**
+	 * @return the number of bytes that have been appended
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Discards all the data that has been appended
+	 *
+	 * @throws IOException
+	 *             thrown when the temporary file cannot be truncated
+	 */
+	public void clear() throws IOException {
+		staging.clear();
+		length = 0;
+		if (channel != null) {
+			channel.truncate(0);
+		}
+	}
+
+	/**
+	 * Writes any remaining data and renames the temporary file to the target
+	 * {@linkplain Path}
+	 *
+	 * @return the target {@linkplain Path}
+	 * @throws IOException
+	 *             thrown when the data cannot be written or the file cannot be
+	 *             renamed
+	 */
+	public Path commit() throws IOException {
+		if (channel == null) {
+			throw new IOException("No image data has been written to " + partPath);
+		}
+		try {
+			flush();
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+		try {
+			Files.move(partPath, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(partPath, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return target;
+	}
+
+	/**
+	 * Closes and deletes the temporary file (when it still exists)
+	 */
+	public void discard() {
+		try {
+			if (channel != null && channel.isOpen()) {
+				channel.close();
+			}
+			Files.deleteIfExists(partPath);
+		} catch (final IOException e) {
+			log.warn(String.format("Unable to delete %1$s", partPath), e);
+		}
+	}
+
+	/**
+	 * Writes the staged bytes to the temporary file
+	 *
+	 * @throws IOException
+	 *             thrown when the data cannot be written
+	 */
+	private void flush() throws IOException {
+		staging.flip();
+		while (staging.hasRemaining()) {
+			channel.write(staging);
+		}
+		staging.clear();
+	}
+
+	/**
+	 * @return the temporary file {@linkplain Path}
+	 */
+	public Path getPartPath() {
+		return partPath;
+	}
+}
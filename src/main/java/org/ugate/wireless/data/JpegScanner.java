@@ -0,0 +1,221 @@
+package org.ugate.wireless.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental JPEG marker scanner that consumes image bytes as they are
+ * received. Marker segments are skipped using their declared lengths (so
+ * embedded thumbnails are never mistaken for the end of the image) and
+ * entropy-coded data is scanned for markers while ignoring stuffed
+ * <code>0xFF00</code> bytes and restart markers. The end of the image is
+ * reached only when the EOI marker is found outside of any segment. Streams
+ * that do not follow the JPEG structure are flagged as corrupt as soon as the
+ * offending byte is received.
+ */
+public class JpegScanner {
+
+	public static final int MARKER = 0xFF;
+	public static final int SOI = 0xD8;
+	public static final int EOI = 0xD9;
+	public static final int SOS = 0xDA;
+	public static final int TEM = 0x01;
+	public static final int RST0 = 0xD0;
+	public static final int RST7 = 0xD7;
+	private State state = State.SOI_MARKER;
+	private int marker;
+	private int remaining;
+	private long position;
+	private long errorPosition = -1;
+
+	/**
+	 * Consumes a range of unsigned byte values
+	 *
+	 * @param data
+	 *            the data
+	 * @param offset
+	 *            the offset within the data to start at
+	 * @param len
+	 *            the number of values to consume
+	 * @return true when the end of the image has been reached or the stream
+	 *         has been determined to be corrupt
+	 */
+	public boolean scan(final int[] data, final int offset, final int len) {
+		for (int i = offset; i < offset + len && !isDone(); i++) {
+			scan(data[i] & 0xFF);
+		}
+		return isDone();
+	}
+
+	/**
+	 * Consumes the remaining bytes of a {@linkplain ByteBuffer}
+	 *
+	 * @param bytes
+	 *            the {@linkplain ByteBuffer}
+	 * @return true when the end of the image has been reached or the stream
+	 *         has been determined to be corrupt
+	 */
+	public boolean scan(final ByteBuffer bytes) {
+		while (bytes.hasRemaining() && !isDone()) {
+			scan(bytes.get() & 0xFF);
+		}
+		return isDone();
+	}
+
+	/**
+	 * Consumes a single unsigned byte value
+	 *
+	 * @param b
+	 *            the byte value
+	 */
+	private void scan(final int b) {
+		switch (state) {
+		case SOI_MARKER:
+			state = b == MARKER ? State.SOI : State.CORRUPT;
+			break;
+		case SOI:
+			state = b == SOI ? State.MARKER : State.CORRUPT;
+			break;
+		case MARKER:
+			state = b == MARKER ? State.MARKER_CODE : State.CORRUPT;
+			break;
+		case MARKER_CODE:
+			marker(b);
+			break;
+		case LENGTH_HIGH:
+			remaining = b << 8;
+			state = State.LENGTH_LOW;
+			break;
+		case LENGTH_LOW:
+			remaining |= b;
+			// the length includes the two length bytes
+			remaining -= 2;
+			if (remaining < 0) {
+				state = State.CORRUPT;
+			} else if (remaining == 0) {
+				state = marker == SOS ? State.ENTROPY : State.MARKER;
+			} else {
+				state = State.SEGMENT;
+			}
+			break;
+		case SEGMENT:
+			if (--remaining == 0) {
+				state = marker == SOS ? State.ENTROPY : State.MARKER;
+			}
+			break;
+		case ENTROPY:
+			if (b == MARKER) {
+				state = State.ENTROPY_MARKER;
+			}
+			break;
+		case ENTROPY_MARKER:
+			if (b == 0x00 || (b >= RST0 && b <= RST7)) {
+				// stuffed byte or restart marker
+				state = State.ENTROPY;
+			} else if (b != MARKER) {
+				// a marker that ends the scan (EOI, or another segment in progressive images)
+				marker(b);
+			}
+			break;
+		default:
+			break;
+		}
+		if (state == State.CORRUPT && errorPosition < 0) {
+			errorPosition = position;
+		}
+		position++;
+	}
+
+	/**
+	 * Handles a marker code that follows a marker prefix
+	 *
+	 * @param b
+	 *            the marker code
+	 */
+	private void marker(final int b) {
+		if (b == MARKER) {
+			// fill byte
+			state = State.MARKER_CODE;
+		} else if (b == EOI) {
+			state = State.EOI;
+		} else if (b == TEM || (b >= RST0 && b <= RST7)) {
+			// stand-alone markers
+			state = State.MARKER;
+		} else if (b == SOI || b == 0x00) {
+			state = State.CORRUPT;
+		} else {
+			marker = b;
+			state = State.LENGTH_HIGH;
+		}
+	}
+
+	/**
+	 * Resets the scanner so that it can consume a new image
+	 */
+	public void reset() {
+		state = State.SOI_MARKER;
+		marker = 0;
+		remaining = 0;
+		position = 0;
+		errorPosition = -1;
+	}
+
+	/**
+	 * @return true when the end of the image has been reached or the stream
+	 *         has been determined to be corrupt
+	 */
+	public boolean isDone() {
+		return state == State.EOI || state == State.CORRUPT;
+	}
+
+	/**
+	 * @return true when the EOI marker has been reached
+	 */
+	public boolean isEoi() {
+		return state == State.EOI;
+	}
+
+	/**
+	 * @return true when the consumed bytes do not follow the JPEG structure
+	 */
+	public boolean isCorrupt() {
+		return state == State.CORRUPT;
+	}
+
+	/**
+	 * @return the position of the byte where corruption was detected (-1 when
+	 *         not {@linkplain #isCorrupt()})
+	 */
+	public long getErrorPosition() {
+		return errorPosition;
+	}
+
+	/**
+	 * @return the number of bytes that have been consumed
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Checks if data starts with the JPEG SOI marker
+	 *
+	 * @param data
+	 *            the data
+	 * @param offset
+	 *            the offset to check at
+	 * @return true when the SOI marker is present at the offset
+	 */
+	public static boolean isSoi(final int[] data, final int offset) {
+		return data != null && data.length > offset + 1
+				&& (data[offset] & 0xFF) == MARKER
+				&& (data[offset + 1] & 0xFF) == SOI;
+	}
+
+	/**
+	 * Scanner states
+	 */
+	private enum State {
+		SOI_MARKER, SOI, MARKER, MARKER_CODE, LENGTH_HIGH, LENGTH_LOW, SEGMENT,
+		ENTROPY, ENTROPY_MARKER, EOI, CORRUPT;
+	}
+}
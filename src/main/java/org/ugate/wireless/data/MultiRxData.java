@@ -1,6 +1,6 @@
 package org.ugate.wireless.data;
 
-import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
 
 import org.ugate.service.entity.jpa.RemoteNode;
 
@@ -13,6 +13,15 @@ import org.ugate.service.entity.jpa.RemoteNode;
  */
 public abstract class MultiRxData<T> extends RxRawData<T> {
 
+	/**
+	 * The default number of milliseconds allowed for all of the receive
+	 * transmissions to complete
+	 */
+	public static final int DEFAULT_TIMEOUT_MILISECONDS = 120000;
+	private final long startNanos = System.nanoTime();
+	private volatile long deadlineNanos = startNanos
+			+ TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILISECONDS);
+
 	/**
 	 * Constructor
 	 * 
@@ -31,10 +40,31 @@ public abstract class MultiRxData<T> extends RxRawData<T> {
 	}
 
 	/**
-	 * @return true when the transmission of data has timed out
+	 * Sets the number of milliseconds (from the time the data was created)
+	 * allowed for all of the receive transmissions to complete
+	 * 
+	 * @param timeoutMiliseconds
+	 *            the timeout in milliseconds (zero or less uses the
+	 *            {@linkplain #DEFAULT_TIMEOUT_MILISECONDS})
+	 */
+	public void setTimeout(final int timeoutMiliseconds) {
+		deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(
+				timeoutMiliseconds > 0 ? timeoutMiliseconds : DEFAULT_TIMEOUT_MILISECONDS);
+	}
+
+	/**
+	 * @return the number of milliseconds (from the time the data was created)
+	 *         allowed for all of the receive transmissions to complete
+	 */
+	public long getTimeout() {
+		return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - startNanos);
+	}
+
+	/**
+	 * @return true when the transmission of data has timed out (uses a
+	 *         monotonic clock so changes to the system time have no effect)
 	 */
 	public boolean hasTimedOut() {
-		return Calendar.getInstance().getTimeInMillis()
-				- getCreatedTime().getTimeInMillis() > 120000;
+		return System.nanoTime() - deadlineNanos > 0;
 	}
 }
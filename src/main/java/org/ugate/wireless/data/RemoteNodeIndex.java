@@ -0,0 +1,211 @@
+package org.ugate.wireless.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.UGateListener;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * In-memory index of {@linkplain RemoteNode}s by their 16-bit wireless
+ * {@linkplain RemoteNode#getAddress()} so that incoming wireless data can be
+ * resolved to it's sender without a database lookup. The index is kept
+ * current by listening for {@linkplain UGateEvent.Type#HOST_COMMITTED} and
+ * {@linkplain UGateEvent.Type#WIRELESS_REMOTE_NODE_COMMITTED}. Lookups never
+ * block and never miss an indexed {@linkplain RemoteNode} while the index is
+ * being updated: a re-warmed index is built aside and swapped in as a whole
+ * and an updated {@linkplain RemoteNode} replaces it's entry in place.
+ */
+public class RemoteNodeIndex implements UGateListener {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeIndex.class);
+	private volatile ConcurrentMap<Integer, RemoteNode> nodes = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile int hostId;
+
+	/**
+	 * Replaces the contents of the index
+	 *
+	 * @param hostId
+	 *            the {@linkplain Host#getId()} that the {@linkplain RemoteNode}
+	 *            (s) belong to
+	 * @param remoteNodes
+	 *            the {@linkplain RemoteNode}(s) to index
+	 */
+	public synchronized void warm(final int hostId, final Collection<RemoteNode> remoteNodes) {
+		final ConcurrentMap<Integer, RemoteNode> warmed = new ConcurrentHashMap<>();
+		if (remoteNodes != null) {
+			for (final RemoteNode rn : remoteNodes) {
+				put(warmed, rn);
+			}
+		}
+		this.hostId = hostId;
+		nodes = warmed;
+		log.info(String.format("Indexed %1$s remote node(s) for host ID %2$s", warmed.size(), hostId));
+	}
+
+	/**
+	 * Gets a {@linkplain RemoteNode} by it's 16-bit wireless address
+	 *
+	 * @param address
+	 *            the 16-bit address (most significant byte first)
+	 * @return the {@linkplain RemoteNode} (null when not indexed)
+	 */
+	public RemoteNode get(final int address) {
+		final RemoteNode rn = nodes.get(address);
+		if (rn == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return rn;
+	}
+
+	/**
+	 * Adds/replaces a {@linkplain RemoteNode} in the index
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to add
+	 */
+	public synchronized void put(final RemoteNode remoteNode) {
+		put(nodes, remoteNode);
+	}
+
+	/**
+	 * Adds/replaces a {@linkplain RemoteNode} in an index map
+	 *
+	 * @param map
+	 *            the index map
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to add
+	 */
+	private static void put(final Map<Integer, RemoteNode> map, final RemoteNode remoteNode) {
+		final int address = toAddress(remoteNode.getAddress());
+		if (address < 0) {
+			log.warn(String.format("Unable to index remote node ID %1$s with address %2$s",
+					remoteNode.getId(), remoteNode.getAddress()));
+			return;
+		}
+		map.put(address, remoteNode);
+		// the address may have been changed
+		for (final Iterator<Map.Entry<Integer, RemoteNode>> itr = map.entrySet().iterator(); itr.hasNext();) {
+			final Map.Entry<Integer, RemoteNode> e = itr.next();
+			if (e.getKey() != address && isSame(e.getValue(), remoteNode)) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes a {@linkplain RemoteNode} from the index
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to remove
+	 */
+	public synchronized void remove(final RemoteNode remoteNode) {
+		for (final Iterator<RemoteNode> itr = nodes.values().iterator(); itr.hasNext();) {
+			if (isSame(itr.next(), remoteNode)) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param rn1
+	 *            the first {@linkplain RemoteNode}
+	 * @param rn2
+	 *            the second {@linkplain RemoteNode}
+	 * @return true when both are the same {@linkplain RemoteNode}
+	 */
+	private static boolean isSame(final RemoteNode rn1, final RemoteNode rn2) {
+		return rn1 == rn2 || (rn1.getId() > 0 && rn1.getId() == rn2.getId());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handle(final UGateEvent<?, ?> event) {
+		if (event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED) {
+			final RemoteNode rn = (RemoteNode) event.getSource();
+			if (event.getNewValue() == null) {
+				remove(rn);
+			} else if (rn.getHost() == null || rn.getHost().getId() == hostId) {
+				put(rn);
+			}
+		} else if (event.getType() == UGateEvent.Type.HOST_COMMITTED) {
+			final Host host = (Host) event.getSource();
+			if (host.getId() == hostId && event.getNewValue() == null) {
+				warm(hostId, null);
+			} else if (host.getId() == hostId && host.getRemoteNodes() != null) {
+				warm(hostId, host.getRemoteNodes());
+			}
+		}
+	}
+
+	/**
+	 * Converts a {@linkplain RemoteNode#getAddress()} to a 16-bit address
+	 *
+	 * @param address
+	 *            the hexadecimal address
+	 * @return the 16-bit address (or -1 when invalid)
+	 */
+	public static int toAddress(final String address) {
+		if (address == null || address.isEmpty() || address.length() > 4) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(address, 16);
+		} catch (final NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return an unmodifiable view of the indexed {@linkplain RemoteNode}s
+	 */
+	public Collection<RemoteNode> getRemoteNodes() {
+		return Collections.unmodifiableCollection(nodes.values());
+	}
+
+	/**
+	 * @return the number of indexed {@linkplain RemoteNode}s
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * @return the number of lookups that resolved a {@linkplain RemoteNode}
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not resolve a
+	 *         {@linkplain RemoteNode}
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("HOST ID: %1$s, SIZE: %2$s, HITS: %3$s, MISSES: %4$s",
+				hostId, size(), getHitCount(), getMissCount());
+	}
+}
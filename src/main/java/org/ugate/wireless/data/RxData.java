@@ -11,7 +11,8 @@ import org.ugate.service.entity.jpa.RemoteNode;
 public abstract class RxData {
 
 	private final RemoteNode remoteNode;
-	private final Calendar createdTime;
+	private final long createdMillis;
+	private Calendar createdTime;
 	private final int signalStrength;
 	private Status status = Status.NORMAL;
 
@@ -30,7 +31,7 @@ public abstract class RxData {
 		this.remoteNode = remoteNode;
 		setStatus(status);
 		this.signalStrength = signalStrength;
-		this.createdTime = Calendar.getInstance();
+		this.createdMillis = System.currentTimeMillis();
 	}
 
 	/**
@@ -76,12 +77,23 @@ public abstract class RxData {
 	}
 
 	/**
-	 * @return date/time the data was created
+	 * @return date/time the data was created (created on first request)
 	 */
-	public Calendar getCreatedTime() {
+	public synchronized Calendar getCreatedTime() {
+		if (createdTime == null) {
+			createdTime = Calendar.getInstance();
+			createdTime.setTimeInMillis(createdMillis);
+		}
 		return createdTime;
 	}
 
+	/**
+	 * @return the number of milliseconds since the epoch the data was created
+	 */
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
 	/**
 	 * @return date/time the data was created in a human readable format
 	 */
@@ -0,0 +1,341 @@
+package org.ugate.wireless.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded dispatch stage for received wireless data. Dispatches are
+ * distributed across a fixed number of lanes using the key they are submitted
+ * with (typically the {@linkplain org.ugate.service.entity.jpa.RemoteNode}
+ * address). Each lane is drained by a single worker so dispatches for the same
+ * key are always processed in the order they arrive while dispatches for
+ * different keys are processed concurrently.
+ */
+public class RxDispatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(RxDispatcher.class);
+	/**
+	 * The default number of lanes (worker threads)
+	 */
+	public static final int DEFAULT_LANES = 2;
+	/**
+	 * The default capacity of each lane queue
+	 */
+	public static final int DEFAULT_LANE_CAPACITY = 512;
+	/**
+	 * System property for the {@linkplain Overflow} used when a lane is full
+	 */
+	public static final String PROPERTY_OVERFLOW = "ugate.wireless.rx.overflow";
+	/**
+	 * The default {@linkplain Overflow}. The radio thread that submits
+	 * dispatches also delivers the responses that lane handlers may be
+	 * waiting on (i.e. transmit status), so the default never blocks it.
+	 */
+	public static final Overflow DEFAULT_OVERFLOW = Overflow.DROP_OLDEST;
+	private final Lane[] lanes;
+	private final Overflow overflow;
+	private final AtomicLong dispatched = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong latencyTotalNanos = new AtomicLong();
+	private final AtomicLong latencyMaxNanos = new AtomicLong();
+	private volatile boolean shutdown;
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_LANES},
+	 * {@linkplain #DEFAULT_LANE_CAPACITY} and {@linkplain #DEFAULT_OVERFLOW}
+	 */
+	public RxDispatcher() {
+		this(DEFAULT_LANES, DEFAULT_LANE_CAPACITY, DEFAULT_OVERFLOW);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param laneCount
+	 *            the number of lanes (each lane is drained by a single worker)
+	 * @param laneCapacity
+	 *            the maximum number of pending dispatches per lane
+	 * @param overflow
+	 *            the {@linkplain Overflow} used when a lane is full
+	 */
+	public RxDispatcher(final int laneCount, final int laneCapacity,
+			final Overflow overflow) {
+		if (laneCount <= 0 || laneCapacity <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid lane count %1$s and/or lane capacity %2$s",
+					laneCount, laneCapacity));
+		}
+		this.overflow = overflow == null ? DEFAULT_OVERFLOW : overflow;
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			lanes[i] = new Lane(i, laneCapacity);
+			lanes[i].start();
+		}
+	}
+
+	/**
+	 * @return the {@linkplain Overflow} from the {@linkplain #PROPERTY_OVERFLOW}
+	 *         system property ({@linkplain #DEFAULT_OVERFLOW} when the
+	 *         property is not set or is invalid)
+	 */
+	public static Overflow overflowFromSystemProperties() {
+		final String value = System.getProperty(PROPERTY_OVERFLOW);
+		if (value != null && !value.trim().isEmpty()) {
+			try {
+				return Overflow.valueOf(value.trim().toUpperCase());
+			} catch (final IllegalArgumentException e) {
+				log.warn(String.format("Invalid %1$s: %2$s (using %3$s)", PROPERTY_OVERFLOW, value,
+						DEFAULT_OVERFLOW));
+			}
+		}
+		return DEFAULT_OVERFLOW;
+	}
+
+	/**
+	 * Submits a dispatch for processing
+	 *
+	 * @param key
+	 *            the key that determines the order of processing (dispatches
+	 *            with equal keys will be processed in submission order)
+	 * @param task
+	 *            the task to run
+	 * @return true when the dispatch was accepted (or ran on the calling
+	 *         thread), false when it was dropped
+	 */
+	public boolean dispatch(final Object key, final Runnable task) {
+		if (shutdown) {
+			dropped.incrementAndGet();
+			log.warn(String.format("Dispatcher shutdown... Dropping dispatch for %1$s", key));
+			return false;
+		}
+		final Lane lane = lanes[(key == null ? 0 : (key.hashCode() & 0x7fffffff)) % lanes.length];
+		final Dispatch d = new Dispatch(task);
+		if (lane.queue.offer(d)) {
+			return true;
+		}
+		switch (overflow) {
+		case BLOCK:
+			try {
+				lane.queue.put(d);
+				return true;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		case DROP_OLDEST:
+			while (!lane.queue.offer(d)) {
+				if (lane.queue.poll() != null) {
+					dropped.incrementAndGet();
+				}
+			}
+			return true;
+		case CALLER_RUNS:
+			// ordering is sacrificed for the key in favor of not losing the dispatch
+			run(d);
+			return true;
+		default:
+			break;
+		}
+		dropped.incrementAndGet();
+		if (log.isWarnEnabled()) {
+			log.warn(String.format("Lane %1$s is full (%2$s pending)... Dropping dispatch for %3$s",
+					lane.index, lane.queue.size(), key));
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a {@linkplain Dispatch} and records it's latency
+	 *
+	 * @param d
+	 *            the {@linkplain Dispatch}
+	 */
+	private void run(final Dispatch d) {
+		final long latency = System.nanoTime() - d.queuedNanos;
+		latencyTotalNanos.addAndGet(latency);
+		long max;
+		while (latency > (max = latencyMaxNanos.get()) && !latencyMaxNanos.compareAndSet(max, latency)) {
+			// retry
+		}
+		dispatched.incrementAndGet();
+		try {
+			d.task.run();
+		} catch (final Throwable t) {
+			log.error("Error while processing dispatch", t);
+		}
+	}
+
+	/**
+	 * Stops all lane workers. Pending dispatches are processed for up to the
+	 * specified time before the workers are interrupted.
+	 *
+	 * @param timeout
+	 *            the maximum number of milliseconds to wait for pending
+	 *            dispatches
+	 */
+	public void shutdown(final long timeout) {
+		shutdown = true;
+		final long end = System.currentTimeMillis() + timeout;
+		for (final Lane lane : lanes) {
+			lane.running = false;
+			try {
+				lane.join(Math.max(1, end - System.currentTimeMillis()));
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (lane.isAlive()) {
+				lane.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return true when the lane workers have been {@linkplain #shutdown(long)}
+	 */
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * @return the total number of dispatches waiting to be processed
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (final Lane lane : lanes) {
+			depth += lane.queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the largest number of dispatches waiting in any one lane
+	 */
+	public int getMaxLaneDepth() {
+		int depth = 0;
+		for (final Lane lane : lanes) {
+			depth = Math.max(depth, lane.queue.size());
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the total number of dispatches that have been processed
+	 */
+	public long getDispatchedCount() {
+		return dispatched.get();
+	}
+
+	/**
+	 * @return the total number of dispatches that have been dropped due to
+	 *         {@linkplain Overflow}
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the average number of nanoseconds a dispatch waits between
+	 *         submission and processing
+	 */
+	public long getAverageLatencyNanos() {
+		final long count = dispatched.get();
+		return count == 0 ? 0 : latencyTotalNanos.get() / count;
+	}
+
+	/**
+	 * @return the maximum number of nanoseconds a dispatch has waited between
+	 *         submission and processing
+	 */
+	public long getMaxLatencyNanos() {
+		return latencyMaxNanos.get();
+	}
+
+	/**
+	 * @return the {@linkplain Overflow} in use
+	 */
+	public Overflow getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"LANES: %1$s, OVERFLOW: %2$s, DEPTH: %3$s, DISPATCHED: %4$s, DROPPED: %5$s, AVG LATENCY: %6$sus, MAX LATENCY: %7$sus",
+				lanes.length, overflow, getQueueDepth(), getDispatchedCount(),
+				getDroppedCount(),
+				TimeUnit.NANOSECONDS.toMicros(getAverageLatencyNanos()),
+				TimeUnit.NANOSECONDS.toMicros(getMaxLatencyNanos()));
+	}
+
+	/**
+	 * Behavior used when a lane has reached it's capacity
+	 */
+	public enum Overflow {
+		/**
+		 * Blocks the submitting (radio) thread until space is available (no
+		 * other frames are received while blocked, so lane handlers must not
+		 * wait on responses such as a transmit status)
+		 */
+		BLOCK,
+		/** Drops the dispatch being submitted */
+		DROP_NEWEST,
+		/** Drops the oldest pending dispatch in the lane */
+		DROP_OLDEST,
+		/**
+		 * Processes the dispatch on the submitting thread (order for the key
+		 * is not guaranteed while the lane is full)
+		 */
+		CALLER_RUNS;
+	}
+
+	/**
+	 * Pending task along with the time it was queued
+	 */
+	private static class Dispatch {
+		private final Runnable task;
+		private final long queuedNanos;
+
+		private Dispatch(final Runnable task) {
+			this.task = task;
+			this.queuedNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Single worker that drains a bounded queue
+	 */
+	private class Lane extends Thread {
+		private final int index;
+		private final BlockingQueue<Dispatch> queue;
+		private volatile boolean running = true;
+
+		private Lane(final int index, final int capacity) {
+			super(RxDispatcher.class.getSimpleName() + "-lane-" + index);
+			this.index = index;
+			this.queue = new ArrayBlockingQueue<>(capacity);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (running || !queue.isEmpty()) {
+				try {
+					final Dispatch d = queue.poll(250, TimeUnit.MILLISECONDS);
+					if (d != null) {
+						RxDispatcher.this.run(d);
+					}
+				} catch (final InterruptedException e) {
+					break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package org.ugate.wireless.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rapplogic.xbee.api.XBeeResponse;
+
+/**
+ * Records the {@linkplain XBeeResponse#getRawPacketBytes()} of received
+ * frames to a compact binary log so that traffic can be replayed using
+ * {@linkplain RxReplay}. Frames are appended to a buffer that is written to
+ * the file channel when full (or when {@linkplain #flush()}ed) so that
+ * recording adds as little overhead as possible to the receiving thread.
+ * <p>
+ * The log starts with a {@linkplain #MAGIC} number, a {@linkplain #VERSION}
+ * and the wall clock time the recording started. Each frame follows as the
+ * number of nanoseconds since the recording started (monotonic), the
+ * unsigned length of the raw bytes and the raw bytes.
+ * </p>
+ */
+public class RxRecorder implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(RxRecorder.class);
+	/**
+	 * System property for the file that received frames are recorded to (each
+	 * session is recorded to its own {@linkplain #newSessionPath(Path, Date)})
+	 */
+	public static final String PROPERTY_FILE = "ugate.wireless.record";
+	/**
+	 * The magic number at the start of each log ("UGRX")
+	 */
+	public static final int MAGIC = 0x55475258;
+	/**
+	 * The log format version
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The number of bytes in the log header
+	 */
+	public static final int HEADER_LENGTH = 16;
+	/**
+	 * The number of bytes that precede the raw bytes of each frame
+	 */
+	public static final int FRAME_HEADER_LENGTH = 10;
+	private static final int BUFFER_CAPACITY = 64 * 1024;
+	private final Path path;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+	private final long startNanos;
+	private final AtomicLong frameCount = new AtomicLong();
+	private final AtomicLong skippedCount = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor (any existing log is replaced)
+	 *
+	 * @param path
+	 *            the {@linkplain Path} to the log
+	 * @throws IOException
+	 *             thrown when the log cannot be created
+	 */
+	public RxRecorder(final Path path) throws IOException {
+		this.path = path;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.startNanos = System.nanoTime();
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+		log.info(String.format("Recording received frames to %1$s", path));
+	}
+
+	/**
+	 * Resolves a log for a single recording session by appending the session
+	 * start time to the file name (before any extension) so that previous
+	 * sessions are never replaced. A sequence number is also appended when a
+	 * log for the same second already exists.
+	 *
+	 * @param path
+	 *            the {@linkplain Path} of the {@linkplain #PROPERTY_FILE}
+	 * @param start
+	 *            the session start time
+	 * @return the {@linkplain Path} to the session log
+	 */
+	public static Path newSessionPath(final Path path, final Date start) {
+		final String name = path.getFileName().toString();
+		final int dot = name.lastIndexOf('.');
+		final String base = (dot > 0 ? name.substring(0, dot) : name) + '-'
+				+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(start);
+		final String ext = dot > 0 ? name.substring(dot) : "";
+		Path session = path.resolveSibling(base + ext);
+		for (int i = 1; Files.exists(session); i++) {
+			session = path.resolveSibling(base + '-' + i + ext);
+		}
+		return session;
+	}
+
+	/**
+	 * Records a received frame
+	 *
+	 * @param response
+	 *            the {@linkplain XBeeResponse}
+	 * @return true when the frame was recorded, false when the frame has no
+	 *         {@linkplain XBeeResponse#getRawPacketBytes()} or the recorder
+	 *         is closed/failed
+	 */
+	public boolean record(final XBeeResponse response) {
+		final int[] raw = response.getRawPacketBytes();
+		if (raw == null || raw.length > 0xFFFF || closed) {
+			skippedCount.incrementAndGet();
+			return false;
+		}
+		final long nanos = System.nanoTime() - startNanos;
+		synchronized (buffer) {
+			if (closed) {
+				// closed while waiting for the lock
+				skippedCount.incrementAndGet();
+				return false;
+			}
+			try {
+				if (buffer.remaining() < FRAME_HEADER_LENGTH + raw.length) {
+					write();
+				}
+				buffer.putLong(nanos).putShort((short) raw.length);
+				for (final int b : raw) {
+					buffer.put((byte) b);
+				}
+			} catch (final IOException e) {
+				log.error(String.format("Unable to record to %1$s... Recording stopped", path), e);
+				closed = true;
+				return false;
+			}
+		}
+		frameCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Writes any buffered frames to the log
+	 *
+	 * @throws IOException
+	 *             thrown when the frames cannot be written
+	 */
+	public void flush() throws IOException {
+		synchronized (buffer) {
+			if (channel.isOpen()) {
+				write();
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffer to the channel (must hold the buffer lock)
+	 *
+	 * @throws IOException
+	 *             thrown when the buffer cannot be written
+	 */
+	private void write() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (buffer) {
+			closed = true;
+			if (channel.isOpen()) {
+				try {
+					write();
+				} finally {
+					channel.close();
+				}
+				log.info(String.format("Recorded %1$s frame(s) to %2$s", frameCount.get(), path));
+			}
+		}
+	}
+
+	/**
+	 * @return the {@linkplain Path} to the log
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the number of frames recorded
+	 */
+	public long getFrameCount() {
+		return frameCount.get();
+	}
+
+	/**
+	 * @return the number of frames that could not be recorded
+	 */
+	public long getSkippedCount() {
+		return skippedCount.get();
+	}
+}
@@ -0,0 +1,334 @@
+package org.ugate.wireless.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.PacketParser;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+
+/**
+ * Replays a log captured by a {@linkplain RxRecorder} into a
+ * {@linkplain UGateXBeePacketListener} at the recorded speed, a multiple of
+ * the recorded speed or as fast as possible. A {@linkplain Report} of the
+ * throughput, per-stage latency and allocation rate is produced at the end of
+ * each replay so that builds can be compared using the same traffic.
+ * <p>
+ * Usage: <code>RxReplay &lt;log file&gt; [speed]</code> where a speed of
+ * <code>1</code> replays at the recorded speed, <code>N</code> replays N
+ * times faster and <code>0</code> (the default) replays as fast as possible.
+ * A {@linkplain RemoteNode} is created for every address found in the log.
+ * </p>
+ */
+public class RxReplay {
+
+	private static final Logger log = LoggerFactory.getLogger(RxReplay.class);
+	private final Path path;
+	private final UGateXBeePacketListener listener;
+
+	/**
+	 * Constructor
+	 *
+	 * @param path
+	 *            the {@linkplain Path} to the {@linkplain RxRecorder} log
+	 * @param listener
+	 *            the {@linkplain UGateXBeePacketListener} to replay into
+	 */
+	public RxReplay(final Path path, final UGateXBeePacketListener listener) {
+		this.path = path;
+		this.listener = listener;
+	}
+
+	/**
+	 * Replays the log
+	 *
+	 * @param speed
+	 *            the multiple of the recorded speed to replay at (zero or
+	 *            less to replay as fast as possible)
+	 * @return the {@linkplain Report}
+	 * @throws IOException
+	 *             thrown when the log cannot be read
+	 */
+	public Report replay(final double speed) throws IOException {
+		final Report report = new Report();
+		final ByteBuffer buf = map(path);
+		final long allocStart = allocatedBytes();
+		final long dispatchedStart = listener.getDispatcher().getDispatchedCount();
+		final long start = System.nanoTime();
+		while (buf.remaining() >= RxRecorder.FRAME_HEADER_LENGTH) {
+			final long offset = buf.getLong();
+			final byte[] raw = new byte[buf.getShort() & 0xFFFF];
+			buf.get(raw);
+			if (speed > 0) {
+				final long wait = start + (long) (offset / speed) - System.nanoTime();
+				if (wait > 0) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			long t = System.nanoTime();
+			final XBeeResponse response = new PacketParser(new ByteArrayInputStream(raw)).parsePacket();
+			report.parse.add(System.nanoTime() - t);
+			if (response.isError()) {
+				report.errors++;
+				continue;
+			}
+			t = System.nanoTime();
+			listener.processResponse(response);
+			report.process.add(System.nanoTime() - t);
+			report.frames++;
+			report.bytes += raw.length;
+		}
+		// wait for the dispatched events to be handled
+		final long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (listener.getDispatcher().getQueueDepth() > 0 && System.nanoTime() < drainDeadline) {
+			try {
+				Thread.sleep(10);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		report.elapsedNanos = System.nanoTime() - start;
+		report.allocatedBytes = allocStart < 0 ? -1 : allocatedBytes() - allocStart;
+		report.dispatched = listener.getDispatcher().getDispatchedCount() - dispatchedStart;
+		report.dispatchAverageNanos = listener.getDispatcher().getAverageLatencyNanos();
+		report.dispatchMaxNanos = listener.getDispatcher().getMaxLatencyNanos();
+		return report;
+	}
+
+	/**
+	 * Memory maps a {@linkplain RxRecorder} log and validates the header
+	 *
+	 * @param path
+	 *            the {@linkplain Path} to the log
+	 * @return the {@linkplain ByteBuffer} positioned at the first frame
+	 * @throws IOException
+	 *             thrown when the log cannot be read or is invalid
+	 */
+	public static ByteBuffer map(final Path path) throws IOException {
+		try (final FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+			final MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			if (buf.remaining() < RxRecorder.HEADER_LENGTH || buf.getInt() != RxRecorder.MAGIC) {
+				throw new IOException(String.format("%1$s is not a recorded log", path));
+			}
+			final int version = buf.getInt();
+			if (version != RxRecorder.VERSION) {
+				throw new IOException(String.format("Unsupported log version %1$s in %2$s", version, path));
+			}
+			buf.getLong();
+			return buf;
+		}
+	}
+
+	/**
+	 * @return the total number of bytes allocated by all live threads (-1
+	 *         when the JVM does not support allocation measurement)
+	 */
+	private static long allocatedBytes() {
+		final ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+		if (!(tmx instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		final com.sun.management.ThreadMXBean stmx = (com.sun.management.ThreadMXBean) tmx;
+		if (!stmx.isThreadAllocatedMemorySupported() || !stmx.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		for (final long bytes : stmx.getThreadAllocatedBytes(stmx.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Replays a {@linkplain RxRecorder} log into a new
+	 * {@linkplain UGateXBeePacketListener} and logs the {@linkplain Report}
+	 *
+	 * @param args
+	 *            the log file and optional speed
+	 * @throws IOException
+	 *             thrown when the log cannot be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: " + RxReplay.class.getName() + " <log file> [speed (0=as fast as possible)]");
+			return;
+		}
+		final Path path = Paths.get(args[0]);
+		final double speed = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final Host host = new Host();
+		host.setId(1);
+		// every address in the log needs a remote node
+		final ByteBuffer buf = map(path);
+		while (buf.remaining() >= RxRecorder.FRAME_HEADER_LENGTH) {
+			buf.getLong();
+			final byte[] raw = new byte[buf.getShort() & 0xFFFF];
+			buf.get(raw);
+			final XBeeResponse response = new PacketParser(new ByteArrayInputStream(raw)).parsePacket();
+			if (response instanceof RxResponse16 && ((RxResponse16) response).getRemoteAddress() != null
+					&& index.get(((RxResponse16) response).getRemoteAddress().get16BitValue()) == null) {
+				final RemoteNode rn = RemoteNodeType.newDefaultRemoteNode(host);
+				rn.setId(index.size() + 1);
+				rn.setAddress(String.format("%1$04X", ((RxResponse16) response).getRemoteAddress().get16BitValue()));
+				index.put(rn);
+			}
+		}
+		final AtomicLong events = new AtomicLong();
+		final UGateXBeePacketListener listener = new UGateXBeePacketListener(index) {
+			@Override
+			protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+				events.incrementAndGet();
+			}
+		};
+		final Report report = new RxReplay(path, listener).replay(speed);
+		log.info(String.format("Replayed %1$s at %2$s for %3$s node(s) (%4$s event(s)): %5$s", path,
+				speed > 0 ? speed + "x" : "full speed", index.size(), events.get(), report));
+		listener.shutdown(TimeUnit.SECONDS.toMillis(5));
+	}
+
+	/**
+	 * Latency statistics of a single stage
+	 */
+	public static class Stage {
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+
+		private void add(final long nanos) {
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		/**
+		 * @return the average number of nanoseconds
+		 */
+		public long getAverageNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		/**
+		 * @return the maximum number of nanoseconds
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return String.format("avg %1$s us, max %2$s us",
+					TimeUnit.NANOSECONDS.toMicros(getAverageNanos()),
+					TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+		}
+	}
+
+	/**
+	 * Results of a replay
+	 */
+	public static class Report {
+		private final Stage parse = new Stage();
+		private final Stage process = new Stage();
+		private long frames;
+		private long errors;
+		private long bytes;
+		private long dispatched;
+		private long dispatchAverageNanos;
+		private long dispatchMaxNanos;
+		private long elapsedNanos;
+		private long allocatedBytes;
+
+		/**
+		 * @return the number of frames replayed
+		 */
+		public long getFrames() {
+			return frames;
+		}
+
+		/**
+		 * @return the number of frames that could not be parsed
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return the number of frames replayed per second
+		 */
+		public double getFramesPerSecond() {
+			return elapsedNanos == 0 ? 0 : frames * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return the parsing {@linkplain Stage}
+		 */
+		public Stage getParse() {
+			return parse;
+		}
+
+		/**
+		 * @return the listener processing {@linkplain Stage} (excludes the
+		 *         dispatched event handling)
+		 */
+		public Stage getProcess() {
+			return process;
+		}
+
+		/**
+		 * @return the number of bytes allocated per second by all threads
+		 *         during the replay (-1 when unavailable)
+		 */
+		public double getAllocatedBytesPerSecond() {
+			return allocatedBytes < 0 || elapsedNanos == 0 ? -1 : allocatedBytes * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return the number of bytes allocated per frame by all threads
+		 *         during the replay (-1 when unavailable)
+		 */
+		public long getAllocatedBytesPerFrame() {
+			return allocatedBytes < 0 || frames == 0 ? -1 : allocatedBytes / frames;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return String.format("FRAMES: %1$s (%2$s errors, %3$s bytes) in %4$s ms, THROUGHPUT: %5$.1f frames/sec, "
+					+ "PARSE: %6$s, PROCESS: %7$s, DISPATCH: %8$s event(s) avg %9$s us, max %10$s us, "
+					+ "ALLOCATION: %11$.0f bytes/sec (%12$s bytes/frame)",
+					frames, errors, bytes, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getFramesPerSecond(),
+					parse, process, dispatched, TimeUnit.NANOSECONDS.toMicros(dispatchAverageNanos),
+					TimeUnit.NANOSECONDS.toMicros(dispatchMaxNanos), getAllocatedBytesPerSecond(),
+					getAllocatedBytesPerFrame());
+		}
+	}
+}
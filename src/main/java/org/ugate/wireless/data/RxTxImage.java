@@ -6,10 +6,14 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +30,18 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	private static final Logger log = LoggerFactory.getLogger(RxTxImage.class);
 	private Calendar endTime = null;
 	private int rxTxAttempts = 0;
+	private ImageBuffer buffer;
+	private ImageStream stream;
+	private final boolean streaming;
+	private boolean released;
+	private int chunkCount;
+	private int chunkSize;
+	private boolean failuresReported;
+	private final List<ImageChunk> missingChunks = new ArrayList<>();
+	private int missingLength;
+	private int retransmittedLength;
+	private boolean rangeRequested;
+	private Future<?> rangeTimeout;
 
 	/**
 	 * Constructor
@@ -41,8 +57,37 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 */
 	public RxTxImage(final RemoteNode remoteNode, final Status status,
 			final int signalStrength, final List<RxTxImage.ImageChunk> data) {
+		this(remoteNode, status, signalStrength, data, false);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param status
+	 *            the {@linkplain Status}
+	 * @param signalStrength
+	 *            the signal strength
+	 * @param data
+	 *            the image chunk data
+	 * @param streaming
+	 *            true to stream image chunks to a temporary file as they are
+	 *            added rather than holding them in memory until
+	 *            {@linkplain #writeImageSegments()} (no
+	 *            {@linkplain ImageChunk}s are retained in
+	 *            {@linkplain #getData()} and {@linkplain #getBytes()} will
+	 *            always be <code>null</code>)
+	 */
+	public RxTxImage(final RemoteNode remoteNode, final Status status,
+			final int signalStrength, final List<RxTxImage.ImageChunk> data,
+			final boolean streaming) {
 		super(remoteNode, status, signalStrength,
 				(data == null ? new ArrayList<RxTxImage.ImageChunk>() : data));
+		this.streaming = streaming;
+		if (!streaming) {
+			buffer = new ImageBuffer();
+		}
 		log.debug("NEW " + this);
 	}
 
@@ -57,6 +102,46 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 */
 	public abstract String getImageExtension();
 
+	/**
+	 * Called after a segment of image data has been added
+	 * 
+	 * @param data
+	 *            the segment of image data
+	 * @param startIndex
+	 *            the start index of the image bytes within the data
+	 * @param length
+	 *            the number of image bytes within the data
+	 */
+	protected void segmentAdded(final int[] data, final int startIndex,
+			final int length) {
+	}
+
+	/**
+	 * Called after all previously added image data has been discarded
+	 */
+	protected void segmentsCleared() {
+	}
+
+	/**
+	 * Called after all of the {@linkplain #getMissingChunks()} have been
+	 * filled with retransmitted image data
+	 */
+	protected void segmentsReplaced() {
+	}
+
+	/**
+	 * Determines if a segment of data marks the start of an image
+	 * 
+	 * @param data
+	 *            the segment of data
+	 * @param startIndex
+	 *            the start index of the image bytes within the data
+	 * @return true when the data marks the start of an image
+	 */
+	public boolean isImageStart(final int[] data, final int startIndex) {
+		return true;
+	}
+
 	/**
 	 * @return the number of RX/TX attempts that were made while retrieving the
 	 *         {@link RxTxImage}
@@ -73,6 +158,25 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	public void setRxTxAttempts(final int rxTxAttempts) {
 		if (rxTxAttempts == 0 || rxTxAttempts > this.rxTxAttempts) {
 			getData().clear();
+			chunkCount = 0;
+			failuresReported = false;
+			missingChunks.clear();
+			missingLength = 0;
+			retransmittedLength = 0;
+			rangeRequested = false;
+			cancelRangeTimeout();
+			if (buffer != null) {
+				buffer.clear();
+			}
+			if (stream != null) {
+				try {
+					stream.clear();
+				} catch (final IOException e) {
+					log.warn("Unable to clear streamed image data", e);
+					release();
+				}
+			}
+			segmentsCleared();
 			this.rxTxAttempts = rxTxAttempts;
 		} else if (rxTxAttempts < this.rxTxAttempts) {
 			throw new IllegalArgumentException(
@@ -97,32 +201,47 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	}
 
 	/**
-	 * @return the current bytes of for the image chunks
+	 * @return a read-only view of the current bytes for the image chunks (no
+	 *         copy is made and <code>null</code> when the image is being
+	 *         streamed to file)
 	 */
 	public ByteBuffer getBytes() {
-		if (getData() == null) {
+		if (buffer == null) {
 			return null;
 		}
-		int[] imageData = null;
-		for (final ImageChunk imageChunk : getData()) {
-			if (imageData == null) {
-				imageData = imageChunk.data;
-			} else {
-				imageData = UGateUtil
-						.arrayConcatInt(imageData, imageChunk.data);
-			}
-		}
-		if (imageData == null) {
-			return null;
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the number of bytes received for the image chunks
+	 */
+	public int getLength() {
+		return buffer != null ? buffer.length() : stream != null ? stream
+				.length() : 0;
+	}
+
+	/**
+	 * @return true when image chunks are streamed to file as they are added
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Releases the image bytes held in memory and deletes any partially
+	 * streamed image file (no more segments can be added)
+	 */
+	public void release() {
+		released = true;
+		cancelRangeTimeout();
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
 		}
-		final ByteBuffer byteBuffer = ByteBuffer.allocate(imageData.length);
-		for (final int value : imageData) {
-			// convert uint8_t to java integer
-			// int byteValue = value & 0xFF;
-			// byteBuffer.putInt(value);
-			byteBuffer.put((byte) value);
+		if (stream != null) {
+			stream.discard();
+			stream = null;
 		}
-		return byteBuffer;
 	}
 
 	/**
@@ -152,15 +271,231 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 *             when the image has already been assembled/written
 	 * @return the new image segment added
 	 */
-	public int[] addImageSegment(int[] data, int startIndex)
+	public ImageChunk addImageSegment(final int[] data, final int startIndex)
 			throws IllegalStateException {
-		if (endTime != null) {
+		return addImageSegment(data, startIndex, false);
+	}
+
+	/**
+	 * Adds a segment of image data to the image. Remote nodes report failures
+	 * starting with the chunk that follows the first chunk they were unable to
+	 * deliver, so the first segment that reports failures marks the position
+	 * of a lost chunk. When the image is held in memory and the chunk size is
+	 * known a zero filled placeholder is reserved for the lost chunk and
+	 * tracked in {@linkplain #getMissingChunks()} so that only the lost chunk
+	 * needs to be retransmitted (see
+	 * {@linkplain #fillMissingChunk(int, int[], int)}). In either case the
+	 * {@linkplain #getStatus()} will be set to
+	 * {@linkplain Status#GENERAL_FAILURE}. Once a later segment arrives
+	 * without reported failures the next segment that reports failures marks
+	 * another lost chunk.
+	 * 
+	 * @param data
+	 *            the segment of image data
+	 * @param startIndex
+	 *            the start index to use for the data (in case data has
+	 *            unrelated preceding bytes)
+	 * @param failuresReported
+	 *            true when the remote node reported that it failed to
+	 *            deliver a previous chunk
+	 * @throws IllegalStateException
+	 *             when the image has already been assembled/written
+	 * @return the new image segment added
+	 */
+	public ImageChunk addImageSegment(final int[] data, final int startIndex,
+			final boolean failuresReported) throws IllegalStateException {
+		if (endTime != null || released) {
+			throw new IllegalStateException("Image has already been written to");
+		}
+		final int length = data.length - startIndex;
+		if (failuresReported && !this.failuresReported) {
+			this.failuresReported = true;
+			setStatus(Status.GENERAL_FAILURE);
+			if (!streaming && chunkSize > 0) {
+				final ImageChunk gap = new ImageChunk(-1, buffer.length(), chunkSize);
+				buffer.insert(gap.getOffset(), gap.getLength());
+				missingChunks.add(gap);
+				missingLength += gap.getLength();
+				if (log.isDebugEnabled()) {
+					log.debug(String.format("Lost image chunk detected at offset %1$s of %2$s",
+							gap.getOffset(), this));
+				}
+			}
+		} else if (!failuresReported && this.failuresReported) {
+			this.failuresReported = false;
+		}
+		if (chunkCount == 0) {
+			chunkSize = length;
+		}
+		final ImageChunk imageChunk;
+		if (streaming) {
+			try {
+				if (stream == null) {
+					stream = new ImageStream(getImagePath());
+				}
+				imageChunk = new ImageChunk(chunkCount, stream.append(data,
+						startIndex, length), length);
+			} catch (final IOException e) {
+				release();
+				throw new IllegalStateException("Unable to stream image data", e);
+			}
+		} else {
+			imageChunk = new ImageChunk(chunkCount, buffer.append(data,
+					startIndex, length), length);
+			getData().add(imageChunk);
+		}
+		chunkCount++;
+		segmentAdded(data, startIndex, length);
+		return imageChunk;
+	}
+
+	/**
+	 * Fills one of the {@linkplain #getMissingChunks()} with retransmitted
+	 * image data. When the retransmitted data is the same as the data that
+	 * follows the missing chunk the remote node had delivered the chunk and
+	 * only it's acknowledgement was lost, so the placeholder is removed rather
+	 * than filled (the offsets of any subsequent chunks are shifted
+	 * accordingly). Once all of the {@linkplain #getMissingChunks()} have been
+	 * resolved the {@linkplain #getStatus()} is restored to
+	 * {@linkplain Status#NORMAL} and the image can be re-evaluated using
+	 * {@linkplain #isEof()}.
+	 * 
+	 * @param offset
+	 *            the {@linkplain ImageChunk#getOffset()} of the missing chunk
+	 * @param data
+	 *            the retransmitted image data
+	 * @param startIndex
+	 *            the start index to use for the data (in case data has
+	 *            unrelated preceding bytes)
+	 * @return true when all of the {@linkplain #getMissingChunks()} have been
+	 *         filled
+	 */
+	public boolean fillMissingChunk(final int offset, final int[] data,
+			final int startIndex) {
+		if (released || buffer == null) {
 			throw new IllegalStateException("Image has already been written to");
 		}
-		final ImageChunk imageChunk = new ImageChunk(data, startIndex,
-				data.length - startIndex);
-		getData().add(imageChunk);
-		return imageChunk.data;
+		for (final Iterator<ImageChunk> itr = missingChunks.iterator(); itr.hasNext();) {
+			final ImageChunk gap = itr.next();
+			if (gap.getOffset() == offset) {
+				final int length = Math.min(data.length - startIndex, gap.getLength());
+				itr.remove();
+				if (buffer.matches(offset + gap.getLength(), data, startIndex, length)) {
+					buffer.remove(offset, gap.getLength());
+					missingLength -= gap.getLength();
+					shiftChunks(offset, gap.getLength());
+					if (log.isDebugEnabled()) {
+						log.debug(String.format("Image chunk at offset %1$s was delivered (only the acknowledgement was lost) for %2$s",
+								offset, this));
+					}
+				} else {
+					buffer.set(offset, data, startIndex, length);
+				}
+				retransmittedLength += length;
+				if (missingChunks.isEmpty()) {
+					setStatus(Status.NORMAL);
+					segmentsReplaced();
+					return true;
+				}
+				return false;
+			}
+		}
+		log.warn(String.format("No missing image chunk at offset %1$s of %2$s", offset, this));
+		return missingChunks.isEmpty();
+	}
+
+	/**
+	 * Shifts the {@linkplain ImageChunk#getOffset()} of all chunks that follow
+	 * a removed range of image data
+	 * 
+	 * @param offset
+	 *            the offset of the removed range
+	 * @param length
+	 *            the length of the removed range
+	 */
+	private void shiftChunks(final int offset, final int length) {
+		for (final ListIterator<ImageChunk> itr = missingChunks.listIterator(); itr.hasNext();) {
+			final ImageChunk ic = itr.next();
+			if (ic.getOffset() > offset) {
+				itr.set(new ImageChunk(ic.getSequence(), ic.getOffset() - length, ic.getLength()));
+			}
+		}
+		for (final ListIterator<ImageChunk> itr = getData().listIterator(); itr.hasNext();) {
+			final ImageChunk ic = itr.next();
+			if (ic.getOffset() > offset) {
+				itr.set(new ImageChunk(ic.getSequence(), ic.getOffset() - length, ic.getLength()));
+			}
+		}
+	}
+
+	/**
+	 * @return the placeholders for image chunks that were lost (in memory
+	 *         images only)
+	 */
+	public List<ImageChunk> getMissingChunks() {
+		return Collections.unmodifiableList(missingChunks);
+	}
+
+	/**
+	 * @return the total number of image bytes that were lost (in memory images
+	 *         only)
+	 */
+	public int getMissingLength() {
+		return missingLength;
+	}
+
+	/**
+	 * @return the number of image bytes that have been retransmitted to fill
+	 *         the {@linkplain #getMissingChunks()}
+	 */
+	public int getRetransmittedLength() {
+		return retransmittedLength;
+	}
+
+	/**
+	 * @return the number of image bytes that did not need to be retransmitted
+	 *         because only the {@linkplain #getMissingChunks()} were requested
+	 */
+	public int getBytesSaved() {
+		return retransmittedLength > 0 ? getLength() - retransmittedLength : 0;
+	}
+
+	/**
+	 * @return true when the {@linkplain #getMissingChunks()} have been
+	 *         requested from the remote node
+	 */
+	public boolean isRangeRequested() {
+		return rangeRequested;
+	}
+
+	/**
+	 * @param rangeRequested
+	 *            true when the {@linkplain #getMissingChunks()} have been
+	 *            requested from the remote node
+	 */
+	public void setRangeRequested(final boolean rangeRequested) {
+		this.rangeRequested = rangeRequested;
+	}
+
+	/**
+	 * @param rangeTimeout
+	 *            the scheduled timeout of the {@linkplain #isRangeRequested()}
+	 *            request (cancelled when a new attempt is started, the image
+	 *            is released or {@linkplain #cancelRangeTimeout()})
+	 */
+	public void setRangeTimeout(final Future<?> rangeTimeout) {
+		cancelRangeTimeout();
+		this.rangeTimeout = rangeTimeout;
+	}
+
+	/**
+	 * Cancels the {@linkplain #setRangeTimeout(Future)} (if any)
+	 */
+	public void cancelRangeTimeout() {
+		if (rangeTimeout != null) {
+			rangeTimeout.cancel(false);
+			rangeTimeout = null;
+		}
 	}
 
 	/**
@@ -177,20 +512,29 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 					getImagePath(), UGateUtil.calFormat(endTime)));
 		}
 		try {
-			final ByteBuffer byteBuffer = getBytes();
-			final Path filePath = getImagePath();
-			writeImage(byteBuffer.array(), filePath);
+			final int length = getLength();
+			final Path filePath;
+			if (streaming) {
+				if (stream == null) {
+					throw new IOException("No image data has been received");
+				}
+				filePath = stream.commit();
+			} else {
+				filePath = getImagePath();
+				writeImage(getBytes(), filePath);
+			}
 			endTime = Calendar.getInstance();
 			if (log.isInfoEnabled()) {
 				log.info(String
 						.format("Wrote (%1$s) bytes from (%2$s) image chunks to \"%3$s\" (took: %4$s)",
-								byteBuffer.array().length, getData().size(),
+								length, chunkCount,
 								filePath, getCreatedTimeDiffernce(endTime)));
 			}
 			return new ImageCapture(getRemoteNode(), getStatus(),
-					getSignalStrength(), filePath, byteBuffer.array().length);
+					getSignalStrength(), filePath, length);
 		} finally {
 			setData(new ArrayList<RxTxJPEG.ImageChunk>());
+			release();
 		}
 	}
 
@@ -200,10 +544,8 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 *         until {@linkplain #writeImageSegments()} is called
 	 */
 	public ImageCapture createImageSegmentsSnapshot() {
-		final ByteBuffer byteBuffer = getBytes();
 		return new ImageCapture(getRemoteNode(), getStatus(),
-				getSignalStrength(), null,
-				byteBuffer != null ? byteBuffer.array().length : 0);
+				getSignalStrength(), null, getLength());
 	}
 
 	/**
@@ -216,7 +558,7 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 * @throws IOException
 	 *             any {@linkplain IOException} that may occur
 	 */
-	protected void writeImage(final byte[] bytes, final Path filePath)
+	protected void writeImage(final ByteBuffer bytes, final Path filePath)
 			throws IOException {
 		final File imageFile = filePath.toFile();
 		if (!imageFile.exists()) {
@@ -224,22 +566,49 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 		}
 		final FileOutputStream fos = new FileOutputStream(imageFile);
 		try {
-			fos.write(bytes);
+			final FileChannel fc = fos.getChannel();
+			while (bytes.hasRemaining()) {
+				fc.write(bytes);
+			}
 		} finally {
 			fos.close();
 		}
 	}
 
 	/**
-	 * Image chunk that represents a portion of an overall image
+	 * Image chunk that describes where a portion of an overall image resides
+	 * within the received image bytes
 	 */
-	public class ImageChunk {
-		public int[] data;
+	public static class ImageChunk {
+		private final int sequence;
+		private final int offset;
+		private final int length;
+
+		public ImageChunk(final int sequence, final int offset, final int length) {
+			this.sequence = sequence;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return the order in which the chunk was received
+		 */
+		public int getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the position of the chunk within the image bytes
+		 */
+		public int getOffset() {
+			return offset;
+		}
 
-		public ImageChunk(int[] data, int startIndex, int length) {
-			this.data = Arrays.copyOfRange(data, startIndex, length
-					+ startIndex);
-			// log.debug("####### Image Chunk: " + this.data.length + " bytes");
+		/**
+		 * @return the number of image bytes in the chunk
+		 */
+		public int getLength() {
+			return length;
 		}
 	}
 }
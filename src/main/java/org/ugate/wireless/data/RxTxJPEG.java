@@ -1,11 +1,11 @@
 package org.ugate.wireless.data;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.ugate.ByteUtils;
 import org.ugate.service.entity.jpa.RemoteNode;
 
 /**
@@ -16,7 +16,7 @@ public class RxTxJPEG extends RxTxImage {
 
 	private static final Logger log = LoggerFactory.getLogger(RxTxJPEG.class);
 	public static final String JPEG_EXT = "jpg";
-	public static final String JPEG_EOF = "0xff,0xd9";
+	private final JpegScanner scanner = new JpegScanner();
 
 	/**
 	 * Constructor
@@ -36,30 +36,88 @@ public class RxTxJPEG extends RxTxImage {
 				(data == null ? new ArrayList<ImageChunk>() : data));
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param status
+	 *            the {@linkplain Status}
+	 * @param signalStrength
+	 *            the signal strength
+	 * @param data
+	 *            the image chunk data
+	 * @param streaming
+	 *            true to stream image chunks to file as they are added
+	 */
+	public RxTxJPEG(final RemoteNode remoteNode, final Status status,
+			final int signalStrength, final List<ImageChunk> data,
+			final boolean streaming) {
+		super(remoteNode, status, signalStrength,
+				(data == null ? new ArrayList<ImageChunk>() : data), streaming);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void segmentAdded(final int[] data, final int startIndex,
+			final int length) {
+		if (scanner.scan(data, startIndex, length) && scanner.isCorrupt()) {
+			log.warn(String.format("Corrupt JPEG data detected at byte %1$s of %2$s",
+					scanner.getErrorPosition(), this));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void segmentsCleared() {
+		scanner.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The entire image is rescanned since the retransmitted data was not
+	 * received in order
+	 * </p>
+	 */
+	@Override
+	protected void segmentsReplaced() {
+		scanner.reset();
+		final ByteBuffer bytes = getBytes();
+		if (bytes != null && scanner.scan(bytes) && scanner.isCorrupt()) {
+			log.warn(String.format("Corrupt JPEG data detected at byte %1$s of %2$s",
+					scanner.getErrorPosition(), this));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isImageStart(final int[] data, final int startIndex) {
+		return JpegScanner.isSoi(data, startIndex);
+	}
+
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * When the received data is determined to be structurally corrupt the
+	 * {@linkplain #getStatus()} will be set to {@linkplain Status#PARSING_ERROR}
+	 * and the image is considered at it's end so that it can be requested
+	 * again without waiting for the image to time out
+	 * </p>
 	 */
 	@Override
 	public boolean isEof() {
-		try {
-			final ImageChunk last = getData().get(getData().size() - 1);
-			int lastByte = last.data[last.data.length - 1];
-			int secondToLastByte;
-			if (last.data.length < 2) {
-				// in the rare case that the last data added has only one byte
-				final ImageChunk last2 = getData().get(getData().size() - 2);
-				secondToLastByte = last2.data[last2.data.length - 1];
-			} else {
-				secondToLastByte = last.data[last.data.length - 2];
-			}
-			final String eofHex = ByteUtils.toBase16(new int[] {
-					secondToLastByte, lastByte });
-			return eofHex.toLowerCase().equals(JPEG_EOF);
-		} catch (Exception e) {
-			log.error("Unable to get EOF sequence", e);
+		if (scanner.isCorrupt()) {
+			setStatus(Status.PARSING_ERROR);
+			return true;
 		}
-		setStatus(Status.GENERAL_FAILURE);
-		return true;
+		return scanner.isEoi();
 	}
 
 	/**
@@ -59,23 +59,10 @@ public class RxTxRemoteNodeDTO extends RxData {
 		if (!toData && data.length == 0) {
 			return;
 		}
-		int i = 0;
-		for (final RemoteNodeType rnt : RemoteNodeType.values()) {
-			if (rnt.canRemote()) {
-				try {
-					if (toData) {
-						data[i] = (int) rnt.getValue(getRemoteNode());
-					} else {
-						rnt.setValue(getRemoteNode(), data[i]);
-					}
-				} catch (final Throwable t) {
-					throw new RuntimeException(
-							String.format(
-									"Unable to transfer data at index %1$s to/from %2$s.%3$s",
-									RemoteNode.class.getName(), rnt.getKey(), i),
-							t);
-				}
-			}
+		if (toData) {
+			data = RemoteNodeType.pack(getRemoteNode());
+		} else {
+			RemoteNodeType.unpack(getRemoteNode(), data);
 		}
 	}
 	
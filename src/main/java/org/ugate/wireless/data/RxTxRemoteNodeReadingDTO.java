@@ -1,17 +1,30 @@
 package org.ugate.wireless.data;
 
+import java.util.Date;
+
+import org.ugate.service.entity.FrameLayout;
+import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
 
 /**
- * Sensor readings
+ * Sensor readings. Readings decoded from a response are held as primitives and
+ * the {@linkplain RemoteNodeReading} is only created when it is first
+ * requested.
  */
 public class RxTxRemoteNodeReadingDTO extends RxData  {
 
-	private final RemoteNodeReading remoteNodeReading;
+	private final int sonarFeet;
+	private final int sonarInches;
+	private final int microwaveCycleCount;
+	private final int pirIntensity;
+	private final int laserFeet;
+	private final int laserInches;
+	private final int gateState;
+	private RemoteNodeReading remoteNodeReading;
 
 	/**
 	 * Constructor
-	 * 
+	 *
 	 * @param remoteNodeReading
 	 *            the {@linkplain RemoteNodeReading}
 	 * @param status
@@ -21,28 +34,124 @@ public class RxTxRemoteNodeReadingDTO extends RxData  {
 			final Status status) {
 		super(remoteNodeReading.getRemoteNode(), status, remoteNodeReading.getSignalStrength());
 		this.remoteNodeReading = remoteNodeReading;
+		this.sonarFeet = remoteNodeReading.getSonarFeet();
+		this.sonarInches = remoteNodeReading.getSonarInches();
+		this.microwaveCycleCount = remoteNodeReading.getMicrowaveCycleCount();
+		this.pirIntensity = remoteNodeReading.getPirIntensity();
+		this.laserFeet = remoteNodeReading.getLaserFeet();
+		this.laserInches = remoteNodeReading.getLaserInches();
+		this.gateState = remoteNodeReading.getGateState();
 	}
-	
+
+	/**
+	 * Constructor
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} the readings were received from
+	 * @param status
+	 *            the {@linkplain Status} of the transmission
+	 * @param signalStrength
+	 *            the signal strength
+	 * @param data
+	 *            the received data (must be
+	 *            {@linkplain FrameLayout#isValid(int[])} for the
+	 *            {@linkplain FrameLayout#READINGS})
+	 */
+	public RxTxRemoteNodeReadingDTO(final RemoteNode remoteNode, final Status status,
+			final int signalStrength, final int[] data) {
+		super(remoteNode, status, signalStrength);
+		final FrameLayout layout = FrameLayout.READINGS;
+		this.sonarFeet = layout.get(data, FrameLayout.Field.SONAR_FEET);
+		this.sonarInches = layout.get(data, FrameLayout.Field.SONAR_INCHES);
+		this.microwaveCycleCount = layout.get(data, FrameLayout.Field.MICROWAVE_CYCLE_COUNT);
+		this.pirIntensity = layout.get(data, FrameLayout.Field.PIR_INTENSITY);
+		this.laserFeet = layout.get(data, FrameLayout.Field.LASER_FEET);
+		this.laserInches = layout.get(data, FrameLayout.Field.LASER_INCHES);
+		this.gateState = layout.get(data, FrameLayout.Field.GATE_STATE);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public String toString() {
 		return String.format(
-				"%1$s [Sonar Distance: %2$s' %3$s\"] [Speed: %4$s (changes/sec) %5$s (mm/sec) %6$s (inches/sec) %7$s (MPH)] " + 
-				"[Laser Distance: %8$s' %9$s\"] [PIR Intensity: %10$s\"] [Gate State: %11$s]", 
-				super.toString(), getRemoteNodeReading().getSonarFeet(), getRemoteNodeReading().getSonarInches(), 
-				getRemoteNodeReading().getMicrowaveCycleCount(), getRemoteNodeReading().getMicrowaveSpeedMillimetersPerSec(), 
-				getRemoteNodeReading().getMicrowaveSpeedInchesPerSec(), getRemoteNodeReading().getMicrowaveSpeedMPH(), 
-				getRemoteNodeReading().getLaserFeet(), getRemoteNodeReading().getLaserInches(), 
-				getRemoteNodeReading().getPirIntensity(), getRemoteNodeReading().getGateState());
+				"%1$s [Sonar Distance: %2$s' %3$s\"] [Speed: %4$s (changes/sec) %5$s (mm/sec) %6$s (inches/sec) %7$s (MPH)] " +
+				"[Laser Distance: %8$s' %9$s\"] [PIR Intensity: %10$s\"] [Gate State: %11$s]",
+				super.toString(), getSonarFeet(), getSonarInches(),
+				getMicrowaveCycleCount(), getRemoteNodeReading().getMicrowaveSpeedMillimetersPerSec(),
+				getRemoteNodeReading().getMicrowaveSpeedInchesPerSec(), getRemoteNodeReading().getMicrowaveSpeedMPH(),
+				getLaserFeet(), getLaserInches(), getPirIntensity(), getGateState());
 	}
 
 	/**
-	 * @return the number of cycle changes clocked when the microwave sensor was read 
+	 * @return the {@linkplain RemoteNodeReading} (created on first request
+	 *         using the {@linkplain #getCreatedMillis()} as the read date)
 	 */
-	public RemoteNodeReading getRemoteNodeReading() {
+	public synchronized RemoteNodeReading getRemoteNodeReading() {
+		if (remoteNodeReading == null) {
+			final RemoteNodeReading rnr = new RemoteNodeReading();
+			rnr.setRemoteNode(getRemoteNode());
+			rnr.setReadDate(new Date(getCreatedMillis()));
+			rnr.setSignalStrength(getSignalStrength());
+			rnr.setSonarFeet(sonarFeet);
+			rnr.setSonarInches(sonarInches);
+			rnr.setMicrowaveCycleCount(microwaveCycleCount);
+			rnr.setPirIntensity(pirIntensity);
+			rnr.setLaserFeet(laserFeet);
+			rnr.setLaserInches(laserInches);
+			rnr.setGateState(gateState);
+			remoteNodeReading = rnr;
+		}
 		return remoteNodeReading;
 	}
 
+	/**
+	 * @return the sonar distance feet
+	 */
+	public int getSonarFeet() {
+		return sonarFeet;
+	}
+
+	/**
+	 * @return the sonar distance inches
+	 */
+	public int getSonarInches() {
+		return sonarInches;
+	}
+
+	/**
+	 * @return the number of cycle changes clocked when the microwave sensor was read
+	 */
+	public int getMicrowaveCycleCount() {
+		return microwaveCycleCount;
+	}
+
+	/**
+	 * @return the PIR intensity
+	 */
+	public int getPirIntensity() {
+		return pirIntensity;
+	}
+
+	/**
+	 * @return the laser distance feet
+	 */
+	public int getLaserFeet() {
+		return laserFeet;
+	}
+
+	/**
+	 * @return the laser distance inches
+	 */
+	public int getLaserInches() {
+		return laserInches;
+	}
+
+	/**
+	 * @return the gate state
+	 */
+	public int getGateState() {
+		return gateState;
+	}
 }
@@ -1,9 +1,15 @@
 package org.ugate.wireless.data;
 
 import java.io.IOException;
-import java.util.Date;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,10 +19,11 @@ import org.ugate.UGateUtil;
 import org.ugate.resources.RS;
 import org.ugate.resources.RS.KEY;
 import org.ugate.service.ServiceProvider;
+import org.ugate.service.TxFuture;
 import org.ugate.service.entity.Command;
+import org.ugate.service.entity.FrameLayout;
 import org.ugate.service.entity.RemoteNodeType;
 import org.ugate.service.entity.jpa.RemoteNode;
-import org.ugate.service.entity.jpa.RemoteNodeReading;
 import org.ugate.wireless.data.RxData.Status;
 
 import com.rapplogic.xbee.api.ErrorResponse;
@@ -35,8 +42,68 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	/**
 	 * The index of the image start byte
 	 */
-	public static final int IMAGE_START_INDEX = 7;
-	private final Map<String, RxTxImage> imgMap = new ConcurrentHashMap<>();
+	public static final int IMAGE_START_INDEX = FrameLayout.IMAGE.getOffset(FrameLayout.Field.IMAGE_DATA);
+	/**
+	 * The number of milliseconds to wait for lost image chunks to be
+	 * retransmitted before the entire image is requested again (only used
+	 * when the remote node neither sends the lost image chunks nor rejects the
+	 * request)
+	 */
+	public static final int RANGE_TIMEOUT_MILISECONDS = 10000;
+	private static final long EXPIRE_SWEEP_MILISECONDS = 1000;
+	private final ConcurrentMap<String, RxTxImage> imgMap = new ConcurrentHashMap<>();
+	private final AtomicLong imageBytesSaved = new AtomicLong();
+	private final AtomicLong malformedCount = new AtomicLong();
+	private final ScheduledExecutorService scheduler;
+	private final RemoteNodeIndex remoteNodeIndex;
+	private volatile RxDispatcher dispatcher;
+	private volatile boolean imageStreaming;
+	private volatile RxRecorder recorder;
+
+	/**
+	 * Constructor using a default {@linkplain RxDispatcher}
+	 * 
+	 * @param remoteNodeIndex
+	 *            the {@linkplain RemoteNodeIndex} used to resolve the
+	 *            {@linkplain RemoteNode} that sent a response
+	 */
+	public UGateXBeePacketListener(final RemoteNodeIndex remoteNodeIndex) {
+		this(remoteNodeIndex, new RxDispatcher());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param remoteNodeIndex
+	 *            the {@linkplain RemoteNodeIndex} used to resolve the
+	 *            {@linkplain RemoteNode} that sent a response
+	 * @param dispatcher
+	 *            the {@linkplain RxDispatcher} used to
+	 *            {@linkplain #handleEvent(UGateEvent)}
+	 */
+	public UGateXBeePacketListener(final RemoteNodeIndex remoteNodeIndex,
+			final RxDispatcher dispatcher) {
+		this.remoteNodeIndex = remoteNodeIndex;
+		this.dispatcher = dispatcher;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, UGateXBeePacketListener.class.getSimpleName() + "-scheduler");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					expireImages();
+				} catch (final Throwable t) {
+					log.error("Unable to expire images", t);
+				}
+			}
+		}, EXPIRE_SWEEP_MILISECONDS, EXPIRE_SWEEP_MILISECONDS, TimeUnit.MILLISECONDS);
+	}
 
 	/**
 	 * Process responses as they are received
@@ -45,6 +112,10 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	 */
 	@Override
 	public void processResponse(final XBeeResponse response) {
+		final RxRecorder rec = recorder;
+		if (rec != null) {
+			rec.record(response);
+		}
 		try {
 			// API Mode Bytes:
 			// 1=Start Delimiter, 2=Most Significant Byte, 3=Least Significant Byte, 4-n=Frame Data, n+1=Checksum
@@ -112,29 +183,72 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 
 	/**
 	 * Finds an existing {@linkplain RemoteNode} from the
-	 * {@linkplain RxResponse16#getRemoteAddress()}
+	 * {@linkplain RxResponse16#getRemoteAddress()} using the
+	 * {@linkplain RemoteNodeIndex} (the database is never queried)
 	 * 
 	 * @param rxResponse
 	 *            the {@linkplain RxResponse16}
 	 * @return the {@linkplain RemoteNode}
 	 */
 	protected RemoteNode findRemoteNode(final RxResponse16 rxResponse) {
-		final String remoteAddress = Integer.toHexString(rxResponse.getRemoteAddress().getAddress()[0]) + 
-				Integer.toHexString(rxResponse.getRemoteAddress().getAddress()[1]);
-		if (remoteAddress.isEmpty()) {
+		if (rxResponse.getRemoteAddress() == null) {
 			log.error(String .format("Received data from an unknown address %1$s... Discarding response...", 
 					"NONE"));
 			return null;
 		}
-		// TODO : RemoteNode should not be queried every time a response is received when multi-chunking data (like image) 
-		final RemoteNode rn = ServiceProvider.IMPL.getRemoteNodeService().findByAddress(remoteAddress);
+		final int remoteAddress = rxResponse.getRemoteAddress().get16BitValue();
+		final RemoteNode rn = remoteNodeIndex.get(remoteAddress);
 		if (rn == null) {
-			log.error(String .format("Received data from an unknown address %1$s... Discarding response...", 
+			log.error(String .format("Received data from an unknown address %1$04x... Discarding response...", 
 					remoteAddress));
 			return null;
 		}
 		return rn;
 	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeIndex} used to resolve the
+	 *         {@linkplain RemoteNode} that sent a response
+	 */
+	public RemoteNodeIndex getRemoteNodeIndex() {
+		return remoteNodeIndex;
+	}
+
+	/**
+	 * @return true when received image chunks are streamed to file as they
+	 *         arrive rather than held in memory until the image is complete
+	 */
+	public boolean isImageStreaming() {
+		return imageStreaming;
+	}
+
+	/**
+	 * @param imageStreaming
+	 *            true to stream received image chunks to file as they arrive
+	 *            rather than holding them in memory until the image is
+	 *            complete (applies to images started after the change)
+	 */
+	public void setImageStreaming(final boolean imageStreaming) {
+		this.imageStreaming = imageStreaming;
+	}
+
+	/**
+	 * @return the {@linkplain RxRecorder} that received frames are recorded
+	 *         to (null when not recording)
+	 */
+	public RxRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * @param recorder
+	 *            the {@linkplain RxRecorder} to record received frames to (null
+	 *            to stop recording)
+	 */
+	public void setRecorder(final RxRecorder recorder) {
+		this.recorder = recorder;
+	}
+
 	/**
 	 * Remote XBee radio used for gate operations using a 16-bit address: 3333
 	 * (XBee must NOT be configured with "MY" set to FFFF)
@@ -147,72 +261,120 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 		if (rn == null) {
 			return;
 		}
+		final int[] data = rxResponse.getData();
 		final Command command = extractCommand(rxResponse);
 		if (command == null) {
+			malformedCount.incrementAndGet();
 			log.error(String.format("An unrecognized %1$s command was received from %2$s", 
-					rxResponse.getData()[0], rn.getAddress()));
+					data.length > 0 ? data[0] : "(empty)", rn.getAddress()));
 			return;
 		}
-		final int failures = rxResponse.getData()[1]; // TODO : Handle cases where failures exist
+		if (command == Command.CAM_SEND_PIC_RANGE && data.length > 1 && data[1] != 0) {
+			// remote nodes reject requests for lost image chunks by reporting failures
+			rangeRejected(rn);
+			return;
+		}
+		final FrameLayout layout = command.getRxLayout();
+		if (!layout.isValid(data)) {
+			malformedCount.incrementAndGet();
+			log.warn(String.format("Discarding %1$s from %2$s with %3$s byte(s) of data (expected at least %4$s)", 
+					command, rn.getAddress(), data.length, layout.getLength()));
+			return;
+		}
+		final int failures = data[1]; // TODO : Handle cases where failures exist
 		final RxData.Status status = failures == 0 ? RxData.Status.NORMAL : RxData.Status.GENERAL_FAILURE;
-		log.info(String.format("======= Recieved %1$s command from wireless address %2$s (signal strength: %3$s) with (%4$s) failures =======", 
-				command, rn.getAddress(), rxResponse.getRssi(), failures));
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("======= Recieved %1$s command from wireless address %2$s (signal strength: %3$s) with (%4$s) failures =======", 
+					command, rn.getAddress(), rxResponse.getRssi(), failures));
+		}
 		if (command == Command.CAM_TAKE_PIC) {
 			ImageCapture ic;
-			RxTxImage rxTxImage = imgMap.containsKey(rn.getAddress()) ? imgMap.get(rn.getAddress()) : null;
+			RxTxImage rxTxImage = imgMap.get(rn.getAddress());
 			if (rxTxImage == null || rxTxImage.hasTimedOut()) {
 				if (rxTxImage != null) {
-					rxTxImage.resetRxTxAttempts();
-					ic = rxTxImage.createImageSegmentsSnapshot();
-					processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
-							RS.rbLabel(KEY.SERVICE_RX_IMAGE_TIMEOUT, ic));
+					imageExpired(rn, rxTxImage, false);
 				}
 				// TODO : add check for what sensor tripped the image and image format detection (instead of using just JPEG)
-				rxTxImage = new RxTxJPEG(rn, status, rxResponse.getRssi(), null);
+				rxTxImage = new RxTxJPEG(rn, status, rxResponse.getRssi(), null, isImageStreaming());
+				rxTxImage.setTimeout((int) TimeUnit.SECONDS.toMillis(rn.getCamImgCaptureTimeoutSec()));
 				imgMap.put(rn.getAddress(), rxTxImage);
 				ic = rxTxImage.createImageSegmentsSnapshot();
 				log.info(String.format("======= Receiving chunked image data (%1$s) =======", rxTxImage));
 				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_MULTIPART, command, ic, 
 						RS.rbLabel(KEY.SERVICE_RX_IMAGE_MULTPART, ic));
 			}
-			int[] imageChunk = rxTxImage.addImageSegment(rxResponse.getData(), IMAGE_START_INDEX);
-			if (log.isDebugEnabled()) {
-				log.debug(String.format("Sensor Tripped (%1$s, LENGTH: %2$s, RAW LENGTH: %3$s) DATA: %4$s", 
-						rxTxImage, imageChunk.length, rxResponse.getLength().getLength(), ByteUtils.toBase16(imageChunk)));
-			}
-			if (rxTxImage.isEof()) {
-				if (rxTxImage.getStatus() != RxData.Status.NORMAL) {
-					final int retries = rn.getCamImgCaptureRetryCnt();
-					ic = rxTxImage.createImageSegmentsSnapshot();
-					if (retries != 0 && rxTxImage.getRxTxAttempts() <= retries) {
-						rxTxImage.incRxTxAttempts();
-						processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, command, ic, 
-								RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS_RETRY, ic, rxTxImage.getRxTxAttempts(), retries));
-						ServiceProvider.IMPL.getWirelessService().sendData(rn, command, 0, false);
-					} else {
-						try {
-							processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
-									RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS, ic, rxTxImage.getRxTxAttempts()));
-						} finally {
-							imgMap.remove(rn.getAddress());
+			synchronized (rxTxImage) {
+				if (imgMap.get(rn.getAddress()) != rxTxImage) {
+					// the image expired while waiting for the lock
+					return;
+				}
+				if (rxTxImage.getRxTxAttempts() > 0 && rxTxImage.getLength() == 0
+						&& !rxTxImage.isImageStart(rxResponse.getData(), IMAGE_START_INDEX)) {
+					// remaining chunks from an attempt that was abandoned before it completed
+					if (log.isDebugEnabled()) {
+						log.debug(String.format("Discarding stale image chunk while waiting for retry %1$s of %2$s", 
+								rxTxImage.getRxTxAttempts(), rxTxImage));
+					}
+					return;
+				}
+				final RxTxImage.ImageChunk imageChunk = rxTxImage.addImageSegment(rxResponse.getData(), 
+						IMAGE_START_INDEX, failures != 0);
+				imageChunkReceived(rn, rxTxImage, rxResponse.getRssi());
+				if (log.isDebugEnabled()) {
+					log.debug(String.format("Sensor Tripped (%1$s, CHUNK: %2$s, OFFSET: %3$s, LENGTH: %4$s, RAW LENGTH: %5$s)", 
+							rxTxImage, imageChunk.getSequence(), imageChunk.getOffset(), imageChunk.getLength(), 
+							rxResponse.getLength().getLength()));
+				}
+				if (rxTxImage.isEof()) {
+					if (rxTxImage.getStatus() != RxData.Status.NORMAL) {
+						final int retries = rn.getCamImgCaptureRetryCnt();
+						if (canRetryImage(rxTxImage, retries)) {
+							if (!requestMissingChunks(rn, rxTxImage, retries)) {
+								retryImage(rn, rxTxImage, retries);
+							}
+						} else {
+							imageFailed(rn, rxTxImage);
 						}
+					} else {
+						imageCompleted(rn, rxTxImage);
 					}
+				}
+			}
+		} else if (command == Command.CAM_SEND_PIC_RANGE) {
+			final RxTxImage rxTxImage = imgMap.get(rn.getAddress());
+			if (rxTxImage == null) {
+				log.warn(String.format("Discarding missing image data from %1$s (no image is being captured)", 
+						rn.getAddress()));
+				return;
+			}
+			synchronized (rxTxImage) {
+				if (!rxTxImage.isRangeRequested()) {
+					log.warn(String.format("Discarding missing image data that was not requested for %1$s", 
+							rxTxImage));
+					return;
+				}
+				imageChunkReceived(rn, rxTxImage, rxResponse.getRssi());
+				// offset of the retransmitted chunk within the image replaces the readings
+				final int offset = layout.get(data, FrameLayout.Field.IMAGE_OFFSET);
+				if (!rxTxImage.fillMissingChunk(offset, data, layout.getOffset(FrameLayout.Field.IMAGE_DATA))) {
+					return;
+				}
+				if (rxTxImage.isEof() && rxTxImage.getStatus() == RxData.Status.NORMAL) {
+					imageCompleted(rn, rxTxImage);
+					return;
+				}
+				// chunks were lost that could not be detected
+				final int retries = rn.getCamImgCaptureRetryCnt();
+				if (canRetryImage(rxTxImage, retries)) {
+					retryImage(rn, rxTxImage, retries);
 				} else {
-					try {
-						ic = rxTxImage.writeImageSegments();
-						processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, ic, 
-								RS.rbLabel(KEY.SERVICE_RX_IMAGE_SUCCESS, ic));
-					} catch (IOException e) {
-						log.info("Cannot save image ID: " + UGateUtil.calFormat(rxTxImage.getCreatedTime()), e);
-					} finally {
-						imgMap.remove(rn.getAddress());
-					}
+					imageFailed(rn, rxTxImage);
 				}
 			}
 		} else if (command == Command.ACCESS_PIN_CHANGE) {
-			//final int hasFailures = rxResponse.getData()[1];
-			final KeyCodes kc = new KeyCodes(rn, status, rxResponse.getRssi(), rxResponse.getData()[1], 
-					rxResponse.getData()[2], rxResponse.getData()[3]);
+			final KeyCodes kc = new KeyCodes(rn, status, rxResponse.getRssi(), 
+					layout.get(data, FrameLayout.Field.KEY_CODE_1), layout.get(data, FrameLayout.Field.KEY_CODE_2), 
+					layout.get(data, FrameLayout.Field.KEY_CODE_3));
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, kc, 
 					RS.rbLabel(KEY.SERVICE_RX_KEYCODES, kc));
 		} else if (command == Command.SERVO_LASER_CALIBRATE) {
@@ -220,28 +382,17 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 					new RxRawData<Void>(rn, status, rxResponse.getRssi(), null), 
 					failures > 0 ? RS.rbLabel(KEY.LASER_CALIBRATION_FAILED) : RS.rbLabel(KEY.LASER_CALIBRATION_SUCCESS));
 		} else if (command == Command.SENSOR_GET_READINGS || command == Command.GATE_TOGGLE_OPEN_CLOSE) {
-			int i = 1;
-			final RemoteNodeReading rnr = new RemoteNodeReading();
-			rnr.setRemoteNode(rn);
-			rnr.setReadDate(new Date());
-			rnr.setSignalStrength(rxResponse.getRssi());
-			rnr.setSonarFeet(rxResponse.getData()[++i]);
-			rnr.setSonarInches(rxResponse.getData()[++i]);
-			rnr.setMicrowaveCycleCount(rxResponse.getData()[++i]);
-			rnr.setPirIntensity(rxResponse.getData()[++i]);
-			rnr.setLaserFeet(rxResponse.getData()[++i]);
-			rnr.setLaserInches(rxResponse.getData()[++i]);
-			rnr.setGateState(rxResponse.getData()[++i]);
-			final RxTxRemoteNodeReadingDTO sr = new RxTxRemoteNodeReadingDTO(rnr, status);
+			// entity, message and log text are only created when needed
+			final RxTxRemoteNodeReadingDTO sr = new RxTxRemoteNodeReadingDTO(rn, status,
+					rxResponse.getRssi(), data);
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, sr, 
-					RS.rbLabel(KEY.SERVICE_RX_READINGS, sr));
+					KEY.SERVICE_RX_READINGS, rn.getAddress(), sr.getSonarFeet(), sr.getSonarInches(), 
+					sr.getMicrowaveCycleCount(), sr.getPirIntensity(), sr.getLaserFeet(), 
+					sr.getLaserInches(), sr.getGateState());
 		} else if (command == Command.SENSOR_GET_SETTINGS) {
 			// the number of response data and their order is important!!!
-			int i = 1;
 			final int[] sd = new int[RemoteNodeType.canRemoteCount()];
-			for (int j = 0; j<RemoteNodeType.canRemoteCount(); j++) {
-				sd[j] = rxResponse.getData()[++i];
-			}
+			System.arraycopy(data, layout.getOffset(FrameLayout.Field.SETTINGS), sd, 0, sd.length);
 			// create a detached state remote node w/o modifying the existing local instance
 			final RemoteNode rnFromRemote = RemoteNodeType.newDefaultRemoteNode(rn.getHost());
 			final RxTxRemoteNodeDTO dto = new RxTxRemoteNodeDTO(rnFromRemote, status,
@@ -254,8 +405,288 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	}
 	
 	/**
-	 * Processes data from a response and calls
-	 * {@linkplain #handleEvent(UGateEvent)}
+	 * Requests only the {@linkplain RxTxImage#getMissingChunks()} of an image
+	 * from the remote node using {@linkplain Command#CAM_SEND_PIC_RANGE}.
+	 * When the transmission fails, the remote node rejects the request or the
+	 * remote node does not respond with all of the missing chunks in time the
+	 * entire image is requested again. Remote nodes that reject the request
+	 * (or never respond to it) are flagged using
+	 * {@linkplain RemoteNode#getCamImgRangeUnsupported()} and are no longer
+	 * asked for missing chunks.
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param retries
+	 *            the maximum number of retries
+	 * @return true when the missing chunks have been requested, false when
+	 *         the entire image needs to be requested again
+	 */
+	protected boolean requestMissingChunks(final RemoteNode rn,
+			final RxTxImage rxTxImage, final int retries) {
+		if (rxTxImage.isRangeRequested() || rxTxImage.getMissingChunks().isEmpty()
+				|| rn.getCamImgRangeUnsupported() == 1) {
+			return false;
+		}
+		rxTxImage.setRangeRequested(true);
+		final ImageCapture ic = rxTxImage.createImageSegmentsSnapshot();
+		processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, Command.CAM_TAKE_PIC, ic, 
+				RS.rbLabel(KEY.SERVICE_RX_IMAGE_RANGE_RETRY, ic, rxTxImage.getMissingLength(), 
+						rxTxImage.getRxTxAttempts() + 1, retries));
+		final TxFuture.Callback txFailed = new TxFuture.Callback() {
+			@Override
+			public void completed(final TxFuture future) {
+				if (!future.isSuccess()) {
+					rangeFailed(rn, rxTxImage, retries, false);
+				}
+			}
+		};
+		for (final RxTxImage.ImageChunk gap : new ArrayList<>(rxTxImage.getMissingChunks())) {
+			// offset (3 bytes) and length (2 bytes) of the missing chunk
+			ServiceProvider.IMPL.getWirelessService().sendDataAsync(rn, Command.CAM_SEND_PIC_RANGE, 
+					(gap.getOffset() >> 16) & 0xFF, (gap.getOffset() >> 8) & 0xFF, gap.getOffset() & 0xFF, 
+					(gap.getLength() >> 8) & 0xFF, gap.getLength() & 0xFF).addCallback(txFailed);
+		}
+		final int attempt = rxTxImage.getRxTxAttempts();
+		rxTxImage.setRangeTimeout(scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (rxTxImage) {
+					// a timeout that fires while a later attempt is starting is ignored
+					if (rxTxImage.getRxTxAttempts() == attempt) {
+						rangeFailed(rn, rxTxImage, retries, true);
+					}
+				}
+			}
+		}, RANGE_TIMEOUT_MILISECONDS, TimeUnit.MILLISECONDS));
+		return true;
+	}
+
+	/**
+	 * Falls back to requesting the entire image when the remote node has
+	 * rejected a request for the {@linkplain RxTxImage#getMissingChunks()}
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 */
+	protected void rangeRejected(final RemoteNode rn) {
+		final RxTxImage rxTxImage = imgMap.get(rn.getAddress());
+		if (rxTxImage == null) {
+			rangeUnsupported(rn);
+			return;
+		}
+		rangeFailed(rn, rxTxImage, rn.getCamImgCaptureRetryCnt(), true);
+	}
+
+	/**
+	 * Falls back to requesting the entire image when the
+	 * {@linkplain RxTxImage#getMissingChunks()} were not received
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param retries
+	 *            the maximum number of retries
+	 * @param unsupported
+	 *            true when the remote node rejected the request or did not
+	 *            respond in time (it will no longer be asked for missing
+	 *            chunks)
+	 */
+	protected void rangeFailed(final RemoteNode rn, final RxTxImage rxTxImage,
+			final int retries, final boolean unsupported) {
+		synchronized (rxTxImage) {
+			if (imgMap.get(rn.getAddress()) != rxTxImage || !rxTxImage.isRangeRequested()
+					|| rxTxImage.getMissingChunks().isEmpty()) {
+				// the image has completed or has already been requested again
+				return;
+			}
+			if (unsupported) {
+				rangeUnsupported(rn);
+			}
+			if (canRetryImage(rxTxImage, retries)) {
+				retryImage(rn, rxTxImage, retries);
+			} else {
+				imageFailed(rn, rxTxImage);
+			}
+		}
+	}
+
+	/**
+	 * Flags a {@linkplain RemoteNode} as not supporting requests for missing
+	 * image chunks and saves the flag so it is retained across restarts
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 */
+	protected void rangeUnsupported(final RemoteNode rn) {
+		if (rn.getCamImgRangeUnsupported() == 1) {
+			return;
+		}
+		rn.setCamImgRangeUnsupported(1);
+		log.warn(RS.rbLabel(KEY.SERVICE_RX_IMAGE_RANGE_UNSUPPORTED, rn.getAddress()));
+		// saved in order with any other events for the node
+		dispatcher.dispatch(rn.getAddress(), new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ServiceProvider.IMPL.getRemoteNodeService().saveCamImgRangeUnsupported(rn);
+				} catch (final Throwable t) {
+					log.warn(String.format("Unable to save that %1$s does not support resending missing image data", 
+							rn.getAddress()), t);
+				}
+			}
+		});
+	}
+
+	/**
+	 * The single bound used by every path that requests an entire image again
+	 * (requests for only the missing chunks are not counted as attempts)
+	 * 
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param retries
+	 *            the maximum number of retries
+	 * @return true when the image can be requested again
+	 */
+	protected static boolean canRetryImage(final RxTxImage rxTxImage, final int retries) {
+		return rxTxImage.getRxTxAttempts() < retries;
+	}
+
+	/**
+	 * Discards the received image data and requests the entire image again
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param retries
+	 *            the maximum number of retries
+	 */
+	protected void retryImage(final RemoteNode rn, final RxTxImage rxTxImage,
+			final int retries) {
+		imageAttempted(rn, rxTxImage, 1);
+		final ImageCapture ic = rxTxImage.createImageSegmentsSnapshot();
+		rxTxImage.incRxTxAttempts();
+		processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, Command.CAM_TAKE_PIC, ic, 
+				RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS_RETRY, ic, rxTxImage.getRxTxAttempts(), retries));
+		ServiceProvider.IMPL.getWirelessService().resendDataAsync(rn, Command.CAM_TAKE_PIC);
+	}
+
+	/**
+	 * Fails an image that could not be retrieved
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 */
+	protected void imageFailed(final RemoteNode rn, final RxTxImage rxTxImage) {
+		imageAttempted(rn, rxTxImage, 1);
+		final ImageCapture ic = rxTxImage.createImageSegmentsSnapshot();
+		try {
+			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, Command.CAM_TAKE_PIC, ic, 
+					RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS, ic, rxTxImage.getRxTxAttempts()));
+		} finally {
+			imgMap.remove(rn.getAddress());
+			rxTxImage.release();
+		}
+	}
+
+	/**
+	 * Expires all of the images that have not been received within their
+	 * {@linkplain RxTxImage#getTimeout()} (called periodically so that images
+	 * from remote nodes that stop sending data are always released)
+	 */
+	protected void expireImages() {
+		for (final RxTxImage rxTxImage : imgMap.values()) {
+			if (rxTxImage.hasTimedOut()) {
+				imageExpired(rxTxImage.getRemoteNode(), rxTxImage, true);
+			}
+		}
+	}
+
+	/**
+	 * Fails and releases an image that has not been received within it's
+	 * {@linkplain RxTxImage#getTimeout()}
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param idle
+	 *            true when the remote node has stopped sending image data,
+	 *            false when a new image is being started
+	 */
+	protected void imageExpired(final RemoteNode rn, final RxTxImage rxTxImage,
+			final boolean idle) {
+		synchronized (rxTxImage) {
+			if (!imgMap.remove(rn.getAddress(), rxTxImage)) {
+				return;
+			}
+			imageAttempted(rn, rxTxImage, 1);
+			final ImageCapture ic = rxTxImage.createImageSegmentsSnapshot();
+			rxTxImage.resetRxTxAttempts();
+			rxTxImage.release();
+			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, Command.CAM_TAKE_PIC, ic, 
+					idle ? RS.rbLabel(KEY.SERVICE_RX_IMAGE_EXPIRED, rn.getAddress(), rxTxImage.getTimeout(), ic)
+							: RS.rbLabel(KEY.SERVICE_RX_IMAGE_TIMEOUT, ic));
+		}
+	}
+
+	/**
+	 * Writes a completed image
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 */
+	protected void imageCompleted(final RemoteNode rn, final RxTxImage rxTxImage) {
+		try {
+			final int retransmitted = rxTxImage.getRetransmittedLength();
+			final int saved = rxTxImage.getBytesSaved();
+			imageAttempted(rn, rxTxImage, rxTxImage.getLength() > 0 ? 
+					(double) retransmitted / rxTxImage.getLength() : 0);
+			final ImageCapture ic = rxTxImage.writeImageSegments();
+			if (retransmitted > 0) {
+				imageBytesSaved.addAndGet(saved);
+				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, Command.CAM_TAKE_PIC, ic, 
+						RS.rbLabel(KEY.SERVICE_RX_IMAGE_RANGE_SUCCESS, ic, retransmitted, saved));
+			} else {
+				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, Command.CAM_TAKE_PIC, ic, 
+						RS.rbLabel(KEY.SERVICE_RX_IMAGE_SUCCESS, ic));
+			}
+		} catch (IOException e) {
+			log.info("Cannot save image ID: " + UGateUtil.calFormat(rxTxImage.getCreatedTime()), e);
+		} finally {
+			rxTxImage.cancelRangeTimeout();
+			imgMap.remove(rn.getAddress());
+		}
+	}
+
+	/**
+	 * @return the total number of image bytes that did not need to be
+	 *         retransmitted because only the lost image chunks were requested
+	 */
+	public long getImageBytesSaved() {
+		return imageBytesSaved.get();
+	}
+
+	/**
+	 * @return the total number of received frames that were discarded because
+	 *         the command was unrecognized or the data did not match the
+	 *         {@linkplain Command#getRxLayout()}
+	 */
+	public long getMalformedCount() {
+		return malformedCount.get();
+	}
+
+	/**
+	 * Processes data from a response and dispatches it to
+	 * {@linkplain #handleEvent(UGateEvent)} via the
+	 * {@linkplain #getDispatcher()}
 	 * 
 	 * @param <V>
 	 *            the type of {@linkplain RxData}
@@ -279,18 +710,129 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 		} else if (messages != null) {
 			log.warn(UGateUtil.toString(messages));
 		}
-		final Thread eventThread = new Thread(new Runnable() {
+		if (remoteNode == null) {
+			return;
+		}
+		// events for the same node are handled in the order they are received
+		dispatcher.dispatch(remoteNode.getAddress(), new Runnable() {
 			@Override
 			public void run() {
-				if (remoteNode != null) {
-					handleEvent(new UGateEvent<RemoteNode, V>(
-							remoteNode, type, true, null,
-							command, null, data, messages));
+				handleEvent(new UGateEvent<RemoteNode, V>(
+						remoteNode, type, true, null,
+						command, null, data, messages));
+			}
+		});
+	}
+	
+	/**
+	 * Processes data from a response and dispatches it to
+	 * {@linkplain #handleEvent(UGateEvent)} via the
+	 * {@linkplain #getDispatcher()}. The message is only formatted when it is
+	 * logged or when the {@linkplain UGateEvent#getMessages()} are requested.
+	 * Used for frequently received data, so successes are logged at the debug
+	 * level (the message arguments should not need to be converted to a
+	 * string when the message is never formatted).
+	 * 
+	 * @param <V>
+	 *            the type of {@linkplain RxData}
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param type
+	 *            the {@linkplain Type}
+	 * @param command
+	 *            the {@linkplain Command}
+	 * @param data
+	 *            the received data
+	 * @param messageKey
+	 *            the {@linkplain KEY} of the message
+	 * @param messageArgs
+	 *            the message format arguments
+	 */
+	protected <V extends RxData> void processData(final RemoteNode remoteNode,
+			final UGateEvent.Type type, final Command command,
+			final V data, final KEY messageKey, final Object... messageArgs) {
+		final UGateEvent.LazyMessage message = new UGateEvent.LazyMessage() {
+			@Override
+			public String format() {
+				return RS.rbLabel(messageKey, messageArgs);
+			}
+		};
+		final boolean success = type == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS;
+		if (remoteNode == null) {
+			if (success ? log.isDebugEnabled() : log.isWarnEnabled()) {
+				log(success, message.format());
+			}
+			return;
+		}
+		// events for the same node are handled in the order they are received
+		dispatcher.dispatch(remoteNode.getAddress(), new Runnable() {
+			@Override
+			public void run() {
+				final UGateEvent<RemoteNode, V> event = new UGateEvent<RemoteNode, V>(
+						remoteNode, type, true, null,
+						command, null, data, (List<String>) null);
+				event.setLazyMessage(message);
+				if (success ? log.isDebugEnabled() : log.isWarnEnabled()) {
+					log(success, UGateUtil.toString(event.getMessages()));
 				}
+				handleEvent(event);
 			}
-		}, UGateXBeePacketListener.class.getSimpleName() + "-event");
-		eventThread.setDaemon(true);
-		eventThread.start();
+		});
+	}
+
+	/**
+	 * Logs a message of {@linkplain #processData(RemoteNode, Type, Command, RxData, KEY, Object...)}
+	 * 
+	 * @param success
+	 *            true to log at the debug level, false to log at the warn
+	 *            level
+	 * @param message
+	 *            the message
+	 */
+	private static void log(final boolean success, final String message) {
+		if (success) {
+			log.debug(message);
+		} else {
+			log.warn(message);
+		}
+	}
+	
+	/**
+	 * @return the {@linkplain RxDispatcher} used to
+	 *         {@linkplain #handleEvent(UGateEvent)}
+	 */
+	public RxDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Replaces the {@linkplain RxDispatcher} used to
+	 * {@linkplain #handleEvent(UGateEvent)} (the previous
+	 * {@linkplain RxDispatcher} is left running so that it can finish any
+	 * pending dispatches before it is shutdown by the caller)
+	 * 
+	 * @param dispatcher
+	 *            the new {@linkplain RxDispatcher}
+	 * @return the previous {@linkplain RxDispatcher}
+	 */
+	public RxDispatcher setDispatcher(final RxDispatcher dispatcher) {
+		final RxDispatcher previous = this.dispatcher;
+		this.dispatcher = dispatcher;
+		return previous;
+	}
+
+	/**
+	 * Stops the image expiration/range timeout scheduler and the
+	 * {@linkplain #getDispatcher()} (the listener cannot be used afterwards)
+	 * 
+	 * @param timeout
+	 *            the maximum number of milliseconds to wait for pending
+	 *            dispatches
+	 */
+	public void shutdown(final long timeout) {
+		scheduler.shutdownNow();
+		dispatcher.shutdown(timeout);
+		imgMap.clear();
 	}
 	
 	/**
@@ -300,6 +842,40 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	 * @param event the event
 	 */
 	protected abstract <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event);
+
+	/**
+	 * Called from the image reassembly path each time a chunk of image data
+	 * is received (does nothing by default)
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage} the chunk belongs to
+	 * @param signalStrength
+	 *            the signal strength the chunk was received with
+	 */
+	protected void imageChunkReceived(final RemoteNode rn, final RxTxImage rxTxImage,
+			final int signalStrength) {
+	}
+
+	/**
+	 * Called from the image reassembly path each time an attempt to transfer
+	 * an image ends (does nothing by default). An attempt that completes
+	 * without any retransmissions has a loss of zero, an attempt that had
+	 * only it's {@linkplain RxTxImage#getMissingChunks()} retransmitted has a
+	 * loss of the fraction of the image that was retransmitted and an attempt
+	 * that is discarded (retried, failed or expired) has a loss of one.
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode}
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @param loss
+	 *            the fraction of the image that was lost (zero to one)
+	 */
+	protected void imageAttempted(final RemoteNode rn, final RxTxImage rxTxImage,
+			final double loss) {
+	}
 	
 	/**
 	 * Extracts a command from the response (null if none can be found)
@@ -0,0 +1,882 @@
+package org.ugate.wireless.data;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.ApiId;
+import com.rapplogic.xbee.api.AtCommand;
+import com.rapplogic.xbee.api.AtCommandResponse;
+import com.rapplogic.xbee.api.IXBee;
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.RemoteAtRequest;
+import com.rapplogic.xbee.api.RemoteAtResponse;
+import com.rapplogic.xbee.api.XBeeAddress16;
+import com.rapplogic.xbee.api.XBeeException;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.XBeePacketLength;
+import com.rapplogic.xbee.api.XBeeRequest;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.XBeeTimeoutException;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+import com.rapplogic.xbee.api.wpan.TxRequest16;
+import com.rapplogic.xbee.api.wpan.TxStatusResponse;
+
+/**
+ * In-process simulated local XBee coordinator that can be used in place of a
+ * serial attached {@linkplain com.rapplogic.xbee.api.XBee} for load and
+ * latency testing without any radio hardware. A configurable number of remote
+ * nodes are emulated using consecutive 16-bit addresses starting at the
+ * {@linkplain #getFirstAddress()}. Transmissions to a simulated node are
+ * acknowledged with a {@linkplain TxStatusResponse} after the configured
+ * latency/jitter (or {@linkplain TxStatusResponse.Status#NO_ACK} when lost)
+ * and {@linkplain Command}s that have a response are answered using the same
+ * data layout as the remote node firmware. Each node can also send readings
+ * and images (in chunks) at a fixed interval. Received packets are delivered
+ * to the {@linkplain PacketListener}s by a single thread in the order they
+ * are due (the same as the serial input thread of a real XBee).
+ * <p>
+ * The simulator is used by the wireless service when the
+ * {@linkplain #PROPERTY_NODES} system property is set (all other properties
+ * are optional). The {@linkplain RemoteNode}s with the simulated addresses
+ * need to exist for the received data to be processed.
+ * </p>
+ */
+public class XBeeSimulator implements IXBee {
+
+	private static final Logger log = LoggerFactory.getLogger(XBeeSimulator.class);
+	/**
+	 * System property for the number of simulated remote nodes
+	 */
+	public static final String PROPERTY_NODES = "ugate.wireless.sim.nodes";
+	/**
+	 * System property for the hex address of the first simulated remote node
+	 */
+	public static final String PROPERTY_FIRST_ADDRESS = "ugate.wireless.sim.address";
+	/**
+	 * System property for the number of milliseconds before a response
+	 */
+	public static final String PROPERTY_LATENCY = "ugate.wireless.sim.latency";
+	/**
+	 * System property for the maximum random milliseconds added to the latency
+	 */
+	public static final String PROPERTY_JITTER = "ugate.wireless.sim.jitter";
+	/**
+	 * System property for the percentage (0-100) of packets that are lost
+	 */
+	public static final String PROPERTY_LOSS = "ugate.wireless.sim.loss";
+	/**
+	 * System property for the number of milliseconds between readings sent by
+	 * each node (zero to disable)
+	 */
+	public static final String PROPERTY_READINGS_INTERVAL = "ugate.wireless.sim.readings";
+	/**
+	 * System property for the number of milliseconds between images sent by
+	 * each node (zero to disable)
+	 */
+	public static final String PROPERTY_IMAGE_INTERVAL = "ugate.wireless.sim.images";
+	/**
+	 * System property for the number of bytes in each simulated image
+	 */
+	public static final String PROPERTY_IMAGE_SIZE = "ugate.wireless.sim.image.size";
+	/**
+	 * System property that turns on resending ranges of images using
+	 * {@linkplain Command#CAM_SEND_PIC_RANGE} (off by default, the remote node
+	 * firmware does not support it)
+	 */
+	public static final String PROPERTY_IMAGE_RANGE = "ugate.wireless.sim.image.range";
+	/**
+	 * The number of image bytes in each image chunk (same as the firmware)
+	 */
+	public static final int IMAGE_CHUNK_SIZE = 64;
+	private static final int COORDINATOR_ADDRESS = 0x0000;
+	private final int nodeCount;
+	private final int firstAddress;
+	private volatile int latency = 20;
+	private volatile int jitter = 10;
+	private volatile int loss;
+	private volatile int readingsInterval;
+	private volatile int imageInterval;
+	private volatile int imageSize = 8192;
+	private volatile int imageChunkInterval = 5;
+	private volatile boolean imageRange;
+	private volatile int rssi = -40;
+	private final List<PacketListener> listeners = new CopyOnWriteArrayList<>();
+	private final ConcurrentMap<Integer, int[]> settings = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, int[]> images = new ConcurrentHashMap<>();
+	private final Random random = new Random();
+	private final AtomicLong txCount = new AtomicLong();
+	private final AtomicLong rxCount = new AtomicLong();
+	private final AtomicLong lostCount = new AtomicLong();
+	private ScheduledExecutorService scheduler;
+	private int frameId;
+
+	/**
+	 * Constructor
+	 *
+	 * @param nodeCount
+	 *            the number of simulated remote nodes
+	 * @param firstAddress
+	 *            the 16-bit address of the first simulated remote node
+	 *            (remaining nodes use consecutive addresses)
+	 */
+	public XBeeSimulator(final int nodeCount, final int firstAddress) {
+		if (nodeCount <= 0 || firstAddress <= COORDINATOR_ADDRESS
+				|| firstAddress + nodeCount > 0xFFFF) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid node count %1$s and/or first address %2$04x",
+					nodeCount, firstAddress));
+		}
+		this.nodeCount = nodeCount;
+		this.firstAddress = firstAddress;
+	}
+
+	/**
+	 * Creates an {@linkplain XBeeSimulator} from the system properties
+	 *
+	 * @return the {@linkplain XBeeSimulator} or null when the
+	 *         {@linkplain #PROPERTY_NODES} has not been set
+	 */
+	public static XBeeSimulator fromSystemProperties() {
+		final Integer nodes = Integer.getInteger(PROPERTY_NODES);
+		if (nodes == null || nodes <= 0) {
+			return null;
+		}
+		final XBeeSimulator sim = new XBeeSimulator(nodes, Integer.parseInt(
+				System.getProperty(PROPERTY_FIRST_ADDRESS, "3333"), 16));
+		sim.setLatency(Integer.getInteger(PROPERTY_LATENCY, sim.getLatency()));
+		sim.setJitter(Integer.getInteger(PROPERTY_JITTER, sim.getJitter()));
+		sim.setLoss(Integer.getInteger(PROPERTY_LOSS, sim.getLoss()));
+		sim.setReadingsInterval(Integer.getInteger(PROPERTY_READINGS_INTERVAL,
+				sim.getReadingsInterval()));
+		sim.setImageInterval(Integer.getInteger(PROPERTY_IMAGE_INTERVAL,
+				sim.getImageInterval()));
+		sim.setImageSize(Integer.getInteger(PROPERTY_IMAGE_SIZE, sim.getImageSize()));
+		sim.setImageRange(Boolean.getBoolean(PROPERTY_IMAGE_RANGE));
+		return sim;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The port and baud rate are ignored
+	 * </p>
+	 */
+	@Override
+	public synchronized void open(final String port, final int baudRate)
+			throws XBeeException {
+		if (isConnected()) {
+			throw new IllegalStateException("Simulator is already open");
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, XBeeSimulator.class.getSimpleName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		for (int i = 0; i < nodeCount; i++) {
+			final int address = firstAddress + i;
+			// random phase so that nodes do not all send at the same time
+			if (readingsInterval > 0) {
+				scheduler.scheduleAtFixedRate(new Runnable() {
+					@Override
+					public void run() {
+						sendReadings(address, Command.SENSOR_GET_READINGS);
+					}
+				}, random.nextInt(readingsInterval), readingsInterval, TimeUnit.MILLISECONDS);
+			}
+			if (imageInterval > 0) {
+				scheduler.scheduleAtFixedRate(new Runnable() {
+					@Override
+					public void run() {
+						sendImage(address);
+					}
+				}, random.nextInt(imageInterval), imageInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+		log.info(String.format("Opened simulated XBee with %1$s node(s) starting at %2$04x " +
+				"(latency: %3$s ms, jitter: %4$s ms, loss: %5$s%%, readings: %6$s ms, images: %7$s ms)",
+				nodeCount, firstAddress, latency, jitter, loss, readingsInterval, imageInterval));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		images.clear();
+		log.info(String.format("Closed simulated XBee (%1$s)", this));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean isConnected() {
+		return scheduler != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addPacketListener(final PacketListener packetListener) {
+		listeners.add(packetListener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removePacketListener(final PacketListener packetListener) {
+		listeners.remove(packetListener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only {@linkplain TxRequest16}s are supported. The
+	 * {@linkplain TxStatusResponse} is delivered to the
+	 * {@linkplain PacketListener}s after the configured latency.
+	 * </p>
+	 */
+	@Override
+	public void sendAsynchronous(final XBeeRequest request) throws XBeeException {
+		if (!isConnected()) {
+			throw new XBeeException("Simulator is not open");
+		}
+		if (!(request instanceof TxRequest16)) {
+			throw new XBeeException("Simulator only supports asynchronous "
+					+ TxRequest16.class.getSimpleName() + " requests");
+		}
+		txCount.incrementAndGet();
+		final TxRequest16 tx = (TxRequest16) request;
+		final int address = tx.getRemoteAddr16().get16BitValue();
+		final boolean delivered = isNode(address) && !isLost();
+		if (!delivered) {
+			lostCount.incrementAndGet();
+		}
+		final TxStatusResponse status = new TxStatusResponse();
+		status.setApiId(ApiId.TX_STATUS_RESPONSE);
+		status.setFrameId(tx.getFrameId());
+		status.setStatus(delivered ? TxStatusResponse.Status.SUCCESS : TxStatusResponse.Status.NO_ACK);
+		setRawPacketBytes(status, ApiId.TX_STATUS_RESPONSE.getValue(), tx.getFrameId(), 
+				status.getStatus().getValue());
+		final int delay = nextLatency();
+		deliver(status, delay);
+		if (delivered) {
+			received(address, tx.getPayload().clone(), delay);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only {@linkplain AtCommand}s (local or remote) are supported. Blocks for
+	 * the configured latency (or the timeout when the response is lost).
+	 * </p>
+	 */
+	@Override
+	public XBeeResponse sendSynchronous(final XBeeRequest request,
+			final int timeout) throws XBeeTimeoutException, XBeeException {
+		if (!isConnected()) {
+			throw new XBeeException("Simulator is not open");
+		}
+		if (!(request instanceof AtCommand)) {
+			throw new XBeeException("Simulator only supports synchronous "
+					+ AtCommand.class.getSimpleName() + " requests");
+		}
+		txCount.incrementAndGet();
+		final AtCommand at = (AtCommand) request;
+		final AtCommandResponse response;
+		int address = COORDINATOR_ADDRESS;
+		if (request instanceof RemoteAtRequest) {
+			address = ((RemoteAtRequest) request).getRemoteAddr16().get16BitValue();
+			if (!isNode(address) || isLost()) {
+				sleep(timeout);
+				throw new XBeeTimeoutException();
+			}
+			final RemoteAtResponse remote = new RemoteAtResponse();
+			remote.setApiId(ApiId.REMOTE_AT_RESPONSE);
+			remote.setRemoteAddress16(new XBeeAddress16(address >> 8, address & 0xFF));
+			response = remote;
+		} else {
+			response = new AtCommandResponse();
+			response.setApiId(ApiId.AT_RESPONSE);
+		}
+		final int delay = nextLatency();
+		if (delay >= timeout) {
+			sleep(timeout);
+			throw new XBeeTimeoutException();
+		}
+		sleep(delay);
+		response.setFrameId(request.getFrameId());
+		response.setChar1(at.getCommand().charAt(0));
+		response.setChar2(at.getCommand().charAt(1));
+		if ("MY".equals(at.getCommand())) {
+			response.setStatus(AtCommandResponse.Status.OK);
+			response.setValue(new int[] { address >> 8, address & 0xFF });
+		} else {
+			response.setStatus(AtCommandResponse.Status.INVALID_COMMAND);
+			response.setValue(new int[0]);
+		}
+		return response;
+	}
+
+	/**
+	 * Handles data received by a simulated remote node and sends the
+	 * response (if any)
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 * @param payload
+	 *            the received data
+	 * @param delay
+	 *            the number of milliseconds it took to receive the data
+	 */
+	protected void received(final int address, final int[] payload,
+			final int delay) {
+		final Command command = Command.lookup(payload[0]);
+		if (command == null) {
+			return;
+		} else if (command == Command.SENSOR_SEND_SETTINGS) {
+			settings.put(address, Arrays.copyOfRange(payload, 2, payload.length));
+		} else if (command == Command.SENSOR_GET_SETTINGS) {
+			final int[] sd = settings.get(address);
+			send(address, command, 0, sd != null ? sd : new int[RemoteNodeType.canRemoteCount()],
+					delay + nextLatency());
+		} else if (command == Command.SENSOR_GET_READINGS || command == Command.GATE_TOGGLE_OPEN_CLOSE) {
+			sendReadings(address, command);
+		} else if (command == Command.CAM_TAKE_PIC) {
+			sendImage(address);
+		} else if (command == Command.CAM_SEND_PIC_RANGE && imageRange && payload.length >= 7) {
+			// ignored unless turned on (the same as the remote node firmware)
+			sendImageRange(address, (payload[2] << 16) | (payload[3] << 8) | payload[4],
+					(payload[5] << 8) | payload[6], delay);
+		}
+	}
+
+	/**
+	 * Sends random sensor readings from a simulated remote node
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 * @param command
+	 *            the {@linkplain Command} to respond with
+	 */
+	protected void sendReadings(final int address, final Command command) {
+		send(address, command, 0, new int[] { random.nextInt(30), random.nextInt(12),
+				random.nextInt(100), random.nextInt(100), random.nextInt(30),
+				random.nextInt(12), random.nextInt(2) }, nextLatency());
+	}
+
+	/**
+	 * Sends a new image from a simulated remote node in
+	 * {@linkplain #IMAGE_CHUNK_SIZE} chunks. Lost chunks set the failure flag
+	 * of all subsequent chunks (the same as the remote node firmware).
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 */
+	protected void sendImage(final int address) {
+		final int[] img = newImage();
+		images.put(address, img);
+		int delay = nextLatency();
+		int failures = 0;
+		for (int off = 0; off < img.length; off += IMAGE_CHUNK_SIZE) {
+			final int len = Math.min(IMAGE_CHUNK_SIZE, img.length - off);
+			final int[] data = new int[5 + len];
+			System.arraycopy(img, off, data, 5, len);
+			if (isLost()) {
+				lostCount.incrementAndGet();
+				failures = 1;
+			} else {
+				send(address, Command.CAM_TAKE_PIC, failures, data, delay, false);
+			}
+			delay += imageChunkInterval;
+		}
+	}
+
+	/**
+	 * Sends a range of the last image sent from a simulated remote node
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 * @param offset
+	 *            the offset of the range within the image
+	 * @param length
+	 *            the length of the range
+	 * @param delay
+	 *            the number of milliseconds it took to receive the request
+	 */
+	protected void sendImageRange(final int address, final int offset,
+			final int length, final int delay) {
+		final int[] img = images.get(address);
+		if (img == null || offset < 0 || offset >= img.length) {
+			return;
+		}
+		int d = delay + nextLatency();
+		final int end = Math.min(img.length, offset + length);
+		for (int off = offset; off < end; off += IMAGE_CHUNK_SIZE) {
+			final int len = Math.min(IMAGE_CHUNK_SIZE, end - off);
+			final int[] data = new int[5 + len];
+			// offset of the range replaces the readings
+			data[0] = (off >> 16) & 0xFF;
+			data[1] = (off >> 8) & 0xFF;
+			data[2] = off & 0xFF;
+			System.arraycopy(img, off, data, 5, len);
+			send(address, Command.CAM_SEND_PIC_RANGE, 0, data, d);
+			d += imageChunkInterval;
+		}
+	}
+
+	/**
+	 * @return a new structurally valid JPEG of the configured
+	 *         {@linkplain #getImageSize()} (random entropy-coded data)
+	 */
+	protected int[] newImage() {
+		final int[] img = new int[Math.max(8, imageSize)];
+		img[0] = JpegScanner.MARKER;
+		img[1] = JpegScanner.SOI;
+		img[2] = JpegScanner.MARKER;
+		img[3] = JpegScanner.SOS;
+		img[4] = 0x00;
+		img[5] = 0x02;
+		for (int i = 6; i < img.length - 2; i++) {
+			img[i] = random.nextInt(JpegScanner.MARKER);
+		}
+		img[img.length - 2] = JpegScanner.MARKER;
+		img[img.length - 1] = JpegScanner.EOI;
+		return img;
+	}
+
+	/**
+	 * Sends data from a simulated remote node (subject to loss)
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 * @param command
+	 *            the {@linkplain Command}
+	 * @param failures
+	 *            the failure flag
+	 * @param data
+	 *            the data that follows the command and failure flag
+	 * @param delay
+	 *            the number of milliseconds before the data is received
+	 */
+	protected void send(final int address, final Command command,
+			final int failures, final int[] data, final int delay) {
+		send(address, command, failures, data, delay, true);
+	}
+
+	/**
+	 * Sends data from a simulated remote node
+	 *
+	 * @param address
+	 *            the address of the remote node
+	 * @param command
+	 *            the {@linkplain Command}
+	 * @param failures
+	 *            the failure flag
+	 * @param data
+	 *            the data that follows the command and failure flag
+	 * @param delay
+	 *            the number of milliseconds before the data is received
+	 * @param lossy
+	 *            true when the data is subject to the configured loss
+	 */
+	protected void send(final int address, final Command command,
+			final int failures, final int[] data, final int delay,
+			final boolean lossy) {
+		if (lossy && isLost()) {
+			lostCount.incrementAndGet();
+			return;
+		}
+		final int[] payload = new int[2 + data.length];
+		payload[0] = command.getKey();
+		payload[1] = failures;
+		System.arraycopy(data, 0, payload, 2, data.length);
+		final RxResponse16 rx = new RxResponse16();
+		rx.setApiId(ApiId.RX_16_RESPONSE);
+		rx.setSourceAddress(new XBeeAddress16(address >> 8, address & 0xFF));
+		// the packet parser negates the RSSI byte (-dBm) of the frame
+		rx.setRssi(rssi);
+		rx.setData(payload);
+		// API ID, address, RSSI and options precede the data
+		rx.setLength(new XBeePacketLength(payload.length + 5));
+		final int[] frameData = new int[payload.length + 5];
+		frameData[0] = ApiId.RX_16_RESPONSE.getValue();
+		frameData[1] = address >> 8;
+		frameData[2] = address & 0xFF;
+		frameData[3] = -rssi;
+		System.arraycopy(payload, 0, frameData, 5, payload.length);
+		setRawPacketBytes(rx, frameData);
+		deliver(rx, delay);
+	}
+
+	/**
+	 * Sets the {@linkplain XBeeResponse#getRawPacketBytes()} the same way the
+	 * packet parser of a real XBee does (escaped bytes that follow the start
+	 * byte) so that simulated frames can be recorded
+	 *
+	 * @param response
+	 *            the {@linkplain XBeeResponse}
+	 * @param frameData
+	 *            the API ID followed by the frame data
+	 */
+	private static void setRawPacketBytes(final XBeeResponse response,
+			final int... frameData) {
+		final int[] packet = new XBeePacket(frameData).getByteArray();
+		response.setRawPacketBytes(Arrays.copyOfRange(packet, 1, packet.length));
+	}
+
+	/**
+	 * Delivers a response to the {@linkplain PacketListener}s
+	 *
+	 * @param response
+	 *            the {@linkplain XBeeResponse}
+	 * @param delay
+	 *            the number of milliseconds before the response is delivered
+	 */
+	protected void deliver(final XBeeResponse response, final int delay) {
+		final ScheduledExecutorService s = scheduler;
+		if (s == null) {
+			return;
+		}
+		try {
+			s.schedule(new Runnable() {
+				@Override
+				public void run() {
+					rxCount.incrementAndGet();
+					for (final PacketListener pl : listeners) {
+						try {
+							pl.processResponse(response);
+						} catch (final Throwable t) {
+							log.error(String.format("Unable to process simulated response %1$s", response), t);
+						}
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (final RuntimeException e) {
+			// closed while scheduling
+		}
+	}
+
+	/**
+	 * @param address
+	 *            the 16-bit address
+	 * @return true when the address belongs to a simulated remote node
+	 */
+	public boolean isNode(final int address) {
+		return address >= firstAddress && address < firstAddress + nodeCount;
+	}
+
+	/**
+	 * @return true when the next packet should be lost
+	 */
+	private boolean isLost() {
+		return loss > 0 && random.nextInt(100) < loss;
+	}
+
+	/**
+	 * @return the configured latency plus a random jitter
+	 */
+	private int nextLatency() {
+		return latency + (jitter > 0 ? random.nextInt(jitter + 1) : 0);
+	}
+
+	/**
+	 * @param miliseconds
+	 *            the number of milliseconds to sleep
+	 */
+	private static void sleep(final int miliseconds) {
+		try {
+			Thread.sleep(miliseconds);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getCurrentFrameId() {
+		return frameId;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getNextFrameId() {
+		if (frameId == 0xFF) {
+			frameId = 1;
+		} else {
+			frameId++;
+		}
+		return frameId;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void updateFrameId(final int val) {
+		if (val <= 0 || val > 0xFF) {
+			throw new IllegalArgumentException("invalid frame id");
+		}
+		this.frameId = val;
+	}
+
+	/**
+	 * Not supported by the simulator
+	 */
+	@Override
+	public void sendPacket(final XBeePacket packet) throws IOException {
+		throw new IOException("Simulator does not support raw packets");
+	}
+
+	/**
+	 * Not supported by the simulator
+	 */
+	@Override
+	public void sendPacket(final int[] packet) throws IOException {
+		throw new IOException("Simulator does not support raw packets");
+	}
+
+	/**
+	 * Not supported by the simulator (responses are only delivered to
+	 * {@linkplain PacketListener}s)
+	 */
+	@Override
+	public XBeeResponse getResponse() throws XBeeException {
+		throw new XBeeException("Simulator only delivers responses to packet listeners");
+	}
+
+	/**
+	 * Not supported by the simulator (responses are only delivered to
+	 * {@linkplain PacketListener}s)
+	 */
+	@Override
+	public XBeeResponse getResponse(final int timeout) throws XBeeException,
+			XBeeTimeoutException {
+		throw new XBeeException("Simulator only delivers responses to packet listeners");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clearResponseQueue() {
+	}
+
+	/**
+	 * @return the number of simulated remote nodes
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the 16-bit address of the first simulated remote node
+	 */
+	public int getFirstAddress() {
+		return firstAddress;
+	}
+
+	/**
+	 * @return the number of milliseconds before a response
+	 */
+	public int getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @param latency
+	 *            the number of milliseconds before a response
+	 */
+	public void setLatency(final int latency) {
+		this.latency = Math.max(0, latency);
+	}
+
+	/**
+	 * @return the maximum random milliseconds added to the latency
+	 */
+	public int getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @param jitter
+	 *            the maximum random milliseconds added to the latency
+	 */
+	public void setJitter(final int jitter) {
+		this.jitter = Math.max(0, jitter);
+	}
+
+	/**
+	 * @return the percentage (0-100) of packets that are lost
+	 */
+	public int getLoss() {
+		return loss;
+	}
+
+	/**
+	 * @param loss
+	 *            the percentage (0-100) of packets that are lost
+	 */
+	public void setLoss(final int loss) {
+		this.loss = Math.max(0, Math.min(100, loss));
+	}
+
+	/**
+	 * @return the number of milliseconds between readings sent by each node
+	 *         (zero when disabled)
+	 */
+	public int getReadingsInterval() {
+		return readingsInterval;
+	}
+
+	/**
+	 * @param readingsInterval
+	 *            the number of milliseconds between readings sent by each
+	 *            node (zero to disable, applies when opened)
+	 */
+	public void setReadingsInterval(final int readingsInterval) {
+		this.readingsInterval = Math.max(0, readingsInterval);
+	}
+
+	/**
+	 * @return the number of milliseconds between images sent by each node
+	 *         (zero when disabled)
+	 */
+	public int getImageInterval() {
+		return imageInterval;
+	}
+
+	/**
+	 * @param imageInterval
+	 *            the number of milliseconds between images sent by each node
+	 *            (zero to disable, applies when opened)
+	 */
+	public void setImageInterval(final int imageInterval) {
+		this.imageInterval = Math.max(0, imageInterval);
+	}
+
+	/**
+	 * @return the number of bytes in each simulated image
+	 */
+	public int getImageSize() {
+		return imageSize;
+	}
+
+	/**
+	 * @param imageSize
+	 *            the number of bytes in each simulated image
+	 */
+	public void setImageSize(final int imageSize) {
+		this.imageSize = imageSize;
+	}
+
+	/**
+	 * @return the number of milliseconds between each image chunk
+	 */
+	public int getImageChunkInterval() {
+		return imageChunkInterval;
+	}
+
+	/**
+	 * @param imageChunkInterval
+	 *            the number of milliseconds between each image chunk
+	 */
+	public void setImageChunkInterval(final int imageChunkInterval) {
+		this.imageChunkInterval = Math.max(0, imageChunkInterval);
+	}
+
+	/**
+	 * @return true when ranges of images are resent using
+	 *         {@linkplain Command#CAM_SEND_PIC_RANGE}
+	 */
+	public boolean isImageRange() {
+		return imageRange;
+	}
+
+	/**
+	 * @param imageRange
+	 *            true to resend ranges of images using
+	 *            {@linkplain Command#CAM_SEND_PIC_RANGE} (the remote node
+	 *            firmware ignores the request)
+	 */
+	public void setImageRange(final boolean imageRange) {
+		this.imageRange = imageRange;
+	}
+
+	/**
+	 * @return the signal strength (in dBm) of received data
+	 */
+	public int getRssi() {
+		return rssi;
+	}
+
+	/**
+	 * @param rssi
+	 *            the signal strength (in dBm) of received data (always
+	 *            negative, the same as the packet parser of a real XBee)
+	 */
+	public void setRssi(final int rssi) {
+		this.rssi = -Math.abs(rssi);
+	}
+
+	/**
+	 * @return the total number of requests sent to the simulator
+	 */
+	public long getTxCount() {
+		return txCount.get();
+	}
+
+	/**
+	 * @return the total number of responses delivered by the simulator
+	 */
+	public long getRxCount() {
+		return rxCount.get();
+	}
+
+	/**
+	 * @return the total number of packets sent to or from simulated remote
+	 *         nodes that were lost
+	 */
+	public long getLostCount() {
+		return lostCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("NODES: %1$s, FIRST ADDRESS: %2$04x, TX: %3$s, RX: %4$s, LOST: %5$s",
+				nodeCount, firstAddress, getTxCount(), getRxCount(), getLostCount());
+	}
+}
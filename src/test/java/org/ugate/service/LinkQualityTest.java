@@ -0,0 +1,74 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RemoteNodeIndex;
+
+/**
+ * {@linkplain LinkQuality} tests using signal strengths as they are reported
+ * by the XBee parser (negative dBm)
+ */
+public class LinkQualityTest {
+
+	private static final String ADDRESS = "3333";
+
+	@Test
+	public void weakSignalDegradesLink() {
+		final LinkQuality lq = new LinkQuality(null, new RemoteNodeIndex());
+		final RemoteNode rn = newRemoteNode();
+		for (int i = 0; i < LinkQuality.MIN_SIGNAL_SAMPLES - 1; i++) {
+			lq.signalStrength(rn, -90);
+		}
+		assertFalse(lq.isDegraded(ADDRESS));
+		lq.signalStrength(rn, -90);
+		assertTrue(lq.isDegraded(ADDRESS));
+		assertEquals(90, lq.getSignalStrength(ADDRESS), 0.001);
+		assertEquals(1, lq.getChangeCount());
+	}
+
+	@Test
+	public void strongSignalRecoversLink() {
+		final LinkQuality lq = new LinkQuality(null, new RemoteNodeIndex());
+		final RemoteNode rn = newRemoteNode();
+		for (int i = 0; i < LinkQuality.MIN_SIGNAL_SAMPLES; i++) {
+			lq.signalStrength(rn, -90);
+		}
+		assertTrue(lq.isDegraded(ADDRESS));
+		// between the thresholds the link stays degraded
+		for (int i = 0; i < 50; i++) {
+			lq.signalStrength(rn, -80);
+		}
+		assertTrue(lq.isDegraded(ADDRESS));
+		for (int i = 0; i < 50; i++) {
+			lq.signalStrength(rn, -50);
+		}
+		assertFalse(lq.isDegraded(ADDRESS));
+		assertEquals(2, lq.getChangeCount());
+	}
+
+	@Test
+	public void zeroSignalIsIgnored() {
+		final LinkQuality lq = new LinkQuality(null, new RemoteNodeIndex());
+		lq.signalStrength(newRemoteNode(), 0);
+		assertTrue(Double.isNaN(lq.getSignalStrength(ADDRESS)));
+	}
+
+	@Test
+	public void lossDegradesLink() {
+		final LinkQuality lq = new LinkQuality(null, new RemoteNodeIndex());
+		final RemoteNode rn = newRemoteNode();
+		lq.loss(rn, 0.5);
+		assertTrue(lq.isDegraded(ADDRESS));
+	}
+
+	private static RemoteNode newRemoteNode() {
+		final RemoteNode rn = new RemoteNode();
+		rn.setId(1);
+		rn.setAddress(ADDRESS);
+		return rn;
+	}
+}
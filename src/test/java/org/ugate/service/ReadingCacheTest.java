@@ -0,0 +1,170 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ugate.service.entity.RollupGranularity;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * {@linkplain ReadingCache} eviction, live tail and invalidation tests
+ */
+public class ReadingCacheTest {
+
+	private static final int DAY_READINGS = 10;
+	/**
+	 * The estimated size of a loaded day of {@linkplain #DAY_READINGS}
+	 */
+	private static final long DAY_BYTES = 128 + DAY_READINGS * (4 + 8 + 11 * 4);
+
+	@Test
+	public void leastRecentlyUsedDaysAreEvictedBySize() {
+		final Memory cache = new Memory(DAY_BYTES * 2 + DAY_BYTES / 2);
+		final RemoteNode rn = newRemoteNode(1);
+		cache.get(rn, day(1));
+		cache.get(rn, day(2));
+		assertEquals(DAY_BYTES * 2, cache.getBytes());
+		// day 1 becomes the most recently used
+		cache.get(rn, day(1));
+		cache.get(rn, day(3));
+		assertEquals(2, cache.getDayCount());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(DAY_BYTES * 2, cache.getBytes());
+		assertTrue(cache.getBytes() <= cache.getMaxBytes());
+		assertEquals(3, cache.loads.get());
+		cache.get(rn, day(1));
+		assertEquals(3, cache.loads.get());
+		// day 2 was evicted
+		cache.get(rn, day(2));
+		assertEquals(4, cache.loads.get());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void savedReadingsAreAppendedOnce() {
+		final Memory cache = new Memory(ReadingCache.DEFAULT_MAX_BYTES);
+		final RemoteNode rn = newRemoteNode(1);
+		final Date start = RollupGranularity.DAY.start(day(1).getTime());
+		assertEquals(DAY_READINGS, cache.get(rn, day(1)).size());
+		final List<RemoteNodeReading> saved = new ArrayList<>();
+		// live tail
+		saved.add(reading(rn, 100, new Date(start.getTime() + TimeUnit.HOURS.toMillis(5))));
+		// before the first reading of the day
+		saved.add(reading(rn, 101, new Date(start.getTime() + TimeUnit.SECONDS.toMillis(30))));
+		// already cached
+		saved.add(reading(rn, 2, new Date(start.getTime() + TimeUnit.MINUTES.toMillis(2))));
+		// days that are not cached
+		saved.add(reading(rn, 102, RollupGranularity.DAY.start(day(2).getTime())));
+		saved.add(reading(newRemoteNode(2), 103, new Date(start.getTime() + TimeUnit.HOURS.toMillis(6))));
+		cache.append(saved);
+		cache.append(saved.subList(0, 1));
+		assertEquals(2, cache.getAppendCount());
+		final ReadingCache.DayReadings dr = cache.get(rn, day(1));
+		assertEquals(DAY_READINGS + 2, dr.size());
+		assertEquals(101, dr.getId(0));
+		assertEquals(100, dr.getId(dr.size() - 1));
+		for (int i = 1; i < dr.size(); i++) {
+			assertTrue(dr.getReadDate(i - 1).before(dr.getReadDate(i)));
+		}
+		assertEquals(1, cache.getDayCount());
+		assertEquals(1, cache.loads.get());
+		assertEquals(100, dr.getReading(dr.size() - 1).getSonarFeet());
+	}
+
+	@Test
+	public void invalidateRemovesOnlyTheNodesDays() {
+		final Memory cache = new Memory(ReadingCache.DEFAULT_MAX_BYTES);
+		final RemoteNode rn1 = newRemoteNode(1);
+		final RemoteNode rn2 = newRemoteNode(2);
+		cache.get(rn1, day(1));
+		cache.get(rn1, day(2));
+		cache.get(rn2, day(1));
+		cache.invalidate(rn1);
+		assertEquals(1, cache.getDayCount());
+		assertEquals(DAY_BYTES, cache.getBytes());
+		cache.get(rn2, day(1));
+		assertEquals(3, cache.loads.get());
+		cache.get(rn1, day(1));
+		assertEquals(4, cache.loads.get());
+	}
+
+	@Test
+	public void invalidateWaitsForTheCommit() {
+		final Memory cache = new Memory(ReadingCache.DEFAULT_MAX_BYTES);
+		final RemoteNode rn = newRemoteNode(1);
+		cache.get(rn, day(1));
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.invalidateAfterCommit(rn);
+			assertEquals(1, cache.getDayCount());
+			for (final TransactionSynchronization ts : TransactionSynchronizationManager.getSynchronizations()) {
+				ts.afterCommit();
+			}
+			assertEquals(0, cache.getDayCount());
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		// without a transaction
+		cache.get(rn, day(1));
+		cache.invalidateAfterCommit(rn);
+		assertEquals(0, cache.getDayCount());
+	}
+
+	private static RemoteNode newRemoteNode(final int id) {
+		final RemoteNode rn = new RemoteNode();
+		rn.setId(id);
+		return rn;
+	}
+
+	private static Calendar day(final int dayOfMonth) {
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2013, Calendar.JUNE, dayOfMonth, 12, 0);
+		return cal;
+	}
+
+	private static RemoteNodeReading reading(final RemoteNode rn, final int id, final Date readDate) {
+		final RemoteNodeReading rnr = new RemoteNodeReading();
+		rnr.setId(id);
+		rnr.setRemoteNode(rn);
+		rnr.setReadDate(readDate);
+		rnr.setSonarFeet(id);
+		return rnr;
+	}
+
+	/**
+	 * {@linkplain ReadingCache} that loads {@linkplain #DAY_READINGS} readings
+	 * one minute apart for any day
+	 */
+	private static class Memory extends ReadingCache {
+		private final AtomicInteger loads = new AtomicInteger();
+
+		private Memory(final long maxBytes) {
+			super(maxBytes);
+		}
+
+		@Override
+		List<RemoteNodeReading> load(final RemoteNode remoteNode, final Calendar cal) {
+			loads.incrementAndGet();
+			final Date start = RollupGranularity.DAY.start(cal.getTime());
+			final RemoteNodeReading[] rnrs = new RemoteNodeReading[DAY_READINGS];
+			for (int i = 0; i < DAY_READINGS; i++) {
+				rnrs[i] = reading(remoteNode, i + 1, new Date(start.getTime() + TimeUnit.MINUTES.toMillis(i + 1)));
+			}
+			return Arrays.asList(rnrs);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * {@linkplain ReadingsPoller} airtime budget tests
+ */
+public class ReadingsPollerTest {
+
+	@Test
+	public void otherTrafficDefersPolls() {
+		final ReadingsPoller poller = new ReadingsPoller(null, null);
+		poller.setFramesPerSecond(2);
+		assertEquals(0, poller.acquire());
+		assertEquals(0, poller.acquire());
+		assertTrue(poller.acquire() > 0);
+		// frames written by the transmit engine put the budget into debt
+		final ReadingsPoller busy = new ReadingsPoller(null, null);
+		busy.setFramesPerSecond(2);
+		for (int i = 0; i < 10; i++) {
+			busy.charge();
+		}
+		assertEquals(10, busy.getChargedCount());
+		final long wait = busy.acquire();
+		assertTrue(String.format("Waited only %1$s ns", wait), wait > TimeUnit.SECONDS.toNanos(4));
+	}
+
+	@Test
+	public void debtIsBounded() {
+		final ReadingsPoller poller = new ReadingsPoller(null, null);
+		poller.setFramesPerSecond(1);
+		for (int i = 0; i < ReadingsPoller.DEFAULT_INTERVAL_SEC * 10; i++) {
+			poller.charge();
+		}
+		assertTrue(poller.acquire() <= TimeUnit.SECONDS.toNanos(ReadingsPoller.DEFAULT_INTERVAL_SEC + 1));
+	}
+}
@@ -0,0 +1,211 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * {@linkplain ReadingsWriter} batching, backpressure, flush and fallback
+ * tests
+ */
+public class ReadingsWriterTest {
+
+	private static final int RATE_READINGS = 200000;
+
+	@Test
+	public void readingsAreSavedInBatches() {
+		final Store writer = new Store(1000, 10, 50);
+		writer.start();
+		for (int i = 0; i < 95; i++) {
+			assertTrue(writer.write(newReading(i)));
+		}
+		writer.stop();
+		assertEquals(95, writer.getWrittenCount());
+		assertEquals(95, writer.saved.size());
+		assertTrue(writer.getBatchCount() >= 10);
+		for (final int size : writer.batchSizes) {
+			assertTrue(String.format("Batch of %1$s readings", size), size <= 10);
+		}
+	}
+
+	@Test
+	public void stopFlushesWaitingReadings() {
+		// readings would otherwise wait for a full batch or the flush interval
+		final Store writer = new Store(1000, 1000, TimeUnit.MINUTES.toMillis(1));
+		writer.start();
+		for (int i = 0; i < 250; i++) {
+			writer.write(newReading(i));
+		}
+		writer.stop();
+		assertEquals(250, writer.getWrittenCount());
+		assertEquals(0, writer.getPendingCount());
+		assertEquals(0, writer.getDroppedCount());
+	}
+
+	@Test
+	public void fullQueueDropsReadings() throws InterruptedException {
+		final CountDownLatch saving = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Store writer = new Store(2, 1, 10, 10) {
+			@Override
+			void saveReadings(final List<RemoteNodeReading> batch) {
+				saving.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.saveReadings(batch);
+			}
+		};
+		writer.start();
+		try {
+			assertTrue(writer.write(newReading(0)));
+			assertTrue(saving.await(5, TimeUnit.SECONDS));
+			// the writer is stuck saving the first reading
+			assertTrue(writer.write(newReading(1)));
+			assertTrue(writer.write(newReading(2)));
+			assertFalse(writer.write(newReading(3)));
+			assertEquals(1, writer.getDroppedCount());
+		} finally {
+			release.countDown();
+			writer.stop();
+		}
+		assertEquals(3, writer.getWrittenCount());
+	}
+
+	@Test
+	public void failedBatchFallsBackToNewReadings() {
+		// the batch is only saved once all of the readings have been written
+		final Store writer = new Store(1000, 5, TimeUnit.MINUTES.toMillis(1)) {
+			@Override
+			void saveReadings(final List<RemoteNodeReading> batch) {
+				// IDs are assigned before the transaction is rolled back
+				for (int i = 0; i < batch.size(); i++) {
+					batch.get(i).setId(1000 + i);
+				}
+				throw new IllegalStateException("Rolled back");
+			}
+
+			@Override
+			void saveReading(final RemoteNodeReading remoteNodeReading) {
+				assertEquals(0, remoteNodeReading.getId());
+				if (remoteNodeReading.getSonarFeet() == 3) {
+					throw new IllegalStateException("Bad reading");
+				}
+				super.saveReading(remoteNodeReading);
+			}
+		};
+		final List<RemoteNodeReading> batch = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			batch.add(newReading(i));
+		}
+		writer.start();
+		for (final RemoteNodeReading rnr : batch) {
+			writer.write(rnr);
+		}
+		writer.stop();
+		assertEquals(4, writer.getWrittenCount());
+		assertEquals(1, writer.getFailedCount());
+		assertEquals(4, writer.saved.size());
+	}
+
+	@Test
+	public void flushNeverSavesConcurrentlyWithTheWriter() throws InterruptedException {
+		final AtomicInteger saving = new AtomicInteger();
+		final AtomicInteger maxSaving = new AtomicInteger();
+		final Store writer = new Store(10000, 5, 1) {
+			@Override
+			void saveReadings(final List<RemoteNodeReading> batch) {
+				final int n = saving.incrementAndGet();
+				if (n > maxSaving.get()) {
+					maxSaving.set(n);
+				}
+				try {
+					Thread.sleep(1);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				saving.decrementAndGet();
+				super.saveReadings(batch);
+			}
+		};
+		writer.start();
+		for (int i = 0; i < 500; i++) {
+			writer.write(newReading(i));
+			if (i % 50 == 0) {
+				// the same as a shutdown hook flush while the writer is running
+				writer.flush();
+			}
+		}
+		writer.stop();
+		assertEquals(500, writer.getWrittenCount());
+		assertEquals(1, maxSaving.get());
+	}
+
+	@Test
+	public void writeRate() {
+		final Store writer = new Store(ReadingsWriter.DEFAULT_CAPACITY,
+				ReadingsWriter.DEFAULT_BATCH_SIZE, ReadingsWriter.DEFAULT_FLUSH_MILISECONDS);
+		writer.start();
+		final long start = System.nanoTime();
+		for (int i = 0; i < RATE_READINGS; i++) {
+			assertTrue(writer.write(newReading(i)));
+		}
+		writer.stop();
+		final long nanos = System.nanoTime() - start;
+		assertEquals(RATE_READINGS, writer.getWrittenCount());
+		LoggerFactory.getLogger(ReadingsWriterTest.class).info(String.format(
+				"Wrote %1$s reading(s) in %2$s batch(es): %3$s readings/sec (%4$s ns per write)",
+				RATE_READINGS, writer.getBatchCount(), RATE_READINGS * 1000000000L / Math.max(1, nanos),
+				nanos / RATE_READINGS));
+	}
+
+	private static RemoteNodeReading newReading(final int i) {
+		final RemoteNodeReading rnr = new RemoteNodeReading();
+		rnr.setReadDate(new Date());
+		rnr.setSonarFeet(i);
+		return rnr;
+	}
+
+	/**
+	 * {@linkplain ReadingsWriter} that saves to memory
+	 */
+	private static class Store extends ReadingsWriter {
+		private final List<RemoteNodeReading> saved = Collections.synchronizedList(
+				new ArrayList<RemoteNodeReading>());
+		private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		private Store(final int capacity, final int batchSize, final long flushMiliseconds) {
+			super(capacity, batchSize, flushMiliseconds);
+		}
+
+		private Store(final int capacity, final int batchSize, final long flushMiliseconds,
+				final long offerMiliseconds) {
+			super(capacity, batchSize, flushMiliseconds, offerMiliseconds);
+		}
+
+		@Override
+		void saveReadings(final List<RemoteNodeReading> batch) {
+			batchSizes.add(batch.size());
+			saved.addAll(batch);
+		}
+
+		@Override
+		void saveReading(final RemoteNodeReading remoteNodeReading) {
+			saved.add(remoteNodeReading);
+		}
+	}
+}
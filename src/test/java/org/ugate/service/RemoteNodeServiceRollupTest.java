@@ -0,0 +1,240 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.ugate.service.entity.RollupGranularity;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * {@linkplain RemoteNodeReadingRollup} maintenance by the
+ * {@linkplain RemoteNodeService} as readings are saved, backfilled (see
+ * {@linkplain RollupBackfill}) and removed
+ */
+public class RemoteNodeServiceRollupTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	@Test
+	public void savedReadingsUpdateEveryGranularity() {
+		final ServiceTestContext ctx = ServiceTestContext.get();
+		final RemoteNodeService rns = ctx.getRemoteNodeService();
+		final RemoteNode rn = ctx.newRemoteNode();
+		final Date day = day(2013, Calendar.MARCH, 14);
+		final List<RemoteNodeReading> all = new ArrayList<>();
+		// several saves that add to the same buckets
+		for (int b = 0; b < 4; b++) {
+			final List<RemoteNodeReading> batch = readings(rn, new Date(day.getTime() + b * HOUR / 2), 25, b);
+			rns.saveReadings(batch);
+			all.addAll(batch);
+		}
+		rns.saveReading(reading(rn, new Date(day.getTime() + 5 * HOUR), 99));
+		all.add(reading(rn, new Date(day.getTime() + 5 * HOUR), 99));
+		final List<RemoteNodeReadingRollup> hours = rollups(rns, rn, RollupGranularity.HOUR, day);
+		assertEquals(3, hours.size());
+		assertRollup(all.subList(0, 50), hours.get(0));
+		assertRollup(all.subList(50, 100), hours.get(1));
+		assertRollup(all.subList(100, 101), hours.get(2));
+		assertRollup(all, single(rollups(rns, rn, RollupGranularity.DAY, day)));
+		assertRollup(all, single(rollups(rns, rn, RollupGranularity.MONTH, day)));
+	}
+
+	@Test
+	public void backfillIncludesTheStartDayUpToTheWatermark() throws SQLException {
+		final ServiceTestContext ctx = ServiceTestContext.get();
+		final RemoteNodeService rns = ctx.getRemoteNodeService();
+		final RemoteNode rn = ctx.newRemoteNode();
+		final Date day1 = day(2013, Calendar.APRIL, 10);
+		final Date day2 = day(2013, Calendar.APRIL, 11);
+		final Date rollupStart = new Date(day2.getTime() + 12 * HOUR);
+		// readings saved before rollups were kept up to date
+		final List<RemoteNodeReading> before = new ArrayList<>();
+		before.addAll(readings(rn, new Date(day1.getTime() + 3 * HOUR), 30, 5));
+		before.addAll(readings(rn, new Date(day2.getTime() + 8 * HOUR), 20, 1));
+		persistWithoutRollups(ctx, before);
+		clearRollupDates(ctx, rn);
+		assertEquals(1, rns.updateRollupStartDates(rollupStart));
+		// readings saved after
+		final List<RemoteNodeReading> after = readings(rn, new Date(rollupStart.getTime() + HOUR), 10, 0);
+		rns.saveReadings(after);
+
+		final RollupBackfill backfill = new RollupBackfill();
+		backfill.backfill(rns);
+		assertEquals(2, backfill.getCheckedDays());
+		assertEquals(2, backfill.getRebuiltDays());
+		assertEquals(0, backfill.getFailedDays());
+		final List<RemoteNodeReading> d2 = new ArrayList<>(before.subList(30, 50));
+		d2.addAll(after);
+		assertRollup(before.subList(0, 30), single(rollups(rns, rn, RollupGranularity.DAY, day1)));
+		assertRollup(d2, single(rollups(rns, rn, RollupGranularity.DAY, day2)));
+		final List<RemoteNodeReading> all = new ArrayList<>(before);
+		all.addAll(after);
+		assertRollup(all, single(rollups(rns, rn, RollupGranularity.MONTH, day1)));
+		final RemoteNode found = rns.findById(rn.getId());
+		assertEquals(rollupStart.getTime(), found.getRollupStartDate().getTime());
+		assertEquals(rollupStart.getTime(), found.getRollupBackfillDate().getTime());
+
+		// days before the watermark are not checked again
+		final RollupBackfill again = new RollupBackfill();
+		again.backfill(rns);
+		assertEquals(0, again.getCheckedDays());
+		assertRollup(d2, single(rollups(rns, rn, RollupGranularity.DAY, day2)));
+	}
+
+	@Test
+	public void removalRebuildsTheMonthFromItsDays() {
+		final ServiceTestContext ctx = ServiceTestContext.get();
+		final RemoteNodeService rns = ctx.getRemoteNodeService();
+		final RemoteNode rn = ctx.newRemoteNode();
+		final Date day1 = day(2013, Calendar.MAY, 20);
+		final Date day2 = day(2013, Calendar.MAY, 21);
+		final List<RemoteNodeReading> kept = readings(rn, new Date(day1.getTime() + HOUR), 20, 7);
+		// the removed day holds the month's extremes
+		final List<RemoteNodeReading> removed = new ArrayList<>();
+		removed.add(reading(rn, new Date(day2.getTime() + HOUR), 0));
+		removed.get(0).setMicrowaveCycleCount(1000);
+		removed.get(0).setPirIntensity(1000);
+		rns.saveReadings(kept);
+		rns.saveReadings(removed);
+		final List<RemoteNodeReading> all = new ArrayList<>(kept);
+		all.addAll(removed);
+		assertRollup(all, single(rollups(rns, rn, RollupGranularity.MONTH, day1)));
+
+		final Calendar start = Calendar.getInstance();
+		start.setTime(day2);
+		final Calendar end = Calendar.getInstance();
+		end.setTime(RollupGranularity.DAY.next(day2));
+		rns.removeReadingsByDateRange(rn, start, end);
+		assertEquals(0, rollups(rns, rn, RollupGranularity.DAY, day2).size());
+		assertEquals(0, rollups(rns, rn, RollupGranularity.HOUR, day2).size());
+		assertRollup(kept, single(rollups(rns, rn, RollupGranularity.DAY, day1)));
+		assertRollup(kept, single(rollups(rns, rn, RollupGranularity.MONTH, day1)));
+	}
+
+	/**
+	 * Asserts that a {@linkplain RemoteNodeReadingRollup} holds the aggregates
+	 * of the {@linkplain RemoteNodeReading}s
+	 */
+	private static void assertRollup(final List<RemoteNodeReading> rnrs, final RemoteNodeReadingRollup actual) {
+		assertNotNull(actual);
+		final RemoteNodeReadingRollup expected = new RemoteNodeReadingRollup(actual.getRemoteNode(),
+				RollupGranularity.valueOf(actual.getGranularity()), actual.getBucketDate());
+		for (final RemoteNodeReading rnr : rnrs) {
+			expected.add(rnr);
+		}
+		assertEquals(expected.getReadingCount(), actual.getReadingCount());
+		assertEquals(expected.getLaserTrips(), actual.getLaserTrips());
+		assertEquals(expected.getMicrowaveTrips(), actual.getMicrowaveTrips());
+		assertEquals(expected.getPirTrips(), actual.getPirTrips());
+		assertEquals(expected.getSonarTrips(), actual.getSonarTrips());
+		assertEquals(expected.getReadTrips(), actual.getReadTrips());
+		assertEquals(expected.getSonarInchesSum(), actual.getSonarInchesSum());
+		assertEquals(expected.getSonarInchesMin(), actual.getSonarInchesMin());
+		assertEquals(expected.getLaserInchesSum(), actual.getLaserInchesSum());
+		assertEquals(expected.getLaserInchesMin(), actual.getLaserInchesMin());
+		assertEquals(expected.getMicrowaveCycleCountSum(), actual.getMicrowaveCycleCountSum());
+		assertEquals(expected.getMicrowaveCycleCountMax(), actual.getMicrowaveCycleCountMax());
+		assertEquals(expected.getPirIntensitySum(), actual.getPirIntensitySum());
+		assertEquals(expected.getPirIntensityMax(), actual.getPirIntensityMax());
+		assertEquals(expected.getSignalStrengthSum(), actual.getSignalStrengthSum());
+	}
+
+	private static RemoteNodeReadingRollup single(final List<RemoteNodeReadingRollup> rollups) {
+		assertEquals(1, rollups.size());
+		return rollups.get(0);
+	}
+
+	/**
+	 * @return the rollups of a granularity within the day (or the month of
+	 *         the day)
+	 */
+	private static List<RemoteNodeReadingRollup> rollups(final RemoteNodeService rns, final RemoteNode rn,
+			final RollupGranularity g, final Date day) {
+		final Calendar start = Calendar.getInstance();
+		start.setTime(g == RollupGranularity.MONTH ? day : RollupGranularity.DAY.start(day));
+		final Calendar end = Calendar.getInstance();
+		end.setTime(g == RollupGranularity.MONTH ? g.next(day) : RollupGranularity.DAY.next(day));
+		return rns.findRollups(rn, g, start, end);
+	}
+
+	private static Date day(final int year, final int month, final int dayOfMonth) {
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, month, dayOfMonth);
+		return cal.getTime();
+	}
+
+	/**
+	 * @return readings one minute apart with values that vary by the offset
+	 */
+	private static List<RemoteNodeReading> readings(final RemoteNode rn, final Date start, final int count,
+			final int offset) {
+		final List<RemoteNodeReading> rnrs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			rnrs.add(reading(rn, new Date(start.getTime() + TimeUnit.MINUTES.toMillis(i)), offset + i));
+		}
+		return rnrs;
+	}
+
+	private static RemoteNodeReading reading(final RemoteNode rn, final Date readDate, final int v) {
+		final RemoteNodeReading rnr = new RemoteNodeReading();
+		rnr.setRemoteNode(rn);
+		rnr.setReadDate(readDate);
+		rnr.setFromMultiState(v % 16);
+		rnr.setSonarFeet(v % 30);
+		rnr.setSonarInches(v % 12);
+		rnr.setLaserFeet(v % 20 + 1);
+		rnr.setLaserInches(v % 12);
+		rnr.setMicrowaveCycleCount(v % 100);
+		rnr.setPirIntensity(v % 50);
+		rnr.setSignalStrength(40 + v % 10);
+		return rnr;
+	}
+
+	/**
+	 * Persists readings the way they were saved before rollups existed
+	 */
+	private static void persistWithoutRollups(final ServiceTestContext ctx, final List<RemoteNodeReading> rnrs) {
+		final EntityManager em = ctx.getEntityManagerFactory().createEntityManager();
+		try {
+			em.getTransaction().begin();
+			for (final RemoteNodeReading rnr : rnrs) {
+				rnr.setRemoteNode(em.find(RemoteNode.class, rnr.getRemoteNode().getId()));
+				em.persist(rnr);
+			}
+			em.getTransaction().commit();
+		} finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.close();
+		}
+	}
+
+	/**
+	 * Clears the rollup dates the way they are for nodes created before
+	 * rollups existed
+	 */
+	private static void clearRollupDates(final ServiceTestContext ctx, final RemoteNode rn) throws SQLException {
+		try (final Connection con = ctx.getDataSource().getConnection();
+				final PreparedStatement ps = con.prepareStatement("UPDATE REMOTE_NODE SET ROLLUP_START_DATE = NULL,"
+						+ " ROLLUP_BACKFILL_DATE = NULL WHERE ID = ?")) {
+			ps.setInt(1, rn.getId());
+			ps.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.ugate.service;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.MailRecipient;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Shared test {@linkplain ClassPathXmlApplicationContext} that wires the same
+ * services as <code>spring-all.xml</code> against an in-memory database using
+ * local transactions (see <code>spring-test.xml</code>). The context is
+ * created once per JVM and kept open until it exits.
+ */
+public class ServiceTestContext {
+
+	private static ServiceTestContext instance;
+	private final ClassPathXmlApplicationContext appContext;
+	private final AtomicInteger addresses = new AtomicInteger();
+
+	private ServiceTestContext() {
+		appContext = new ClassPathXmlApplicationContext(
+				new String[] { "spring-test.xml" });
+		appContext.start();
+		getRemoteNodeService().createIndexes();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				appContext.close();
+			}
+		});
+	}
+
+	/**
+	 * @return the shared {@linkplain ServiceTestContext}
+	 */
+	public static synchronized ServiceTestContext get() {
+		if (instance == null) {
+			instance = new ServiceTestContext();
+		}
+		return instance;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeService}
+	 */
+	public RemoteNodeService getRemoteNodeService() {
+		return (RemoteNodeService) appContext.getBean(RemoteNodeService.class
+				.getSimpleName());
+	}
+
+	/**
+	 * @return the {@linkplain CredentialService}
+	 */
+	public CredentialService getCredentialService() {
+		return (CredentialService) appContext.getBean(CredentialService.class
+				.getSimpleName());
+	}
+
+	/**
+	 * @return the {@linkplain DataSource} of the in-memory database
+	 */
+	public DataSource getDataSource() {
+		return (DataSource) appContext.getBean("dataSource");
+	}
+
+	/**
+	 * @return the {@linkplain EntityManagerFactory}
+	 */
+	public EntityManagerFactory getEntityManagerFactory() {
+		return (EntityManagerFactory) appContext.getBean("entityManagerFactory");
+	}
+
+	/**
+	 * Persists a new {@linkplain Host} with a single {@linkplain RemoteNode}
+	 * that has a unique address
+	 * 
+	 * @return the persisted {@linkplain RemoteNode}
+	 */
+	public RemoteNode newRemoteNode() {
+		final Host host = new Host();
+		final RemoteNode rn = RemoteNodeType.newDefaultRemoteNode(host);
+		rn.setAddress(Integer.toHexString(addresses.incrementAndGet()));
+		final LinkedHashSet<RemoteNode> remoteNodes = new LinkedHashSet<>();
+		remoteNodes.add(rn);
+		host.setRemoteNodes(remoteNodes);
+		host.setMailRecipients(new LinkedHashSet<MailRecipient>());
+		final EntityManager em = getEntityManagerFactory().createEntityManager();
+		try {
+			em.getTransaction().begin();
+			em.persist(host);
+			em.getTransaction().commit();
+		} finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			em.close();
+		}
+		return rn;
+	}
+}
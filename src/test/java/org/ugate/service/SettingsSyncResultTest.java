@@ -0,0 +1,49 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * {@linkplain SettingsSyncResult} deadline tests
+ */
+public class SettingsSyncResultTest {
+
+	@Test
+	public void expiredNodesAreFailed() throws InterruptedException {
+		final SettingsSyncResult result = new SettingsSyncResult(newRemoteNode("3333"),
+				newRemoteNode("4444"), newRemoteNode("5555"));
+		assertFalse(result.completed("3333", SettingsSyncResult.Status.SUCCESS, 0, null));
+		assertFalse(result.await(10, TimeUnit.MILLISECONDS));
+		assertTrue(result.expire("No response"));
+		assertTrue(result.isDone());
+		assertFalse(result.isAllSuccess());
+		assertTrue(result.getPending().isEmpty());
+		assertEquals(Arrays.asList("4444", "5555"), result.getFailed());
+		// a late response for an expired node neither changes nor completes the result again
+		assertFalse(result.completed("4444", SettingsSyncResult.Status.SUCCESS, 0, null));
+		assertEquals(2, result.getCount(SettingsSyncResult.Status.FAILED));
+		assertFalse(result.expire("No response"));
+	}
+
+	@Test
+	public void deadlineCoversEveryAttemptOfEveryWave() {
+		final long grace = WirelessService.SETTINGS_DEADLINE_GRACE_MILISECONDS;
+		assertEquals(2 * 1000 + grace, WirelessService.getSettingsDeadline(1000, 3, 4, 1));
+		assertEquals(3 * 2 * 1000 + grace, WirelessService.getSettingsDeadline(1000, 9, 4, 1));
+		assertEquals(WirelessService.DEFAULT_WAIT_MILISECONDS + grace,
+				WirelessService.getSettingsDeadline(0, 1, 0, 0));
+	}
+
+	private static RemoteNode newRemoteNode(final String address) {
+		final RemoteNode rn = new RemoteNode();
+		rn.setAddress(address);
+		return rn;
+	}
+}
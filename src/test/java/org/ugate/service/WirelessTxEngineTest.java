@@ -0,0 +1,102 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.XBeeSimulator;
+
+import com.rapplogic.xbee.api.wpan.TxRequest16;
+
+/**
+ * {@linkplain WirelessTxEngine} frame ID allocation and in-flight window tests
+ */
+public class WirelessTxEngineTest {
+
+	private XBeeSimulator xbee;
+	private WirelessTxEngine engine;
+
+	@Before
+	public void createEngine() {
+		xbee = new XBeeSimulator(1, 0x3333);
+		engine = new WirelessTxEngine(xbee, 4, 1000);
+	}
+
+	@After
+	public void shutdown() {
+		engine.shutdown();
+	}
+
+	@Test
+	public void reservedFrameIdsAreNotReused() {
+		final Set<Integer> frameIds = new HashSet<>();
+		for (int i = 0; i < 255; i++) {
+			final int frameId = engine.reserveFrameId();
+			assertFalse(frameId == TxRequest16.NO_RESPONSE_FRAME_ID);
+			assertTrue(String.format("Frame ID %1$s allocated twice", frameId), frameIds.add(frameId));
+		}
+		final int released = frameIds.iterator().next();
+		engine.releaseFrameId(released);
+		assertEquals(released, engine.reserveFrameId());
+	}
+
+	@Test
+	public void concurrentReservationsAreUnique() throws InterruptedException {
+		final Set<Integer> frameIds = Collections.synchronizedSet(new HashSet<Integer>());
+		final Set<Integer> duplicates = Collections.synchronizedSet(new HashSet<Integer>());
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 60; i++) {
+						final int frameId = engine.reserveFrameId();
+						if (!frameIds.add(frameId)) {
+							duplicates.add(frameId);
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+		assertEquals(240, frameIds.size());
+		assertTrue(duplicates.isEmpty());
+	}
+
+	@Test
+	public void failedWritesReleaseTheWindow() throws Exception {
+		engine.shutdown();
+		engine = new WirelessTxEngine(new XBeeSimulator(1, 0x3333) {
+			@Override
+			public synchronized int getNextFrameId() {
+				throw new IllegalStateException("No frame ID");
+			}
+		}, 4, 1000);
+		// more failures than the window would stall the writer if a permit leaked
+		final TxFuture[] futures = new TxFuture[engine.getWindow() * 3];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = engine.submit(new TxFuture(new UGateEvent<RemoteNode, int[]>(
+					new RemoteNode(), UGateEvent.Type.WIRELESS_DATA_TX, false), 
+					new int[] { 1 }, 1000, Command.Priority.BULK));
+		}
+		for (final TxFuture f : futures) {
+			assertFalse(f.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(futures.length, engine.getFailedCount());
+		assertEquals(0, engine.getInFlightCount());
+	}
+}
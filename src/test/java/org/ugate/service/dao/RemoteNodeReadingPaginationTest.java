@@ -0,0 +1,214 @@
+package org.ugate.service.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.RemoteNodeService;
+import org.ugate.service.ServiceTestContext;
+import org.ugate.service.entity.SqlCaptureJdbcListener;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Keyset pagination (see {@linkplain RemoteNodeDao#findReadingsByIdAfter})
+ * compared to offset pagination (see
+ * {@linkplain RemoteNodeDao#findReadingsById}) through the
+ * {@linkplain RemoteNodeService} on an in-memory database. Page latencies are
+ * logged for reference only.
+ */
+public class RemoteNodeReadingPaginationTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingPaginationTest.class);
+	private static final int ROWS = 20000;
+	private static final int SMALL_ROWS = 500;
+	/**
+	 * The number of readings that share the same read date
+	 */
+	private static final int TIES = 4;
+	private static final int PAGE_SIZE = 50;
+	private static final int RUNS = 5;
+	private static RemoteNodeService rns;
+	private static RemoteNode large;
+	private static RemoteNode small;
+
+	@BeforeClass
+	public static void createReadings() {
+		final ServiceTestContext ctx = ServiceTestContext.get();
+		rns = ctx.getRemoteNodeService();
+		large = ctx.newRemoteNode();
+		small = ctx.newRemoteNode();
+		final long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30);
+		final List<RemoteNodeReading> batch = new ArrayList<>(PAGE_SIZE);
+		// readings of both nodes are interleaved the same way they are received
+		for (int i = 0; i < ROWS; i++) {
+			final RemoteNodeReading rnr = new RemoteNodeReading();
+			rnr.setRemoteNode(i % (ROWS / SMALL_ROWS) == 0 ? small : large);
+			rnr.setReadDate(new Date(start + TimeUnit.SECONDS.toMillis(i / TIES)));
+			rnr.setSonarFeet(i % 30);
+			batch.add(rnr);
+			if (batch.size() == PAGE_SIZE) {
+				rns.saveReadings(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			rns.saveReadings(batch);
+		}
+	}
+
+	@Test
+	public void seekUsesNodeDateIndex() throws SQLException {
+		final RemoteNodeReading last = rns.findReadingsAfter(large, null, false, 1).get(0);
+		for (final boolean asc : new boolean[] { false, true }) {
+			SqlCaptureJdbcListener.clear();
+			rns.findReadingsAfter(large, last, asc, PAGE_SIZE);
+			final String sql = readingSelect(SqlCaptureJdbcListener.getStatements());
+			final String plan = explain(sql);
+			assertTrue(plan, plan.contains(RemoteNodeDao.READING_NODE_DATE_INDEX));
+		}
+	}
+
+	@Test
+	public void pagesAreCompleteWithTiedDates() {
+		for (final boolean asc : new boolean[] { false, true }) {
+			final Set<Integer> ids = new HashSet<>();
+			RemoteNodeReading last = null;
+			List<RemoteNodeReading> page;
+			do {
+				page = rns.findReadingsAfter(small, last, asc, 37);
+				for (final RemoteNodeReading rnr : page) {
+					assertEquals(small.getId(), rnr.getRemoteNode().getId());
+					if (last != null) {
+						final int cmp = compare(rnr, last);
+						assertTrue(String.format("%1$s follows %2$s", toString(rnr), toString(last)),
+								asc ? cmp > 0 : cmp < 0);
+					}
+					assertTrue(String.format("%1$s returned twice", toString(rnr)), ids.add(rnr.getId()));
+					last = rnr;
+				}
+			} while (!page.isEmpty());
+			assertEquals(SMALL_ROWS, ids.size());
+		}
+	}
+
+	@Test
+	public void deepPagesMatchOffsetPages() {
+		final int nodeRows = ROWS - SMALL_ROWS;
+		final int[] depths = new int[] { PAGE_SIZE, nodeRows / 2, nodeRows - PAGE_SIZE * 2 };
+		for (final int depth : depths) {
+			final RemoteNodeReading cursor = rns.findReadingsById(large, depth - 1, 1).get(0);
+			final List<RemoteNodeReading> seekPage = rns.findReadingsAfter(large, cursor, false, PAGE_SIZE);
+			assertEquals(PAGE_SIZE, seekPage.size());
+			// offset pages are only ordered by date so readings that share the
+			// date of the cursor can be on either side of it
+			final List<Date> offsetDates = readDates(rns.findReadingsById(large, depth, PAGE_SIZE),
+					cursor.getReadDate());
+			final List<Date> seekDates = readDates(seekPage, cursor.getReadDate());
+			final int size = Math.min(offsetDates.size(), seekDates.size());
+			assertTrue(size >= PAGE_SIZE - TIES);
+			assertEquals(offsetDates.subList(0, size), seekDates.subList(0, size));
+			final long[] seeks = new long[RUNS];
+			final long[] offsets = new long[RUNS];
+			for (int r = 0; r < RUNS; r++) {
+				long start = System.nanoTime();
+				rns.findReadingsAfter(large, cursor, false, PAGE_SIZE);
+				seeks[r] = System.nanoTime() - start;
+				start = System.nanoTime();
+				rns.findReadingsById(large, depth, PAGE_SIZE);
+				offsets[r] = System.nanoTime() - start;
+			}
+			log.info(String.format("Page at %1$s of %2$s reading(s): keyset %3$.3f ms, offset %4$.3f ms",
+					depth, nodeRows, median(seeks) / 1e6, median(offsets) / 1e6));
+		}
+	}
+
+	/**
+	 * @param statements
+	 *            the captured SQL statements
+	 * @return the reading select issued by the DAO
+	 */
+	private static String readingSelect(final List<String> statements) {
+		for (final String sql : statements) {
+			if (sql != null && sql.trim().toUpperCase().startsWith("SELECT")
+					&& sql.toUpperCase().contains("REMOTE_NODE_READING")) {
+				return sql;
+			}
+		}
+		throw new AssertionError(String.format("No reading select in %1$s", statements));
+	}
+
+	/**
+	 * @param sql
+	 *            the SQL to get the plan for (parameters are bound to null
+	 *            since they do not change the chosen index)
+	 * @return the query plan
+	 */
+	private static String explain(final String sql) throws SQLException {
+		try (final Connection con = ServiceTestContext.get().getDataSource().getConnection();
+				final PreparedStatement ps = con.prepareStatement("EXPLAIN " + sql)) {
+			final ParameterMetaData pmd = ps.getParameterMetaData();
+			for (int i = 1; i <= pmd.getParameterCount(); i++) {
+				ps.setObject(i, null);
+			}
+			try (final ResultSet rs = ps.executeQuery()) {
+				assertTrue(rs.next());
+				final String plan = rs.getString(1);
+				assertNotNull(plan);
+				return plan;
+			}
+		}
+	}
+
+	/**
+	 * @param readings
+	 *            the {@linkplain RemoteNodeReading}s
+	 * @param exclude
+	 *            the read date to leave out
+	 * @return the read dates of the readings
+	 */
+	private static List<Date> readDates(final List<RemoteNodeReading> readings, final Date exclude) {
+		final List<Date> dates = new ArrayList<>(readings.size());
+		for (final RemoteNodeReading rnr : readings) {
+			if (rnr.getReadDate().getTime() != exclude.getTime()) {
+				dates.add(new Date(rnr.getReadDate().getTime()));
+			}
+		}
+		return dates;
+	}
+
+	/**
+	 * Compares the (read date, ID) of two readings
+	 */
+	private static int compare(final RemoteNodeReading r1, final RemoteNodeReading r2) {
+		final int cmp = Long.compare(r1.getReadDate().getTime(), r2.getReadDate().getTime());
+		return cmp != 0 ? cmp : Integer.compare(r1.getId(), r2.getId());
+	}
+
+	private static String toString(final RemoteNodeReading rnr) {
+		return String.format("(%1$s, %2$s)", rnr.getReadDate(), rnr.getId());
+	}
+
+	private static long median(final long[] values) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
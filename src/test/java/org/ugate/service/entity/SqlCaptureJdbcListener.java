@@ -0,0 +1,43 @@
+package org.ugate.service.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+
+/**
+ * Test listener for JDBC transactions that captures the SQL of every prepared
+ * statement so the statements issued by a DAO can be inspected (see
+ * <code>spring-test.xml</code>)
+ */
+public class SqlCaptureJdbcListener extends AbstractJDBCListener {
+
+	private static final List<String> statements = new ArrayList<>();
+
+	@Override
+	public void afterPrepareStatement(final JDBCEvent jdbcEvent) {
+		synchronized (statements) {
+			statements.add(jdbcEvent.getSQL());
+		}
+	}
+
+	/**
+	 * Clears the captured SQL
+	 */
+	public static void clear() {
+		synchronized (statements) {
+			statements.clear();
+		}
+	}
+
+	/**
+	 * @return the SQL of the statements prepared since the last
+	 *         {@linkplain #clear()}
+	 */
+	public static List<String> getStatements() {
+		synchronized (statements) {
+			return new ArrayList<>(statements);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package org.ugate.service.entity.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.SequenceGenerator;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.RemoteNodeService;
+import org.ugate.service.ServiceTestContext;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Ingest of {@linkplain RemoteNodeReading}s through
+ * {@linkplain RemoteNodeService#saveReadings(List)} on an in-memory database.
+ * IDs should be reserved from the database sequence in blocks of the
+ * {@linkplain SequenceGenerator#allocationSize()} configured in
+ * <code>META-INF/orm.xml</code> rather than the one at a time of the mapping
+ * annotation. The ingest rate is logged for reference only.
+ */
+public class RemoteNodeReadingIngestTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingIngestTest.class);
+	private static final String GENERATOR = "REMOTE_NODE_RD_ID_GENERATOR";
+	private static final String SEQUENCE = "SQ_REMOTE_NODE_RD_ID";
+	private static final int ROWS = 10000;
+	private static final int BATCH_SIZE = 50;
+
+	@Test
+	public void blockSizeIsConfigured() throws Exception {
+		final int blockSize = blockSize();
+		assertTrue(String.format("Block size %1$s", blockSize), blockSize > 1);
+		// the block size comes from the mapping file only
+		final SequenceGenerator sg = RemoteNodeReading.class.getDeclaredField("id").getAnnotation(
+				SequenceGenerator.class);
+		assertEquals(GENERATOR, sg.name());
+		assertEquals(1, sg.allocationSize());
+	}
+
+	@Test
+	public void ingestReservesIdsInBlocks() throws Exception {
+		final ServiceTestContext ctx = ServiceTestContext.get();
+		final RemoteNode rn = ctx.newRemoteNode();
+		final int blockSize = blockSize();
+		// warm up (also creates the sequence)
+		ingest(ctx.getRemoteNodeService(), rn, 0, BATCH_SIZE * 10);
+		final long[] seqBefore = sequence(ctx);
+		assertEquals(blockSize, seqBefore[1]);
+		final long start = System.nanoTime();
+		ingest(ctx.getRemoteNodeService(), rn, BATCH_SIZE * 10, ROWS);
+		final long nanos = System.nanoTime() - start;
+		final long[] seqAfter = sequence(ctx);
+		final long roundTrips = (seqAfter[0] - seqBefore[0]) / blockSize;
+		log.info(String.format("Ingested %1$s reading(s) at %2$.0f/sec in batches of %3$s using %4$s "
+				+ "sequence call(s) for blocks of %5$s ID(s)", ROWS,
+				ROWS / (nanos / (double) TimeUnit.SECONDS.toNanos(1)), BATCH_SIZE, roundTrips, blockSize));
+		assertTrue(String.format("%1$s sequence calls", roundTrips), roundTrips <= ROWS / blockSize + 2);
+		try (final Connection con = ctx.getDataSource().getConnection();
+				final PreparedStatement ps = con.prepareStatement("SELECT COUNT(*), COUNT(DISTINCT ID)"
+						+ " FROM REMOTE_NODE_READING WHERE REMOTE_NODE_ID = ?")) {
+			ps.setInt(1, rn.getId());
+			try (final ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				assertEquals(BATCH_SIZE * 10 + ROWS, rs.getInt(1));
+				assertEquals(BATCH_SIZE * 10 + ROWS, rs.getInt(2));
+			}
+		}
+	}
+
+	/**
+	 * Saves readings in batches of {@linkplain #BATCH_SIZE} the same way the
+	 * write-behind path does
+	 * 
+	 * @param rns
+	 *            the {@linkplain RemoteNodeService}
+	 * @param rn
+	 *            the {@linkplain RemoteNode} of the readings
+	 * @param offset
+	 *            the offset used for the reading values
+	 * @param rows
+	 *            the number of readings to save
+	 */
+	private static void ingest(final RemoteNodeService rns, final RemoteNode rn, final int offset,
+			final int rows) {
+		final long now = System.currentTimeMillis();
+		final List<RemoteNodeReading> batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < rows; i++) {
+			final int v = offset + i;
+			final RemoteNodeReading rnr = new RemoteNodeReading();
+			rnr.setRemoteNode(rn);
+			rnr.setReadDate(new Date(now + v));
+			rnr.setSonarFeet(v % 30);
+			rnr.setSonarInches(v % 12);
+			rnr.setMicrowaveCycleCount(v % 100);
+			rnr.setPirIntensity(v % 100);
+			rnr.setLaserFeet(v % 30);
+			rnr.setLaserInches(v % 12);
+			rnr.setGateState(v % 2);
+			rnr.setSignalStrength(40);
+			batch.add(rnr);
+			if (batch.size() == BATCH_SIZE) {
+				rns.saveReadings(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			rns.saveReadings(batch);
+		}
+	}
+
+	/**
+	 * @param ctx
+	 *            the {@linkplain ServiceTestContext}
+	 * @return the current value and increment of the reading ID sequence
+	 * @throws SQLException
+	 *             thrown when the sequence cannot be read
+	 */
+	private static long[] sequence(final ServiceTestContext ctx) throws SQLException {
+		try (final Connection con = ctx.getDataSource().getConnection();
+				final PreparedStatement ps = con.prepareStatement("SELECT CURRENT_VALUE, INCREMENT"
+						+ " FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?")) {
+			ps.setString(1, SEQUENCE);
+			try (final ResultSet rs = ps.executeQuery()) {
+				assertTrue(String.format("%1$s is missing", SEQUENCE), rs.next());
+				return new long[] { rs.getLong(1), rs.getLong(2) };
+			}
+		}
+	}
+
+	/**
+	 * @return the allocation size of the {@linkplain RemoteNodeReading}
+	 *         generator from the (filtered) <code>META-INF/orm.xml</code>
+	 * @throws Exception
+	 *             thrown when the mapping cannot be read
+	 */
+	private static int blockSize() throws Exception {
+		try (final InputStream is = RemoteNodeReadingIngestTest.class.getResourceAsStream("/META-INF/orm.xml")) {
+			assertNotNull("META-INF/orm.xml is missing", is);
+			final NodeList nl = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is)
+					.getElementsByTagName("sequence-generator");
+			for (int i = 0; i < nl.getLength(); i++) {
+				final Element e = (Element) nl.item(i);
+				if (GENERATOR.equals(e.getAttribute("name"))) {
+					return Integer.parseInt(e.getAttribute("allocation-size"));
+				}
+			}
+		}
+		throw new AssertionError(String.format("%1$s is not mapped in META-INF/orm.xml", GENERATOR));
+	}
+}
@@ -0,0 +1,118 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * {@linkplain ImageBuffer} tests
+ */
+public class ImageBufferTest {
+
+	@Test
+	public void appendNarrowsAndTracksLength() {
+		final ImageBuffer buffer = new ImageBuffer(4);
+		assertEquals(0, buffer.append(new int[] { 9, 0xFF, 0x80, 1 }, 1, 3));
+		assertEquals(3, buffer.append(new int[] { 2, 3 }, 0, 2));
+		assertEquals(5, buffer.length());
+		assertEquals(0xFF, buffer.get(0));
+		assertEquals(0x80, buffer.get(1));
+		assertEquals(3, buffer.get(4));
+		buffer.release();
+	}
+
+	@Test
+	public void growsPastInitialCapacity() {
+		final ImageBuffer buffer = new ImageBuffer(8);
+		final int[] chunk = new int[64];
+		for (int i = 0; i < chunk.length; i++) {
+			chunk[i] = i;
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i * chunk.length, buffer.append(chunk, 0, chunk.length));
+		}
+		assertEquals(100 * chunk.length, buffer.length());
+		for (int i = 0; i < buffer.length(); i++) {
+			assertEquals(i % chunk.length, buffer.get(i));
+		}
+		buffer.release();
+	}
+
+	@Test
+	public void insertReservesZeroFilledGap() {
+		final ImageBuffer buffer = new ImageBuffer(4);
+		buffer.append(new int[] { 1, 2, 3, 4 }, 0, 4);
+		buffer.insert(2, 3);
+		assertEquals(7, buffer.length());
+		assertEquals(2, buffer.get(1));
+		assertEquals(0, buffer.get(2));
+		assertEquals(0, buffer.get(4));
+		assertEquals(3, buffer.get(5));
+		buffer.set(2, new int[] { 7, 8, 9 }, 0, 3);
+		assertEquals(8, buffer.get(3));
+		buffer.release();
+	}
+
+	@Test
+	public void removeShiftsSubsequentBytes() {
+		final ImageBuffer buffer = new ImageBuffer(4);
+		buffer.append(new int[] { 1, 2, 3, 4, 5 }, 0, 5);
+		buffer.remove(1, 2);
+		assertEquals(3, buffer.length());
+		assertEquals(1, buffer.get(0));
+		assertEquals(4, buffer.get(1));
+		assertEquals(5, buffer.get(2));
+		buffer.release();
+	}
+
+	@Test
+	public void matchesComparesNarrowedValues() {
+		final ImageBuffer buffer = new ImageBuffer(4);
+		buffer.append(new int[] { 1, 0xFF, 3 }, 0, 3);
+		assertTrue(buffer.matches(1, new int[] { 9, 0xFF, 3 }, 1, 2));
+		assertFalse(buffer.matches(0, new int[] { 1, 2 }, 0, 2));
+		assertFalse(buffer.matches(2, new int[] { 3, 4 }, 0, 2));
+		buffer.release();
+	}
+
+	@Test
+	public void readOnlyViewCoversContents() {
+		final ImageBuffer buffer = new ImageBuffer(16);
+		buffer.append(new int[] { 1, 2, 3 }, 0, 3);
+		final ByteBuffer view = buffer.asReadOnlyBuffer();
+		assertTrue(view.isReadOnly());
+		assertEquals(3, view.remaining());
+		assertEquals(2, view.get(1));
+		buffer.release();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void setOutsideContentsFails() {
+		final ImageBuffer buffer = new ImageBuffer(16);
+		buffer.append(new int[] { 1, 2 }, 0, 2);
+		buffer.set(1, new int[] { 1, 2 }, 0, 2);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releasedBufferCannotBeAppended() {
+		final ImageBuffer buffer = new ImageBuffer(16);
+		buffer.release();
+		buffer.append(new int[] { 1 }, 0, 1);
+	}
+
+	@Test
+	public void releasedArrayIsReused() {
+		final ImageBuffer first = new ImageBuffer(32);
+		first.append(new int[] { 5, 6 }, 0, 2);
+		first.release();
+		final ImageBuffer second = new ImageBuffer(32);
+		assertEquals(0, second.length());
+		second.append(new int[] { 7 }, 0, 1);
+		assertEquals(7, second.get(0));
+		second.release();
+	}
+}
@@ -0,0 +1,174 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.ApiId;
+import com.rapplogic.xbee.api.PacketParser;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+
+/**
+ * Per-frame cost of resolving the {@linkplain RemoteNode} that sent a frame
+ * using the {@linkplain RemoteNodeIndex} compared to querying the embedded H2
+ * database for each frame (the way senders were resolved before the index)
+ */
+public class RemoteNodeIndexLookupTest {
+
+	private static final int NODES = 64;
+	private static final int FIRST_ADDRESS = 0x3333;
+	private static final int FRAMES = 20000;
+	private Connection con;
+	private RemoteNodeIndex index;
+	private RxResponse16[] responses;
+
+	@Before
+	public void createNodes() throws SQLException {
+		con = DriverManager.getConnection("jdbc:h2:mem:" + RemoteNodeIndexLookupTest.class.getSimpleName());
+		index = new RemoteNodeIndex();
+		final List<RemoteNode> rns = new ArrayList<>();
+		try (final Statement s = con.createStatement()) {
+			s.execute("CREATE TABLE REMOTE_NODE (ID INT PRIMARY KEY, ADDRESS VARCHAR(4) NOT NULL UNIQUE)");
+		}
+		try (final PreparedStatement ps = con
+				.prepareStatement("INSERT INTO REMOTE_NODE (ID, ADDRESS) VALUES (?, ?)")) {
+			for (int i = 0; i < NODES; i++) {
+				final RemoteNode rn = new RemoteNode();
+				rn.setId(i + 1);
+				rn.setAddress(Integer.toHexString(FIRST_ADDRESS + i));
+				rns.add(rn);
+				ps.setInt(1, rn.getId());
+				ps.setString(2, rn.getAddress());
+				ps.executeUpdate();
+			}
+		}
+		index.warm(1, rns);
+		responses = new RxResponse16[NODES];
+		for (int i = 0; i < NODES; i++) {
+			responses[i] = newResponse(FIRST_ADDRESS + i);
+		}
+	}
+
+	@After
+	public void dropNodes() throws SQLException {
+		if (con == null) {
+			return;
+		}
+		try (final Statement s = con.createStatement()) {
+			s.execute("DROP ALL OBJECTS");
+		}
+		con.close();
+	}
+
+	@Test
+	public void perFrameLookupCost() throws SQLException {
+		final PreparedStatement query = con.prepareStatement("SELECT ID, ADDRESS FROM REMOTE_NODE WHERE ADDRESS = ?");
+		final UGateXBeePacketListener before = new Listener(index) {
+			@Override
+			protected RemoteNode findRemoteNode(final RxResponse16 rxResponse) {
+				try {
+					query.setString(1, Integer.toHexString(rxResponse.getRemoteAddress().get16BitValue()));
+					try (final ResultSet rs = query.executeQuery()) {
+						if (!rs.next()) {
+							return null;
+						}
+						final RemoteNode rn = new RemoteNode();
+						rn.setId(rs.getInt(1));
+						rn.setAddress(rs.getString(2));
+						return rn;
+					}
+				} catch (final SQLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		final UGateXBeePacketListener after = new Listener(index);
+		try {
+			// warm up
+			lookup(before, FRAMES);
+			lookup(after, FRAMES);
+			final long beforeNanos = lookup(before, FRAMES);
+			final long afterNanos = lookup(after, FRAMES);
+			LoggerFactory.getLogger(RemoteNodeIndexLookupTest.class).info(String.format(
+					"Resolved %1$s frame(s) from %2$s node(s): %3$s ns/frame querying the database, "
+							+ "%4$s ns/frame using the index", FRAMES, NODES, beforeNanos / FRAMES,
+					afterNanos / FRAMES));
+		} finally {
+			query.close();
+			before.shutdown(0);
+			after.shutdown(0);
+		}
+		assertEquals(FRAMES * 2, index.getHitCount());
+	}
+
+	/**
+	 * Resolves the sender of frames from all of the nodes
+	 * 
+	 * @param listener
+	 *            the {@linkplain UGateXBeePacketListener} to resolve with
+	 * @param frames
+	 *            the number of frames
+	 * @return the number of nanoseconds it took to resolve the frames
+	 */
+	private long lookup(final UGateXBeePacketListener listener, final int frames) {
+		final long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			assertNotNull(listener.findRemoteNode(responses[i % responses.length]));
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @param address
+	 *            the address of the sender
+	 * @return a readings {@linkplain RxResponse16} parsed from raw bytes
+	 */
+	private static RxResponse16 newResponse(final int address) {
+		final int[] payload = new int[] { Command.SENSOR_GET_READINGS.getKey(), 0, 1, 2, 3, 4, 5, 6, 0 };
+		final int[] frameData = new int[payload.length + 5];
+		frameData[0] = ApiId.RX_16_RESPONSE.getValue();
+		frameData[1] = address >> 8;
+		frameData[2] = address & 0xFF;
+		frameData[3] = 40;
+		System.arraycopy(payload, 0, frameData, 5, payload.length);
+		final int[] packet = new XBeePacket(frameData).getByteArray();
+		final byte[] raw = new byte[packet.length - 1];
+		for (int j = 1; j < packet.length; j++) {
+			raw[j - 1] = (byte) packet[j];
+		}
+		return (RxResponse16) new PacketParser(new ByteArrayInputStream(raw)).parsePacket();
+	}
+
+	/**
+	 * Listener that ignores the events it handles
+	 */
+	private static class Listener extends UGateXBeePacketListener {
+
+		Listener(final RemoteNodeIndex remoteNodeIndex) {
+			super(remoteNodeIndex);
+		}
+
+		@Override
+		protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+		}
+	}
+}
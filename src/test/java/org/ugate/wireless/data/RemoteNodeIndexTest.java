@@ -0,0 +1,131 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * {@linkplain RemoteNodeIndex} lookup tests
+ */
+public class RemoteNodeIndexTest {
+
+	@Test
+	public void warmIndexesByAddress() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final RemoteNode rn1 = newRemoteNode(1, "3333");
+		final RemoteNode rn2 = newRemoteNode(2, "3334");
+		index.warm(1, Arrays.asList(rn1, rn2));
+		assertEquals(2, index.size());
+		assertSame(rn1, index.get(0x3333));
+		assertSame(rn2, index.get(0x3334));
+		assertNull(index.get(0x4444));
+		assertEquals(2, index.getHitCount());
+		assertEquals(1, index.getMissCount());
+	}
+
+	@Test
+	public void invalidAddressIsNotIndexed() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		index.warm(1, Arrays.asList(newRemoteNode(1, "XYZ"), newRemoteNode(2, "12345")));
+		assertEquals(0, index.size());
+		assertEquals(-1, RemoteNodeIndex.toAddress(null));
+		assertEquals(0x00FF, RemoteNodeIndex.toAddress("ff"));
+	}
+
+	@Test
+	public void putReplacesChangedAddress() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final RemoteNode rn = newRemoteNode(1, "3333");
+		index.warm(1, Arrays.asList(rn));
+		final RemoteNode updated = newRemoteNode(1, "3335");
+		index.put(updated);
+		assertEquals(1, index.size());
+		assertNull(index.get(0x3333));
+		assertSame(updated, index.get(0x3335));
+	}
+
+	@Test
+	public void putReplacesInPlace() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		index.warm(1, Arrays.asList(newRemoteNode(1, "3333")));
+		final RemoteNode updated = newRemoteNode(1, "3333");
+		index.put(updated);
+		assertEquals(1, index.size());
+		assertSame(updated, index.get(0x3333));
+	}
+
+	@Test
+	public void removedNodeIsNotResolved() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final RemoteNode rn = newRemoteNode(1, "3333");
+		index.warm(1, Arrays.asList(rn));
+		index.handle(new UGateEvent<RemoteNode, RemoteNode>(rn,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED, false, rn, null));
+		assertNull(index.get(0x3333));
+	}
+
+	@Test
+	public void committedNodeOfOtherHostIsIgnored() {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		index.warm(1, null);
+		final RemoteNode rn = newRemoteNode(5, "3333");
+		final Host host = new Host();
+		host.setId(2);
+		rn.setHost(host);
+		index.handle(new UGateEvent<RemoteNode, RemoteNode>(rn,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED, false, null, rn));
+		assertNull(index.get(0x3333));
+	}
+
+	@Test
+	public void lookupsDoNotMissWhileHostIsRewarmed() throws InterruptedException {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final Host host = new Host();
+		host.setId(1);
+		final LinkedHashSet<RemoteNode> rns = new LinkedHashSet<>();
+		for (int i = 0; i < 64; i++) {
+			rns.add(newRemoteNode(i + 1, Integer.toHexString(0x3333 + i)));
+		}
+		host.setRemoteNodes(rns);
+		index.warm(1, rns);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong misses = new AtomicLong();
+		final Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				int i = 0;
+				while (running.get()) {
+					if (index.get(0x3333 + (i++ & 63)) == null) {
+						misses.incrementAndGet();
+					}
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 500; i++) {
+			index.handle(new UGateEvent<Host, Host>(host, UGateEvent.Type.HOST_COMMITTED, false, null, host));
+			index.put(newRemoteNode(1 + (i & 63), Integer.toHexString(0x3333 + (i & 63))));
+		}
+		running.set(false);
+		reader.join();
+		assertEquals(0, misses.get());
+		assertEquals(64, index.size());
+	}
+
+	private static RemoteNode newRemoteNode(final int id, final String address) {
+		final RemoteNode rn = new RemoteNode();
+		rn.setId(id);
+		rn.setAddress(address);
+		return rn;
+	}
+}
@@ -0,0 +1,85 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@linkplain RxDispatcher} overflow tests
+ */
+public class RxDispatcherTest {
+
+	private RxDispatcher dispatcher;
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void shutdown() {
+		release.countDown();
+		if (dispatcher != null) {
+			dispatcher.shutdown(TimeUnit.SECONDS.toMillis(5));
+		}
+	}
+
+	@Test
+	public void defaultOverflowDoesNotBlockSubmitter() throws InterruptedException {
+		dispatcher = new RxDispatcher(1, 4, null);
+		assertEquals(RxDispatcher.DEFAULT_OVERFLOW, dispatcher.getOverflow());
+		final CountDownLatch started = new CountDownLatch(1);
+		// the lane handler waits the same way a handler waiting on a transmit status would
+		dispatcher.dispatch("3333", new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		final long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			assertTrue(dispatcher.dispatch("3333", newTask()));
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+		assertEquals(96, dispatcher.getDroppedCount());
+		assertEquals(4, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	public void dropNewestRejectsWhenFull() throws InterruptedException {
+		dispatcher = new RxDispatcher(1, 2, RxDispatcher.Overflow.DROP_NEWEST);
+		final CountDownLatch started = new CountDownLatch(1);
+		dispatcher.dispatch("3333", new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(dispatcher.dispatch("3333", newTask()));
+		assertTrue(dispatcher.dispatch("3333", newTask()));
+		assertFalse(dispatcher.dispatch("3333", newTask()));
+		assertEquals(1, dispatcher.getDroppedCount());
+	}
+
+	private static Runnable newTask() {
+		return new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+	}
+}
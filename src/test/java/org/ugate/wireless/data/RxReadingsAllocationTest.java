@@ -0,0 +1,173 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.ApiId;
+import com.rapplogic.xbee.api.PacketParser;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+
+/**
+ * Allocation benchmark of received readings. Readings are the most frequently
+ * received frames, so per-reading success messages and
+ * {@linkplain RxTxRemoteNodeReadingDTO#getRemoteNodeReading()} should only be
+ * created when they are needed.
+ */
+public class RxReadingsAllocationTest {
+
+	private static final int ADDRESS = 0x3333;
+	private static final int FRAMES = 20000;
+	/**
+	 * The maximum number of bytes allocated per reading (by all threads) when
+	 * successes are not logged
+	 */
+	private static final long MAX_BYTES_PER_READING = 2048;
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong materialized = new AtomicLong();
+	private UGateXBeePacketListener listener;
+	private RxResponse16[] responses;
+
+	@Before
+	public void createListener() throws Exception {
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final RemoteNode rn = new RemoteNode();
+		rn.setId(1);
+		rn.setAddress(Integer.toHexString(ADDRESS));
+		index.put(rn);
+		final Field reading = RxTxRemoteNodeReadingDTO.class.getDeclaredField("remoteNodeReading");
+		reading.setAccessible(true);
+		// every reading is handled so the benchmark measures a fixed amount of work
+		listener = new UGateXBeePacketListener(index, new RxDispatcher(RxDispatcher.DEFAULT_LANES,
+				RxDispatcher.DEFAULT_LANE_CAPACITY, RxDispatcher.Overflow.BLOCK)) {
+			@Override
+			protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+				try {
+					if (reading.get(event.getNewValue()) != null) {
+						materialized.incrementAndGet();
+					}
+				} catch (final IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+				events.incrementAndGet();
+			}
+		};
+		responses = new RxResponse16[64];
+		for (int i = 0; i < responses.length; i++) {
+			responses[i] = newResponse(i);
+		}
+	}
+
+	@After
+	public void shutdown() {
+		listener.shutdown(TimeUnit.SECONDS.toMillis(5));
+	}
+
+	@Test
+	public void readingsAreNotMaterialized() throws InterruptedException {
+		process(FRAMES);
+		assertEquals(FRAMES, events.get());
+		assertEquals(0, materialized.get());
+	}
+
+	@Test
+	public void allocationPerReading() throws InterruptedException {
+		// warm up
+		process(FRAMES);
+		final long start = allocatedBytes();
+		final long startNanos = System.nanoTime();
+		process(FRAMES);
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		final long end = allocatedBytes();
+		assertEquals(FRAMES * 2, events.get());
+		if (start < 0 || end < 0) {
+			// allocation measurement is not supported by the JVM
+			return;
+		}
+		final long perReading = (end - start) / FRAMES;
+		LoggerFactory.getLogger(RxReadingsAllocationTest.class).info(String.format(
+				"%1$s reading(s) in %2$s ms, %3$s bytes allocated per reading", FRAMES,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), perReading));
+		if (!LoggerFactory.getLogger(UGateXBeePacketListener.class).isDebugEnabled()) {
+			assertTrue(String.format("%1$s bytes allocated per reading", perReading),
+					perReading <= MAX_BYTES_PER_READING);
+		}
+	}
+
+	/**
+	 * Processes readings and waits for them to be handled
+	 * 
+	 * @param frames
+	 *            the number of readings to process
+	 * @throws InterruptedException
+	 *             thrown when interrupted while waiting
+	 */
+	private void process(final int frames) throws InterruptedException {
+		final long expected = events.get() + frames;
+		for (int i = 0; i < frames; i++) {
+			listener.processResponse(responses[i % responses.length]);
+		}
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (events.get() < expected && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * @return the total number of bytes allocated by all live threads (-1
+	 *         when the JVM does not support allocation measurement)
+	 */
+	private static long allocatedBytes() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		final com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!tmx.isThreadAllocatedMemorySupported() || !tmx.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		for (final long bytes : tmx.getThreadAllocatedBytes(tmx.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @param i
+	 *            the reading number
+	 * @return a readings {@linkplain RxResponse16} parsed from raw bytes
+	 */
+	private static RxResponse16 newResponse(final int i) {
+		final int[] payload = new int[] { Command.SENSOR_GET_READINGS.getKey(), 0, i % 30, i % 12,
+				i % 100, (i * 7) % 100, i % 30, i % 12, i % 2 };
+		final int[] frameData = new int[payload.length + 5];
+		frameData[0] = ApiId.RX_16_RESPONSE.getValue();
+		frameData[1] = ADDRESS >> 8;
+		frameData[2] = ADDRESS & 0xFF;
+		frameData[3] = 40;
+		System.arraycopy(payload, 0, frameData, 5, payload.length);
+		final int[] packet = new XBeePacket(frameData).getByteArray();
+		final byte[] raw = new byte[packet.length - 1];
+		for (int j = 1; j < packet.length; j++) {
+			raw[j - 1] = (byte) packet[j];
+		}
+		return (RxResponse16) new PacketParser(new ByteArrayInputStream(raw)).parsePacket();
+	}
+}
@@ -0,0 +1,199 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.ApiId;
+import com.rapplogic.xbee.api.PacketParser;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+
+/**
+ * {@linkplain RxRecorder} round trip tests (recorded frames are read back
+ * using {@linkplain RxReplay})
+ */
+public class RxRecorderTest {
+
+	private static final int ADDRESS = 0x3333;
+	private Path path;
+
+	@Before
+	public void createLog() throws IOException {
+		path = Files.createTempFile(RxRecorderTest.class.getSimpleName(), ".rx");
+	}
+
+	@After
+	public void deleteLog() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	@Test
+	public void sessionsDoNotReplacePreviousRecordings() throws IOException {
+		final Date start = new Date();
+		final Path first = RxRecorder.newSessionPath(path, start);
+		final Path second = RxRecorder.newSessionPath(path, start);
+		assertEquals(first, second);
+		Path next = null;
+		try {
+			final RxRecorder recorder = new RxRecorder(first);
+			assertTrue(recorder.record(newResponse(0, 40)));
+			recorder.close();
+			final long size = Files.size(first);
+			// a session started within the same second gets its own log
+			next = RxRecorder.newSessionPath(path, start);
+			assertFalse(first.equals(next));
+			assertTrue(next.getFileName().toString().endsWith(".rx"));
+			new RxRecorder(next).close();
+			assertEquals(size, Files.size(first));
+			assertEquals(RxRecorder.HEADER_LENGTH, Files.size(next));
+		} finally {
+			Files.deleteIfExists(first);
+			if (next != null) {
+				Files.deleteIfExists(next);
+			}
+		}
+	}
+
+	@Test
+	public void framesAreReadBackIntact() throws IOException {
+		final RxRecorder recorder = new RxRecorder(path);
+		// more frames than fit in the recorder's buffer
+		final int frames = 2000;
+		for (int i = 0; i < frames; i++) {
+			assertTrue(recorder.record(newResponse(i, 40 + i % 50)));
+		}
+		recorder.close();
+		assertEquals(frames, recorder.getFrameCount());
+		final ByteBuffer buf = RxReplay.map(path);
+		long lastNanos = -1;
+		for (int i = 0; i < frames; i++) {
+			final long nanos = buf.getLong();
+			assertTrue(nanos >= lastNanos);
+			lastNanos = nanos;
+			final byte[] raw = new byte[buf.getShort() & 0xFFFF];
+			buf.get(raw);
+			final XBeeResponse response = new PacketParser(new ByteArrayInputStream(raw)).parsePacket();
+			assertFalse(response.isError());
+			final RxResponse16 rx = (RxResponse16) response;
+			assertEquals(ADDRESS, rx.getRemoteAddress().get16BitValue());
+			assertEquals(-(40 + i % 50), rx.getRssi());
+			assertArrayEquals(newPayload(i), rx.getData());
+		}
+		assertEquals(0, buf.remaining());
+	}
+
+	@Test
+	public void framesWithoutRawBytesAreSkipped() throws IOException {
+		final RxRecorder recorder = new RxRecorder(path);
+		assertFalse(recorder.record(new RxResponse16()));
+		assertTrue(recorder.record(newResponse(1, 40)));
+		recorder.close();
+		assertFalse(recorder.record(newResponse(2, 40)));
+		assertEquals(1, recorder.getFrameCount());
+		assertEquals(2, recorder.getSkippedCount());
+		assertEquals(RxRecorder.HEADER_LENGTH + RxRecorder.FRAME_HEADER_LENGTH
+				+ newResponse(1, 40).getRawPacketBytes().length, Files.size(path));
+	}
+
+	@Test
+	public void closeReleasesTheLog() throws IOException {
+		final RxRecorder recorder = new RxRecorder(path);
+		recorder.record(newResponse(1, 40));
+		recorder.close();
+		// closing again and flushing a closed recorder do nothing
+		recorder.close();
+		recorder.flush();
+		// a new recording replaces the log
+		final RxRecorder next = new RxRecorder(path);
+		next.close();
+		assertEquals(RxRecorder.HEADER_LENGTH, Files.size(path));
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidLogIsRejected() throws IOException {
+		Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+		RxReplay.map(path);
+	}
+
+	@Test
+	public void recordedFramesAreReplayed() throws IOException {
+		final RxRecorder recorder = new RxRecorder(path);
+		final int frames = 500;
+		for (int i = 0; i < frames; i++) {
+			recorder.record(newResponse(i, 40));
+		}
+		recorder.close();
+		final RemoteNodeIndex index = new RemoteNodeIndex();
+		final RemoteNode rn = new RemoteNode();
+		rn.setId(1);
+		rn.setAddress(Integer.toHexString(ADDRESS));
+		index.put(rn);
+		final AtomicLong events = new AtomicLong();
+		final UGateXBeePacketListener listener = new UGateXBeePacketListener(index) {
+			@Override
+			protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+				events.incrementAndGet();
+			}
+		};
+		try {
+			final RxReplay.Report report = new RxReplay(path, listener).replay(0);
+			assertEquals(frames, report.getFrames());
+			assertEquals(0, report.getErrors());
+		} finally {
+			listener.shutdown(TimeUnit.SECONDS.toMillis(5));
+		}
+		assertEquals(frames, events.get());
+	}
+
+	/**
+	 * @param i
+	 *            the frame number
+	 * @return the readings payload of a frame
+	 */
+	private static int[] newPayload(final int i) {
+		return new int[] { Command.SENSOR_GET_READINGS.getKey(), 0, i % 30, i % 12,
+				i % 100, (i * 7) % 100, i % 30, i % 12, i % 2 };
+	}
+
+	/**
+	 * @param i
+	 *            the frame number
+	 * @param rssi
+	 *            the RSSI byte of the frame (-dBm)
+	 * @return a {@linkplain RxResponse16} with the same raw bytes as one read
+	 *         by the packet parser
+	 */
+	private static RxResponse16 newResponse(final int i, final int rssi) {
+		final int[] payload = newPayload(i);
+		final int[] frameData = new int[payload.length + 5];
+		frameData[0] = ApiId.RX_16_RESPONSE.getValue();
+		frameData[1] = ADDRESS >> 8;
+		frameData[2] = ADDRESS & 0xFF;
+		frameData[3] = rssi;
+		System.arraycopy(payload, 0, frameData, 5, payload.length);
+		final int[] packet = new XBeePacket(frameData).getByteArray();
+		final RxResponse16 rx = new RxResponse16();
+		rx.setRawPacketBytes(Arrays.copyOfRange(packet, 1, packet.length));
+		return rx;
+	}
+}
@@ -0,0 +1,319 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateUtil;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * {@linkplain RxTxImage} reassembly tests at QVGA and VGA chunk counts
+ */
+public class RxTxImageTest {
+
+	/**
+	 * Image bytes in each chunk sent by the remote node firmware
+	 */
+	private static final int CHUNK_SIZE = 64;
+	/**
+	 * Typical size of a QVGA JPEG
+	 */
+	private static final int QVGA_SIZE = 10 * 1024;
+	/**
+	 * Typical size of a VGA JPEG
+	 */
+	private static final int VGA_SIZE = 40 * 1024;
+	private static final int START_INDEX = 2;
+	private static final int BENCHMARK_RUNS = 5;
+
+	@Test
+	public void assemblesQvga() {
+		assertAssembled(QVGA_SIZE);
+	}
+
+	@Test
+	public void assemblesVga() {
+		assertAssembled(VGA_SIZE);
+	}
+
+	@Test
+	public void lostChunkIsReservedAndFilled() {
+		final int[] img = newJpeg(QVGA_SIZE, 2);
+		final RxTxJPEG rxTxImage = newImage();
+		final int lost = 10;
+		for (int i = 0, c = 0; i < img.length; i += CHUNK_SIZE, c++) {
+			if (c != lost) {
+				rxTxImage.addImageSegment(chunk(img, i), START_INDEX, c > lost);
+			}
+		}
+		assertEquals(RxData.Status.GENERAL_FAILURE, rxTxImage.getStatus());
+		assertEquals(1, rxTxImage.getMissingChunks().size());
+		final int offset = rxTxImage.getMissingChunks().get(0).getOffset();
+		assertEquals(lost * CHUNK_SIZE, offset);
+		assertEquals(img.length, rxTxImage.getLength());
+		assertTrue(rxTxImage.fillMissingChunk(offset, chunk(img, offset), START_INDEX));
+		assertEquals(RxData.Status.NORMAL, rxTxImage.getStatus());
+		assertTrue(rxTxImage.isEof());
+		assertBytes(img, rxTxImage.getBytes());
+		assertEquals(CHUNK_SIZE, rxTxImage.getRetransmittedLength());
+		assertEquals(img.length - CHUNK_SIZE, rxTxImage.getBytesSaved());
+		rxTxImage.release();
+	}
+
+	@Test
+	public void gapIsRemovedWhenOnlyTheAckWasLost() {
+		final int[] img = newJpeg(QVGA_SIZE, 4);
+		final RxTxJPEG rxTxImage = newImage();
+		// chunk 10 was delivered but the remote node reports it as failed
+		final int acked = 10;
+		for (int i = 0, c = 0; i < img.length; i += CHUNK_SIZE, c++) {
+			rxTxImage.addImageSegment(chunk(img, i), START_INDEX, c > acked);
+		}
+		assertEquals(1, rxTxImage.getMissingChunks().size());
+		final int offset = rxTxImage.getMissingChunks().get(0).getOffset();
+		assertEquals((acked + 1) * CHUNK_SIZE, offset);
+		assertEquals(img.length + CHUNK_SIZE, rxTxImage.getLength());
+		// the remote node resends the chunk that follows the one it reported
+		assertTrue(rxTxImage.fillMissingChunk(offset, chunk(img, offset), START_INDEX));
+		assertEquals(RxData.Status.NORMAL, rxTxImage.getStatus());
+		assertEquals(0, rxTxImage.getMissingLength());
+		assertTrue(rxTxImage.isEof());
+		assertBytes(img, rxTxImage.getBytes());
+		rxTxImage.release();
+	}
+
+	@Test
+	public void laterFailuresReserveAnotherGap() {
+		final int[] img = newJpeg(QVGA_SIZE, 5);
+		final RxTxJPEG rxTxImage = newImage();
+		for (int i = 0, c = 0; i < img.length; i += CHUNK_SIZE, c++) {
+			if (c != 5 && c != 20) {
+				// failures are reported until a later chunk is delivered
+				rxTxImage.addImageSegment(chunk(img, i), START_INDEX, c == 6 || c == 7 || c == 21);
+			}
+		}
+		assertEquals(2, rxTxImage.getMissingChunks().size());
+		assertEquals(5 * CHUNK_SIZE, rxTxImage.getMissingChunks().get(0).getOffset());
+		assertEquals(20 * CHUNK_SIZE, rxTxImage.getMissingChunks().get(1).getOffset());
+		assertFalse(rxTxImage.fillMissingChunk(5 * CHUNK_SIZE, chunk(img, 5 * CHUNK_SIZE), START_INDEX));
+		assertTrue(rxTxImage.fillMissingChunk(20 * CHUNK_SIZE, chunk(img, 20 * CHUNK_SIZE), START_INDEX));
+		assertEquals(RxData.Status.NORMAL, rxTxImage.getStatus());
+		assertBytes(img, rxTxImage.getBytes());
+		rxTxImage.release();
+	}
+
+	/**
+	 * Measures the cost of assembling an image and checking for the end of
+	 * the image after each chunk (the way chunks are received) using the
+	 * previous {@linkplain UGateUtil#arrayConcatInt(int[], int[])} rebuild
+	 * of the image (before) and the {@linkplain ImageBuffer} (after). The
+	 * rebuild is quadratic in the chunk count, so going from QVGA to VGA
+	 * (four times the chunks) costs at least sixteen times more before and at
+	 * most about four times more after.
+	 */
+	@Test
+	public void reassemblyCostBeforeAndAfter() {
+		final long[][] nanos = new long[2][2];
+		final int[] sizes = new int[] { QVGA_SIZE, VGA_SIZE };
+		for (int s = 0; s < sizes.length; s++) {
+			final int[] img = newJpeg(sizes[s], s);
+			final long[] before = new long[BENCHMARK_RUNS];
+			final long[] after = new long[BENCHMARK_RUNS];
+			for (int r = 0; r < BENCHMARK_RUNS; r++) {
+				long start = System.nanoTime();
+				assertEquals(img.length, assembleByConcat(img));
+				before[r] = System.nanoTime() - start;
+				start = System.nanoTime();
+				assertEquals(img.length, assembleByBuffer(img));
+				after[r] = System.nanoTime() - start;
+			}
+			nanos[s][0] = median(before);
+			nanos[s][1] = median(after);
+			LoggerFactory.getLogger(RxTxImageTest.class).info(String.format(
+					"%1$s byte image in %2$s chunks: %3$s us before (array concatenation), %4$s us after (image buffer)",
+					img.length, (img.length + CHUNK_SIZE - 1) / CHUNK_SIZE,
+					TimeUnit.NANOSECONDS.toMicros(nanos[s][0]), TimeUnit.NANOSECONDS.toMicros(nanos[s][1])));
+		}
+		LoggerFactory.getLogger(RxTxImageTest.class).info(String.format(
+				"QVGA to VGA cost growth: %1$.1fx before, %2$.1fx after",
+				nanos[1][0] / (double) Math.max(1, nanos[0][0]), nanos[1][1] / (double) Math.max(1, nanos[0][1])));
+	}
+
+	@Test
+	public void releasedImageHasNoBytes() {
+		final RxTxJPEG rxTxImage = newImage();
+		rxTxImage.addImageSegment(chunk(newJpeg(QVGA_SIZE, 3), 0), START_INDEX);
+		rxTxImage.release();
+		assertNull(rxTxImage.getBytes());
+		assertEquals(0, rxTxImage.getLength());
+	}
+
+	@Test
+	public void rangeTimeoutIsCancelledByTheNextAttempt() {
+		final RxTxJPEG rxTxImage = newImage();
+		final Runnable timeout = new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+		final FutureTask<Void> first = new FutureTask<>(timeout, null);
+		rxTxImage.setRangeRequested(true);
+		rxTxImage.setRangeTimeout(first);
+		rxTxImage.incRxTxAttempts();
+		assertTrue(first.isCancelled());
+		assertFalse(rxTxImage.isRangeRequested());
+		final FutureTask<Void> second = new FutureTask<>(timeout, null);
+		rxTxImage.setRangeTimeout(second);
+		rxTxImage.release();
+		assertTrue(second.isCancelled());
+	}
+
+	/**
+	 * Adds an image chunk by chunk and checks that the assembled bytes,
+	 * length and snapshot match the original image
+	 * 
+	 * @param size
+	 *            the size of the image
+	 */
+	private static void assertAssembled(final int size) {
+		final int[] img = newJpeg(size, size);
+		final RxTxJPEG rxTxImage = newImage();
+		int chunks = 0;
+		for (int i = 0; i < img.length; i += CHUNK_SIZE) {
+			assertFalse(rxTxImage.isEof());
+			final RxTxImage.ImageChunk ic = rxTxImage.addImageSegment(chunk(img, i), START_INDEX);
+			assertEquals(chunks++, ic.getSequence());
+			assertEquals(i, ic.getOffset());
+			assertEquals(i + ic.getLength(), rxTxImage.getLength());
+			assertEquals(rxTxImage.getLength(), rxTxImage.createImageSegmentsSnapshot().getFileSize());
+		}
+		assertEquals((size + CHUNK_SIZE - 1) / CHUNK_SIZE, chunks);
+		assertTrue(rxTxImage.isEof());
+		assertEquals(RxData.Status.NORMAL, rxTxImage.getStatus());
+		final ByteBuffer bytes = rxTxImage.getBytes();
+		assertTrue(bytes.isReadOnly());
+		assertBytes(img, bytes);
+		rxTxImage.release();
+	}
+
+	/**
+	 * Assembles an image the way it was assembled before the
+	 * {@linkplain ImageBuffer}: each chunk is copied and the whole image is
+	 * rebuilt by concatenation whenever the end of the image is checked
+	 * 
+	 * @param img
+	 *            the image
+	 * @return the assembled length
+	 */
+	private static int assembleByConcat(final int[] img) {
+		final List<int[]> chunks = new ArrayList<>();
+		ByteBuffer bytes = null;
+		for (int i = 0; i < img.length; i += CHUNK_SIZE) {
+			final int[] data = chunk(img, i);
+			chunks.add(Arrays.copyOfRange(data, START_INDEX, data.length));
+			int[] imageData = null;
+			for (final int[] c : chunks) {
+				imageData = imageData == null ? c : UGateUtil.arrayConcatInt(imageData, c);
+			}
+			bytes = ByteBuffer.allocate(imageData.length);
+			for (final int value : imageData) {
+				bytes.put((byte) value);
+			}
+			if ((bytes.get(bytes.limit() - 2) & 0xFF) == JpegScanner.MARKER
+					&& (bytes.get(bytes.limit() - 1) & 0xFF) == JpegScanner.EOI) {
+				break;
+			}
+		}
+		return bytes.limit();
+	}
+
+	/**
+	 * Assembles an image using {@linkplain RxTxImage} (backed by the
+	 * {@linkplain ImageBuffer})
+	 * 
+	 * @param img
+	 *            the image
+	 * @return the assembled length
+	 */
+	private static int assembleByBuffer(final int[] img) {
+		final RxTxJPEG rxTxImage = newImage();
+		for (int i = 0; i < img.length; i += CHUNK_SIZE) {
+			rxTxImage.addImageSegment(chunk(img, i), START_INDEX);
+			if (rxTxImage.isEof()) {
+				break;
+			}
+		}
+		final int length = rxTxImage.getLength();
+		rxTxImage.release();
+		return length;
+	}
+
+	private static long median(final long[] values) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	private static void assertBytes(final int[] expected, final ByteBuffer actual) {
+		assertEquals(expected.length, actual.remaining());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("Byte " + i, expected[i], actual.get(actual.position() + i) & 0xFF);
+		}
+	}
+
+	private static RxTxJPEG newImage() {
+		final RemoteNode rn = new RemoteNode();
+		rn.setAddress("3333");
+		return new RxTxJPEG(rn, RxData.Status.NORMAL, 40, null);
+	}
+
+	/**
+	 * @param img
+	 *            the image
+	 * @param offset
+	 *            the offset of the chunk within the image
+	 * @return the chunk data preceded by {@linkplain #START_INDEX} bytes
+	 */
+	private static int[] chunk(final int[] img, final int offset) {
+		final int len = Math.min(CHUNK_SIZE, img.length - offset);
+		final int[] data = new int[START_INDEX + len];
+		System.arraycopy(img, offset, data, START_INDEX, len);
+		return data;
+	}
+
+	/**
+	 * @param size
+	 *            the size of the image
+	 * @param seed
+	 *            the random seed
+	 * @return a structurally valid JPEG with random entropy-coded data
+	 */
+	private static int[] newJpeg(final int size, final long seed) {
+		final Random random = new Random(seed);
+		final int[] img = new int[size];
+		img[0] = JpegScanner.MARKER;
+		img[1] = JpegScanner.SOI;
+		img[2] = JpegScanner.MARKER;
+		img[3] = JpegScanner.SOS;
+		img[4] = 0x00;
+		img[5] = 0x02;
+		for (int i = 6; i < img.length - 2; i++) {
+			img[i] = random.nextInt(JpegScanner.MARKER);
+		}
+		img[img.length - 2] = JpegScanner.MARKER;
+		img[img.length - 1] = JpegScanner.EOI;
+		return img;
+	}
+}